@@ -0,0 +1,46 @@
+package com.makura.translator;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Result of one message of a batch translation.
+ * Holds either the translated message or the error that message failed with.
+ */
+@Data
+@AllArgsConstructor
+public class BatchItemResult {
+
+    /**
+     * Position of the message in the batch (results are returned in input order)
+     */
+    private int index;
+
+    /**
+     * The translated target format message (null if translation failed)
+     */
+    private TargetMessage targetMessage;
+
+    /**
+     * Why the message could not be translated (null on success)
+     */
+    private Translator.TranslationException error;
+
+    /**
+     * Create a successful result
+     */
+    public static BatchItemResult success(int index, TargetMessage targetMessage) {
+        return new BatchItemResult(index, targetMessage, null);
+    }
+
+    /**
+     * Create a failed result
+     */
+    public static BatchItemResult failure(int index, Translator.TranslationException error) {
+        return new BatchItemResult(index, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
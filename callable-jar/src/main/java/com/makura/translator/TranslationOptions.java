@@ -1,5 +1,6 @@
 package com.makura.translator;
 
+import com.makura.translator.encryption.PgpProfile;
 import lombok.Builder;
 import lombok.Data;
 
@@ -17,13 +18,13 @@ public class TranslationOptions {
     private String routeId;
     
     /**
-     * Enable encryption (AES or PGP)
+     * Enable encryption (AES, AES-GCM or PGP)
      */
     @Builder.Default
     private boolean encrypt = false;
     
     /**
-     * Encryption type (AES or PGP)
+     * Encryption type (AES-CBC, authenticated AES-GCM, or PGP)
      */
     private EncryptionType encryptionType;
     
@@ -32,6 +33,11 @@ public class TranslationOptions {
      */
     private String encryptionKeyRef;
     
+    /**
+     * PGP profile (cipher, compression, integrity packet); defaults to the route's pgp section, then AES-256
+     */
+    private PgpProfile pgpProfile;
+    
     /**
      * Enable HTTP forwarding
      */
@@ -61,7 +67,7 @@ public class TranslationOptions {
     private int readTimeout = 30000;
     
     public enum EncryptionType {
-        AES, PGP
+        AES, AES_GCM, PGP
     }
 }
 
@@ -0,0 +1,243 @@
+package com.makura.translator;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Backpressured translation stage for {@link Flow} pipelines.
+ * Subscribes to source messages, runs each through {@link Translator#translateAsync} (mapping, optional
+ * encryption, optional forwarding) and publishes the results to one subscriber.
+ *
+ * At most {@code maxInFlight} messages are requested from upstream that have not yet been delivered
+ * downstream, so a slow subscriber or downstream system slows the source instead of queueing work.
+ * Messages of the same route are translated and forwarded one after another and published in arrival
+ * order; different routes run in parallel, and their results interleave in completion order.
+ *
+ * A message that fails to translate is published in its place as a {@link TranslationResult#failure}
+ * carrying the {@link Translator.TranslationException}, and the stream goes on. Anything else (an upstream
+ * error, an options resolver or translator that throws) fails the stream: upstream is cancelled and the
+ * subscriber receives the error through {@code onError}.
+ */
+public class TranslationProcessor implements Flow.Processor<SourceMessage, TranslationResult> {
+
+    private final Translator translator;
+    private final Function<SourceMessage, TranslationOptions> optionsResolver;
+    private final int maxInFlight;
+
+    // Tail of each route's chain of translations; removed once the route goes idle
+    private final Map<String, CompletableFuture<Void>> lanes = new ConcurrentHashMap<>();
+    private final Queue<TranslationResult> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();     // received from upstream, not yet published
+    private final AtomicInteger drainWork = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicReference<Flow.Subscriber<? super TranslationResult>> downstream = new AtomicReference<>();
+
+    private volatile Flow.Subscription upstream;
+    private volatile boolean subscribed;                           // downstream's onSubscribe has returned
+    private volatile boolean upstreamDone;
+    private volatile boolean cancelled;
+    private boolean terminated;
+    private int requested;                                         // requested from upstream, not yet published
+
+    /**
+     * Processor for messages of a single route
+     *
+     * @param translator Translator doing the work
+     * @param options Options applied to every message (route, encryption, forwarding)
+     * @param maxInFlight Maximum number of messages between upstream and the subscriber
+     */
+    public TranslationProcessor(Translator translator, TranslationOptions options, int maxInFlight) {
+        this(translator, message -> options, maxInFlight);
+    }
+
+    /**
+     * Processor for messages of several routes
+     *
+     * @param translator Translator doing the work
+     * @param optionsResolver Options for each message; its routeId decides the ordering lane
+     * @param maxInFlight Maximum number of messages between upstream and the subscriber
+     */
+    public TranslationProcessor(Translator translator, Function<SourceMessage, TranslationOptions> optionsResolver,
+                                int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.translator = translator;
+        this.optionsResolver = optionsResolver;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TranslationResult> subscriber) {
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("TranslationProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Requested demand must be positive: " + n));
+                    return;
+                }
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+        subscribed = true;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(SourceMessage message) {
+        pending.incrementAndGet();
+        if (failure.get() != null || cancelled) {
+            return;
+        }
+        TranslationOptions options;
+        try {
+            options = optionsResolver.apply(message);
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        String routeId = options.getRouteId() != null ? options.getRouteId() : "";
+        CompletableFuture<Void> previous = lanes.getOrDefault(routeId, CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> next = previous
+            .thenCompose(ignored -> failure.get() != null || cancelled
+                ? CompletableFuture.<TranslationResult>completedFuture(null)
+                : translator.translateAsync(message, options))
+            .handle((result, error) -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof Translator.TranslationException translationError) {
+                    ready.add(TranslationResult.failure(translationError));
+                    drain();
+                } else if (cause != null) {
+                    fail(cause);
+                } else if (result != null) {
+                    ready.add(result);
+                    drain();
+                }
+                return null;
+            });
+        lanes.put(routeId, next);
+        next.whenComplete((ignored, error) -> lanes.remove(routeId, next));
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamDone = true;
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    private void fail(Throwable error) {
+        if (failure.compareAndSet(null, error)) {
+            drain();
+        }
+    }
+
+    /**
+     * Publish ready results and top up upstream demand. Runs on one thread at a time; callers that find
+     * it running leave the extra pass to the running thread.
+     */
+    private void drain() {
+        if (drainWork.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super TranslationResult> subscriber = downstream.get();
+            if (!terminated && subscribed) {
+                drainOnce(subscriber);
+            }
+            missed = drainWork.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainOnce(Flow.Subscriber<? super TranslationResult> subscriber) {
+        Flow.Subscription subscription = upstream;
+        if (cancelled) {
+            terminate(subscription);
+            return;
+        }
+        Throwable error = failure.get();
+        if (error != null) {
+            terminate(subscription);
+            subscriber.onError(error);
+            return;
+        }
+        TranslationResult result;
+        while (demand.get() > 0 && (result = ready.poll()) != null) {
+            demand.decrementAndGet();
+            pending.decrementAndGet();
+            requested--;
+            try {
+                subscriber.onNext(result);
+            } catch (RuntimeException e) {
+                // A subscriber that throws is treated as having cancelled
+                cancelled = true;
+                terminate(subscription);
+                return;
+            }
+        }
+        if (upstreamDone) {
+            if (pending.get() == 0) {
+                terminated = true;
+                subscriber.onComplete();
+            }
+        } else if (subscription != null && requested < maxInFlight) {
+            int more = maxInFlight - requested;
+            requested = maxInFlight;
+            subscription.request(more);
+        }
+    }
+
+    private void terminate(Flow.Subscription subscription) {
+        terminated = true;
+        ready.clear();
+        if (subscription != null && !upstreamDone) {
+            subscription.cancel();
+        }
+    }
+}
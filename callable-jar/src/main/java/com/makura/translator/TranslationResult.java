@@ -26,18 +26,42 @@ public class TranslationResult {
      */
     private boolean forwarded;
     
+    /**
+     * Why the message could not be translated (null on success; only set on results published by a
+     * {@link TranslationProcessor}, the other APIs throw instead)
+     */
+    private Translator.TranslationException error;
+    
+    /**
+     * Create a successful result
+     */
+    public TranslationResult(String targetMessage, String forwardingResponse, boolean forwarded) {
+        this(targetMessage, forwardingResponse, forwarded, null);
+    }
+    
     /**
      * Create a result without forwarding
      */
     public static TranslationResult withoutForwarding(String targetMessage) {
-        return new TranslationResult(targetMessage, null, false);
+        return new TranslationResult(targetMessage, null, false, null);
     }
     
     /**
      * Create a result with forwarding response
      */
     public static TranslationResult withForwarding(String targetMessage, String forwardingResponse) {
-        return new TranslationResult(targetMessage, forwardingResponse, true);
+        return new TranslationResult(targetMessage, forwardingResponse, true, null);
+    }
+    
+    /**
+     * Create a failed result
+     */
+    public static TranslationResult failure(Translator.TranslationException error) {
+        return new TranslationResult(null, null, false, error);
+    }
+    
+    public boolean isSuccess() {
+        return error == null;
     }
 }
 
@@ -1,10 +1,20 @@
 package com.makura.translator;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Core translation interface for message translation.
  * This interface can be embedded in existing Java applications.
+ * Close the translator when the application shuts down to release its threads and connections.
  */
-public interface Translator {
+public interface Translator extends AutoCloseable {
     
     /**
      * Translates a source message to target format.
@@ -37,6 +47,154 @@ public interface Translator {
      */
     TranslationResult translateWithOptions(SourceMessage request, TranslationOptions options) throws TranslationException;
     
+    /**
+     * Translates a source message with advanced options without blocking the caller.
+     * The returned future completes with the result, or exceptionally with a {@link TranslationException};
+     * cancelling it abandons the translation.
+     * 
+     * @param request The source message
+     * @param options Translation options (encryption, forwarding, per-call timeouts, etc.)
+     * @return Future translation result
+     */
+    default CompletableFuture<TranslationResult> translateAsync(SourceMessage request, TranslationOptions options) {
+        CompletableFuture<TranslationResult> result = new CompletableFuture<>();
+        // The whole chain may block on forwarding, so it runs on a virtual thread
+        Thread.ofVirtual().name("translator-async").start(() -> {
+            try {
+                result.complete(translateWithOptions(request, options));
+            } catch (TranslationException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Translates an encoded source message to target format, writing UTF-8 XML directly into the stream.
+     * Avoids holding the message as a String; use {@link java.nio.channels.Channels#newInputStream}
+     * to read from a channel. Neither stream is closed.
+     * 
+     * @param routeId The route identifier to determine mapping configuration
+     * @param request Source message bytes (JSON, XML or SOAP, per the route's inbound format)
+     * @param target Stream receiving the target format XML
+     * @throws TranslationException if translation fails
+     */
+    default void translateRequest(String routeId, InputStream request, OutputStream target) throws TranslationException {
+        try {
+            SourceMessage source = new SourceMessage(new String(request.readAllBytes(), StandardCharsets.UTF_8));
+            target.write(translateRequest(source, routeId).getContent().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new TranslationException("I/O error during translation: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Translates an encoded source message with advanced options, streaming the target message through
+     * the stages it needs: mapping, then encryption and Base64 encoding if requested, then either the
+     * output stream or, when forwarding, the body of the forwarding request. The message is never held
+     * as a whole. Neither stream is closed.
+     * 
+     * @param request Source message bytes (JSON, XML or SOAP, per the route's inbound format)
+     * @param options Translation options (encryption, forwarding, per-call timeouts, etc.)
+     * @param target Stream receiving the (encrypted) target message; not written when forwarding
+     * @return Result carrying the downstream response if forwarded; its target message is null, as the
+     *         message was streamed
+     * @throws TranslationException if translation fails
+     */
+    default TranslationResult translateWithOptions(InputStream request, TranslationOptions options, OutputStream target)
+            throws TranslationException {
+        try {
+            SourceMessage source = new SourceMessage(new String(request.readAllBytes(), StandardCharsets.UTF_8));
+            TranslationResult result = translateWithOptions(source, options);
+            if (result.isForwarded()) {
+                return TranslationResult.withForwarding(null, result.getForwardingResponse());
+            }
+            target.write(result.getTargetMessage().getBytes(StandardCharsets.UTF_8));
+            return TranslationResult.withoutForwarding(null);
+        } catch (IOException e) {
+            throw new TranslationException("I/O error during translation: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Translates an encoded target format response back to source format, writing UTF-8 directly
+     * into the stream. Neither stream is closed.
+     * 
+     * @param routeId The route identifier to determine mapping configuration
+     * @param response Target format response bytes
+     * @param source Stream receiving the message in the source format
+     * @throws TranslationException if translation fails
+     */
+    default void translateResponse(String routeId, InputStream response, OutputStream source) throws TranslationException {
+        try {
+            TargetMessage target = new TargetMessage(new String(response.readAllBytes(), StandardCharsets.UTF_8));
+            source.write(translateResponse(target, routeId).getContent().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new TranslationException("I/O error during translation: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Translates a batch of source messages on one route.
+     * The route is resolved once; a failing message does not stop the batch.
+     * 
+     * @param routeId The route identifier to determine mapping configuration
+     * @param requests The source messages
+     * @return One result per message, in input order
+     * @throws TranslationException if the batch cannot be started (e.g. the route cannot be loaded)
+     */
+    default List<BatchItemResult> translateBatch(String routeId, List<SourceMessage> requests) throws TranslationException {
+        List<BatchItemResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                results.add(BatchItemResult.success(i, translateRequest(requests.get(i), routeId)));
+            } catch (TranslationException e) {
+                results.add(BatchItemResult.failure(i, e));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Translates a stream of source messages on one route, lazily.
+     * Messages are read from the iterator as results are consumed, so the batch never has to be in memory.
+     * 
+     * @param routeId The route identifier to determine mapping configuration
+     * @param requests The source messages
+     * @return One result per message, in input order
+     * @throws TranslationException if the batch cannot be started (e.g. the route cannot be loaded)
+     */
+    default Iterator<BatchItemResult> translateBatch(String routeId, Iterator<SourceMessage> requests) throws TranslationException {
+        return new Iterator<>() {
+            private int index;
+            
+            @Override
+            public boolean hasNext() {
+                return requests.hasNext();
+            }
+            
+            @Override
+            public BatchItemResult next() {
+                SourceMessage request = requests.next();
+                try {
+                    return BatchItemResult.success(index, translateRequest(request, routeId));
+                } catch (TranslationException e) {
+                    return BatchItemResult.failure(index, e);
+                } finally {
+                    index++;
+                }
+            }
+        };
+    }
+    
+    /**
+     * Releases the threads and connections held by the translator (nothing by default).
+     * Translations started afterwards may fail.
+     */
+    @Override
+    default void close() {
+    }
+    
     /**
      * Exception thrown when translation fails
      */
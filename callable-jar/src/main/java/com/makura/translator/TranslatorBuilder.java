@@ -1,7 +1,14 @@
 package com.makura.translator;
 
 import com.makura.translator.encryption.EncryptionService;
+import com.makura.translator.encryption.KeyRegistry;
 import com.makura.translator.forwarding.HttpForwardingClient;
+import com.makura.translator.mapping.MappingLoader;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Builder for creating Translator instances with optional features
@@ -9,11 +16,16 @@ import com.makura.translator.forwarding.HttpForwardingClient;
 public class TranslatorBuilder {
     
     private String mappingsPath = "./mappings";
+    private MappingLoader mappingLoader;
+    private boolean watchMappings = false;
     private String encryptionKeysPath;
+    private KeyRegistry keyRegistry;
     private boolean encryptionEnabled = false;
     private boolean forwardingEnabled = false;
+    private SSLContext sslContext;
     private int connectTimeout = 5000;
     private int readTimeout = 30000;
+    private Executor batchExecutor = ForkJoinPool.commonPool();
     
     /**
      * Set the path to YAML mapping files
@@ -23,12 +35,42 @@ public class TranslatorBuilder {
         return this;
     }
     
+    /**
+     * Use an existing mapping loader instead of creating one from the mappings path.
+     * Lets the embedding application share one cached copy of the mappings with the translator.
+     */
+    public TranslatorBuilder withMappingLoader(MappingLoader mappingLoader) {
+        this.mappingLoader = mappingLoader;
+        return this;
+    }
+    
+    /**
+     * Watch the mappings directory: changed files are recompiled in the background and swapped in
+     * atomically, and translations never read YAML (see {@link MappingLoader#startWatching()}).
+     * Closing the translator stops the watcher, unless the loader was passed to {@link #withMappingLoader}.
+     */
+    public TranslatorBuilder withMappingWatch() {
+        this.watchMappings = true;
+        return this;
+    }
+    
     /**
      * Enable encryption support
      */
     public TranslatorBuilder withEncryption(String encryptionKeysPath) {
         this.encryptionEnabled = true;
         this.encryptionKeysPath = encryptionKeysPath;
+        this.keyRegistry = null;
+        return this;
+    }
+    
+    /**
+     * Enable encryption support with an existing key registry.
+     * Lets the embedding application preload the keys of its routes and share them with the translator.
+     */
+    public TranslatorBuilder withEncryption(KeyRegistry keyRegistry) {
+        this.encryptionEnabled = true;
+        this.keyRegistry = keyRegistry;
         return this;
     }
     
@@ -40,6 +82,15 @@ public class TranslatorBuilder {
         return this;
     }
     
+    /**
+     * Enable HTTP forwarding with the trust material (and TLS session cache) of an SSL context
+     */
+    public TranslatorBuilder withForwarding(SSLContext sslContext) {
+        this.forwardingEnabled = true;
+        this.sslContext = sslContext;
+        return this;
+    }
+    
     /**
      * Set HTTP client timeouts
      */
@@ -49,24 +100,49 @@ public class TranslatorBuilder {
         return this;
     }
     
+    /**
+     * Set the executor batch translations are fanned out on and the CPU stages (mapping, encryption) of
+     * {@code translateAsync} run on (defaults to the common ForkJoinPool). Use a dedicated ForkJoinPool to
+     * bound CPU use; forwarding always runs on virtual threads.
+     */
+    public TranslatorBuilder withBatchExecutor(Executor batchExecutor) {
+        this.batchExecutor = batchExecutor;
+        return this;
+    }
+    
     /**
      * Build the Translator instance
      */
     public Translator build() {
         EncryptionService encryptionService = null;
         if (encryptionEnabled) {
-            if (encryptionKeysPath == null) {
+            if (keyRegistry != null) {
+                encryptionService = new EncryptionService(keyRegistry);
+            } else if (encryptionKeysPath == null) {
                 throw new IllegalStateException("Encryption keys path must be specified when encryption is enabled");
+            } else {
+                encryptionService = new EncryptionService(encryptionKeysPath);
             }
-            encryptionService = new EncryptionService(encryptionKeysPath);
         }
         
         HttpForwardingClient forwardingClient = null;
         if (forwardingEnabled) {
-            forwardingClient = new HttpForwardingClient(connectTimeout, readTimeout);
+            forwardingClient = sslContext != null
+                ? new HttpForwardingClient(connectTimeout, readTimeout, sslContext)
+                : new HttpForwardingClient(connectTimeout, readTimeout);
         }
         
-        return new TranslatorImpl(mappingsPath, encryptionService, forwardingClient);
+        // A loader created here belongs to the translator, which stops its watcher when closed
+        boolean ownsLoader = mappingLoader == null;
+        MappingLoader loader = ownsLoader ? new MappingLoader(mappingsPath) : mappingLoader;
+        if (watchMappings) {
+            try {
+                loader.startWatching();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot watch mappings directory: " + e.getMessage(), e);
+            }
+        }
+        return new TranslatorImpl(loader, encryptionService, forwardingClient, batchExecutor, ownsLoader);
     }
 }
 
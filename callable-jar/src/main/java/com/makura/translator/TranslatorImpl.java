@@ -1,22 +1,56 @@
 package com.makura.translator;
 
 import com.makura.translator.encryption.EncryptionService;
+import com.makura.translator.encryption.PgpProfile;
 import com.makura.translator.forwarding.HttpForwardingClient;
-import com.makura.translator.mapping.MappingConfig;
+import com.makura.translator.mapping.CompiledMapping;
 import com.makura.translator.mapping.MappingEngine;
 import com.makura.translator.mapping.MappingLoader;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Implementation of Translator interface.
  * Core translation logic that can be embedded in any Java application.
  * Supports optional encryption and HTTP forwarding.
+ * Closing it stops the forwarding threads, closes the forwarding client it was given and stops
+ * watching the mappings directory if it created the mapping loader.
  */
 public class TranslatorImpl implements Translator {
 
+    // Messages per task when translating an iterator of messages
+    static final int BATCH_STREAM_CHUNK = 64;
+
     private final MappingLoader mappingLoader;
+    // Whether the loader was created for this translator (and not shared by the caller)
+    private final boolean ownsMappingLoader;
     private final MappingEngine mappingEngine;
     private final EncryptionService encryptionService;
     private final HttpForwardingClient forwardingClient;
+    private final Executor batchExecutor;
+    private final int batchParallelism;
+    private final ExecutorService forwardingExecutor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("translator-forward-", 0).factory());
 
     /**
      * Constructor with default mappings path (./mappings)
@@ -42,46 +76,185 @@ public class TranslatorImpl implements Translator {
      * @param forwardingClient Optional HTTP forwarding client
      */
     public TranslatorImpl(String mappingsBasePath, EncryptionService encryptionService, HttpForwardingClient forwardingClient) {
-        this.mappingLoader = new MappingLoader(mappingsBasePath);
+        this(new MappingLoader(mappingsBasePath), encryptionService, forwardingClient, ForkJoinPool.commonPool(), true);
+    }
+
+    /**
+     * Constructor with an externally managed mapping loader (e.g. shared with the embedding application)
+     * 
+     * @param mappingLoader Loader (and cache) for mapping configurations
+     * @param encryptionService Optional encryption service
+     * @param forwardingClient Optional HTTP forwarding client
+     */
+    public TranslatorImpl(MappingLoader mappingLoader, EncryptionService encryptionService, HttpForwardingClient forwardingClient) {
+        this(mappingLoader, encryptionService, forwardingClient, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor with an executor for batch translation
+     * 
+     * @param mappingLoader Loader (and cache) for mapping configurations
+     * @param encryptionService Optional encryption service
+     * @param forwardingClient Optional HTTP forwarding client
+     * @param batchExecutor Executor batches and the CPU stages of asynchronous translations run on (e.g. a ForkJoinPool)
+     */
+    public TranslatorImpl(MappingLoader mappingLoader, EncryptionService encryptionService, HttpForwardingClient forwardingClient,
+                          Executor batchExecutor) {
+        this(mappingLoader, encryptionService, forwardingClient, batchExecutor, false);
+    }
+
+    /**
+     * Constructor for a translator that owns its mapping loader: closing the translator stops the loader's watcher
+     */
+    TranslatorImpl(MappingLoader mappingLoader, EncryptionService encryptionService, HttpForwardingClient forwardingClient,
+                   Executor batchExecutor, boolean ownsMappingLoader) {
+        this.mappingLoader = mappingLoader;
+        this.ownsMappingLoader = ownsMappingLoader;
         this.mappingEngine = new MappingEngine();
         this.encryptionService = encryptionService;
         this.forwardingClient = forwardingClient;
+        this.batchExecutor = batchExecutor;
+        this.batchParallelism = batchExecutor instanceof ForkJoinPool
+            ? ((ForkJoinPool) batchExecutor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+    }
+
+    MappingLoader getMappingLoader() {
+        return mappingLoader;
     }
 
     @Override
     public TargetMessage translateRequest(SourceMessage request, String routeId) throws TranslationException {
+        // Load compiled mapping (cached per route, reloaded when the file changes)
+        return translateRequest(request, loadMapping(routeId));
+    }
+
+    private CompiledMapping loadMapping(String routeId) throws TranslationException {
+        try {
+            return mappingLoader.loadCompiledMapping(routeId);
+        } catch (MappingLoader.MappingLoadException e) {
+            throw new TranslationException("Failed to load mapping for routeId: " + routeId, e);
+        } catch (Exception e) {
+            throw new TranslationException("Unexpected error during translation: " + e.getMessage(), e);
+        }
+    }
+
+    private TargetMessage translateRequest(SourceMessage request, CompiledMapping mapping) throws TranslationException {
         try {
-            // Load mapping configuration
-            MappingConfig mappingConfig = mappingLoader.loadMappingConfig(routeId);
-            
             // Transform to target format
-            String targetContent = mappingEngine.transformToTarget(request.getContent(), mappingConfig);
+            String targetContent = transformToTarget(request.getContent(), mapping);
             
             return new TargetMessage(targetContent);
-        } catch (MappingLoader.MappingLoadException e) {
-            throw new TranslationException("Failed to load mapping for routeId: " + routeId, e);
+        } catch (TranslationException e) {
+            throw e;
         } catch (MappingEngine.MappingException e) {
-            throw new TranslationException("Failed to translate request for routeId: " + routeId, e);
+            throw new TranslationException("Failed to translate request for routeId: " + mapping.getRouteId(), e);
         } catch (Exception e) {
             throw new TranslationException("Unexpected error during translation: " + e.getMessage(), e);
         }
     }
 
+    private BatchItemResult translateItem(int index, SourceMessage request, CompiledMapping mapping) {
+        try {
+            return BatchItemResult.success(index, translateRequest(request, mapping));
+        } catch (TranslationException e) {
+            return BatchItemResult.failure(index, e);
+        }
+    }
+
+    /**
+     * Translates the batch on the batch executor: the route is resolved once, then the messages
+     * are split into contiguous chunks (a few per worker) that fill a shared, ordered result array.
+     */
+    @Override
+    public List<BatchItemResult> translateBatch(String routeId, List<SourceMessage> requests) throws TranslationException {
+        CompiledMapping mapping = loadMapping(routeId);
+        SourceMessage[] messages = requests.toArray(new SourceMessage[0]);
+        BatchItemResult[] results = new BatchItemResult[messages.length];
+        // Several chunks per worker so uneven message sizes still balance out
+        int chunkSize = Math.max(1, (messages.length + batchParallelism * 4 - 1) / (batchParallelism * 4));
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int start = 0; start < messages.length; start += chunkSize) {
+            int from = start;
+            int to = Math.min(messages.length, start + chunkSize);
+            chunks.add(CompletableFuture.runAsync(() -> {
+                for (int i = from; i < to; i++) {
+                    results[i] = translateItem(i, messages[i], mapping);
+                }
+            }, batchExecutor));
+        }
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Translates lazily on the batch executor. Messages are read in small chunks, with a bounded
+     * window of chunks (a few per worker) in flight ahead of the consumer, so memory stays bounded
+     * and hand-offs between threads are per chunk rather than per message.
+     */
+    @Override
+    public Iterator<BatchItemResult> translateBatch(String routeId, Iterator<SourceMessage> requests) throws TranslationException {
+        CompiledMapping mapping = loadMapping(routeId);
+        int window = batchParallelism * 4;
+        return new Iterator<>() {
+            private final Deque<CompletableFuture<BatchItemResult[]>> inFlight = new ArrayDeque<>(window);
+            private BatchItemResult[] current = new BatchItemResult[0];
+            private int position;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return position < current.length || !inFlight.isEmpty() || requests.hasNext();
+            }
+
+            @Override
+            public BatchItemResult next() {
+                if (position == current.length) {
+                    fill();
+                    if (inFlight.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    current = inFlight.poll().join();
+                    position = 0;
+                }
+                return current[position++];
+            }
+
+            private void fill() {
+                while (inFlight.size() < window && requests.hasNext()) {
+                    List<SourceMessage> chunk = new ArrayList<>(BATCH_STREAM_CHUNK);
+                    while (chunk.size() < BATCH_STREAM_CHUNK && requests.hasNext()) {
+                        chunk.add(requests.next());
+                    }
+                    int first = index;
+                    index += chunk.size();
+                    inFlight.add(CompletableFuture.supplyAsync(() -> {
+                        BatchItemResult[] results = new BatchItemResult[chunk.size()];
+                        for (int i = 0; i < results.length; i++) {
+                            results[i] = translateItem(first + i, chunk.get(i), mapping);
+                        }
+                        return results;
+                    }, batchExecutor));
+                }
+            }
+        };
+    }
+
     @Override
     public SourceMessage translateResponse(TargetMessage response, String routeId) throws TranslationException {
         try {
-            // Load mapping configuration
-            MappingConfig mappingConfig = mappingLoader.loadMappingConfig(routeId);
+            // Load compiled mapping (cached per route, reloaded when the file changes)
+            CompiledMapping mapping = mappingLoader.loadCompiledMapping(routeId);
             
             // Determine target format (default to JSON if not specified)
-            String targetFormat = mappingConfig.getInboundFormat() != null 
-                ? mappingConfig.getInboundFormat() 
+            String targetFormat = mapping.getInboundFormat() != null 
+                ? mapping.getInboundFormat() 
                 : "JSON";
             
             // Transform from target format
             String sourceContent = mappingEngine.transformFromTarget(
                 response.getContent(), 
-                mappingConfig, 
+                mapping, 
                 targetFormat
             );
             
@@ -96,56 +269,360 @@ public class TranslatorImpl implements Translator {
     }
 
     @Override
-    public TranslationResult translateWithOptions(SourceMessage request, TranslationOptions options) throws TranslationException {
+    public void translateRequest(String routeId, InputStream request, OutputStream target) throws TranslationException {
         try {
-            // Load mapping configuration
-            MappingConfig mappingConfig = mappingLoader.loadMappingConfig(options.getRouteId());
+            CompiledMapping mapping = mappingLoader.loadCompiledMapping(routeId);
             
-            // Transform to target format
-            String targetContent = mappingEngine.transformToTarget(request.getContent(), mappingConfig);
+            // Parse from bytes and write the target document straight into the caller's stream
+            transformToTarget(request, mapping, target);
+        } catch (TranslationException e) {
+            throw e;
+        } catch (MappingLoader.MappingLoadException e) {
+            throw new TranslationException("Failed to load mapping for routeId: " + routeId, e);
+        } catch (MappingEngine.MappingException e) {
+            throw new TranslationException("Failed to translate request for routeId: " + routeId, e);
+        } catch (Exception e) {
+            throw new TranslationException("Unexpected error during translation: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void translateResponse(String routeId, InputStream response, OutputStream source) throws TranslationException {
+        try {
+            CompiledMapping mapping = mappingLoader.loadCompiledMapping(routeId);
             
-            // Apply encryption if requested
-            if (options.isEncrypt()) {
-                if (encryptionService == null) {
-                    throw new TranslationException("Encryption requested but EncryptionService not configured");
-                }
-                
-                if (options.getEncryptionType() == TranslationOptions.EncryptionType.AES) {
-                    targetContent = encryptionService.encryptAes(targetContent, options.getEncryptionKeyRef());
-                } else if (options.getEncryptionType() == TranslationOptions.EncryptionType.PGP) {
-                    targetContent = encryptionService.encryptPgp(targetContent, options.getEncryptionKeyRef());
-                }
-            }
+            // Determine target format (default to JSON if not specified)
+            String targetFormat = mapping.getInboundFormat() != null 
+                ? mapping.getInboundFormat() 
+                : "JSON";
             
-            // Forward if requested
-            if (options.isForward()) {
-                if (forwardingClient == null) {
-                    throw new TranslationException("Forwarding requested but HttpForwardingClient not configured");
-                }
-                
-                String forwardingResponse = forwardingClient.forward(
-                    options.getEndpoint(), 
-                    targetContent, 
-                    options.getForwardingApiKey()
-                );
-                
-                return TranslationResult.withForwarding(targetContent, forwardingResponse);
+            mappingEngine.transformFromTarget(response, mapping, targetFormat, source);
+        } catch (MappingLoader.MappingLoadException e) {
+            throw new TranslationException("Failed to load mapping for routeId: " + routeId, e);
+        } catch (MappingEngine.MappingException e) {
+            throw new TranslationException("Failed to translate response for routeId: " + routeId, e);
+        } catch (Exception e) {
+            throw new TranslationException("Unexpected error during translation: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public TranslationResult translateWithOptions(SourceMessage request, TranslationOptions options) throws TranslationException {
+        String targetContent = translateAndEncrypt(request, options);
+        if (options.isForward()) {
+            return TranslationResult.withForwarding(targetContent, forward(targetContent, options));
+        }
+        return TranslationResult.withoutForwarding(targetContent);
+    }
+
+    /**
+     * Translates and encrypts on the batch executor, then forwards on a virtual thread, so neither
+     * the caller nor the bounded CPU pool waits on the downstream system.
+     */
+    @Override
+    public CompletableFuture<TranslationResult> translateAsync(SourceMessage request, TranslationOptions options) {
+        AsyncTranslation translation = new AsyncTranslation(request, options);
+        try {
+            batchExecutor.execute(translation::translate);
+        } catch (RejectedExecutionException e) {
+            translation.completeExceptionally(new TranslationException("Translation rejected: " + e.getMessage(), e));
+        }
+        return translation;
+    }
+
+    /**
+     * Streams the target message through mapping, encryption (if requested) and forwarding: the
+     * encrypted, Base64-encoded message is written straight into the forwarding request body or the
+     * target stream, so memory use does not grow with the message.
+     */
+    @Override
+    public TranslationResult translateWithOptions(InputStream request, TranslationOptions options, OutputStream target)
+            throws TranslationException {
+        CompiledMapping mapping = loadMapping(options.getRouteId());
+        if (!options.isForward()) {
+            writeTarget(request, mapping, options, target);
+            return TranslationResult.withoutForwarding(null);
+        }
+        try {
+            if (forwardingClient == null) {
+                throw new TranslationException("Forwarding requested but HttpForwardingClient not configured");
+            }
+            String response = forwardingClient.forward(
+                options.getEndpoint(),
+                body -> writeTarget(request, mapping, options, body),
+                options.getForwardingApiKey(),
+                options.getConnectTimeout(),
+                options.getReadTimeout()
+            );
+            return TranslationResult.withForwarding(null, response);
+        } catch (HttpForwardingClient.ForwardingException e) {
+            if (e.getCause() instanceof TranslationException translationException) {
+                // The message could not be produced, as opposed to sent
+                throw translationException;
+            }
+            throw new TranslationException("Forwarding failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Map a message into the stream, through the encryption stage if the options ask for one
+     */
+    private void writeTarget(InputStream request, CompiledMapping mapping, TranslationOptions options, OutputStream out)
+            throws TranslationException {
+        try {
+            if (!options.isEncrypt()) {
+                transformToTarget(request, mapping, out);
+                return;
             }
+            writeEncrypted(out, mapping, options, encrypted -> transformToTarget(request, mapping, encrypted));
+        } catch (MappingEngine.MappingException e) {
+            throw new TranslationException("Failed to translate request for routeId: " + mapping.getRouteId(), e);
+        } catch (EncryptionService.EncryptionException | IOException e) {
+            throw new TranslationException("Encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Map a request, decrypting it first if the route receives encrypted requests
+     */
+    private String transformToTarget(String request, CompiledMapping mapping)
+            throws TranslationException, MappingEngine.MappingException {
+        if (!mapping.isEncryptedInbound()) {
+            return mappingEngine.transformToTarget(request, mapping);
+        }
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        transformToTarget(new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)), mapping, target);
+        return target.toString(StandardCharsets.UTF_8);
+    }
+
+    private void transformToTarget(String request, CompiledMapping mapping, OutputStream out)
+            throws TranslationException, MappingEngine.MappingException {
+        if (!mapping.isEncryptedInbound()) {
+            mappingEngine.transformToTarget(request, mapping, out);
+        } else {
+            transformToTarget(new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)), mapping, out);
+        }
+    }
+
+    /**
+     * Map a request read from a stream (not closed). AES-CBC requests are decrypted as the parser reads them, so
+     * neither the ciphertext nor the plaintext is held as a whole. AES-GCM and PGP are authenticated: their
+     * stages decrypt the whole request and verify it before the parser sees any plaintext, so nothing
+     * derived from a modified request is written to the output.
+     */
+    private void transformToTarget(InputStream request, CompiledMapping mapping, OutputStream out)
+            throws TranslationException, MappingEngine.MappingException {
+        if (!mapping.isEncryptedInbound()) {
+            mappingEngine.transformToTarget(request, mapping, out);
+            return;
+        }
+        if (encryptionService == null) {
+            throw new TranslationException("Route " + mapping.getRouteId() + " receives encrypted requests but EncryptionService not configured");
+        }
+        try (InputStream decrypted = decryptionStage(request, mapping)) {
+            mappingEngine.transformToTarget(decrypted, mapping, out);
+        } catch (EncryptionService.EncryptionException | IOException e) {
+            throw new TranslationException("Decryption failed for routeId: " + mapping.getRouteId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private InputStream decryptionStage(InputStream request, CompiledMapping mapping)
+            throws EncryptionService.EncryptionException {
+        // The stages close their input; the caller's stream stays open
+        request = new FilterInputStream(request) {
+            @Override
+            public void close() {
+            }
+        };
+        return switch (mapping.getDecryptionType()) {
+            case AES -> encryptionService.decryptAes(request, mapping.getDecryptionKeyRef());
+            case AES_GCM -> encryptionService.decryptAesGcm(request, mapping.getDecryptionKeyRef());
+            case PGP -> encryptionService.decryptPgp(request, mapping.getDecryptionKeyRef());
+        };
+    }
+
+    /**
+     * Encryption stage for the options' encryption type, writing Base64 text into the stream
+     */
+    /**
+     * Map a message through the encryption stage the options ask for and finish the encrypted message.
+     * If mapping fails the stage is abandoned instead, so output already written cannot pass for a
+     * complete message (an authenticated one would otherwise decrypt to a truncated document).
+     */
+    private void writeEncrypted(OutputStream out, CompiledMapping mapping, TranslationOptions options, MappingStep step)
+            throws TranslationException, MappingEngine.MappingException, EncryptionService.EncryptionException, IOException {
+        OutputStream encrypted = encryptionStage(out, mapping, options);
+        boolean mapped = false;
+        try {
+            step.writeTo(encrypted);
+            mapped = true;
+        } finally {
+            if (!mapped) {
+                EncryptionService.abort(encrypted);
+            }
+        }
+        encrypted.close();
+    }
+
+    /**
+     * Writes a mapped message into a stream
+     */
+    @FunctionalInterface
+    private interface MappingStep {
+        void writeTo(OutputStream out) throws TranslationException, MappingEngine.MappingException;
+    }
+
+    private OutputStream encryptionStage(OutputStream out, CompiledMapping mapping, TranslationOptions options)
+            throws TranslationException, EncryptionService.EncryptionException {
+        if (encryptionService == null) {
+            throw new TranslationException("Encryption requested but EncryptionService not configured");
+        }
+        if (options.getEncryptionType() == TranslationOptions.EncryptionType.AES) {
+            return encryptionService.encryptAes(out, options.getEncryptionKeyRef());
+        } else if (options.getEncryptionType() == TranslationOptions.EncryptionType.AES_GCM) {
+            return encryptionService.encryptAesGcm(out, options.getEncryptionKeyRef());
+        } else if (options.getEncryptionType() == TranslationOptions.EncryptionType.PGP) {
+            return encryptionService.encryptPgp(out, options.getEncryptionKeyRef(), pgpProfile(mapping, options));
+        }
+        throw new TranslationException("Unsupported encryption type: " + options.getEncryptionType());
+    }
+
+    /**
+     * PGP profile of the options, else of the route, else the default
+     */
+    private static PgpProfile pgpProfile(CompiledMapping mapping, TranslationOptions options) {
+        if (options.getPgpProfile() != null) {
+            return options.getPgpProfile();
+        }
+        return mapping.getPgpProfile() != null ? mapping.getPgpProfile() : PgpProfile.DEFAULT;
+    }
+
+    /**
+     * CPU stages of a translation with options: mapping and optional encryption
+     */
+    private String translateAndEncrypt(SourceMessage request, TranslationOptions options) throws TranslationException {
+        try {
+            // Load compiled mapping (cached per route, reloaded when the file changes)
+            CompiledMapping mapping = mappingLoader.loadCompiledMapping(options.getRouteId());
             
-            return TranslationResult.withoutForwarding(targetContent);
+            if (!options.isEncrypt()) {
+                // Transform to target format
+                return transformToTarget(request.getContent(), mapping);
+            }
             
+            // Map straight into the encryption stage: no intermediate XML string or ciphertext copy
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            writeEncrypted(encoded, mapping, options, encrypted -> transformToTarget(request.getContent(), mapping, encrypted));
+            return encoded.toString(StandardCharsets.US_ASCII);
+        } catch (TranslationException e) {
+            throw e;
         } catch (MappingLoader.MappingLoadException e) {
             throw new TranslationException("Failed to load mapping for routeId: " + options.getRouteId(), e);
         } catch (MappingEngine.MappingException e) {
             throw new TranslationException("Failed to translate request for routeId: " + options.getRouteId(), e);
-        } catch (EncryptionService.EncryptionException e) {
+        } catch (EncryptionService.EncryptionException | IOException e) {
             throw new TranslationException("Encryption failed: " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new TranslationException("Unexpected error during translation: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Forwarding stage, with the per-call timeouts from the options
+     */
+    private String forward(String targetContent, TranslationOptions options) throws TranslationException {
+        try {
+            if (forwardingClient == null) {
+                throw new TranslationException("Forwarding requested but HttpForwardingClient not configured");
+            }
+            
+            return forwardingClient.forward(
+                options.getEndpoint(), 
+                targetContent, 
+                options.getForwardingApiKey(),
+                options.getConnectTimeout(),
+                options.getReadTimeout()
+            );
         } catch (HttpForwardingClient.ForwardingException e) {
             throw new TranslationException("Forwarding failed: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new TranslationException("Unexpected error during translation: " + e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Stop accepting forwarding calls and close the forwarding client; calls in flight finish first.
+     * A mapping loader created for this translator stops watching its directory; one passed in by the
+     * caller, and the batch executor, are left running.
+     */
+    @Override
+    public void close() {
+        forwardingExecutor.shutdown();
+        if (forwardingClient != null) {
+            forwardingClient.close();
+        }
+        if (ownsMappingLoader) {
+            mappingLoader.stopWatching();
+        }
+    }
 
+    /**
+     * Future of one asynchronous translation. Cancelling it skips the stages that have not started
+     * and interrupts a forwarding call in flight, which closes its connection.
+     */
+    private final class AsyncTranslation extends CompletableFuture<TranslationResult> {
+
+        private final SourceMessage request;
+        private final TranslationOptions options;
+        private volatile Future<?> forwarding;
+
+        private AsyncTranslation(SourceMessage request, TranslationOptions options) {
+            this.request = request;
+            this.options = options;
+        }
+
+        private void translate() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                String targetContent = translateAndEncrypt(request, options);
+                if (!options.isForward()) {
+                    complete(TranslationResult.withoutForwarding(targetContent));
+                    return;
+                }
+                if (!isDone()) {
+                    forwarding = forwardingExecutor.submit(() -> forward(targetContent));
+                    if (isCancelled()) {
+                        // Cancelled while the call was being submitted
+                        forwarding.cancel(true);
+                    }
+                }
+            } catch (RejectedExecutionException e) {
+                completeExceptionally(new TranslationException("Translator is closed", e));
+            } catch (TranslationException e) {
+                completeExceptionally(e);
+            } catch (RuntimeException e) {
+                completeExceptionally(new TranslationException("Unexpected error during translation: " + e.getMessage(), e));
+            }
+        }
+
+        private void forward(String targetContent) {
+            try {
+                complete(TranslationResult.withForwarding(targetContent, TranslatorImpl.this.forward(targetContent, options)));
+            } catch (TranslationException e) {
+                completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> call = forwarding;
+            if (cancelled && call != null) {
+                call.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+}
@@ -2,33 +2,71 @@ package com.makura.translator.encryption;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openpgp.*;
+import org.bouncycastle.openpgp.operator.PGPKeyEncryptionMethodGenerator;
 import org.bouncycastle.openpgp.operator.jcajce.JcePGPDataEncryptorBuilder;
 import org.bouncycastle.openpgp.operator.jcajce.JcePublicKeyKeyEncryptionMethodGenerator;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.Security;
 import javax.crypto.spec.IvParameterSpec;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Encryption/Decryption service supporting AES and PGP
+ * Encryption/Decryption service supporting AES (CBC and GCM) and PGP (see {@link PgpProfile})
  * Standalone implementation (no Spring dependencies)
+ *
+ * Keys are taken from a {@link KeyRegistry}, which reads and parses each key file once and reloads it
+ * when the file changes.
+ *
+ * Each encryption is also available as a stream stage ({@code encryptAes(OutputStream, keyRef)} etc.):
+ * bytes written to the returned stream are encrypted and Base64-encoded into the given stream as they
+ * arrive, in the same format as the String methods, so a message of any size is encrypted with fixed
+ * buffers. Closing the stage writes the final block; the given stream is left open.
  */
 public class EncryptionService {
 
-    private final String keysPath;
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    // Cipher and IV generator per thread: getInstance and DRBG seeding are paid once per thread, not per message
+    static final ThreadLocal<GcmContext> GCM = ThreadLocal.withInitial(GcmContext::new);
+
+    private static final int PGP_BUFFER_SIZE = 4096;
+
+    // Session keys and CFB prefixes of all PGP messages; DRBG is thread-safe and seeded once
+    private static final SecureRandom PGP_RANDOM = drbg();
+
+    private final KeyRegistry keyRegistry;
 
     static {
         Security.addProvider(new BouncyCastleProvider());
     }
 
     public EncryptionService(String keysPath) {
-        this.keysPath = keysPath;
+        this(new KeyRegistry(keysPath));
+    }
+
+    /**
+     * Use an existing key registry, e.g. one whose keys were preloaded at startup
+     */
+    public EncryptionService(KeyRegistry keyRegistry) {
+        this.keyRegistry = keyRegistry;
+    }
+
+    public KeyRegistry getKeyRegistry() {
+        return keyRegistry;
     }
 
     /**
@@ -36,8 +74,7 @@ public class EncryptionService {
      */
     public String encryptAes(String content, String keyRef) throws EncryptionException {
         try {
-            byte[] key = loadKeyFromFile(keyRef, "aes");
-            SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
+            SecretKeySpec secretKey = keyRegistry.getAesKey(keyRef);
             
             Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
             cipher.init(Cipher.ENCRYPT_MODE, secretKey);
@@ -56,13 +93,43 @@ public class EncryptionService {
         }
     }
 
+    /**
+     * Encrypt with AES-CBC as a stream stage (same output as {@link #encryptAes(String, String)})
+     *
+     * @param out Stream receiving the Base64 text (not closed)
+     * @return Stream to write the content to; close it to finish the message
+     */
+    public OutputStream encryptAes(OutputStream out, String keyRef) throws EncryptionException {
+        try {
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.ENCRYPT_MODE, keyRegistry.getAesKey(keyRef));
+
+            OutputStream encoded = base64(out);
+            encoded.write(cipher.getIV());
+            return new Stage(new CipherOutputStream(encoded, cipher), null, encoded);
+        } catch (Exception e) {
+            throw new EncryptionException("AES encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Abandon a stream stage returned by one of the encrypt methods without finishing its message, e.g. when
+     * the content could not be produced: no final block, GCM tag or PGP integrity packet is written, so what
+     * was written cannot be decrypted as a complete message. Anything the stage holds is released.
+     * Does nothing for other streams and for stages already closed or abandoned.
+     */
+    public static void abort(OutputStream stage) {
+        if (stage instanceof Stage encryptionStage) {
+            encryptionStage.abort();
+        }
+    }
+
     /**
      * Decrypt content using AES
      */
     public String decryptAes(String encryptedContent, String keyRef) throws EncryptionException {
         try {
-            byte[] key = loadKeyFromFile(keyRef, "aes");
-            SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
+            SecretKeySpec secretKey = keyRegistry.getAesKey(keyRef);
             
             byte[] combined = Base64.getDecoder().decode(encryptedContent);
             
@@ -83,45 +150,295 @@ public class EncryptionService {
     }
 
     /**
-     * Encrypt content using PGP
+     * Decrypt AES-CBC content as a stream stage (input in the format of {@link #encryptAes(String, String)};
+     * line breaks in the Base64 text are ignored)
+     *
+     * @param in Base64 text; read as the returned stream is read, and closed with it
+     * @return The plaintext bytes
      */
-    public String encryptPgp(String content, String keyRef) throws EncryptionException {
+    public InputStream decryptAes(InputStream in, String keyRef) throws EncryptionException {
         try {
-            PGPPublicKey publicKey = loadPgpPublicKey(keyRef);
-            
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            PGPEncryptedDataGenerator encryptedDataGenerator = new PGPEncryptedDataGenerator(
-                new JcePGPDataEncryptorBuilder(PGPEncryptedData.CAST5)
-                    .setWithIntegrityPacket(true)
-                    .setSecureRandom(new java.security.SecureRandom())
-            );
-            encryptedDataGenerator.addMethod(new JcePublicKeyKeyEncryptionMethodGenerator(publicKey));
-            
-            OutputStream encryptedOut = encryptedDataGenerator.open(out, new byte[4096]);
-            encryptedOut.write(content.getBytes("UTF-8"));
-            encryptedOut.close();
-            
-            return Base64.getEncoder().encodeToString(out.toByteArray());
+            SecretKeySpec secretKey = keyRegistry.getAesKey(keyRef);
+            InputStream decoded = Base64.getMimeDecoder().wrap(in);
+            byte[] iv = decoded.readNBytes(16);
+            if (iv.length < 16) {
+                throw new EncryptionException("AES content too short: " + iv.length + " bytes");
+            }
+
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
+            return new CipherInputStream(decoded, cipher);
+        } catch (EncryptionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionException("AES decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encrypt content using AES-GCM (authenticated): Base64 of a fresh random 96-bit IV followed by the
+     * ciphertext and 128-bit tag
+     */
+    public String encryptAesGcm(String content, String keyRef) throws EncryptionException {
+        try {
+            SecretKeySpec secretKey = keyRegistry.getAesKey(keyRef);
+            byte[] plain = content.getBytes(StandardCharsets.UTF_8);
+            GcmContext context = GcmContext.acquire();
+            try {
+                Cipher cipher = context.cipher;
+                context.random.nextBytes(context.iv);
+                cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, context.iv));
+
+                // IV and ciphertext go into one array, which is Base64-encoded as is
+                byte[] combined = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plain.length)];
+                System.arraycopy(context.iv, 0, combined, 0, GCM_IV_LENGTH);
+                cipher.doFinal(plain, 0, plain.length, combined, GCM_IV_LENGTH);
+
+                return Base64.getEncoder().encodeToString(combined);
+            } finally {
+                context.release();
+            }
+        } catch (Exception e) {
+            throw new EncryptionException("AES-GCM encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encrypt with AES-GCM as a stream stage (same output as {@link #encryptAesGcm(String, String)}).
+     * The stage holds the thread's cipher until it is closed; it may be written from another thread.
+     *
+     * @param out Stream receiving the Base64 text (not closed)
+     * @return Stream to write the content to; close it to finish the message (writes the tag)
+     */
+    public OutputStream encryptAesGcm(OutputStream out, String keyRef) throws EncryptionException {
+        GcmContext context = null;
+        try {
+            SecretKeySpec secretKey = keyRegistry.getAesKey(keyRef);
+            context = GcmContext.acquire();
+            context.random.nextBytes(context.iv);
+            context.cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, context.iv));
+
+            OutputStream encoded = base64(out);
+            encoded.write(context.iv);
+            GcmContext held = context;
+            return new Stage(new CipherOutputStream(encoded, context.cipher), held::release, encoded);
         } catch (Exception e) {
+            if (context != null) {
+                context.release();
+            }
+            throw new EncryptionException("AES-GCM encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decrypt and verify content encrypted with {@link #encryptAesGcm}
+     */
+    public String decryptAesGcm(String encryptedContent, String keyRef) throws EncryptionException {
+        try {
+            SecretKeySpec secretKey = keyRegistry.getAesKey(keyRef);
+            byte[] combined = Base64.getDecoder().decode(encryptedContent);
+            if (combined.length < GCM_IV_LENGTH + GCM_TAG_BITS / 8) {
+                throw new EncryptionException("AES-GCM content too short: " + combined.length + " bytes");
+            }
+
+            GcmContext context = GcmContext.acquire();
+            try {
+                context.cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, combined, 0, GCM_IV_LENGTH));
+                byte[] decrypted = context.cipher.doFinal(combined, GCM_IV_LENGTH, combined.length - GCM_IV_LENGTH);
+                return new String(decrypted, StandardCharsets.UTF_8);
+            } finally {
+                context.release();
+            }
+        } catch (EncryptionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionException("AES-GCM decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decrypt and verify AES-GCM content as a stream stage. GCM only releases plaintext once the tag
+     * has been verified, so the input is read to the end when this is called: the binary content is
+     * decoded into one array and decrypted in place, and the returned stream reads from it (no String
+     * copies of the ciphertext or plaintext).
+     *
+     * @param in Base64 text (line breaks are ignored); read to the end and closed
+     * @return The plaintext bytes
+     * @throws EncryptionException if the content is malformed or was modified
+     */
+    public InputStream decryptAesGcm(InputStream in, String keyRef) throws EncryptionException {
+        try (InputStream decoded = Base64.getMimeDecoder().wrap(in)) {
+            SecretKeySpec secretKey = keyRegistry.getAesKey(keyRef);
+            byte[] combined = decoded.readAllBytes();
+            if (combined.length < GCM_IV_LENGTH + GCM_TAG_BITS / 8) {
+                throw new EncryptionException("AES-GCM content too short: " + combined.length + " bytes");
+            }
+
+            GcmContext context = GcmContext.acquire();
+            try {
+                context.cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, combined, 0, GCM_IV_LENGTH));
+                int length = context.cipher.doFinal(combined, GCM_IV_LENGTH, combined.length - GCM_IV_LENGTH,
+                    combined, GCM_IV_LENGTH);
+                return new ByteArrayInputStream(combined, GCM_IV_LENGTH, length);
+            } finally {
+                context.release();
+            }
+        } catch (EncryptionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionException("AES-GCM decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encrypt content using PGP with the default profile
+     */
+    public String encryptPgp(String content, String keyRef) throws EncryptionException {
+        return encryptPgp(content, keyRef, PgpProfile.DEFAULT);
+    }
+
+    /**
+     * Encrypt content using PGP
+     */
+    public String encryptPgp(String content, String keyRef, PgpProfile profile) throws EncryptionException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream encryptedOut = encryptPgp(out, keyRef, profile)) {
+            encryptedOut.write(content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
             throw new EncryptionException("PGP encryption failed: " + e.getMessage(), e);
         }
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Encrypt many messages to the same recipient, each into its own PGP message. The key and the
+     * key encryption method are looked up once and the buffers are reused, so the cost per message is
+     * its session key and the encryption itself.
+     *
+     * @return The Base64 messages, in the order of the contents
+     */
+    public List<String> encryptPgp(List<String> contents, String keyRef, PgpProfile profile) throws EncryptionException {
+        PGPKeyEncryptionMethodGenerator method = pgpMethod(keyRef);
+        List<String> encrypted = new ArrayList<>(contents.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[PGP_BUFFER_SIZE];
+        try {
+            for (String content : contents) {
+                out.reset();
+                try (OutputStream encryptedOut = pgpStage(out, method, profile, buffer)) {
+                    encryptedOut.write(content.getBytes(StandardCharsets.UTF_8));
+                }
+                encrypted.add(out.toString(StandardCharsets.US_ASCII));
+            }
+        } catch (IOException | PGPException e) {
+            throw new EncryptionException("PGP encryption failed: " + e.getMessage(), e);
+        }
+        return encrypted;
+    }
+
+    /**
+     * Encrypt with PGP and the default profile as a stream stage
+     *
+     * @see #encryptPgp(OutputStream, String, PgpProfile)
+     */
+    public OutputStream encryptPgp(OutputStream out, String keyRef) throws EncryptionException {
+        return encryptPgp(out, keyRef, PgpProfile.DEFAULT);
+    }
+
+    /**
+     * Encrypt with PGP as a stream stage (same output as {@link #encryptPgp(String, String, PgpProfile)});
+     * the content goes out in partial-length packets, so nothing is buffered beyond one packet
+     *
+     * @param out Stream receiving the Base64 text (not closed)
+     * @return Stream to write the content to; close it to finish the message
+     */
+    public OutputStream encryptPgp(OutputStream out, String keyRef, PgpProfile profile) throws EncryptionException {
+        try {
+            return pgpStage(out, pgpMethod(keyRef), profile, new byte[PGP_BUFFER_SIZE]);
+        } catch (IOException | PGPException e) {
+            throw new EncryptionException("PGP encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    private PGPKeyEncryptionMethodGenerator pgpMethod(String keyRef) throws EncryptionException {
+        try {
+            return new JcePublicKeyKeyEncryptionMethodGenerator(keyRegistry.getPgpPublicKey(keyRef))
+                .setSecureRandom(PGP_RANDOM);
+        } catch (KeyRegistry.KeyLoadException e) {
+            throw new EncryptionException("PGP encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encrypted data packet holding an optionally compressed literal data packet, Base64-encoded into out
+     */
+    private static OutputStream pgpStage(OutputStream out, PGPKeyEncryptionMethodGenerator method, PgpProfile profile,
+                                         byte[] buffer) throws IOException, PGPException {
+        PGPEncryptedDataGenerator encryptedDataGenerator = new PGPEncryptedDataGenerator(
+            new JcePGPDataEncryptorBuilder(profile.getCipher().algorithm())
+                .setWithIntegrityPacket(profile.isIntegrityPacket())
+                .setSecureRandom(PGP_RANDOM)
+        );
+        encryptedDataGenerator.addMethod(method);
+
+        // None of the generators' streams close the stream below them, and the encoder must write its padding
+        OutputStream encoded = base64(out);
+        OutputStream encryptedOut = encryptedDataGenerator.open(encoded, buffer);
+        OutputStream compressedOut = null;
+        if (profile.getCompression() != PgpProfile.Compression.NONE) {
+            compressedOut = new PGPCompressedDataGenerator(profile.getCompression().algorithm(), profile.getCompressionLevel())
+                .open(encryptedOut);
+        }
+        OutputStream literalOut = new PGPLiteralDataGenerator().open(
+            compressedOut != null ? compressedOut : encryptedOut,
+            PGPLiteralData.BINARY, "", PGPLiteralData.NOW, new byte[PGP_BUFFER_SIZE]);
+        return compressedOut != null
+            ? new Stage(literalOut, null, compressedOut, encryptedOut, encoded)
+            : new Stage(literalOut, null, encryptedOut, encoded);
     }
 
     /**
      * Decrypt content using PGP
      */
     public String decryptPgp(String encryptedContent, String keyRef) throws EncryptionException {
-        try {
-            PGPPrivateKey privateKey = loadPgpPrivateKey(keyRef);
+        try (InputStream plain = decryptPgp(new ByteArrayInputStream(encryptedContent.getBytes(StandardCharsets.US_ASCII)), keyRef)) {
+            return new String(plain.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new EncryptionException("PGP decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decrypt and verify PGP content as a stream stage: Base64 of a binary message (the format of
+     * {@link #encryptPgp(String, String)}) or an ASCII-armored message, compressed or not. Like
+     * {@link #decryptAesGcm(InputStream, String)}, no plaintext is released before it has been verified:
+     * the integrity packet follows the literal data, so the message is decrypted into one array when
+     * this is called and the returned stream reads from it. Messages without an integrity packet are
+     * rejected, as they could be modified undetected.
+     *
+     * @param in Message text; read to the end and closed
+     * @return The literal data bytes
+     * @throws EncryptionException if the content is malformed, has no integrity packet or was modified
+     */
+    public InputStream decryptPgp(InputStream in, String keyRef) throws EncryptionException {
+        try (in) {
+            PGPPrivateKey privateKey = keyRegistry.getPgpPrivateKey(keyRef);
             
-            byte[] encryptedBytes = Base64.getDecoder().decode(encryptedContent);
             PGPObjectFactory pgpFactory = new PGPObjectFactory(
-                PGPUtil.getDecoderStream(new ByteArrayInputStream(encryptedBytes)),
+                pgpDecoder(in),
                 new org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator()
             );
-            
-            PGPEncryptedDataList encryptedDataList = (PGPEncryptedDataList) pgpFactory.nextObject();
-            PGPPublicKeyEncryptedData encryptedData = (PGPPublicKeyEncryptedData) encryptedDataList.get(0);
+            Object message = pgpFactory.nextObject();
+            if (message instanceof PGPMarker) {
+                message = pgpFactory.nextObject();
+            }
+            if (!(message instanceof PGPEncryptedDataList encryptedDataList)) {
+                throw new EncryptionException("PGP message holds no encrypted data");
+            }
+            PGPPublicKeyEncryptedData encryptedData = recipientData(encryptedDataList, privateKey.getKeyID());
+            if (!encryptedData.isIntegrityProtected()) {
+                throw new EncryptionException("PGP message has no integrity packet");
+            }
             
             InputStream clear = encryptedData.getDataStream(
                 new org.bouncycastle.openpgp.operator.jcajce.JcePublicKeyDataDecryptorFactoryBuilder()
@@ -133,64 +450,177 @@ public class EncryptionService {
                 clear,
                 new org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator()
             );
-            PGPCompressedData compressedData = (PGPCompressedData) plainFact.nextObject();
-            PGPObjectFactory pgpFact = new PGPObjectFactory(
-                compressedData.getDataStream(),
-                new org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator()
-            );
-            PGPLiteralData literalData = (PGPLiteralData) pgpFact.nextObject();
-            
-            InputStream inputStream = literalData.getInputStream();
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            Object plain = plainFact.nextObject();
+            if (plain instanceof PGPCompressedData compressedData) {
+                plain = new PGPObjectFactory(
+                    compressedData.getDataStream(),
+                    new org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator()
+                ).nextObject();
             }
-            
-            return outputStream.toString("UTF-8");
+            if (!(plain instanceof PGPLiteralData literalData)) {
+                throw new EncryptionException("PGP message holds no literal data");
+            }
+            byte[] literal = literalData.getInputStream().readAllBytes();
+            // The literal data has been read to the end, so the integrity packet can be checked
+            if (!encryptedData.verify()) {
+                throw new EncryptionException("PGP integrity check failed: the message was modified");
+            }
+            return new ByteArrayInputStream(literal);
+        } catch (EncryptionException e) {
+            throw e;
         } catch (Exception e) {
             throw new EncryptionException("PGP decryption failed: " + e.getMessage(), e);
         }
     }
 
-    private byte[] loadKeyFromFile(String keyRef, String type) throws IOException {
-        Path keyPath = Paths.get(keysPath, type, keyRef + ".key");
-        if (!Files.exists(keyPath)) {
-            throw new IOException("Key file not found: " + keyPath);
+    /**
+     * The session key packet for our key, or the first one (the key ID may be hidden)
+     */
+    private static PGPPublicKeyEncryptedData recipientData(PGPEncryptedDataList list, long keyId)
+            throws EncryptionException {
+        PGPPublicKeyEncryptedData first = null;
+        for (PGPEncryptedData data : list) {
+            if (data instanceof PGPPublicKeyEncryptedData publicKeyData) {
+                if (publicKeyData.getKeyID() == keyId) {
+                    return publicKeyData;
+                }
+                if (first == null) {
+                    first = publicKeyData;
+                }
+            }
+        }
+        if (first == null) {
+            throw new EncryptionException("PGP message is not encrypted to a public key");
         }
-        return Files.readAllBytes(keyPath);
+        return first;
     }
 
-    private PGPPublicKey loadPgpPublicKey(String keyRef) throws Exception {
-        Path keyPath = Paths.get(keysPath, "pgp", keyRef + "_public.asc");
-        InputStream keyIn = new FileInputStream(keyPath.toFile());
-        PGPPublicKeyRingCollection pgpPub = new PGPPublicKeyRingCollection(
-            PGPUtil.getDecoderStream(keyIn),
-            new org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator()
-        );
-        return pgpPub.getKeyRings().next().getPublicKey();
+    /**
+     * Binary PGP packets of an armored message, or of Base64 text
+     */
+    private static InputStream pgpDecoder(InputStream in) throws IOException {
+        InputStream buffered = new BufferedInputStream(in);
+        buffered.mark(64);
+        int first;
+        do {
+            first = buffered.read();
+        } while (first == ' ' || first == '\t' || first == '\r' || first == '\n');
+        buffered.reset();
+        return first == '-' ? PGPUtil.getDecoderStream(buffered) : Base64.getMimeDecoder().wrap(buffered);
     }
 
-    private PGPSecretKey loadPgpSecretKey(String keyRef) throws Exception {
-        Path keyPath = Paths.get(keysPath, "pgp", keyRef + "_private.asc");
-        InputStream keyIn = new FileInputStream(keyPath.toFile());
-        PGPSecretKeyRingCollection pgpSec = new PGPSecretKeyRingCollection(
-            PGPUtil.getDecoderStream(keyIn),
-            new org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator()
-        );
-        return pgpSec.getKeyRings().next().getSecretKey();
+    /**
+     * Base64 encoding stage that leaves the stream below it open when closed
+     */
+    private static OutputStream base64(OutputStream out) {
+        return Base64.getEncoder().wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
     }
 
-    private PGPPrivateKey loadPgpPrivateKey(String keyRef) throws Exception {
-        PGPSecretKey secretKey = loadPgpSecretKey(keyRef);
-        // Note: In production, you'd need to prompt for passphrase or use a secure key store
-        // For now, assuming no passphrase
-        return secretKey.extractPrivateKey(
-            new org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyDecryptorBuilder()
-                .setProvider("BC")
-                .build(new char[0])
-        );
+    /**
+     * Cipher stream over a Base64 stage: closing it finishes the stream, then each layer below it
+     * (down to the Base64 stage), then runs the release action; aborting only runs the release action
+     */
+    private static final class Stage extends FilterOutputStream {
+        private final OutputStream[] layers;
+        private final Runnable release;
+        private boolean closed;
+
+        private Stage(OutputStream cipherOut, Runnable release, OutputStream... layers) {
+            super(cipherOut);
+            this.layers = layers;
+            this.release = release;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+                for (OutputStream layer : layers) {
+                    layer.close();
+                }
+            } finally {
+                if (release != null) {
+                    release.run();
+                }
+            }
+        }
+
+        private void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (release != null) {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Per-thread GCM state. The cipher is re-initialized for every message with a new IV (GCM refuses
+     * to encrypt twice with the same key and IV), drawn from the thread's own DRBG instead of a shared,
+     * synchronized SecureRandom.
+     */
+    static final class GcmContext {
+        private final Cipher cipher;
+        private final SecureRandom random;
+        private final byte[] iv = new byte[GCM_IV_LENGTH];
+        private final AtomicBoolean inUse = new AtomicBoolean();
+
+        /**
+         * The thread's context, or a new one while the thread's is held by an open stream stage
+         */
+        static GcmContext acquire() {
+            GcmContext context = GCM.get();
+            return context.inUse.compareAndSet(false, true) ? context : new GcmContext();
+        }
+
+        /**
+         * Hand the context back; may be called from any thread
+         */
+        void release() {
+            inUse.set(false);
+        }
+
+        private GcmContext() {
+            this(drbg());
+        }
+
+        GcmContext(SecureRandom random) {
+            try {
+                this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                this.random = random;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES-GCM is not available: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static SecureRandom drbg() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
     }
 
     public static class EncryptionException extends Exception {
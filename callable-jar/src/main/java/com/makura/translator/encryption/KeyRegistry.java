@@ -0,0 +1,212 @@
+package com.makura.translator.encryption;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPPublicKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.PGPUtil;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyDecryptorBuilder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Security;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads encryption keys from the keys directory and keeps them ready to use.
+ *
+ * Each key file is read and parsed once: AES keys into a {@link SecretKeySpec}, PGP key rings into the
+ * {@link PGPPublicKey} or the extracted {@link PGPPrivateKey}. Cached keys are revalidated against the
+ * file's mtime/size on lookup (a stat, no read), so a replaced key file is picked up by the next message.
+ * Keys used by configured routes can be loaded up front with {@link #preloadAes} / {@link #preloadPgp}
+ * / {@link #preloadPgpPrivate},
+ * which also surfaces missing or unreadable keys at startup instead of on the first message.
+ *
+ * Layout of the keys directory:
+ * <pre>
+ * aes/&lt;keyRef&gt;.key            raw AES key bytes (16, 24 or 32)
+ * pgp/&lt;keyRef&gt;_public.asc     public key ring (encryption)
+ * pgp/&lt;keyRef&gt;_private.asc    secret key ring without passphrase (decryption)
+ * </pre>
+ */
+public class KeyRegistry {
+
+    static final String AES_DIRECTORY = "aes";
+    static final String PGP_DIRECTORY = "pgp";
+
+    private final String keysPath;
+    private final Map<Path, CachedKey> cache = new ConcurrentHashMap<>();
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    public KeyRegistry(String keysPath) {
+        this.keysPath = keysPath;
+    }
+
+    /**
+     * AES key for a keyRef
+     */
+    public SecretKeySpec getAesKey(String keyRef) throws KeyLoadException {
+        return (SecretKeySpec) get(Paths.get(keysPath, AES_DIRECTORY, keyRef + ".key"), KeyRegistry::readAesKey);
+    }
+
+    /**
+     * PGP public key for a keyRef (the master key of the first key ring in the file)
+     */
+    public PGPPublicKey getPgpPublicKey(String keyRef) throws KeyLoadException {
+        return (PGPPublicKey) get(Paths.get(keysPath, PGP_DIRECTORY, keyRef + "_public.asc"),
+            KeyRegistry::readPgpPublicKey);
+    }
+
+    /**
+     * PGP private key for a keyRef (the master key of the first secret key ring in the file)
+     */
+    public PGPPrivateKey getPgpPrivateKey(String keyRef) throws KeyLoadException {
+        return (PGPPrivateKey) get(Paths.get(keysPath, PGP_DIRECTORY, keyRef + "_private.asc"),
+            KeyRegistry::readPgpPrivateKey);
+    }
+
+    /**
+     * Load an AES key into the cache
+     *
+     * @throws KeyLoadException if the key file is missing or invalid
+     */
+    public void preloadAes(String keyRef) throws KeyLoadException {
+        getAesKey(keyRef);
+    }
+
+    /**
+     * Load a PGP public key into the cache, and the private key too if its file exists
+     *
+     * @throws KeyLoadException if the public key file is missing or a key file is invalid
+     */
+    public void preloadPgp(String keyRef) throws KeyLoadException {
+        getPgpPublicKey(keyRef);
+        if (Files.exists(Paths.get(keysPath, PGP_DIRECTORY, keyRef + "_private.asc"))) {
+            getPgpPrivateKey(keyRef);
+        }
+    }
+
+    /**
+     * Load a PGP private key into the cache (for routes that decrypt requests)
+     *
+     * @throws KeyLoadException if the private key file is missing or invalid
+     */
+    public void preloadPgpPrivate(String keyRef) throws KeyLoadException {
+        getPgpPrivateKey(keyRef);
+    }
+
+    /**
+     * Drop all cached keys; they are reloaded on next use
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    private Object get(Path keyPath, KeyReader reader) throws KeyLoadException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(keyPath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            cache.remove(keyPath);
+            throw new KeyLoadException("Key file not found: " + keyPath, e);
+        } catch (IOException e) {
+            throw new KeyLoadException("Cannot read key file " + keyPath + ": " + e.getMessage(), e);
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        CachedKey cached = cache.get(keyPath);
+        if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+            return cached.key;
+        }
+        Object key;
+        try {
+            key = reader.read(keyPath);
+        } catch (KeyLoadException e) {
+            throw e;
+        } catch (IOException | PGPException | RuntimeException e) {
+            throw new KeyLoadException("Cannot load key file " + keyPath + ": " + e.getMessage(), e);
+        }
+        cache.put(keyPath, new CachedKey(key, lastModified, size));
+        return key;
+    }
+
+    private static SecretKeySpec readAesKey(Path keyPath) throws IOException, KeyLoadException {
+        byte[] key = Files.readAllBytes(keyPath);
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new KeyLoadException("AES key file " + keyPath + " must hold 16, 24 or 32 bytes, found " + key.length);
+        }
+        return new SecretKeySpec(key, "AES");
+    }
+
+    private static PGPPublicKey readPgpPublicKey(Path keyPath) throws IOException, PGPException, KeyLoadException {
+        try (InputStream keyIn = Files.newInputStream(keyPath)) {
+            PGPPublicKeyRingCollection rings = new PGPPublicKeyRingCollection(
+                PGPUtil.getDecoderStream(keyIn), new BcKeyFingerprintCalculator());
+            Iterator<PGPPublicKeyRing> iterator = rings.getKeyRings();
+            if (!iterator.hasNext()) {
+                throw new KeyLoadException("No public key ring in " + keyPath);
+            }
+            return iterator.next().getPublicKey();
+        }
+    }
+
+    private static PGPPrivateKey readPgpPrivateKey(Path keyPath) throws IOException, PGPException, KeyLoadException {
+        try (InputStream keyIn = Files.newInputStream(keyPath)) {
+            PGPSecretKeyRingCollection rings = new PGPSecretKeyRingCollection(
+                PGPUtil.getDecoderStream(keyIn), new BcKeyFingerprintCalculator());
+            Iterator<PGPSecretKeyRing> iterator = rings.getKeyRings();
+            if (!iterator.hasNext()) {
+                throw new KeyLoadException("No secret key ring in " + keyPath);
+            }
+            // Keys are stored without a passphrase; a secure key store would supply one here
+            return iterator.next().getSecretKey().extractPrivateKey(
+                new JcePBESecretKeyDecryptorBuilder().setProvider("BC").build(new char[0]));
+        }
+    }
+
+    @FunctionalInterface
+    private interface KeyReader {
+        Object read(Path keyPath) throws IOException, PGPException, KeyLoadException;
+    }
+
+    /**
+     * Parsed key plus the file version it was read from
+     */
+    private static final class CachedKey {
+        private final Object key;
+        private final long lastModified;
+        private final long size;
+
+        private CachedKey(Object key, long lastModified, long size) {
+            this.key = key;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+    public static class KeyLoadException extends Exception {
+        public KeyLoadException(String message) {
+            super(message);
+        }
+
+        public KeyLoadException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
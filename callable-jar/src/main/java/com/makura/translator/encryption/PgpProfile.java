@@ -0,0 +1,92 @@
+package com.makura.translator.encryption;
+
+import lombok.Builder;
+import lombok.Value;
+import org.bouncycastle.bcpg.CompressionAlgorithmTags;
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+
+import java.util.zip.Deflater;
+
+/**
+ * How PGP messages are produced: session key cipher, optional compression and integrity protection.
+ *
+ * Recipients read all of these from the message itself, so the profile can be changed per route without
+ * coordinating with the receiving side (as long as it supports the cipher and compression chosen).
+ * Compression only pays off for large, repetitive messages; it costs more CPU than it saves in
+ * encryption for typical payment messages.
+ */
+@Value
+public class PgpProfile {
+
+    /**
+     * AES-256, no compression, integrity packet
+     */
+    public static final PgpProfile DEFAULT = PgpProfile.builder().build();
+
+    /**
+     * Symmetric cipher the message is encrypted with
+     */
+    Cipher cipher;
+
+    /**
+     * Compression applied before encryption
+     */
+    Compression compression;
+
+    /**
+     * Deflate level for ZIP/ZLIB, 0-9 ({@link Deflater#DEFAULT_COMPRESSION} for the default, 6)
+     */
+    int compressionLevel;
+
+    /**
+     * Whether a modification detection code is appended (required by current OpenPGP implementations)
+     */
+    boolean integrityPacket;
+
+    @Builder(toBuilder = true)
+    private PgpProfile(Cipher cipher, Compression compression, Integer compressionLevel, Boolean integrityPacket) {
+        this.cipher = cipher != null ? cipher : Cipher.AES_256;
+        this.compression = compression != null ? compression : Compression.NONE;
+        this.compressionLevel = compressionLevel != null ? compressionLevel : Deflater.DEFAULT_COMPRESSION;
+        this.integrityPacket = integrityPacket == null || integrityPacket;
+        if (this.compressionLevel < Deflater.DEFAULT_COMPRESSION || this.compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("PGP compression level must be between 0 and 9: " + compressionLevel);
+        }
+    }
+
+    public enum Cipher {
+        AES_128(SymmetricKeyAlgorithmTags.AES_128),
+        AES_256(SymmetricKeyAlgorithmTags.AES_256),
+
+        /**
+         * The former fixed cipher, for recipients that cannot decrypt AES
+         */
+        CAST5(SymmetricKeyAlgorithmTags.CAST5);
+
+        private final int algorithm;
+
+        Cipher(int algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        int algorithm() {
+            return algorithm;
+        }
+    }
+
+    public enum Compression {
+        NONE(CompressionAlgorithmTags.UNCOMPRESSED),
+        ZIP(CompressionAlgorithmTags.ZIP),
+        ZLIB(CompressionAlgorithmTags.ZLIB);
+
+        private final int algorithm;
+
+        Compression(int algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        int algorithm() {
+            return algorithm;
+        }
+    }
+}
@@ -1,75 +1,435 @@
 package com.makura.translator.forwarding;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
 
 /**
- * Simple HTTP client for forwarding messages to downstream systems
- * Uses standard Java HTTP client (no external dependencies)
+ * HTTP client for forwarding messages to downstream systems, on {@link HttpClient} (no external dependencies).
+ *
+ * Clients are long-lived and shared by all calls: connections to an endpoint are kept alive and reused,
+ * so only the first message to an endpoint pays the TCP and TLS handshakes (TLS sessions are resumed
+ * from the SSL context's cache after that). HTTPS endpoints that support HTTP/2 get it through ALPN and
+ * carry concurrent messages as streams of one connection; plain HTTP endpoints use HTTP/1.1 keep-alive.
+ * The connect timeout is a setting of the client, so there is one client per connect timeout in use;
+ * per-call connect timeouts are rounded up to the next step of 100, 200, 500, 1000 ... ms (at most
+ * 60 s), which bounds the number of clients. The read timeout is set per request and counts until the
+ * response headers arrive. {@link #close()} releases the clients and their threads.
  */
-public class HttpForwardingClient {
+public class HttpForwardingClient implements AutoCloseable {
+
+    // Request body chunk handed to the client (one HTTP/1.1 chunk or HTTP/2 DATA frames)
+    private static final int BODY_CHUNK_SIZE = 16 * 1024;
+
+    private static final int MIN_CONNECT_TIMEOUT = 100;
+    private static final int MAX_CONNECT_TIMEOUT = 60_000;
 
     private final int connectTimeout;
     private final int readTimeout;
+    private final SSLContext sslContext;
+    private final Map<Integer, HttpClient> clients = new ConcurrentHashMap<>();
+    // Like forwarding itself: no platform thread parked per response
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean closed;
 
     public HttpForwardingClient() {
         this(5000, 30000);
     }
 
     public HttpForwardingClient(int connectTimeout, int readTimeout) {
+        this(connectTimeout, readTimeout, defaultSslContext());
+    }
+
+    /**
+     * @param sslContext Trust material and TLS session cache for HTTPS endpoints
+     */
+    public HttpForwardingClient(int connectTimeout, int readTimeout, SSLContext sslContext) {
         this.connectTimeout = connectTimeout;
         this.readTimeout = readTimeout;
+        this.sslContext = sslContext;
+    }
+
+    private static SSLContext defaultSslContext() {
+        try {
+            return SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No default SSL context: " + e.getMessage(), e);
+        }
     }
 
     /**
      * Forward target message to downstream endpoint
      */
     public String forward(String endpoint, String targetMessage, String apiKey) throws ForwardingException {
-        HttpURLConnection connection = null;
+        return forward(endpoint, targetMessage, apiKey, connectTimeout, readTimeout);
+    }
+
+    /**
+     * Forward target message with per-call timeouts (values of 0 or less fall back to the client's own).
+     * The call can be abandoned by interrupting the calling thread: the exchange is cancelled, which
+     * closes an HTTP/1.1 connection or resets the HTTP/2 stream.
+     */
+    public String forward(String endpoint, String targetMessage, String apiKey, int connectTimeout, int readTimeout)
+            throws ForwardingException {
         try {
-            URL url = URI.create(endpoint).toURL();
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/xml");
-            if (apiKey != null && !apiKey.isEmpty()) {
-                connection.setRequestProperty("X-API-Key", apiKey);
-            }
-            connection.setConnectTimeout(connectTimeout);
-            connection.setReadTimeout(readTimeout);
-            connection.setDoOutput(true);
-
-            // Send request
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = targetMessage.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-
-            // Read response
-            int responseCode = connection.getResponseCode();
-            if (responseCode >= 200 && responseCode < 300) {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String responseLine;
-                    while ((responseLine = br.readLine()) != null) {
-                        response.append(responseLine.trim());
-                    }
-                    return response.toString();
+            HttpRequest request = request(endpoint, apiKey, readTimeout,
+                HttpRequest.BodyPublishers.ofByteArray(targetMessage.getBytes(StandardCharsets.UTF_8)));
+            CompletableFuture<HttpResponse<String>> response = client(connectTimeout)
+                .sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            return body(await(response));
+        } catch (Exception e) {
+            throw new ForwardingException("Failed to forward message to " + endpoint + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Forward a message written by the caller straight into the request (chunked transfer encoding, or
+     * DATA frames over HTTP/2), so the body is never held in memory as a whole. The body is written on
+     * the calling thread while the client sends it. Failures of the body writer itself are rethrown as
+     * the cause of a {@link ForwardingException}, and the request is abandoned.
+     */
+    public String forward(String endpoint, RequestBody body, String apiKey, int connectTimeout, int readTimeout)
+            throws ForwardingException {
+        try {
+            StreamingBody publisher = new StreamingBody();
+            CompletableFuture<HttpResponse<String>> response = client(connectTimeout)
+                .sendAsync(request(endpoint, apiKey, readTimeout, publisher), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            // A failed or early response ends the body: the writer's next write fails
+            response.whenComplete((r, e) -> publisher.abort(e != null ? e : new IOException("Response received before the request was sent")));
+            OutputStream out = publisher.stream();
+            try {
+                body.writeTo(out);
+                out.close();
+            } catch (Exception e) {
+                if (!response.isDone() || response.isCompletedExceptionally()) {
+                    // Never close the stream here: that would end a truncated body as if it were complete
+                    publisher.abort(e);
+                    response.cancel(true);
+                    throw e;
                 }
-            } else {
-                throw new ForwardingException("HTTP error code: " + responseCode);
+                // The downstream system answered before reading the whole body; its response says why
             }
-
+            return body(await(response));
         } catch (Exception e) {
             throw new ForwardingException("Failed to forward message to " + endpoint + ": " + e.getMessage(), e);
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+        }
+    }
+
+    /**
+     * Stop accepting calls and release the clients: exchanges in progress still complete, then the
+     * clients' connections and threads go away
+     */
+    @Override
+    public void close() {
+        closed = true;
+        clients.values().forEach(HttpClient::shutdown);
+        clients.clear();
+        executor.shutdown();
+    }
+
+    private HttpClient client(int connectTimeout) {
+        if (closed) {
+            throw new IllegalStateException("Forwarding client is closed");
+        }
+        int timeout = normalizedConnectTimeout(connectTimeout > 0 ? connectTimeout : this.connectTimeout);
+        return clients.computeIfAbsent(timeout, t -> HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofMillis(t))
+            .sslContext(sslContext)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .executor(executor)
+            .build());
+    }
+
+    /**
+     * The timeout rounded up to 100, 200, 500, 1000, 2000, 5000 ... ms, between 100 ms and 60 s
+     */
+    static int normalizedConnectTimeout(int millis) {
+        if (millis >= MAX_CONNECT_TIMEOUT) {
+            return MAX_CONNECT_TIMEOUT;
+        }
+        for (int decade = MIN_CONNECT_TIMEOUT; ; decade *= 10) {
+            for (int step : new int[] {decade, 2 * decade, 5 * decade}) {
+                if (millis <= step) {
+                    return Math.min(step, MAX_CONNECT_TIMEOUT);
+                }
+            }
+        }
+    }
+
+    private HttpRequest request(String endpoint, String apiKey, int readTimeout, HttpRequest.BodyPublisher body) {
+        URI uri = URI.create(endpoint);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+            .POST(body)
+            .header("Content-Type", "application/xml")
+            .timeout(Duration.ofMillis(readTimeout > 0 ? readTimeout : this.readTimeout));
+        if (!"https".equalsIgnoreCase(uri.getScheme())) {
+            // No cleartext HTTP/2 upgrade: it needs a second request and few downstream servers accept it
+            request.version(HttpClient.Version.HTTP_1_1);
+        }
+        if (apiKey != null && !apiKey.isEmpty()) {
+            request.header("X-API-Key", apiKey);
+        }
+        return request.build();
+    }
+
+    /**
+     * Wait for the response; interrupting the thread cancels the exchange
+     */
+    private static HttpResponse<String> await(CompletableFuture<HttpResponse<String>> response) throws Exception {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Forwarding interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private static String body(HttpResponse<String> response) throws ForwardingException {
+        int responseCode = response.statusCode();
+        if (responseCode >= 200 && responseCode < 300) {
+            // Lines are trimmed and joined, as before
+            return response.body().lines().map(String::trim).collect(Collectors.joining());
+        }
+        throw new ForwardingException("HTTP error code: " + responseCode);
+    }
+
+    /**
+     * Writes a request body into the connection (the stream is closed by the client)
+     */
+    @FunctionalInterface
+    public interface RequestBody {
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    /**
+     * Request body fed by an OutputStream on the caller's thread. Bytes are handed to the client in
+     * chunks as it asks for them; a writer that gets ahead of the connection waits. The subscriber is
+     * only called outside the lock, as the client may ask for more from its own threads meanwhile, and
+     * one signal at a time: an abort while the writer is in {@code onNext} leaves {@code onError} to the
+     * writer, which sends it when {@code onNext} returns.
+     */
+    static final class StreamingBody implements HttpRequest.BodyPublisher {
+        private Flow.Subscriber<? super ByteBuffer> subscriber;
+        private long demand;
+        private boolean cancelled;
+        private boolean done;
+        private Throwable failure;
+        private boolean signalling;                // a thread is calling the subscriber
+        private boolean errorOwed;                 // onError is due once that call returns
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            synchronized (this) {
+                if (this.subscriber == null) {
+                    this.subscriber = subscriber;
+                    signalling = true;
+                    notifyAll();
+                    subscriber = null;
+                }
+            }
+            if (subscriber != null) {
+                // The body is written once and cannot be replayed
+                subscriber.onSubscribe(new Subscription(false));
+                subscriber.onError(new IOException("Streamed request body cannot be sent twice"));
+                return;
+            }
+            try {
+                this.subscriber.onSubscribe(new Subscription(true));
+            } finally {
+                signalled();
+            }
+        }
+
+        /**
+         * End the body with an error: the client abandons the request, and the writer's next write fails
+         */
+        void abort(Throwable cause) {
+            Flow.Subscriber<? super ByteBuffer> target;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                failure = cause;
+                notifyAll();
+                if (cancelled) {
+                    return;
+                }
+                if (signalling || subscriber == null) {
+                    // Sent by the thread in the subscriber (or by subscribe) once it returns
+                    errorOwed = true;
+                    return;
+                }
+                signalling = true;
+                target = subscriber;
+            }
+            target.onError(cause);
+        }
+
+        /**
+         * Wait until the client asks for a chunk, then hand it over
+         */
+        private void publish(ByteBuffer chunk) throws IOException {
+            synchronized (this) {
+                await(true);
+                demand--;
+                signalling = true;
+            }
+            try {
+                subscriber.onNext(chunk);
+            } finally {
+                signalled();
+            }
+        }
+
+        private void complete() throws IOException {
+            synchronized (this) {
+                await(false);
+                done = true;
+                signalling = true;
+            }
+            subscriber.onComplete();
+        }
+
+        /**
+         * A call into the subscriber has returned: send the error an abort left meanwhile
+         */
+        private void signalled() {
+            Throwable error;
+            synchronized (this) {
+                error = errorOwed && !cancelled ? failure : null;
+                errorOwed = false;
+                signalling = error != null;
+                notifyAll();
+            }
+            if (error != null) {
+                subscriber.onError(error);
+            }
+        }
+
+        private void await(boolean forDemand) throws IOException {
+            try {
+                while ((subscriber == null || signalling || (forDemand && demand == 0)) && !cancelled && failure == null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Forwarding interrupted");
+            }
+            if (failure != null) {
+                throw failure instanceof IOException io ? io : new IOException(failure.getMessage(), failure);
+            }
+            if (cancelled) {
+                throw new IOException("Request cancelled by the HTTP client");
+            }
+        }
+
+        OutputStream stream() {
+            return new OutputStream() {
+                private byte[] chunk = new byte[BODY_CHUNK_SIZE];
+                private int count;
+                private boolean closed;
+
+                @Override
+                public void write(int b) throws IOException {
+                    if (count == chunk.length) {
+                        send();
+                    }
+                    chunk[count++] = (byte) b;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    while (len > 0) {
+                        if (count == chunk.length) {
+                            send();
+                        }
+                        int n = Math.min(len, chunk.length - count);
+                        System.arraycopy(b, off, chunk, count, n);
+                        count += n;
+                        off += n;
+                        len -= n;
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    if (count > 0) {
+                        send();
+                    }
+                    complete();
+                }
+
+                // The client may hold on to a buffer after onNext, so each chunk gets a new array
+                private void send() throws IOException {
+                    publish(ByteBuffer.wrap(chunk, 0, count));
+                    chunk = new byte[BODY_CHUNK_SIZE];
+                    count = 0;
+                }
+            };
+        }
+
+        private final class Subscription implements Flow.Subscription {
+            private final boolean active;
+
+            private Subscription(boolean active) {
+                this.active = active;
+            }
+
+            @Override
+            public void request(long n) {
+                if (!active) {
+                    return;
+                }
+                if (n <= 0) {
+                    abort(new IllegalArgumentException("Requested demand must be positive: " + n));
+                    return;
+                }
+                synchronized (StreamingBody.this) {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    StreamingBody.this.notifyAll();
+                }
+            }
+
+            @Override
+            public void cancel() {
+                if (!active) {
+                    return;
+                }
+                synchronized (StreamingBody.this) {
+                    cancelled = true;
+                    StreamingBody.this.notifyAll();
+                }
             }
         }
     }
@@ -84,6 +444,3 @@ public class HttpForwardingClient {
         }
     }
 }
-
-
-
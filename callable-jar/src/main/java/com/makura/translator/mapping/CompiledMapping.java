@@ -0,0 +1,218 @@
+package com.makura.translator.mapping;
+
+import com.makura.translator.TranslationOptions;
+import com.makura.translator.encryption.PgpProfile;
+import com.makura.translator.mapping.expression.Expression;
+import lombok.Getter;
+import org.dom4j.Namespace;
+import org.dom4j.QName;
+
+import java.util.List;
+
+/**
+ * Immutable, pre-resolved execution plan for a route, produced once by {@link MappingCompiler}.
+ * Running the plan only moves data: paths are pre-split, element names are QNames carrying
+ * the inherited namespace, constants are extracted and transforms are parsed.
+ */
+@Getter
+public class CompiledMapping {
+
+    /**
+     * The configuration this plan was compiled from (auth, endpoint, etc.)
+     */
+    private final MappingConfig config;
+
+    private final String routeId;
+    private final String inboundFormat;
+
+    /**
+     * Whether requests are translated one repeating block item at a time (see {@link RepeatPlan})
+     */
+    private final boolean streaming;
+
+    /**
+     * Root element of the target document (with namespace if configured)
+     */
+    private final QName rootQName;
+
+    /**
+     * Additional namespace declared on the root for rootElementPrefix (null if not needed)
+     */
+    private final Namespace rootPrefixNamespace;
+
+    /**
+     * Root element name of XML documents produced from responses
+     */
+    private final String responseRootName;
+
+    private final List<FieldPlan> requestMappings;
+    private final List<FieldPlan> responseMappings;
+
+    /**
+     * Elements the request mappings can create in the target document
+     */
+    private final OutputTree requestTree;
+
+    /**
+     * Elements the response mappings can create in an XML response
+     */
+    private final OutputTree responseTree;
+
+    /**
+     * Source fields read by the request mappings, extracted in one pass from JSON/XML messages
+     */
+    private final SourceFields requestSourceFields;
+
+    /**
+     * Target document fields read by the response mappings
+     */
+    private final SourceFields responseSourceFields;
+
+    /**
+     * PGP profile declared by the route (null if it declares none)
+     */
+    private final PgpProfile pgpProfile;
+
+    /**
+     * How requests of the route are encrypted (null if they arrive in clear)
+     */
+    private final TranslationOptions.EncryptionType decryptionType;
+
+    private final String decryptionKeyRef;
+
+    CompiledMapping(MappingConfig config, QName rootQName, Namespace rootPrefixNamespace, String responseRootName,
+                    List<FieldPlan> requestMappings, List<FieldPlan> responseMappings,
+                    OutputTree requestTree, OutputTree responseTree, PgpProfile pgpProfile,
+                    TranslationOptions.EncryptionType decryptionType) {
+        this.config = config;
+        this.routeId = config.getRouteId();
+        this.inboundFormat = config.getInboundFormat();
+        this.streaming = config.isStreaming();
+        this.rootQName = rootQName;
+        this.rootPrefixNamespace = rootPrefixNamespace;
+        this.responseRootName = responseRootName;
+        this.requestMappings = List.copyOf(requestMappings);
+        this.responseMappings = List.copyOf(responseMappings);
+        this.requestTree = requestTree;
+        this.responseTree = responseTree;
+        this.requestSourceFields = SourceFields.of(this.requestMappings);
+        this.responseSourceFields = SourceFields.of(this.responseMappings);
+        this.pgpProfile = pgpProfile;
+        this.decryptionType = decryptionType;
+        this.decryptionKeyRef = decryptionType != null ? config.getDecryption().getKeyRef() : null;
+    }
+
+    /**
+     * Whether a namespace is configured for the target document
+     */
+    public boolean hasNamespace() {
+        return rootQName.getNamespace() != null && !Namespace.NO_NAMESPACE.equals(rootQName.getNamespace());
+    }
+
+    /**
+     * Whether requests must be decrypted before they are parsed
+     */
+    public boolean isEncryptedInbound() {
+        return decryptionType != null;
+    }
+
+    /**
+     * A single compiled field mapping.
+     */
+    @Getter
+    public static class FieldPlan {
+        /**
+         * Original "from" expression
+         */
+        private final String from;
+
+        /**
+         * Value of a "constant:" source, null for path sources
+         */
+        private final String constantValue;
+
+        /**
+         * Source path (null for constants on the request side)
+         */
+        private final SourcePath sourcePath;
+
+        /**
+         * Destination in the output document
+         */
+        private final TargetPath targetPath;
+
+        /**
+         * Destination key path for JSON output (response mappings only)
+         */
+        private final String[] jsonPath;
+
+        /**
+         * Parsed transformation (null if none)
+         */
+        private final Expression transform;
+
+        private final String defaultValue;
+
+        /**
+         * Repeating block read from the source path (null for value mappings)
+         */
+        private final RepeatPlan repeat;
+
+        FieldPlan(String from, String constantValue, SourcePath sourcePath, TargetPath targetPath, String[] jsonPath,
+                  Expression transform, String defaultValue) {
+            this(from, constantValue, sourcePath, targetPath, jsonPath, transform, defaultValue, null);
+        }
+
+        FieldPlan(String from, String constantValue, SourcePath sourcePath, TargetPath targetPath, String[] jsonPath,
+                  Expression transform, String defaultValue, RepeatPlan repeat) {
+            this.from = from;
+            this.constantValue = constantValue;
+            this.sourcePath = sourcePath;
+            this.targetPath = targetPath;
+            this.jsonPath = jsonPath;
+            this.transform = transform;
+            this.defaultValue = defaultValue;
+            this.repeat = repeat;
+        }
+
+        public boolean hasTransform() {
+            return transform != null;
+        }
+
+        public boolean isConstant() {
+            return constantValue != null;
+        }
+
+        public boolean isRepeat() {
+            return repeat != null;
+        }
+    }
+
+    /**
+     * A compiled repeating block: every item found at the source path is written as one element
+     * at the end of the target path, filled by mappings relative to the item.
+     */
+    @Getter
+    public static class RepeatPlan {
+        /**
+         * Elements built from one item (root = the repeated element)
+         */
+        private final OutputTree itemTree;
+
+        /**
+         * Mappings applied to each item; sources and targets are relative to the item
+         */
+        private final List<FieldPlan> itemMappings;
+
+        /**
+         * Item fields read by the item mappings
+         */
+        private final SourceFields itemSourceFields;
+
+        RepeatPlan(OutputTree itemTree, List<FieldPlan> itemMappings) {
+            this.itemTree = itemTree;
+            this.itemMappings = List.copyOf(itemMappings);
+            this.itemSourceFields = SourceFields.of(this.itemMappings);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.makura.translator.mapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binary bundle of validated mapping configurations, built from the YAML files at build time
+ * (see the mapping-bundle-maven-plugin) so routes can be loaded without parsing YAML.
+ *
+ * The file is memory-mapped read-only and nothing is decoded up front: a lookup binary-searches the
+ * index in the mapping and decodes only that route's entry, so routes that are never used cost page
+ * cache, not heap. Replace the file by writing a new one and renaming it over the old one; readers
+ * of the old mapping keep a consistent view until they reopen. Never rewrite a bundle in place.
+ *
+ * Layout (big-endian, offsets from the start of the file):
+ * <pre>
+ * int magic "MKMB", short version, int routeCount, int valueMapCount
+ * routeCount x (int nameOffset, int nameLength, int dataOffset, int dataLength)
+ *     route index, sorted by the routeId's UTF-8 bytes (unsigned)
+ * valueMapCount x (same)
+ *     index of the value map table files routes refer to, sorted the same way
+ * names (UTF-8), then one encoded MappingConfig per route and one key/value table per value map
+ * </pre>
+ * Strings inside entries are an int byte length (-1 for null) followed by UTF-8 bytes.
+ */
+public final class MappingBundle {
+
+    /**
+     * File name the loader looks for in the mappings directory
+     */
+    public static final String FILE_NAME = "mappings.bundle";
+
+    private static final int MAGIC = 0x4D4B4D42;
+    private static final short VERSION = 5;
+    private static final int HEADER_SIZE = 14;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final Comparator<byte[]> NAME_ORDER = Arrays::compareUnsigned;
+
+    private final ByteBuffer file;
+    private final int routeCount;
+    private final int valueMapCount;
+
+    private MappingBundle(ByteBuffer file, int routeCount, int valueMapCount) {
+        this.file = file;
+        this.routeCount = routeCount;
+        this.valueMapCount = valueMapCount;
+    }
+
+    /**
+     * Map a bundle file (the file handle is released immediately; the mapping stays valid)
+     *
+     * @throws IOException if the file cannot be mapped or is not a valid bundle
+     */
+    public static MappingBundle open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Use an in-memory bundle
+     *
+     * @throws IOException if the bytes are not a valid bundle
+     */
+    public static MappingBundle wrap(ByteBuffer bytes) throws IOException {
+        ByteBuffer file = bytes.slice().order(ByteOrder.BIG_ENDIAN);
+        if (file.capacity() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+            throw new IOException("Not a mapping bundle");
+        }
+        short version = file.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapping bundle version: " + version + " (rebuild the bundle)");
+        }
+        int routeCount = file.getInt(6);
+        int valueMapCount = file.getInt(10);
+        if (routeCount < 0 || valueMapCount < 0
+                || HEADER_SIZE + ((long) routeCount + valueMapCount) * INDEX_ENTRY_SIZE > file.capacity()) {
+            throw new IOException("Corrupt mapping bundle index");
+        }
+        for (int i = 0; i < routeCount + valueMapCount; i++) {
+            int entry = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+            if (!inBounds(file, file.getInt(entry), file.getInt(entry + 4))
+                    || !inBounds(file, file.getInt(entry + 8), file.getInt(entry + 12))) {
+                throw new IOException("Corrupt mapping bundle index");
+            }
+        }
+        return new MappingBundle(file, routeCount, valueMapCount);
+    }
+
+    private static boolean inBounds(ByteBuffer file, int offset, int length) {
+        return offset >= 0 && length >= 0 && (long) offset + length <= file.capacity();
+    }
+
+    /**
+     * Write configurations as a bundle (the same input gives the same bytes)
+     */
+    public static void write(Map<String, MappingConfig> configs, OutputStream out) throws IOException {
+        write(configs, Map.of(), out);
+    }
+
+    /**
+     * Write configurations and the value map table files they refer to as a bundle
+     * (the same input gives the same bytes)
+     *
+     * @param valueMaps Entries of each table file, by the name routes use for it
+     */
+    public static void write(Map<String, MappingConfig> configs, Map<String, Map<String, String>> valueMaps,
+                             OutputStream out) throws IOException {
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream entriesOut = new DataOutputStream(entries);
+        List<int[]> index = new ArrayList<>(configs.size() + valueMaps.size());
+        for (Map.Entry<byte[], MappingConfig> entry : sortedByName(configs).entrySet()) {
+            int dataOffset = entriesOut.size();
+            writeConfig(entry.getValue(), entriesOut);
+            index.add(new int[] {names.size(), entry.getKey().length, dataOffset, entriesOut.size() - dataOffset});
+            names.write(entry.getKey());
+        }
+        for (Map.Entry<byte[], Map<String, String>> entry : sortedByName(valueMaps).entrySet()) {
+            int dataOffset = entriesOut.size();
+            writeTable(entry.getValue(), entriesOut);
+            index.add(new int[] {names.size(), entry.getKey().length, dataOffset, entriesOut.size() - dataOffset});
+            names.write(entry.getKey());
+        }
+        int namesStart = HEADER_SIZE + index.size() * INDEX_ENTRY_SIZE;
+        int entriesStart = namesStart + names.size();
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeInt(configs.size());
+        header.writeInt(valueMaps.size());
+        for (int[] entry : index) {
+            header.writeInt(namesStart + entry[0]);
+            header.writeInt(entry[1]);
+            header.writeInt(entriesStart + entry[2]);
+            header.writeInt(entry[3]);
+        }
+        names.writeTo(header);
+        entries.writeTo(header);
+        header.flush();
+    }
+
+    private static <T> Map<byte[], T> sortedByName(Map<String, T> values) {
+        Map<byte[], T> sorted = new TreeMap<>(NAME_ORDER);
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            sorted.put(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+        }
+        return sorted;
+    }
+
+    /**
+     * Route ids in the bundle, in index order (decoded on every call)
+     */
+    public List<String> routeIds() {
+        List<String> routeIds = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            int entry = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+            routeIds.add(decode(file, file.getInt(entry), file.getInt(entry + 4)));
+        }
+        return routeIds;
+    }
+
+    public int size() {
+        return routeCount;
+    }
+
+    public boolean contains(String routeId) {
+        return find(routeId, 0, routeCount) >= 0;
+    }
+
+    /**
+     * Decode a route's configuration (a new instance on every call)
+     *
+     * @return The configuration, or null if the route is not in the bundle
+     * @throws IOException if the route's entry is corrupt
+     */
+    public MappingConfig read(String routeId) throws IOException {
+        int entry = find(routeId, 0, routeCount);
+        if (entry < 0) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = file.slice(file.getInt(entry + 8), file.getInt(entry + 12));
+            MappingConfig config = readConfig(buffer);
+            config.setRouteId(routeId);
+            return config;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt mapping bundle entry for routeId: " + routeId, e);
+        }
+    }
+
+    /**
+     * Decode a value map table file bundled with the routes (a new map on every call)
+     *
+     * @return The entries, or null if the bundle has no table of that name
+     * @throws IOException if the table's entry is corrupt
+     */
+    public Map<String, String> readValueMap(String name) throws IOException {
+        int entry = find(name, routeCount, valueMapCount);
+        if (entry < 0) {
+            return null;
+        }
+        try {
+            return readTable(file.slice(file.getInt(entry + 8), file.getInt(entry + 12)));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt mapping bundle entry for value map: " + name, e);
+        }
+    }
+
+    /**
+     * Binary search of a section of the index
+     *
+     * @param first Index entry the section starts at
+     * @param count Number of entries in the section
+     * @return Position of the name's index entry in the file, or -1
+     */
+    private int find(String key, int first, int count) {
+        byte[] name = key.getBytes(StandardCharsets.UTF_8);
+        int low = first;
+        int high = first + count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = HEADER_SIZE + middle * INDEX_ENTRY_SIZE;
+            int order = compareName(file.getInt(entry), file.getInt(entry + 4), name);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare a name in the file with the given UTF-8 bytes, unsigned, without copying it
+     */
+    private int compareName(int offset, int length, byte[] name) {
+        int common = Math.min(length, name.length);
+        for (int i = 0; i < common; i++) {
+            int order = Byte.compareUnsigned(file.get(offset + i), name[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(length, name.length);
+    }
+
+    private static void writeConfig(MappingConfig config, DataOutputStream out) throws IOException {
+        writeString(config.getInboundFormat(), out);
+        writeString(config.getOutboundFormat(), out);
+        writeString(config.getMode(), out);
+        writeString(config.getEndpoint(), out);
+        MappingConfig.AuthConfig auth = config.getAuth();
+        out.writeBoolean(auth != null);
+        if (auth != null) {
+            writeString(auth.getType(), out);
+            writeString(auth.getKey(), out);
+        }
+        MappingConfig.NamespaceConfig namespace = config.getNamespace();
+        out.writeBoolean(namespace != null);
+        if (namespace != null) {
+            writeString(namespace.getUri(), out);
+            writeString(namespace.getPrefix(), out);
+            writeString(namespace.getRootElementPrefix(), out);
+        }
+        writeString(config.getRootElementName(), out);
+        out.writeBoolean(config.isStreaming());
+        MappingConfig.PgpConfig pgp = config.getPgp();
+        out.writeBoolean(pgp != null);
+        if (pgp != null) {
+            writeString(pgp.getCipher(), out);
+            writeString(pgp.getCompression(), out);
+            out.writeInt(pgp.getCompressionLevel() != null ? pgp.getCompressionLevel() : Integer.MIN_VALUE);
+            out.writeByte(pgp.getIntegrityPacket() != null ? (pgp.getIntegrityPacket() ? 1 : 0) : -1);
+        }
+        MappingConfig.DecryptionConfig decryption = config.getDecryption();
+        out.writeBoolean(decryption != null);
+        if (decryption != null) {
+            writeString(decryption.getType(), out);
+            writeString(decryption.getKeyRef(), out);
+        }
+        MappingConfig.Mappings mappings = config.getMappings();
+        out.writeBoolean(mappings != null);
+        if (mappings != null) {
+            writeFieldMappings(mappings.getRequest(), out);
+            writeFieldMappings(mappings.getResponse(), out);
+        }
+        writeValueMaps(config.getValueMaps(), out);
+    }
+
+    private static MappingConfig readConfig(ByteBuffer in) {
+        MappingConfig config = new MappingConfig();
+        config.setInboundFormat(readString(in));
+        config.setOutboundFormat(readString(in));
+        config.setMode(readString(in));
+        config.setEndpoint(readString(in));
+        if (readBoolean(in)) {
+            config.setAuth(new MappingConfig.AuthConfig(readString(in), readString(in)));
+        }
+        if (readBoolean(in)) {
+            config.setNamespace(new MappingConfig.NamespaceConfig(readString(in), readString(in), readString(in)));
+        }
+        config.setRootElementName(readString(in));
+        config.setStreaming(readBoolean(in));
+        if (readBoolean(in)) {
+            String cipher = readString(in);
+            String compression = readString(in);
+            int level = in.getInt();
+            byte integrity = in.get();
+            config.setPgp(new MappingConfig.PgpConfig(cipher, compression, level != Integer.MIN_VALUE ? level : null,
+                integrity >= 0 ? integrity == 1 : null));
+        }
+        if (readBoolean(in)) {
+            config.setDecryption(new MappingConfig.DecryptionConfig(readString(in), readString(in)));
+        }
+        if (readBoolean(in)) {
+            config.setMappings(new MappingConfig.Mappings(readFieldMappings(in), readFieldMappings(in)));
+        }
+        config.setValueMaps(readValueMaps(in));
+        return config;
+    }
+
+    /**
+     * Value maps of a route: each is the name of a table file or an inline table
+     */
+    private static void writeValueMaps(Map<String, Object> valueMaps, DataOutputStream out) throws IOException {
+        if (valueMaps == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(valueMaps.size());
+        for (Map.Entry<String, Object> entry : new TreeMap<>(valueMaps).entrySet()) {
+            writeString(entry.getKey(), out);
+            Object table = entry.getValue();
+            out.writeBoolean(table instanceof Map);
+            if (table instanceof Map) {
+                Map<String, String> entries = new LinkedHashMap<>();
+                ((Map<?, ?>) table).forEach((key, value) -> entries.put(String.valueOf(key), String.valueOf(value)));
+                writeTable(entries, out);
+            } else {
+                writeString(table != null ? table.toString() : null, out);
+            }
+        }
+    }
+
+    private static Map<String, Object> readValueMaps(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        Map<String, Object> valueMaps = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            valueMaps.put(name, readBoolean(in) ? readTable(in) : readString(in));
+        }
+        return valueMaps;
+    }
+
+    private static void writeTable(Map<String, String> entries, DataOutputStream out) throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            writeString(entry.getKey(), out);
+            writeString(entry.getValue(), out);
+        }
+    }
+
+    private static Map<String, String> readTable(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            entries.put(readString(in), readString(in));
+        }
+        return entries;
+    }
+
+    private static void writeFieldMappings(List<MappingConfig.FieldMapping> mappings, DataOutputStream out)
+            throws IOException {
+        if (mappings == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(mappings.size());
+        for (MappingConfig.FieldMapping mapping : mappings) {
+            out.writeBoolean(mapping != null);
+            if (mapping != null) {
+                writeString(mapping.getFrom(), out);
+                writeString(mapping.getTo(), out);
+                writeString(mapping.getTransform(), out);
+                writeString(mapping.getDefaultValue(), out);
+                writeFieldMappings(mapping.getMappings(), out);
+            }
+        }
+    }
+
+    private static List<MappingConfig.FieldMapping> readFieldMappings(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        List<MappingConfig.FieldMapping> mappings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (!readBoolean(in)) {
+                mappings.add(null);
+                continue;
+            }
+            mappings.add(new MappingConfig.FieldMapping(readString(in), readString(in), readString(in),
+                readString(in), readFieldMappings(in)));
+        }
+        return mappings;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(ByteBuffer file, int offset, int length) {
+        byte[] bytes = new byte[length];
+        file.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean readBoolean(ByteBuffer in) {
+        return in.get() != 0;
+    }
+}
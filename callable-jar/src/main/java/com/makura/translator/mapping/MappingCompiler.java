@@ -0,0 +1,374 @@
+package com.makura.translator.mapping;
+
+import com.makura.translator.TranslationOptions;
+import com.makura.translator.encryption.PgpProfile;
+import com.makura.translator.mapping.expression.Expression;
+import com.makura.translator.mapping.expression.ExpressionParser;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Namespace;
+import org.dom4j.QName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a loaded {@link MappingConfig} into an immutable {@link CompiledMapping}.
+ * All interpretation of the mapping file (prefix stripping, path splitting, namespace
+ * inheritance, transform selection) happens here, once per route.
+ */
+public class MappingCompiler {
+
+    private static final String DEFAULT_ROOT_ELEMENT = "Document";
+    private static final String DEFAULT_RESPONSE_ROOT_ELEMENT = "Response";
+    private static final String REPEAT_SUFFIX = "[*]";
+    private static final List<String> STREAMING_FORMATS = List.of("JSON", "XML", "PROPRIETARY_XML", "SOAP");
+
+    /**
+     * Compile a mapping configuration into an execution plan (value maps must be declared inline)
+     */
+    public CompiledMapping compile(MappingConfig config) throws MappingCompileException {
+        return compile(config, null);
+    }
+
+    /**
+     * Compile a mapping configuration into an execution plan
+     *
+     * @param valueMapFiles Loads the table files value maps refer to by name (null if there are none)
+     */
+    public CompiledMapping compile(MappingConfig config, ValueMapSource valueMapFiles) throws MappingCompileException {
+        Map<String, ValueMap> valueMaps = compileValueMaps(config, valueMapFiles);
+
+        // Determine root element name (default to "Document" if not specified)
+        String rootElementName = config.getRootElementName() != null
+            ? config.getRootElementName()
+            : DEFAULT_ROOT_ELEMENT;
+
+        Namespace namespace = Namespace.NO_NAMESPACE;
+        Namespace rootPrefixNamespace = null;
+        QName rootQName;
+        OutputTree.Builder requestTree;
+
+        // Check if namespace is configured
+        MappingConfig.NamespaceConfig namespaceConfig = config.getNamespace();
+        if (namespaceConfig != null && namespaceConfig.getUri() != null) {
+            String namespaceUri = namespaceConfig.getUri();
+            String namespacePrefix = namespaceConfig.getPrefix() != null
+                ? namespaceConfig.getPrefix()
+                : ""; // Default namespace if prefix not specified
+
+            namespace = Namespace.get(namespacePrefix, namespaceUri);
+            rootQName = DocumentHelper.createQName(rootElementName, namespace);
+
+            // If rootElementPrefix is specified and different from namespace prefix, add it as additional namespace
+            String rootElementPrefix = namespaceConfig.getRootElementPrefix();
+            if (rootElementPrefix != null && !rootElementPrefix.isEmpty() && !rootElementPrefix.equals(namespacePrefix)) {
+                rootPrefixNamespace = Namespace.get(rootElementPrefix, namespaceUri);
+            }
+
+            if (rootPrefixNamespace == null) {
+                requestTree = new OutputTree.Builder(rootQName.getQualifiedName(),
+                    new String[][] {{namespacePrefix, namespaceUri}}, false);
+            } else if (namespacePrefix.isEmpty()) {
+                // Root written as <rootElementPrefix:Root xmlns:rootElementPrefix="uri">, children unqualified
+                requestTree = new OutputTree.Builder(rootElementPrefix + ":" + rootElementName,
+                    new String[][] {{rootElementPrefix, namespaceUri}}, true);
+            } else {
+                // Prefixed namespace: the root prefix is only declared in addition
+                requestTree = new OutputTree.Builder(rootQName.getQualifiedName(),
+                    new String[][] {{namespacePrefix, namespaceUri}, {rootElementPrefix, namespaceUri}}, true);
+            }
+        } else {
+            rootQName = DocumentHelper.createQName(rootElementName);
+            requestTree = new OutputTree.Builder(rootElementName, new String[0][], false);
+        }
+
+        List<MappingConfig.FieldMapping> request = config.getMappings() != null && config.getMappings().getRequest() != null
+            ? config.getMappings().getRequest()
+            : Collections.emptyList();
+        List<MappingConfig.FieldMapping> response = config.getMappings() != null && config.getMappings().getResponse() != null
+            ? config.getMappings().getResponse()
+            : Collections.emptyList();
+
+        List<CompiledMapping.FieldPlan> requestPlans = new ArrayList<>(request.size());
+        for (MappingConfig.FieldMapping mapping : request) {
+            requestPlans.add(isRepeat(mapping)
+                ? compileRepeat(mapping, rootQName.getName(), namespace, requestTree, valueMaps)
+                : compileRequestMapping(mapping, rootQName.getName(), namespace, requestTree, valueMaps));
+        }
+
+        String responseRootName = responseRootName(response);
+        OutputTree.Builder responseTree = new OutputTree.Builder(responseRootName, new String[0][], false);
+        List<CompiledMapping.FieldPlan> responsePlans = new ArrayList<>(response.size());
+        for (MappingConfig.FieldMapping mapping : response) {
+            if (isRepeat(mapping)) {
+                throw new MappingCompileException("Repeating blocks are only supported in request mappings: " + mapping.getFrom(), null);
+            }
+            responsePlans.add(compileResponseMapping(mapping, responseRootName, responseTree, valueMaps));
+        }
+
+        OutputTree builtRequestTree = requestTree.build();
+        if (config.isStreaming()) {
+            validateStreaming(config, requestPlans, builtRequestTree);
+        }
+
+        try {
+            return new CompiledMapping(config, rootQName, rootPrefixNamespace, responseRootName, requestPlans, responsePlans,
+                builtRequestTree, responseTree.build(), compilePgpProfile(config.getPgp()),
+                compileDecryption(config.getDecryption()));
+        } catch (IllegalArgumentException e) {
+            throw new MappingCompileException(e.getMessage(), e);
+        }
+    }
+
+    private static boolean isRepeat(MappingConfig.FieldMapping mapping) {
+        return mapping.getMappings() != null || (mapping.getFrom() != null && mapping.getFrom().endsWith(REPEAT_SUFFIX));
+    }
+
+    /**
+     * Compile a repeating block ("from: source.Stmt.Ntry[*]" with per-item "mappings"). Item mappings,
+     * including nested blocks, are compiled against the item so each item only runs its own plans.
+     */
+    private CompiledMapping.FieldPlan compileRepeat(MappingConfig.FieldMapping mapping, String rootName, Namespace namespace,
+                                                    OutputTree.Builder tree, Map<String, ValueMap> valueMaps)
+            throws MappingCompileException {
+        String from = mapping.getFrom();
+        if (from == null || !from.endsWith(REPEAT_SUFFIX) || from.startsWith("constant:")) {
+            throw new MappingCompileException("Repeating block source must be a path ending with " + REPEAT_SUFFIX + ": " + from, null);
+        }
+        if (mapping.getTo() == null) {
+            throw new MappingCompileException("Repeating block has no target path: " + from, null);
+        }
+        try {
+            TargetPath targetPath = TargetPath.compileRepeat(mapping.getTo(), rootName, namespace, tree);
+            QName itemQName = targetPath.getLastQName();
+            // Items are written inside the route's document, so the namespace is already declared
+            OutputTree.Builder itemTree = new OutputTree.Builder(itemQName.getQualifiedName(), new String[0][], false);
+            List<MappingConfig.FieldMapping> items = mapping.getMappings() != null
+                ? mapping.getMappings()
+                : Collections.emptyList();
+            List<CompiledMapping.FieldPlan> itemPlans = new ArrayList<>(items.size());
+            for (MappingConfig.FieldMapping item : items) {
+                itemPlans.add(isRepeat(item)
+                    ? compileRepeat(item, itemQName.getName(), namespace, itemTree, valueMaps)
+                    : compileRequestMapping(item, itemQName.getName(), namespace, itemTree, valueMaps));
+            }
+            SourcePath sourcePath = SourcePath.dotted(from.substring(0, from.length() - REPEAT_SUFFIX.length()));
+            OutputTree builtItemTree = itemTree.build();
+            tree.include(builtItemTree);
+            CompiledMapping.RepeatPlan repeat = new CompiledMapping.RepeatPlan(builtItemTree, itemPlans);
+            return new CompiledMapping.FieldPlan(from, null, sourcePath, targetPath, null, null, null, repeat);
+        } catch (IllegalArgumentException e) {
+            throw new MappingCompileException("Invalid repeating block " + from + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * PGP profile of the route's pgp section (null if there is none)
+     */
+    private PgpProfile compilePgpProfile(MappingConfig.PgpConfig pgp) throws MappingCompileException {
+        if (pgp == null) {
+            return null;
+        }
+        try {
+            return PgpProfile.builder()
+                .cipher(pgp.getCipher() != null ? PgpProfile.Cipher.valueOf(pgp.getCipher().toUpperCase()) : null)
+                .compression(pgp.getCompression() != null ? PgpProfile.Compression.valueOf(pgp.getCompression().toUpperCase()) : null)
+                .compressionLevel(pgp.getCompressionLevel())
+                .integrityPacket(pgp.getIntegrityPacket())
+                .build();
+        } catch (IllegalArgumentException e) {
+            throw new MappingCompileException("Invalid pgp section (cipher AES_128/AES_256/CAST5, compression NONE/ZIP/ZLIB, "
+                + "compressionLevel 0-9): " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encryption of the route's requests (null if they arrive in clear)
+     */
+    private TranslationOptions.EncryptionType compileDecryption(MappingConfig.DecryptionConfig decryption)
+            throws MappingCompileException {
+        if (decryption == null) {
+            return null;
+        }
+        if (decryption.getKeyRef() == null || decryption.getKeyRef().isBlank()) {
+            throw new MappingCompileException("Decryption requires a keyRef", null);
+        }
+        try {
+            return TranslationOptions.EncryptionType.valueOf(String.valueOf(decryption.getType()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new MappingCompileException("Invalid decryption type (AES, AES_GCM or PGP): " + decryption.getType(), e);
+        }
+    }
+
+    /**
+     * Streaming routes write the document around a single repeating block, one item at a time
+     */
+    private void validateStreaming(MappingConfig config, List<CompiledMapping.FieldPlan> requestPlans,
+                                   OutputTree requestTree) throws MappingCompileException {
+        String format = config.getInboundFormat() != null ? config.getInboundFormat().toUpperCase() : null;
+        if (!STREAMING_FORMATS.contains(format)) {
+            throw new MappingCompileException("Streaming is not supported for inbound format: " + config.getInboundFormat(), null);
+        }
+        List<CompiledMapping.FieldPlan> blocks = requestPlans.stream().filter(CompiledMapping.FieldPlan::isRepeat).toList();
+        if (blocks.size() != 1) {
+            throw new MappingCompileException("Streaming routes must declare exactly one repeating block, found " + blocks.size(), null);
+        }
+        if (!requestTree.isStreamable()) {
+            throw new MappingCompileException("Streaming routes cannot give a value to an element that also has child elements", null);
+        }
+    }
+
+    private CompiledMapping.FieldPlan compileRequestMapping(MappingConfig.FieldMapping mapping, String rootName, Namespace namespace,
+                                                            OutputTree.Builder tree, Map<String, ValueMap> valueMaps)
+            throws MappingCompileException {
+        String from = mapping.getFrom();
+        String constantValue = null;
+        SourcePath sourcePath = null;
+        if (from != null) {
+            // Check for constant value syntax: "constant:value"
+            if (from.startsWith("constant:")) {
+                constantValue = from.substring(9);
+            } else {
+                sourcePath = SourcePath.dotted(from);
+            }
+        }
+        TargetPath targetPath = mapping.getTo() != null ? compileTarget(mapping.getTo(), rootName, namespace, tree) : null;
+        Expression transform = bindTransform(mapping.getTransform(), valueMaps);
+        markConstant(constantValue, transform, targetPath, tree);
+        return new CompiledMapping.FieldPlan(from, constantValue, sourcePath, targetPath, null,
+            transform, mapping.getDefaultValue());
+    }
+
+    private CompiledMapping.FieldPlan compileResponseMapping(MappingConfig.FieldMapping mapping, String responseRootName,
+                                                             OutputTree.Builder tree, Map<String, ValueMap> valueMaps)
+            throws MappingCompileException {
+        String from = mapping.getFrom();
+        String constantValue = from != null && from.startsWith("constant:") ? from.substring(9) : null;
+        // Response sources are always target document paths; constants are only honoured for XML output
+        SourcePath sourcePath = from != null ? SourcePath.slashed(from) : null;
+        String to = mapping.getTo();
+        TargetPath targetPath = to != null ? TargetPath.compile(to, responseRootName, Namespace.NO_NAMESPACE, tree) : null;
+        String[] jsonPath = to != null ? to.split("\\.") : null;
+        Expression transform = bindTransform(mapping.getTransform(), valueMaps);
+        markConstant(constantValue, transform, targetPath, tree);
+        return new CompiledMapping.FieldPlan(from, constantValue, sourcePath, targetPath, jsonPath,
+            transform, mapping.getDefaultValue());
+    }
+
+    /**
+     * A constant without a transform writes the same text in every message
+     */
+    private static void markConstant(String constantValue, Expression transform, TargetPath targetPath,
+                                     OutputTree.Builder tree) {
+        if (constantValue != null && transform == null && targetPath != null && targetPath.setsLeafText()) {
+            tree.markConstant(targetPath.lastNode(), constantValue);
+        }
+    }
+
+    private TargetPath compileTarget(String to, String rootName, Namespace namespace, OutputTree.Builder tree)
+            throws MappingCompileException {
+        try {
+            return TargetPath.compile(to, rootName, namespace, tree);
+        } catch (IllegalArgumentException e) {
+            // Only raised for paths that collide with a repeating block
+            throw new MappingCompileException("Invalid target path " + to + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Expression bindTransform(String transform, Map<String, ValueMap> valueMaps) throws MappingCompileException {
+        if (transform == null || transform.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return ExpressionParser.parse(transform, valueMaps);
+        } catch (ExpressionParser.ExpressionException e) {
+            throw new MappingCompileException("Invalid transform: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compile the route's lookup tables: inline maps directly, names of table files through the source
+     * (which shares one instance between the routes using a file)
+     */
+    private Map<String, ValueMap> compileValueMaps(MappingConfig config, ValueMapSource valueMapFiles)
+            throws MappingCompileException {
+        if (config.getValueMaps() == null || config.getValueMaps().isEmpty()) {
+            return Map.of();
+        }
+        Map<String, ValueMap> valueMaps = new HashMap<>();
+        for (Map.Entry<String, Object> entry : config.getValueMaps().entrySet()) {
+            String name = entry.getKey();
+            Object table = entry.getValue();
+            if (table instanceof String) {
+                if (valueMapFiles == null) {
+                    throw new MappingCompileException("Value map '" + name + "' refers to table file '" + table
+                        + "', but no table files are available", null);
+                }
+                valueMaps.put(name, valueMapFiles.load((String) table));
+            } else if (table instanceof Map) {
+                valueMaps.put(name, ValueMap.of(toEntries(name, (Map<?, ?>) table)));
+            } else {
+                throw new MappingCompileException("Value map '" + name + "' must be a map of values or the name of a table file", null);
+            }
+        }
+        return valueMaps;
+    }
+
+    /**
+     * Entries of a table as strings (YAML reads unquoted numbers and booleans as such)
+     */
+    static Map<String, String> toEntries(String name, Map<?, ?> table) throws MappingCompileException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : table.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null || entry.getValue() instanceof Map
+                    || entry.getValue() instanceof List) {
+                throw new MappingCompileException("Value map '" + name + "' has an invalid entry for key '" + entry.getKey()
+                    + "': keys and values must be plain values", null);
+            }
+            entries.put(entry.getKey().toString(), entry.getValue().toString());
+        }
+        return entries;
+    }
+
+    /**
+     * Determine root element name for XML responses from the first mapping's target path
+     * (e.g. "source.TSQuerySingleResponse.SessionID" gives "TSQuerySingleResponse")
+     */
+    private String responseRootName(List<MappingConfig.FieldMapping> response) {
+        if (!response.isEmpty()) {
+            String firstTargetPath = response.get(0).getTo();
+            if (firstTargetPath != null && firstTargetPath.startsWith("source.")) {
+                String[] parts = firstTargetPath.substring(7).split("\\.");
+                if (parts.length > 0) {
+                    return parts[0];
+                }
+            }
+        }
+        return DEFAULT_RESPONSE_ROOT_ELEMENT;
+    }
+
+    /**
+     * Loads the lookup table files that value maps refer to by name.
+     */
+    @FunctionalInterface
+    public interface ValueMapSource {
+        /**
+         * @param name Table file name as written in the mapping file
+         * @throws MappingCompileException if the file does not exist or is not a valid table
+         */
+        ValueMap load(String name) throws MappingCompileException;
+    }
+
+    /**
+     * Raised when a mapping configuration cannot be compiled (e.g. a malformed transform).
+     */
+    public static class MappingCompileException extends Exception {
+        public MappingCompileException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
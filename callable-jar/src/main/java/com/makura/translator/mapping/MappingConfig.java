@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -18,7 +19,11 @@ public class MappingConfig {
     private AuthConfig auth;
     private NamespaceConfig namespace; // Optional namespace configuration for XML output
     private String rootElementName; // Optional root element name (defaults to "Document" if not specified)
+    private boolean streaming; // Translate one repeating block item at a time (see FieldMapping.mappings)
     private Mappings mappings;
+    private Map<String, Object> valueMaps; // Lookup tables by name: an inline key/value map, or the name of a table file in valueMaps/
+    private PgpConfig pgp; // Optional PGP profile for routes encrypted with PGP (defaults to AES-256, no compression)
+    private DecryptionConfig decryption; // Optional: requests arrive encrypted and are decrypted before parsing
     
     @Data
     @NoArgsConstructor
@@ -29,6 +34,24 @@ public class MappingConfig {
         private String rootElementPrefix; // Prefix to use on root element in output (optional)
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DecryptionConfig {
+        private String type; // AES, AES_GCM or PGP
+        private String keyRef; // Key in keys/aes/<keyRef>.key or keys/pgp/<keyRef>_private.asc
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PgpConfig {
+        private String cipher; // AES_128, AES_256 (default) or CAST5
+        private String compression; // NONE (default), ZIP or ZLIB
+        private Integer compressionLevel; // Deflate level 0-9 for ZIP/ZLIB (optional)
+        private Boolean integrityPacket; // Append a modification detection code (default true)
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -53,6 +76,7 @@ public class MappingConfig {
         private String to;
         private String transform; // Optional transformation function
         private String defaultValue; // Optional default value if source is null
+        private List<FieldMapping> mappings; // Per-item mappings of a repeating block ("from" ends with [*]), paths relative to the item
     }
 }
 
@@ -1,149 +1,340 @@
 package com.makura.translator.mapping;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.makura.translator.parser.InputParser;
+import com.makura.translator.parser.SoapBodyReader;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
-import org.dom4j.Namespace;
-import org.dom4j.QName;
-import org.dom4j.io.OutputFormat;
-import org.dom4j.io.XMLWriter;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Core mapping engine that applies YAML mappings to transform messages
+ * Core mapping engine that applies YAML mappings to transform messages.
+ * Runs {@link CompiledMapping} plans produced by {@link MappingCompiler}; XML output is
+ * collected into the plan's {@link OutputTree} and written by {@link XmlOutputWriter}.
  */
 public class MappingEngine {
 
+    // Writes JSON responses into caller-owned streams without closing them
+    private static final ObjectWriter JSON_STREAM_WRITER =
+        InputParser.OBJECT_MAPPER.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
     private final InputParser inputParser;
+    private final MappingCompiler compiler;
 
     public MappingEngine() {
         this.inputParser = new InputParser();
+        this.compiler = new MappingCompiler();
     }
 
     /**
-     * Transform inbound message to target format XML using mapping config
+     * Transform inbound message to target format XML using mapping config.
+     * Compiles the config on every call; prefer {@link #transformToTarget(String, CompiledMapping)}.
      */
     public String transformToTarget(String inboundContent, MappingConfig mappingConfig) throws MappingException {
+        return transformToTarget(inboundContent, compile(mappingConfig));
+    }
+
+    /**
+     * Transform inbound message to target format XML using a compiled mapping plan
+     */
+    public String transformToTarget(String inboundContent, CompiledMapping mapping) throws MappingException {
         try {
+            if (mapping.isStreaming()) {
+                StringWriter out = new StringWriter();
+                new StreamingTranslation(mapping, XmlOutputWriter.newWriter(out)).run(inboundContent);
+                return out.toString();
+            }
+
             // Parse inbound content
-            Object parsedInput = inputParser.parse(inboundContent, mappingConfig.getInboundFormat());
-            
-            // Create XML document with optional namespace from config
-            Document targetDocument = createXmlDocument(mappingConfig);
+            Object parsedInput = parseInbound(inboundContent, mapping);
             
-            // Apply request mappings
-            if (mappingConfig.getMappings() != null && mappingConfig.getMappings().getRequest() != null) {
-                applyMappings(parsedInput, targetDocument, mappingConfig.getMappings().getRequest());
+            OutputTree tree = mapping.getRequestTree();
+            if (tree.isStreamable()) {
+                OutputTree.Content content = tree.newContent();
+                applyMappings(parsedInput, content, null, mapping.getRequestMappings());
+                return XmlOutputWriter.toString(content);
             }
             
-            // Convert document to XML string
-            return documentToString(targetDocument, mappingConfig);
+            // Mixed content: build the document with dom4j
+            Document targetDocument = createXmlDocument(mapping);
+            applyMappings(parsedInput, null, targetDocument.getRootElement(), mapping.getRequestMappings());
+            return XmlOutputWriter.toString(tree, targetDocument);
         } catch (InputParser.ParseException e) {
             throw new MappingException("Failed to parse inbound content", e);
         } catch (Exception e) {
             throw new MappingException("Failed to transform to target format", e);
         }
     }
-    
+
     /**
-     * Create XML document with optional namespace from config
+     * Transform inbound message to target format XML, writing UTF-8 directly into the stream
      */
-    private Document createXmlDocument(MappingConfig mappingConfig) {
-        Document document = DocumentHelper.createDocument();
-        
-        // Determine root element name (default to "Document" if not specified)
-        String rootElementName = mappingConfig.getRootElementName() != null 
-            ? mappingConfig.getRootElementName() 
-            : "Document";
-        
-        // Check if namespace is configured
-        if (mappingConfig.getNamespace() != null && mappingConfig.getNamespace().getUri() != null) {
-            String namespaceUri = mappingConfig.getNamespace().getUri();
-            String namespacePrefix = mappingConfig.getNamespace().getPrefix() != null 
-                ? mappingConfig.getNamespace().getPrefix() 
-                : ""; // Default namespace if prefix not specified
-            
-            Namespace ns = Namespace.get(namespacePrefix, namespaceUri);
-            QName rootQName = DocumentHelper.createQName(rootElementName, ns);
-            org.dom4j.Element root = document.addElement(rootQName);
-            
-            // If rootElementPrefix is specified and different from namespace prefix, add it as additional namespace
-            String rootElementPrefix = mappingConfig.getNamespace().getRootElementPrefix();
-            if (rootElementPrefix != null && !rootElementPrefix.equals(namespacePrefix)) {
-                root.add(Namespace.get(rootElementPrefix, namespaceUri));
+    public void transformToTarget(String inboundContent, CompiledMapping mapping, OutputStream out) throws MappingException {
+        try {
+            if (mapping.isStreaming()) {
+                new StreamingTranslation(mapping, XmlOutputWriter.newWriter(out)).run(inboundContent);
+                return;
             }
+            writeTarget(parseInbound(inboundContent, mapping), mapping, out);
+        } catch (InputParser.ParseException e) {
+            throw new MappingException("Failed to parse inbound content", e);
+        } catch (XMLStreamException e) {
+            throw new MappingException("Failed to write target document", e);
+        } catch (Exception e) {
+            throw new MappingException("Failed to transform to target format", e);
+        }
+    }
+
+    /**
+     * Transform an encoded inbound message (JSON, XML or SOAP bytes) to target format XML,
+     * writing UTF-8 directly into the stream. Neither stream is closed.
+     */
+    public void transformToTarget(InputStream inboundContent, CompiledMapping mapping, OutputStream out) throws MappingException {
+        try {
+            if (mapping.isStreaming()) {
+                // Items are read, mapped and written one at a time: memory does not grow with the message
+                new StreamingTranslation(mapping, XmlOutputWriter.newWriter(out)).run(inboundContent);
+                return;
+            }
+            writeTarget(parseInbound(inboundContent, mapping), mapping, out);
+        } catch (InputParser.ParseException e) {
+            throw new MappingException("Failed to parse inbound content", e);
+        } catch (XMLStreamException e) {
+            throw new MappingException("Failed to write target document", e);
+        } catch (Exception e) {
+            throw new MappingException("Failed to transform to target format", e);
+        }
+    }
+
+    private void writeTarget(Object parsedInput, CompiledMapping mapping, OutputStream out) throws XMLStreamException {
+        OutputTree tree = mapping.getRequestTree();
+        if (tree.isStreamable()) {
+            OutputTree.Content content = tree.newContent();
+            applyMappings(parsedInput, content, null, mapping.getRequestMappings());
+            XmlOutputWriter.write(content, out);
         } else {
-            // No namespace - create simple root element
-            document.addElement(rootElementName);
+            Document targetDocument = createXmlDocument(mapping);
+            applyMappings(parsedInput, null, targetDocument.getRootElement(), mapping.getRequestMappings());
+            XmlOutputWriter.write(tree, targetDocument, out);
+        }
+    }
+    
+    /**
+     * Parse inbound content into the source the mappings read from.
+     * JSON, XML and SOAP payloads are read in one pass into only the fields the route uses.
+     */
+    private Object parseInbound(String inboundContent, CompiledMapping mapping) throws InputParser.ParseException {
+        return parseInbound(inboundContent, mapping, null);
+    }
+
+    /**
+     * Parse inbound content, passing the items of repeating blocks to the handler (streaming routes only)
+     */
+    private Object parseInbound(String inboundContent, CompiledMapping mapping, SourceFields.ItemHandler items)
+            throws InputParser.ParseException {
+        String format = mapping.getInboundFormat();
+        if ("JSON".equalsIgnoreCase(format)) {
+            return mapping.getRequestSourceFields().extractJson(inboundContent, items);
+        }
+        if ("XML".equalsIgnoreCase(format) || "PROPRIETARY_XML".equalsIgnoreCase(format)) {
+            return mapping.getRequestSourceFields().extractXml(inboundContent, items);
+        }
+        if ("SOAP".equalsIgnoreCase(format)) {
+            XMLStreamReader payload = SoapBodyReader.openPayload(inboundContent);
+            if (payload != null) {
+                return readSoapPayload(payload, mapping, items);
+            }
+            if (items != null) {
+                throw new InputParser.ParseException("Streaming routes require a plain SOAP 1.1 envelope");
+            }
+            return inputParser.parseSoapMessage(inboundContent);
+        }
+        return inputParser.parse(inboundContent, mapping.getInboundFormat());
+    }
+
+    /**
+     * Parse encoded inbound content. JSON and XML are streamed; SOAP is buffered so that
+     * envelopes the fast path does not handle can be re-read by SAAJ.
+     */
+    private Object parseInbound(InputStream inboundContent, CompiledMapping mapping) throws InputParser.ParseException, IOException {
+        return parseInbound(inboundContent, mapping, null);
+    }
+
+    /**
+     * Parse encoded inbound content, passing the items of repeating blocks to the handler.
+     * With a handler SOAP is streamed too, so only plain envelopes are accepted.
+     */
+    private Object parseInbound(InputStream inboundContent, CompiledMapping mapping, SourceFields.ItemHandler items)
+            throws InputParser.ParseException, IOException {
+        String format = mapping.getInboundFormat();
+        if ("JSON".equalsIgnoreCase(format)) {
+            return mapping.getRequestSourceFields().extractJson(inboundContent, items);
+        }
+        if ("XML".equalsIgnoreCase(format) || "PROPRIETARY_XML".equalsIgnoreCase(format)) {
+            return mapping.getRequestSourceFields().extractXml(inboundContent, items);
+        }
+        if ("SOAP".equalsIgnoreCase(format) && items != null) {
+            XMLStreamReader payload = SoapBodyReader.openPayload(inboundContent);
+            if (payload == null) {
+                throw new InputParser.ParseException("Streaming routes require a plain SOAP 1.1 envelope");
+            }
+            return readSoapPayload(payload, mapping, items);
+        }
+        byte[] content = inboundContent.readAllBytes();
+        if ("SOAP".equalsIgnoreCase(format)) {
+            XMLStreamReader payload = SoapBodyReader.openPayload(content);
+            return payload != null ? readSoapPayload(payload, mapping, null) : inputParser.parseSoapMessage(content);
+        }
+        return inputParser.parse(new String(content, StandardCharsets.UTF_8), format);
+    }
+
+    private SourceFields.Values readSoapPayload(XMLStreamReader payload, CompiledMapping mapping,
+                                                SourceFields.ItemHandler items) throws InputParser.ParseException {
+        try {
+            SourceFields.Values values = mapping.getRequestSourceFields().extractXml(payload, items);
+            SoapBodyReader.finish(payload);
+            return values;
+        } catch (XMLStreamException e) {
+            throw new InputParser.ParseException("Failed to parse SOAP: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Create XML document with the root element (and optional namespaces) of the plan
+     */
+    private Document createXmlDocument(CompiledMapping mapping) {
+        Document document = DocumentHelper.createDocument();
+        org.dom4j.Element root = document.addElement(mapping.getRootQName());
+        if (mapping.getRootPrefixNamespace() != null) {
+            root.add(mapping.getRootPrefixNamespace());
         }
-        
         return document;
     }
 
     /**
-     * Transform target format XML response back to source format
+     * Transform target format XML response back to source format.
+     * Compiles the config on every call; prefer {@link #transformFromTarget(String, CompiledMapping, String)}.
      */
     public String transformFromTarget(String targetContent, MappingConfig mappingConfig, String targetFormat) throws MappingException {
+        return transformFromTarget(targetContent, compile(mappingConfig), targetFormat);
+    }
+
+    private CompiledMapping compile(MappingConfig mappingConfig) throws MappingException {
+        try {
+            return compiler.compile(mappingConfig);
+        } catch (MappingCompiler.MappingCompileException e) {
+            throw new MappingException("Failed to compile mapping: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Transform target format XML response back to source format using a compiled mapping plan
+     */
+    public String transformFromTarget(String targetContent, CompiledMapping mapping, String targetFormat) throws MappingException {
         try {
-            // Parse target format XML
-            Document targetDocument = inputParser.parseXml(targetContent);
+            // Read the mapped fields of the target format XML in one pass
+            SourceFields.Values targetFields = mapping.getResponseSourceFields().extractXml(targetContent);
             
             // Create source document based on format
             if ("JSON".equalsIgnoreCase(targetFormat)) {
-                return transformTargetToJson(targetDocument, mappingConfig);
+                return transformTargetToJson(targetFields, mapping.getResponseMappings());
             } else {
-                // For XML/SOAP, create XML structure
-                // Determine root element name from first mapping's target path
-                String rootElementName = "Response"; // Default
-                if (mappingConfig.getMappings() != null && mappingConfig.getMappings().getResponse() != null 
-                    && !mappingConfig.getMappings().getResponse().isEmpty()) {
-                    String firstTargetPath = mappingConfig.getMappings().getResponse().get(0).getTo();
-                    // Extract root element from path like "source.TSQuerySingleResponse.SessionID"
-                    if (firstTargetPath != null && firstTargetPath.startsWith("source.")) {
-                        String[] parts = firstTargetPath.substring(7).split("\\."); // Remove "source." prefix
-                        if (parts.length > 0) {
-                            rootElementName = parts[0]; // Use first part as root element
-                        }
-                    }
+                // For XML/SOAP, create XML structure rooted at the element named by the first response mapping
+                OutputTree tree = mapping.getResponseTree();
+                if (tree.isStreamable()) {
+                    OutputTree.Content content = tree.newContent();
+                    applyResponseMappings(targetFields, content, null, mapping.getResponseMappings());
+                    return XmlOutputWriter.toString(content);
                 }
-                Document sourceDocument = PathResolver.createDocument(rootElementName);
-                if (mappingConfig.getMappings() != null && mappingConfig.getMappings().getResponse() != null) {
-                    applyResponseMappings(targetDocument, sourceDocument, mappingConfig.getMappings().getResponse());
+                Document sourceDocument = PathResolver.createDocument(mapping.getResponseRootName());
+                applyResponseMappings(targetFields, null, sourceDocument.getRootElement(), mapping.getResponseMappings());
+                return XmlOutputWriter.toString(tree, sourceDocument);
+            }
+        } catch (InputParser.ParseException e) {
+            throw new MappingException("Failed to parse target content", e);
+        } catch (Exception e) {
+            throw new MappingException("Failed to transform from target format", e);
+        }
+    }
+
+    /**
+     * Transform an encoded target format XML response back to source format, writing UTF-8
+     * directly into the stream. Neither stream is closed.
+     */
+    public void transformFromTarget(InputStream targetContent, CompiledMapping mapping, String targetFormat,
+                                    OutputStream out) throws MappingException {
+        try {
+            SourceFields.Values targetFields = mapping.getResponseSourceFields().extractXml(targetContent);
+            
+            if ("JSON".equalsIgnoreCase(targetFormat)) {
+                JSON_STREAM_WRITER.writeValue(out, buildJsonMap(targetFields, mapping.getResponseMappings()));
+            } else {
+                OutputTree tree = mapping.getResponseTree();
+                if (tree.isStreamable()) {
+                    OutputTree.Content content = tree.newContent();
+                    applyResponseMappings(targetFields, content, null, mapping.getResponseMappings());
+                    XmlOutputWriter.write(content, out);
+                } else {
+                    Document sourceDocument = PathResolver.createDocument(mapping.getResponseRootName());
+                    applyResponseMappings(targetFields, null, sourceDocument.getRootElement(), mapping.getResponseMappings());
+                    XmlOutputWriter.write(tree, sourceDocument, out);
                 }
-                return documentToString(sourceDocument, mappingConfig);
             }
         } catch (InputParser.ParseException e) {
             throw new MappingException("Failed to parse target content", e);
+        } catch (XMLStreamException | IOException e) {
+            throw new MappingException("Failed to write source document", e);
         } catch (Exception e) {
             throw new MappingException("Failed to transform from target format", e);
         }
     }
 
-    private void applyMappings(Object source, Document target, List<MappingConfig.FieldMapping> mappings) {
-        for (MappingConfig.FieldMapping mapping : mappings) {
+    /**
+     * Apply request mappings into either streamed output content or below a dom4j element (exactly one is non-null)
+     */
+    private void applyMappings(Object source, OutputTree.Content content, org.dom4j.Element target,
+                               List<CompiledMapping.FieldPlan> mappings) {
+        for (CompiledMapping.FieldPlan mapping : mappings) {
+            if (mapping.isRepeat()) {
+                applyRepeat(mapping, source, content, target);
+                continue;
+            }
             try {
-                Object sourceValue = PathResolver.getValueFromSource(source, mapping.getFrom());
+                Object sourceValue = mapping.isConstant()
+                    ? mapping.getConstantValue()
+                    : mapping.getSourcePath() != null ? mapping.getSourcePath().resolve(source) : null;
                 
                 // Use default value if source is null
                 if (sourceValue == null && mapping.getDefaultValue() != null) {
                     sourceValue = mapping.getDefaultValue();
                 }
                 
+                if (mapping.getTargetPath() == null) {
+                    continue;
+                }
+                
                 // If there's a transformation, allow it to run even if sourceValue is null or a placeholder
                 // (transformations can use now() or other functions that don't need the source value)
                 // Pass source object so transformations can reference other fields using source.fieldPath syntax
-                if (mapping.getTransform() != null && !mapping.getTransform().trim().isEmpty()) {
+                if (mapping.hasTransform()) {
                     String valueStr = sourceValue != null ? sourceValue.toString() : null;
-                    String finalValue = TransformationEngine.applyTransformation(valueStr, mapping.getTransform(), source);
-                    PathResolver.setValueByPath(target, mapping.getTo(), finalValue);
+                    String finalValue = mapping.getTransform().evaluate(valueStr, source);
+                    setValue(mapping.getTargetPath(), content, target, finalValue);
                 } else if (sourceValue != null) {
                     // No transformation, use source value directly
-                    String finalValue = sourceValue.toString();
-                    PathResolver.setValueByPath(target, mapping.getTo(), finalValue);
+                    setValue(mapping.getTargetPath(), content, target, sourceValue.toString());
                 }
                 // Silently skip null values - they may be optional fields
             } catch (Exception e) {
@@ -153,35 +344,57 @@ public class MappingEngine {
         }
     }
 
-    private void applyResponseMappings(Document source, Document target, List<MappingConfig.FieldMapping> mappings) {
-        for (MappingConfig.FieldMapping mapping : mappings) {
+    /**
+     * Add one element per item of a repeating block, each filled by the block's item mappings.
+     * Items come pre-read from extracted values; only parsed documents (SAAJ fallback) are walked.
+     */
+    private void applyRepeat(CompiledMapping.FieldPlan block, Object source, OutputTree.Content content,
+                             org.dom4j.Element target) {
+        CompiledMapping.RepeatPlan repeat = block.getRepeat();
+        TargetPath path = block.getTargetPath();
+        List<?> items = source instanceof SourceFields.Values
+            ? ((SourceFields.Values) source).getItems(block)
+            : block.getSourcePath().resolveItems(source);
+        if (items.isEmpty()) {
+            // Like an absent value, an empty block leaves no elements behind, not even its container
+            return;
+        }
+        if (content != null) {
+            content.touch(path.containerNode());
+            for (Object item : items) {
+                OutputTree.Content itemContent = repeat.getItemTree().newContent();
+                applyMappings(item, itemContent, null, repeat.getItemMappings());
+                content.addItem(path.lastNode(), itemContent);
+            }
+        } else {
+            org.dom4j.Element container = path.container(target);
+            for (Object item : items) {
+                applyMappings(item, null, container.addElement(path.getLastQName()), repeat.getItemMappings());
+            }
+        }
+    }
+
+    private void applyResponseMappings(SourceFields.Values source, OutputTree.Content content, org.dom4j.Element target,
+                                       List<CompiledMapping.FieldPlan> mappings) {
+        for (CompiledMapping.FieldPlan mapping : mappings) {
             try {
-                String sourceValue = null;
-                
                 // Handle constants and target paths differently
-                if (mapping.getFrom() != null && mapping.getFrom().startsWith("constant:")) {
-                    // Constant value - extract directly
-                    sourceValue = mapping.getFrom().substring(9);
-                } else if (mapping.getFrom() != null) {
-                    // Target path - use getValueByPath (handles target: prefix internally)
-                    sourceValue = PathResolver.getValueByPath(source, mapping.getFrom());
-                }
+                String sourceValue = mapping.isConstant()
+                    ? mapping.getConstantValue()
+                    : mapping.getSourcePath() != null ? (String) source.get(mapping.getSourcePath()) : null;
                 
                 // Use default value if source is null
                 if (sourceValue == null && mapping.getDefaultValue() != null) {
                     sourceValue = mapping.getDefaultValue();
                 }
                 
-                if (sourceValue != null) {
+                if (sourceValue != null && mapping.getTargetPath() != null) {
                     // Apply transformation if specified
-                    String finalValue;
-                    if (mapping.getTransform() != null && !mapping.getTransform().trim().isEmpty()) {
-                        finalValue = TransformationEngine.applyTransformation(sourceValue, mapping.getTransform(), source);
-                    } else {
-                        finalValue = sourceValue;
-                    }
+                    String finalValue = mapping.hasTransform()
+                        ? mapping.getTransform().evaluate(sourceValue, source)
+                        : sourceValue;
                     
-                    PathResolver.setValueByPath(target, mapping.getTo(), finalValue);
+                    setValue(mapping.getTargetPath(), content, target, finalValue);
                 }
             } catch (Exception e) {
                 // Log warning but continue with other mappings
@@ -189,44 +402,52 @@ public class MappingEngine {
         }
     }
 
-    private String transformTargetToJson(Document targetDocument, MappingConfig mappingConfig) {
-        if (mappingConfig.getMappings() == null || mappingConfig.getMappings().getResponse() == null) {
+    private void setValue(TargetPath path, OutputTree.Content content, org.dom4j.Element target, String value) {
+        if (content != null) {
+            path.setValue(content, value);
+        } else {
+            path.setValue(target, value);
+        }
+    }
+
+    private String transformTargetToJson(SourceFields.Values targetFields, List<CompiledMapping.FieldPlan> mappings) {
+        if (mappings.isEmpty()) {
+            return "{}";
+        }
+
+        try {
+            // Reuse static ObjectMapper instance for better performance
+            return InputParser.OBJECT_MAPPER.writeValueAsString(buildJsonMap(targetFields, mappings));
+        } catch (Exception e) {
             return "{}";
         }
+    }
 
+    private Map<String, Object> buildJsonMap(SourceFields.Values targetFields, List<CompiledMapping.FieldPlan> mappings) {
         Map<String, Object> jsonMap = new HashMap<>();
-        for (MappingConfig.FieldMapping mapping : mappingConfig.getMappings().getResponse()) {
-            String value = PathResolver.getValueByPath(targetDocument, mapping.getFrom());
+        for (CompiledMapping.FieldPlan mapping : mappings) {
+            // JSON output always reads target document paths (constants are not interpreted here)
+            String value = mapping.getSourcePath() != null ? (String) targetFields.get(mapping.getSourcePath()) : null;
             
             // Use default value if source is null
             if (value == null && mapping.getDefaultValue() != null) {
                 value = mapping.getDefaultValue();
             }
             
-            if (value != null) {
+            if (value != null && mapping.getJsonPath() != null) {
                 // Apply transformation if specified
-                String finalValue;
-                if (mapping.getTransform() != null && !mapping.getTransform().trim().isEmpty()) {
-                    finalValue = TransformationEngine.applyTransformation(value, mapping.getTransform(), targetDocument);
-                } else {
-                    finalValue = value;
-                }
+                String finalValue = mapping.hasTransform()
+                    ? mapping.getTransform().evaluate(value, targetFields)
+                    : value;
                 
-                setJsonValue(jsonMap, mapping.getTo(), finalValue);
+                setJsonValue(jsonMap, mapping.getJsonPath(), finalValue);
             }
         }
-
-        try {
-            // Reuse static ObjectMapper instance for better performance
-            return com.makura.translator.parser.InputParser.OBJECT_MAPPER.writeValueAsString(jsonMap);
-        } catch (Exception e) {
-            return "{}";
-        }
+        return jsonMap;
     }
 
     @SuppressWarnings("unchecked")
-    private void setJsonValue(Map<String, Object> map, String path, String value) {
-        String[] parts = path.split("\\.");
+    private void setJsonValue(Map<String, Object> map, String[] parts, String value) {
         Map<String, Object> current = map;
         
         for (int i = 0; i < parts.length - 1; i++) {
@@ -236,42 +457,98 @@ public class MappingEngine {
         current.put(parts[parts.length - 1], value);
     }
 
-    private String documentToString(Document document, MappingConfig mappingConfig) {
-        try {
-            StringWriter sw = new StringWriter();
-            // Use compact format instead of pretty print for better performance
-            OutputFormat format = OutputFormat.createCompactFormat();
-            format.setEncoding("UTF-8");
-            format.setSuppressDeclaration(false);
-            XMLWriter writer = new XMLWriter(sw, format);
-            writer.write(document);
-            writer.close();
-            String xml = sw.toString();
-            
-            // Post-process namespace prefix on root element if rootElementPrefix is specified
-            // Optimize string replacements by checking if namespace processing is needed
-            if (mappingConfig.getNamespace() != null 
-                && mappingConfig.getNamespace().getRootElementPrefix() != null
-                && mappingConfig.getNamespace().getUri() != null) {
-                String rootElementPrefix = mappingConfig.getNamespace().getRootElementPrefix();
-                String namespaceUri = mappingConfig.getNamespace().getUri();
-                
-                // Use StringBuilder for more efficient string manipulation
-                if (xml.contains("xmlns=\"" + namespaceUri + "\"")) {
-                    // Replace default namespace declaration with prefixed namespace on root
-                    xml = xml.replaceFirst("xmlns=\"" + java.util.regex.Pattern.quote(namespaceUri) + "\"", 
-                                          "xmlns:" + rootElementPrefix + "=\"" + namespaceUri + "\"");
-                }
-                // Replace root element tag with prefixed version (use compiled pattern for efficiency)
-                if (xml.contains("<Document")) {
-                    xml = xml.replaceFirst("<Document([^>]*)>", "<" + rootElementPrefix + ":Document$1>");
-                    xml = xml.replaceFirst("</Document>", "</" + rootElementPrefix + ":Document>");
+    /**
+     * One streamed request translation: the document is written around the route's repeating block,
+     * with each item mapped and written as soon as it has been read.
+     *
+     * Header mappings (outside the block) are applied when the first item is reached, so only source
+     * fields that precede the block are available to elements written before it (later values for those
+     * elements are dropped, keeping the document in mapping order). They are applied again
+     * after the last item, which fills elements that follow the block from fields read after it.
+     */
+    private final class StreamingTranslation implements SourceFields.ItemHandler {
+        private final CompiledMapping mapping;
+        private final XMLStreamWriter writer;
+        private final OutputTree.Content content;
+        private final int blockNode;
+        private boolean started;
+
+        private StreamingTranslation(CompiledMapping mapping, XMLStreamWriter writer) {
+            this.mapping = mapping;
+            this.writer = writer;
+            this.content = mapping.getRequestTree().newContent();
+            this.blockNode = mapping.getRequestMappings().stream()
+                .filter(CompiledMapping.FieldPlan::isRepeat)
+                .findFirst()
+                .map(plan -> plan.getTargetPath().lastNode())
+                .orElseThrow();
+        }
+
+        private void run(String inboundContent) throws InputParser.ParseException, XMLStreamException {
+            try {
+                finish(parseInbound(inboundContent, mapping, this));
+            } catch (WriteFailure e) {
+                throw e.getCause();
+            }
+        }
+
+        private void run(InputStream inboundContent) throws InputParser.ParseException, XMLStreamException, IOException {
+            try {
+                finish(parseInbound(inboundContent, mapping, this));
+            } catch (WriteFailure e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public void item(CompiledMapping.FieldPlan block, SourceFields.Values header, SourceFields.Values item) {
+            try {
+                if (!started) {
+                    start(header);
                 }
+                CompiledMapping.RepeatPlan repeat = block.getRepeat();
+                OutputTree.Content itemContent = repeat.getItemTree().newContent();
+                applyMappings(item, itemContent, null, repeat.getItemMappings());
+                XmlOutputWriter.writeElement(itemContent, writer);
+            } catch (XMLStreamException e) {
+                throw new WriteFailure(e);
+            }
+        }
+
+        private void start(SourceFields.Values header) throws XMLStreamException {
+            applyMappings(header, content, null, mapping.getRequestMappings());
+            content.touch(blockNode);
+            XmlOutputWriter.writeStart(content, blockNode, writer);
+            started = true;
+        }
+
+        /**
+         * Write the rest of the document once the whole message has been read
+         */
+        private void finish(Object header) throws XMLStreamException {
+            SourceFields.Values values = (SourceFields.Values) header;
+            applyMappings(values, content, null, mapping.getRequestMappings());
+            if (started) {
+                XmlOutputWriter.writeEnd(content, blockNode, writer);
+            } else {
+                // No items: the elements around the block are only written if the header fills them
+                XmlOutputWriter.write(content, writer);
+            }
+            writer.close();
+        }
+
+        /**
+         * Carries output errors out of the parser callback
+         */
+        private static final class WriteFailure extends RuntimeException {
+            private WriteFailure(XMLStreamException cause) {
+                super(cause);
+            }
+
+            @Override
+            public synchronized XMLStreamException getCause() {
+                return (XMLStreamException) super.getCause();
             }
-            
-            return xml;
-        } catch (Exception e) {
-            return document.asXML();
         }
     }
 
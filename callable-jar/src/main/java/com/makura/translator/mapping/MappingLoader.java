@@ -2,81 +2,570 @@ package com.makura.translator.mapping;
 
 import org.yaml.snakeyaml.Yaml;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * Loads YAML mapping configurations from filesystem.
  * Standalone implementation without Spring dependencies.
+ *
+ * Parsed and compiled mappings are cached per routeId. Each lookup checks the file's
+ * modification time and size, so edited files are picked up without a restart while
+ * unchanged files are never re-read. Cached configs are shared and must not be modified.
+ *
+ * With {@link #startWatching()} the directory is watched instead: changed files are recompiled in
+ * the background and swapped in atomically, and lookups never touch the filesystem.
+ *
+ * If the directory holds a {@link MappingBundle} ({@value MappingBundle#FILE_NAME}, built from the YAML
+ * files at build time), routes are loaded from the bundle only and YAML is never parsed; the bundle is
+ * memory-mapped and each route is decoded and compiled on first use. The cache keeps the most recently
+ * used routes, so with thousands of routes only the hot ones hold compiled plans on the heap.
+ *
+ * Value maps that name a table file are read from {@value #VALUE_MAPS_DIRECTORY}/&lt;name&gt;.yaml (or
+ * from the bundle) when a route using them is compiled, and compiled once for all routes using the
+ * file. A changed table file is picked up when those routes are next recompiled: right away in watch
+ * mode, where the watcher recompiles the routes using a table as soon as its file changes; otherwise when
+ * a route's own file changes or the route is loaded again after eviction.
+ *
+ * Concurrent lookups that miss the cache for the same route wait for one parse and compilation.
  */
 public class MappingLoader {
 
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    // A route used again within this time keeps its place in the eviction order (hits stay lock-free)
+    private static final long REORDER_INTERVAL_NANOS = 100_000_000L;
+
+    static final String MAPPING_FILE_SUFFIX = ".yaml";
+
+    /**
+     * Subdirectory of the mappings directory holding the value map table files routes share
+     */
+    public static final String VALUE_MAPS_DIRECTORY = "valueMaps";
+
+    private static final Pattern VALUE_MAP_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9_.-]*");
+
     private final String mappingsBasePath;
-    private final Yaml yaml;
+    private final MappingCompiler compiler;
+    private final int maxEntries;
+    private final Map<String, CachedMapping> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedMapping>> loading = new ConcurrentHashMap<>();
+    private final Object cacheWriteLock = new Object();
+    // Cached route ids, least recently used first (access order); guarded by cacheWriteLock. Ids of routes
+    // dropped from the cache by other means stay until they come up for eviction.
+    private final LinkedHashMap<String, Boolean> recency = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CachedValueMap> valueMaps = new ConcurrentHashMap<>();
+    private final Path bundlePath;
+    private volatile MappingBundle bundle;
+    private volatile MappingWatcher watcher;
 
     public MappingLoader(String mappingsBasePath) {
+        this(mappingsBasePath, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param mappingsBasePath Base path for YAML mapping files
+     * @param maxEntries Maximum number of routes kept in the cache
+     */
+    public MappingLoader(String mappingsBasePath, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
         this.mappingsBasePath = mappingsBasePath != null ? mappingsBasePath : "./mappings";
-        this.yaml = new Yaml();
+        this.compiler = new MappingCompiler();
+        this.maxEntries = maxEntries;
+        this.bundlePath = resolveBasePath().resolve(MappingBundle.FILE_NAME);
+        if (Files.isRegularFile(bundlePath)) {
+            try {
+                this.bundle = MappingBundle.open(bundlePath);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read mapping bundle " + bundlePath + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Whether routes are loaded from a precompiled bundle instead of YAML files
+     */
+    public boolean isBundled() {
+        return bundle != null;
     }
 
     /**
      * Load mapping configuration for a route
      */
     public MappingConfig loadMappingConfig(String routeId) throws MappingLoadException {
+        return load(routeId).getConfig();
+    }
+
+    /**
+     * Load the compiled execution plan for a route (compiled once per file version)
+     */
+    public CompiledMapping loadCompiledMapping(String routeId) throws MappingLoadException {
+        return load(routeId);
+    }
+
+    /**
+     * Drop the cached mapping for a route; the next lookup reloads it from disk
+     */
+    public void evict(String routeId) {
+        cache.remove(routeId);
+    }
+
+    /**
+     * Drop all cached mappings
+     */
+    public void evictAll() {
+        cache.clear();
+    }
+
+    /**
+     * Watch the mappings directory: every route file is compiled now, and files that are created,
+     * modified or deleted later are recompiled (or dropped) on a background thread. Each new plan
+     * replaces the old one atomically; translations already running finish on the plan they started with.
+     *
+     * @return The watcher (close it to go back to checking files on lookup)
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized MappingWatcher startWatching() throws IOException {
+        if (watcher == null) {
+            watcher = new MappingWatcher(this, resolveBasePath());
+            watcher.start();
+        }
+        return watcher;
+    }
+
+    /**
+     * Stop watching the mappings directory (no-op if not watching)
+     */
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Whether the mappings directory is being watched
+     */
+    public boolean isWatching() {
+        return watcher != null;
+    }
+
+    synchronized void watcherClosed(MappingWatcher closed) {
+        if (watcher == closed) {
+            watcher = null;
+        }
+    }
+
+    private CompiledMapping load(String routeId) throws MappingLoadException {
+        MappingWatcher activeWatcher = watcher;
+        if (activeWatcher == null) {
+            MappingBundle currentBundle = bundle;
+            return use(routeId, currentBundle != null ? loadFromBundle(currentBundle, routeId, false) : load(routeId, false));
+        }
+        // The watcher keeps cached plans current; a route not cached yet is compiled on its thread
+        CachedMapping cached = cache.get(routeId);
+        if (cached != null) {
+            return use(routeId, cached);
+        }
+        CompiledMapping compiled = activeWatcher.compile(routeId);
+        if (compiled == null) {
+            throw new MappingLoadException(notFoundMessage(routeId, resolveMappingPath(routeId)));
+        }
+        return compiled;
+    }
+
+    /**
+     * Re-read and recompile a route regardless of the cached file version
+     *
+     * @return The new plan, or null if the file no longer exists (the route is dropped from the cache)
+     */
+    CompiledMapping reload(String routeId) throws MappingLoadException {
+        MappingBundle currentBundle = bundle;
+        if (currentBundle != null) {
+            if (!currentBundle.contains(routeId)) {
+                cache.remove(routeId);
+                return null;
+            }
+            return loadFromBundle(currentBundle, routeId, true).compiled;
+        }
+        if (!Files.exists(resolveMappingPath(routeId))) {
+            cache.remove(routeId);
+            return null;
+        }
+        return load(routeId, true).compiled;
+    }
+
+    /**
+     * Re-read the bundle file and recompile the cached routes from it before swapping it in.
+     * If the file is gone, routes are loaded from YAML files again.
+     */
+    void reloadBundle() throws MappingLoadException {
+        if (!Files.isRegularFile(bundlePath)) {
+            if (bundle != null) {
+                bundle = null;
+                cache.clear();
+                valueMaps.values().removeIf(cached -> cached.bundle != null);
+            }
+            return;
+        }
+        MappingBundle reloaded;
         try {
-            Path basePath = Paths.get(mappingsBasePath);
-            
-            // If relative path, resolve from current working directory
-            if (!basePath.isAbsolute()) {
-                basePath = Paths.get(System.getProperty("user.dir")).resolve(mappingsBasePath);
+            reloaded = MappingBundle.open(bundlePath);
+        } catch (IOException e) {
+            throw new MappingLoadException("Cannot read mapping bundle " + bundlePath + ": " + e.getMessage(), e);
+        }
+        Map<String, CompiledMapping> recompiled = new HashMap<>();
+        for (String routeId : cache.keySet()) {
+            if (reloaded.contains(routeId)) {
+                recompiled.put(routeId, compile(routeId, readFromBundle(reloaded, routeId), reloaded));
             }
-            
-            Path mappingPath = basePath.resolve(routeId + ".yaml");
-            File mappingFile = mappingPath.toFile();
-
-            if (!mappingFile.exists()) {
-                throw new MappingLoadException("Mapping file not found for routeId: " + routeId + 
-                    ". Searched at: " + mappingPath.toAbsolutePath() + 
-                    ". Current working directory: " + System.getProperty("user.dir") +
-                    ". Base path: " + mappingsBasePath);
+        }
+        bundle = reloaded;
+        valueMaps.values().removeIf(cached -> cached.bundle != null && cached.bundle != reloaded);
+        cache.keySet().removeIf(routeId -> !reloaded.contains(routeId));
+        recompiled.forEach((routeId, compiled) -> store(routeId, new CachedMapping(compiled, 0, 0)));
+    }
+
+    /**
+     * Cached routes with a value map that names the given table file
+     */
+    Set<String> routeIdsUsingValueMap(String name) {
+        Set<String> routeIds = new HashSet<>();
+        cache.forEach((routeId, cached) -> {
+            Map<String, Object> routeValueMaps = cached.compiled.getConfig().getValueMaps();
+            if (routeValueMaps != null && routeValueMaps.containsValue(name)) {
+                routeIds.add(routeId);
             }
+        });
+        return routeIds;
+    }
 
-            try (InputStream inputStream = new FileInputStream(mappingFile)) {
-                MappingConfig config = yaml.loadAs(inputStream, MappingConfig.class);
-                if (config == null) {
-                    throw new MappingLoadException("Failed to parse YAML for routeId: " + routeId);
-                }
-                config.setRouteId(routeId);
-                return config;
+    /**
+     * Route ids currently cached
+     */
+    Set<String> cachedRouteIds() {
+        return cache.keySet();
+    }
+
+    private CachedMapping load(String routeId, boolean force) throws MappingLoadException {
+        Path mappingPath = resolveMappingPath(routeId);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(mappingPath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            cache.remove(routeId);
+            throw new MappingLoadException(notFoundMessage(routeId, mappingPath));
+        } catch (IOException e) {
+            throw loadError(routeId, mappingPath, e);
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        CachedMapping cached = cache.get(routeId);
+        if (!force && isVersion(cached, lastModified, size)) {
+            return cached;
+        }
+        if (force) {
+            return loadFile(routeId, mappingPath, lastModified, size);
+        }
+        return singleFlight(routeId, () -> {
+            // Stored by a miss that finished after this one checked the cache
+            CachedMapping stored = cache.get(routeId);
+            return isVersion(stored, lastModified, size) ? stored : loadFile(routeId, mappingPath, lastModified, size);
+        });
+    }
+
+    private static boolean isVersion(CachedMapping cached, long lastModified, long size) {
+        return cached != null && cached.lastModified == lastModified && cached.size == size;
+    }
+
+    private CachedMapping loadFile(String routeId, Path mappingPath, long lastModified, long size) throws MappingLoadException {
+        try {
+            MappingConfig config;
+            try (InputStream inputStream = Files.newInputStream(mappingPath)) {
+                // Yaml instances are not thread-safe, and files are loaded on request threads
+                config = new Yaml().loadAs(inputStream, MappingConfig.class);
             }
-        } catch (FileNotFoundException e) {
-            Path basePath = Paths.get(mappingsBasePath);
-            if (!basePath.isAbsolute()) {
-                basePath = Paths.get(System.getProperty("user.dir")).resolve(mappingsBasePath);
+            if (config == null) {
+                throw new MappingLoadException("Failed to parse YAML for routeId: " + routeId);
             }
-            Path mappingPath = basePath.resolve(routeId + ".yaml");
-            throw new MappingLoadException("Mapping file not found for routeId: " + routeId + 
-                ". Searched at: " + mappingPath.toAbsolutePath() + 
-                ". Current working directory: " + System.getProperty("user.dir") +
-                ". Base path: " + mappingsBasePath, e);
+            config.setRouteId(routeId);
+
+            return store(routeId, new CachedMapping(compile(routeId, config, null), lastModified, size));
+        } catch (NoSuchFileException e) {
+            cache.remove(routeId);
+            throw new MappingLoadException(notFoundMessage(routeId, mappingPath), e);
         } catch (MappingLoadException e) {
             // Re-throw our own exceptions as-is
             throw e;
         } catch (Exception e) {
-            Path basePath = Paths.get(mappingsBasePath);
-            if (!basePath.isAbsolute()) {
-                basePath = Paths.get(System.getProperty("user.dir")).resolve(mappingsBasePath);
+            throw loadError(routeId, mappingPath, e);
+        }
+    }
+
+    private MappingLoadException loadError(String routeId, Path mappingPath, Exception e) {
+        return new MappingLoadException("Error loading mapping config for routeId: " + routeId + 
+            ". Searched at: " + mappingPath.toAbsolutePath() + 
+            ". Current working directory: " + System.getProperty("user.dir") +
+            ". Base path: " + mappingsBasePath + 
+            ". Original error: " + e.getMessage(), e);
+    }
+
+    private CachedMapping loadFromBundle(MappingBundle source, String routeId, boolean force) throws MappingLoadException {
+        CachedMapping cached = cache.get(routeId);
+        if (!force && cached != null) {
+            return cached;
+        }
+        if (force) {
+            return loadEntry(source, routeId);
+        }
+        return singleFlight(routeId, () -> {
+            CachedMapping stored = cache.get(routeId);
+            return stored != null ? stored : loadEntry(source, routeId);
+        });
+    }
+
+    private CachedMapping loadEntry(MappingBundle source, String routeId) throws MappingLoadException {
+        MappingConfig config = readFromBundle(source, routeId);
+        if (config == null) {
+            cache.remove(routeId);
+            throw new MappingLoadException("Mapping not found for routeId: " + routeId + " in bundle " + bundlePath);
+        }
+        // File version fields are unused: bundle entries only change when the whole bundle is reloaded
+        return store(routeId, new CachedMapping(compile(routeId, config, source), 0, 0));
+    }
+
+    /**
+     * Run a cache miss for the route, or wait for the one already running for it
+     */
+    private CachedMapping singleFlight(String routeId, Miss miss) throws MappingLoadException {
+        CompletableFuture<CachedMapping> created = new CompletableFuture<>();
+        CompletableFuture<CachedMapping> running = loading.putIfAbsent(routeId, created);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof MappingLoadException) {
+                    throw (MappingLoadException) e.getCause();
+                }
+                throw new MappingLoadException("Failed to load mapping for routeId: " + routeId, e.getCause());
+            }
+        }
+        try {
+            CachedMapping loaded = miss.load();
+            created.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(routeId, created);
+        }
+    }
+
+    private MappingConfig readFromBundle(MappingBundle source, String routeId) throws MappingLoadException {
+        try {
+            return source.read(routeId);
+        } catch (IOException e) {
+            throw new MappingLoadException("Cannot read mapping bundle " + bundlePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param source Bundle the route was read from (its value map tables are read from it too), null for YAML files
+     */
+    private CompiledMapping compile(String routeId, MappingConfig config, MappingBundle source) throws MappingLoadException {
+        try {
+            return compiler.compile(config, name -> loadValueMap(name, source));
+        } catch (MappingCompiler.MappingCompileException e) {
+            throw new MappingLoadException("Invalid mapping for routeId: " + routeId + ". " + e.getMessage(), e);
+        }
+    }
+
+    private CachedMapping store(String routeId, CachedMapping loaded) {
+        // One writer at a time, so misses for different routes cannot both take the last free entry
+        synchronized (cacheWriteLock) {
+            if (!cache.containsKey(routeId) && cache.size() >= maxEntries) {
+                evictLeastRecentlyUsed();
+            }
+            cache.put(routeId, loaded);
+            recency.put(routeId, Boolean.TRUE);
+        }
+        return loaded;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<String> eldest = recency.keySet().iterator();
+        while (eldest.hasNext()) {
+            String routeId = eldest.next();
+            eldest.remove();
+            if (cache.remove(routeId) != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Plan of a cached route, moving the route to the most recently used end of the eviction order
+     */
+    private CompiledMapping use(String routeId, CachedMapping cached) {
+        long now = System.nanoTime();
+        if (now - cached.lastOrdered > REORDER_INTERVAL_NANOS) {
+            cached.lastOrdered = now;
+            synchronized (cacheWriteLock) {
+                // Access order: the lookup moves the id; ids no longer tracked are not added back
+                recency.get(routeId);
+            }
+        }
+        return cached.compiled;
+    }
+
+    /**
+     * Read a value map table file ({@value #VALUE_MAPS_DIRECTORY}/&lt;name&gt;.yaml in the mappings directory):
+     * a flat map of keys to values
+     */
+    public Map<String, String> loadValueMapEntries(String name) throws MappingLoadException {
+        Path tablePath = resolveValueMapPath(name);
+        Object table;
+        try (InputStream inputStream = Files.newInputStream(tablePath)) {
+            // Yaml instances are not thread-safe; tables are only read when routes are compiled
+            table = new Yaml().load(inputStream);
+        } catch (NoSuchFileException e) {
+            throw new MappingLoadException("Value map file not found: " + tablePath.toAbsolutePath(), e);
+        } catch (Exception e) {
+            throw new MappingLoadException("Error loading value map file " + tablePath.toAbsolutePath() + ": " + e.getMessage(), e);
+        }
+        if (table == null) {
+            return Map.of();
+        }
+        if (!(table instanceof Map)) {
+            throw new MappingLoadException("Value map file " + tablePath.toAbsolutePath() + " must hold a map of keys to values");
+        }
+        try {
+            return MappingCompiler.toEntries(name, (Map<?, ?>) table);
+        } catch (MappingCompiler.MappingCompileException e) {
+            throw new MappingLoadException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compiled table for a value map name, shared by every route that uses it while the file (or bundle) is unchanged
+     */
+    private ValueMap loadValueMap(String name, MappingBundle source) throws MappingCompiler.MappingCompileException {
+        try {
+            if (source != null) {
+                CachedValueMap cached = valueMaps.get(name);
+                if (cached != null && cached.bundle == source) {
+                    return cached.table;
+                }
+                Map<String, String> entries = source.readValueMap(name);
+                if (entries == null) {
+                    throw new MappingCompiler.MappingCompileException("Value map file '" + name + "' not found in bundle " + bundlePath, null);
+                }
+                ValueMap table = ValueMap.of(entries);
+                valueMaps.put(name, new CachedValueMap(table, source, 0, 0));
+                return table;
+            }
+            Path tablePath = resolveValueMapPath(name);
+            BasicFileAttributes attributes = Files.readAttributes(tablePath, BasicFileAttributes.class);
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            CachedValueMap cached = valueMaps.get(name);
+            if (cached != null && cached.bundle == null && cached.lastModified == lastModified && cached.size == attributes.size()) {
+                return cached.table;
             }
-            Path mappingPath = basePath.resolve(routeId + ".yaml");
-            throw new MappingLoadException("Error loading mapping config for routeId: " + routeId + 
-                ". Searched at: " + mappingPath.toAbsolutePath() + 
-                ". Current working directory: " + System.getProperty("user.dir") +
-                ". Base path: " + mappingsBasePath + 
-                ". Original error: " + e.getMessage(), e);
+            ValueMap table = ValueMap.of(loadValueMapEntries(name));
+            valueMaps.put(name, new CachedValueMap(table, null, lastModified, attributes.size()));
+            return table;
+        } catch (NoSuchFileException e) {
+            throw new MappingCompiler.MappingCompileException("Value map file not found: " + e.getFile(), e);
+        } catch (IOException | MappingLoadException e) {
+            throw new MappingCompiler.MappingCompileException(e.getMessage(), e);
+        }
+    }
+
+    private Path resolveValueMapPath(String name) throws MappingLoadException {
+        if (!VALUE_MAP_NAME.matcher(name).matches()) {
+            throw new MappingLoadException("Invalid value map file name '" + name + "': use letters, digits, '.', '_' and '-'");
+        }
+        return resolveBasePath().resolve(VALUE_MAPS_DIRECTORY).resolve(name + MAPPING_FILE_SUFFIX);
+    }
+
+    private Path resolveMappingPath(String routeId) {
+        return resolveBasePath().resolve(routeId + MAPPING_FILE_SUFFIX);
+    }
+
+    private Path resolveBasePath() {
+        Path basePath = Paths.get(mappingsBasePath);
+
+        // If relative path, resolve from current working directory
+        if (!basePath.isAbsolute()) {
+            basePath = Paths.get(System.getProperty("user.dir")).resolve(mappingsBasePath);
+        }
+
+        return basePath;
+    }
+
+    private String notFoundMessage(String routeId, Path mappingPath) {
+        return "Mapping file not found for routeId: " + routeId + 
+            ". Searched at: " + mappingPath.toAbsolutePath() + 
+            ". Current working directory: " + System.getProperty("user.dir") +
+            ". Base path: " + mappingsBasePath;
+    }
+
+    @FunctionalInterface
+    private interface Miss {
+        CachedMapping load() throws MappingLoadException;
+    }
+
+    /**
+     * Cache entry: compiled mapping plus the file version it was loaded from.
+     * When the cache is full the least recently used entry is evicted, so hot routes stay compiled
+     * while cold ones are decoded again from the bundle (or file) on their next use.
+     */
+    private static final class CachedMapping {
+        private final CompiledMapping compiled;
+        private final long lastModified;
+        private final long size;
+        private volatile long lastOrdered;
+
+        private CachedMapping(CompiledMapping compiled, long lastModified, long size) {
+            this.compiled = compiled;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.lastOrdered = System.nanoTime();
+        }
+    }
+
+    /**
+     * Compiled value map table plus where it was loaded from
+     */
+    private static final class CachedValueMap {
+        private final ValueMap table;
+        private final MappingBundle bundle;     // null for table files
+        private final long lastModified;
+        private final long size;
+
+        private CachedValueMap(ValueMap table, MappingBundle bundle, long lastModified, long size) {
+            this.table = table;
+            this.bundle = bundle;
+            this.lastModified = lastModified;
+            this.size = size;
         }
     }
 
@@ -90,4 +579,3 @@ public class MappingLoader {
         }
     }
 }
-
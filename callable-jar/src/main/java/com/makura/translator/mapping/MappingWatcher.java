@@ -0,0 +1,280 @@
+package com.makura.translator.mapping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Watches a mappings directory for a {@link MappingLoader} and recompiles changed routes in the background.
+ *
+ * All YAML parsing and compilation runs on one compiler thread. Bursts of events for the same file
+ * (an editor or generator writing it in several steps) are coalesced into one recompilation. A file
+ * that fails to compile leaves the previous plan in place; a deleted file drops its route.
+ * The {@value MappingLoader#VALUE_MAPS_DIRECTORY} subdirectory is watched too: a changed table file
+ * recompiles the cached routes that use it.
+ * When the loader uses a {@link MappingBundle}, changes to the bundle file reload the whole bundle.
+ */
+public final class MappingWatcher implements Closeable {
+
+    // Wait for a file to stop changing before recompiling it
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private static final System.Logger LOG = System.getLogger(MappingWatcher.class.getName());
+
+    private final MappingLoader loader;
+    private final Path directory;
+    private final WatchService watchService;
+    private final ScheduledExecutorService compiler;
+    private final Map<String, CompletableFuture<CompiledMapping>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean bundleReloadQueued = new AtomicBoolean();
+    private volatile WatchKey valueMapsKey;
+
+    MappingWatcher(MappingLoader loader, Path directory) throws IOException {
+        this.loader = loader;
+        this.directory = directory;
+        this.watchService = directory.getFileSystem().newWatchService();
+        this.compiler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread compilerThread = new Thread(task, "mapping-compiler");
+            compilerThread.setDaemon(true);
+            return compilerThread;
+        });
+    }
+
+    void start() throws IOException {
+        try {
+            // Register before the initial scan so no change in between is missed
+            register(directory);
+            watchValueMaps();
+            rescan(0).join();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        Thread thread = new Thread(this::run, "mapping-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private WatchKey register(Path watched) throws IOException {
+        return watched.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Watch the value map directory if it exists and is not watched yet
+     */
+    private void watchValueMaps() throws IOException {
+        Path valueMaps = directory.resolve(MappingLoader.VALUE_MAPS_DIRECTORY);
+        if (valueMapsKey == null && Files.isDirectory(valueMaps)) {
+            valueMapsKey = register(valueMaps);
+        }
+    }
+
+    /**
+     * Directory being watched
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Compile a route on the compiler thread and wait for it (used for routes not cached yet)
+     *
+     * @return The plan, or null if there is no mapping file for the route
+     */
+    CompiledMapping compile(String routeId) throws MappingLoader.MappingLoadException {
+        try {
+            return schedule(routeId, 0).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof MappingLoader.MappingLoadException) {
+                throw (MappingLoader.MappingLoadException) e.getCause();
+            }
+            throw new MappingLoader.MappingLoadException("Failed to compile mapping for routeId: " + routeId, e.getCause());
+        }
+    }
+
+    /**
+     * Queue a recompilation of the route, joining one that is already queued
+     */
+    private CompletableFuture<CompiledMapping> schedule(String routeId, long delayMillis) {
+        CompletableFuture<CompiledMapping> created = new CompletableFuture<>();
+        CompletableFuture<CompiledMapping> queued = pending.putIfAbsent(routeId, created);
+        if (queued != null) {
+            return queued;
+        }
+        try {
+            compiler.schedule(() -> {
+                // Later events queue a new run, so changes made while this one compiles are not lost
+                pending.remove(routeId, created);
+                try {
+                    created.complete(loader.reload(routeId));
+                } catch (MappingLoader.MappingLoadException | RuntimeException e) {
+                    LOG.log(System.Logger.Level.WARNING, "Failed to compile mapping for routeId {0} (any previous version stays active): {1}",
+                        routeId, e.getMessage());
+                    created.completeExceptionally(e);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending.remove(routeId, created);
+            created.completeExceptionally(new MappingLoader.MappingLoadException("Mapping watcher is closed", e));
+        }
+        return created;
+    }
+
+    private void scheduleBundleReload() {
+        if (!bundleReloadQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compiler.schedule(() -> {
+                bundleReloadQueued.set(false);
+                try {
+                    loader.reloadBundle();
+                } catch (MappingLoader.MappingLoadException | RuntimeException e) {
+                    LOG.log(System.Logger.Level.WARNING, "Failed to reload mapping bundle (previous version stays active): {0}",
+                        e.getMessage());
+                }
+            }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Recompile every route (each mapping file in the directory, or each cached route of the bundle;
+     * other bundle routes are decoded on first use) and drop cached routes that no longer exist
+     */
+    private CompletableFuture<Void> rescan(long delayMillis) throws IOException {
+        List<String> routeIds = new ArrayList<>(loader.cachedRouteIds());
+        if (!loader.isBundled()) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + MappingLoader.MAPPING_FILE_SUFFIX)) {
+                for (Path file : files) {
+                    String routeId = routeIdOf(file);
+                    if (routeId != null && !routeIds.contains(routeId)) {
+                        routeIds.add(routeId);
+                    }
+                }
+            }
+        }
+        List<CompletableFuture<CompiledMapping>> compiled = new ArrayList<>(routeIds.size());
+        for (String routeId : routeIds) {
+            // Failures are logged; the rest of the routes still load
+            compiled.add(schedule(routeId, delayMillis).exceptionally(e -> null));
+        }
+        return CompletableFuture.allOf(compiled.toArray(new CompletableFuture[0]));
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                if (key == valueMapsKey) {
+                    valueMapsChanged(key);
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan(DEBOUNCE_MILLIS);
+                        continue;
+                    }
+                    Path file = (Path) event.context();
+                    if (MappingBundle.FILE_NAME.equals(file.getFileName().toString())) {
+                        scheduleBundleReload();
+                        continue;
+                    }
+                    if (MappingLoader.VALUE_MAPS_DIRECTORY.equals(file.getFileName().toString())
+                            && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && !loader.isBundled()) {
+                        // Tables written before it was registered are picked up by recompiling every route
+                        watchValueMaps();
+                        rescan(DEBOUNCE_MILLIS);
+                        continue;
+                    }
+                    String routeId = routeIdOf(file);
+                    // With a bundle, YAML files are not used
+                    if (routeId != null && !loader.isBundled()) {
+                        schedule(routeId, DEBOUNCE_MILLIS);
+                    }
+                }
+                if (!key.reset()) {
+                    LOG.log(System.Logger.Level.WARNING, "Mappings directory {0} is no longer accessible; stopped watching", directory);
+                    close();
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.WARNING, "Stopped watching mappings directory {0}: {1}", directory, e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Recompile the routes using each changed table file (tables are only read from files without a bundle)
+     */
+    private void valueMapsChanged(WatchKey key) throws IOException {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (loader.isBundled()) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan(DEBOUNCE_MILLIS);
+                continue;
+            }
+            String name = routeIdOf((Path) event.context());
+            if (name != null) {
+                for (String routeId : loader.routeIdsUsingValueMap(name)) {
+                    schedule(routeId, DEBOUNCE_MILLIS);
+                }
+            }
+        }
+        if (!key.reset()) {
+            // The directory was removed; watch it again if it is created again
+            valueMapsKey = null;
+        }
+    }
+
+    private static String routeIdOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(MappingLoader.MAPPING_FILE_SUFFIX) || name.length() == MappingLoader.MAPPING_FILE_SUFFIX.length()) {
+            return null;
+        }
+        return name.substring(0, name.length() - MappingLoader.MAPPING_FILE_SUFFIX.length());
+    }
+
+    /**
+     * Stop watching; the loader goes back to checking files on lookup
+     */
+    @Override
+    public void close() {
+        loader.watcherClosed(this);
+        compiler.shutdownNow();
+        // Release lookups waiting on compilations that will no longer run
+        for (CompletableFuture<CompiledMapping> queued : pending.values()) {
+            queued.completeExceptionally(new MappingLoader.MappingLoadException("Mapping watcher is closed"));
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.makura.translator.mapping;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-rendered bytes of the documents of an {@link OutputTree}, built once per route.
+ *
+ * Elements set from constants (no transform, no other mapping writing them) are in every message
+ * with the same text, and so are their ancestors. Together with the XML declaration and the root's
+ * namespace declarations they are encoded at compile time into literal byte runs; a message only
+ * adds the escaped text and tags of the other elements that are present, written in between.
+ *
+ * The template assumes elements appear in the order the tree declares them, which is the order the
+ * mappings create them when every mapping produces a value. When an absent value makes a message
+ * create elements in a different order, the template declines the message and the caller writes it
+ * with the StAX writer instead. Output is byte-identical to {@link XmlOutputWriter}.
+ */
+final class OutputTemplate {
+
+    private static final byte[] DECLARATION = ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    private static final byte[] AMP = ascii("&amp;");
+    private static final byte[] LT = ascii("&lt;");
+    private static final byte[] GT = ascii("&gt;");
+
+    private final OutputTree tree;
+    private final int[][] children;          // child nodes of each node, in declaration order
+    private final byte[][] startTags;        // <name>
+    private final byte[][] endTags;          // </name>
+    private final byte[][] emptyTags;        // <name/>
+    private final byte[] documentStart;      // declaration and root start tag with namespaces
+    private final byte[] emptyDocument;      // declaration and childless root
+    private final byte[][] literals;         // literal bytes written before each slot
+    private final int[] slots;               // element written after each literal, -1 after the last one
+    private final int sizeEstimate;
+
+    private OutputTemplate(OutputTree tree, int[][] children, byte[][] startTags, byte[][] endTags, byte[][] emptyTags,
+                           byte[] documentStart, byte[] emptyDocument, byte[][] literals, int[] slots) {
+        this.tree = tree;
+        this.children = children;
+        this.startTags = startTags;
+        this.endTags = endTags;
+        this.emptyTags = emptyTags;
+        this.documentStart = documentStart;
+        this.emptyDocument = emptyDocument;
+        this.literals = literals;
+        this.slots = slots;
+        int literalSize = documentStart.length + endTags[0].length;
+        for (byte[] literal : literals) {
+            literalSize += literal.length;
+        }
+        this.sizeEstimate = literalSize + 64 * slots.length;
+    }
+
+    /**
+     * Build the template of a streamable tree
+     *
+     * @param constants Text of the elements that every message sets to the same constant
+     * @return The template, or null if a constant cannot be pre-encoded
+     */
+    static OutputTemplate compile(OutputTree tree, Map<Integer, String> constants) {
+        int size = tree.size();
+        List<List<Integer>> childLists = new ArrayList<>(size);
+        for (int node = 0; node < size; node++) {
+            childLists.add(new ArrayList<>());
+        }
+        for (int node = 1; node < size; node++) {
+            childLists.get(tree.parent(node)).add(node);
+        }
+        int[][] children = new int[size][];
+        byte[][] startTags = new byte[size][];
+        byte[][] endTags = new byte[size][];
+        byte[][] emptyTags = new byte[size][];
+        for (int node = 0; node < size; node++) {
+            children[node] = childLists.get(node).stream().mapToInt(Integer::intValue).toArray();
+            String name = tree.name(node);
+            startTags[node] = utf8("<" + name + ">");
+            endTags[node] = utf8("</" + name + ">");
+            emptyTags[node] = utf8("<" + name + "/>");
+        }
+
+        // Constant elements and their ancestors are in every message
+        BitSet fixed = new BitSet(size);
+        for (int node : constants.keySet()) {
+            for (int current = node; current != -1 && !fixed.get(current); current = tree.parent(current)) {
+                fixed.set(current);
+            }
+        }
+
+        Buffer literal = new Buffer(256);
+        List<byte[]> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        if (!appendBody(0, children, startTags, endTags, constants, fixed, literal, literals, slots)) {
+            return null;
+        }
+        literals.add(literal.toByteArray());
+        slots.add(-1);
+
+        String namespaces = namespaceDeclarations(tree);
+        byte[] documentStart = concat(DECLARATION, utf8("<" + tree.rootName() + namespaces + ">"));
+        byte[] emptyDocument = concat(DECLARATION, tree.isExpandEmptyRoot()
+            ? utf8("<" + tree.rootName() + namespaces + "></" + tree.rootName() + ">")
+            : utf8("<" + tree.rootName() + namespaces + "/>"));
+        return new OutputTemplate(tree, children, startTags, endTags, emptyTags, documentStart, emptyDocument,
+            literals.toArray(new byte[0][]), slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Append the children of an element that is in every message: fixed children as literal bytes,
+     * the others as slots
+     */
+    private static boolean appendBody(int node, int[][] children, byte[][] startTags, byte[][] endTags,
+                                      Map<Integer, String> constants, BitSet fixed, Buffer literal,
+                                      List<byte[]> literals, List<Integer> slots) {
+        for (int child : children[node]) {
+            if (!fixed.get(child)) {
+                literals.add(literal.toByteArray());
+                slots.add(child);
+                literal.clear();
+                continue;
+            }
+            literal.write(startTags[child]);
+            String constant = constants.get(child);
+            if (constant != null) {
+                if (!appendText(constant, literal)) {
+                    return false;
+                }
+            } else if (!appendBody(child, children, startTags, endTags, constants, fixed, literal, literals, slots)) {
+                return false;
+            }
+            literal.write(endTags[child]);
+        }
+        return true;
+    }
+
+    private static String namespaceDeclarations(OutputTree tree) {
+        StringBuilder declarations = new StringBuilder();
+        for (String[] namespace : tree.rootNamespaces()) {
+            declarations.append(namespace[0].isEmpty() ? " xmlns" : " xmlns:" + namespace[0]).append("=\"");
+            String uri = namespace[1];
+            for (int i = 0; i < uri.length(); i++) {
+                char c = uri.charAt(i);
+                switch (c) {
+                    case '&' -> declarations.append("&amp;");
+                    case '<' -> declarations.append("&lt;");
+                    case '>' -> declarations.append("&gt;");
+                    case '"' -> declarations.append("&quot;");
+                    default -> declarations.append(c);
+                }
+            }
+            declarations.append('"');
+        }
+        return declarations.toString();
+    }
+
+    /**
+     * Render content as a document into the stream (the stream is not closed)
+     *
+     * @return false, with nothing written, if the content does not follow the template's element order
+     */
+    boolean write(OutputTree.Content content, OutputStream out) throws IOException {
+        Buffer rendered = render(content);
+        if (rendered == null) {
+            return false;
+        }
+        out.write(rendered.bytes, 0, rendered.length);
+        return true;
+    }
+
+    /**
+     * Render content as a document into a string
+     *
+     * @return The document, or null if the content does not follow the template's element order
+     */
+    String toString(OutputTree.Content content) {
+        Buffer rendered = render(content);
+        return rendered != null ? new String(rendered.bytes, 0, rendered.length, StandardCharsets.UTF_8) : null;
+    }
+
+    private Buffer render(OutputTree.Content content) {
+        Buffer out = new Buffer(sizeEstimate);
+        return appendRoot(content, true, out) ? out : null;
+    }
+
+    /**
+     * Append the root element of the content, as a document or as an item of a repeating block
+     */
+    private boolean appendRoot(OutputTree.Content content, boolean document, Buffer out) {
+        if (!inOrder(content, 0)) {
+            return false;
+        }
+        String text = content.text(0);
+        if (content.firstChild(0) == -1 && text == null) {
+            out.write(document ? emptyDocument : emptyTags[0]);
+            return true;
+        }
+        out.write(document ? documentStart : startTags[0]);
+        if (text != null && !appendText(text, out)) {
+            return false;
+        }
+        for (int i = 0; i < slots.length; i++) {
+            out.write(literals[i]);
+            int slot = slots[i];
+            if (slot != -1 && content.isPresent(slot) && !appendElement(content, slot, out)) {
+                return false;
+            }
+        }
+        out.write(endTags[0]);
+        return true;
+    }
+
+    /**
+     * Whether every element's children were created in the order the tree declares them
+     */
+    private static boolean inOrder(OutputTree.Content content, int node) {
+        int previous = -1;
+        for (int child = content.firstChild(node); child != -1; child = content.nextSibling(child)) {
+            if (child < previous || !inOrder(content, child)) {
+                return false;
+            }
+            previous = child;
+        }
+        return true;
+    }
+
+    private boolean appendElement(OutputTree.Content content, int node, Buffer out) {
+        if (tree.isRepeat(node)) {
+            for (OutputTree.Content item : content.items(node)) {
+                OutputTemplate itemTemplate = item.getTree().getTemplate();
+                if (itemTemplate == null || !itemTemplate.appendRoot(item, false, out)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        String text = content.text(node);
+        int first = content.firstChild(node);
+        if (first == -1 && text == null) {
+            out.write(emptyTags[node]);
+            return true;
+        }
+        out.write(startTags[node]);
+        if (text != null && !appendText(text, out)) {
+            return false;
+        }
+        for (int child = first; child != -1; child = content.nextSibling(child)) {
+            if (!appendElement(content, child, out)) {
+                return false;
+            }
+        }
+        out.write(endTags[node]);
+        return true;
+    }
+
+    /**
+     * Append text as {@link XmlOutputWriter#writeText} writes it: whitespace collapsed and trimmed,
+     * markup characters escaped, control characters as character references
+     *
+     * @return false if the text holds an unpaired surrogate (left to the StAX writer)
+     */
+    private static boolean appendText(String text, Buffer out) {
+        int length = text.length();
+        boolean written = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                pendingSpace = written;
+                continue;
+            }
+            if (pendingSpace) {
+                out.write(' ');
+                pendingSpace = false;
+            }
+            written = true;
+            if (c < 0x80) {
+                switch (c) {
+                    case '&' -> out.write(AMP);
+                    case '<' -> out.write(LT);
+                    case '>' -> out.write(GT);
+                    default -> {
+                        if (c < ' ') {
+                            out.write(ascii("&#" + (int) c + ";"));
+                        } else {
+                            out.write(c);
+                        }
+                    }
+                }
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c) || i + 1 == length || !Character.isLowSurrogate(text.charAt(i + 1))) {
+                    return false;
+                }
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            } else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+
+    /**
+     * Growable byte array (unsynchronized, unlike ByteArrayOutputStream)
+     */
+    private static final class Buffer {
+        private byte[] bytes;
+        private int length;
+
+        private Buffer(int capacity) {
+            this.bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        private void write(int b) {
+            if (length == bytes.length) {
+                grow(1);
+            }
+            bytes[length++] = (byte) b;
+        }
+
+        private void write(byte[] b) {
+            if (length + b.length > bytes.length) {
+                grow(b.length);
+            }
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+        }
+
+        private void grow(int needed) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + needed));
+        }
+
+        private void clear() {
+            length = 0;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.makura.translator.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-computed element tree of an output document, built once per route from all target paths.
+ * Every element any mapping can create is a node; a message only records which nodes it touched
+ * (in first-touch order, as dom4j would create them) and their text, see {@link Content}.
+ */
+public final class OutputTree {
+
+    private final String[] names;               // qualified element names, index 0 is the root
+    private final int[] parents;                // parent node index, -1 for the root
+    private final String[][] rootNamespaces;    // {prefix, uri} declared on the root ("" prefix = default)
+    private final boolean expandEmptyRoot;      // write <root></root> instead of <root/> when empty
+    private final BitSet repeats;               // nodes standing for the items of a repeating block
+    private final boolean streamable;
+    private final OutputTemplate template;      // null if not streamable
+
+    private OutputTree(String[] names, int[] parents, String[][] rootNamespaces, boolean expandEmptyRoot,
+                       BitSet repeats, boolean streamable, Map<Integer, String> constants) {
+        this.names = names;
+        this.parents = parents;
+        this.rootNamespaces = rootNamespaces;
+        this.expandEmptyRoot = expandEmptyRoot;
+        this.repeats = repeats;
+        this.streamable = streamable;
+        this.template = streamable ? OutputTemplate.compile(this, constants) : null;
+    }
+
+    /**
+     * Whether documents can be written from {@link Content} directly.
+     * False if some element is both given a value and used as a parent (mixed content), here or in
+     * the item tree of a repeating block, in which case the engine builds a dom4j document instead.
+     */
+    public boolean isStreamable() {
+        return streamable;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Pre-rendered document bytes of the tree (null if the tree is not streamable)
+     */
+    OutputTemplate getTemplate() {
+        return template;
+    }
+
+    String name(int node) {
+        return names[node];
+    }
+
+    int parent(int node) {
+        return parents[node];
+    }
+
+    boolean isRepeat(int node) {
+        return repeats.get(node);
+    }
+
+    String rootName() {
+        return names[0];
+    }
+
+    String[][] rootNamespaces() {
+        return rootNamespaces;
+    }
+
+    boolean isExpandEmptyRoot() {
+        return expandEmptyRoot;
+    }
+
+    /**
+     * Create empty per-message content (only the root element present)
+     */
+    public Content newContent() {
+        return new Content(this);
+    }
+
+    /**
+     * Elements and values of one output message.
+     */
+    public static final class Content {
+        private final OutputTree tree;
+        private final int[] firstChild;
+        private final int[] lastChild;
+        private final int[] nextSibling;
+        private final boolean[] present;
+        private final String[] text;
+        private Map<Integer, List<Content>> items;  // items of repeating blocks, by node
+
+        private Content(OutputTree tree) {
+            int size = tree.names.length;
+            this.tree = tree;
+            this.firstChild = new int[size];
+            this.lastChild = new int[size];
+            this.nextSibling = new int[size];
+            this.present = new boolean[size];
+            this.text = new String[size];
+            Arrays.fill(firstChild, -1);
+            Arrays.fill(lastChild, -1);
+            Arrays.fill(nextSibling, -1);
+            present[0] = true;
+        }
+
+        public OutputTree getTree() {
+            return tree;
+        }
+
+        /**
+         * Make sure the element exists, appending it after its existing siblings if it is new
+         */
+        void touch(int node) {
+            if (present[node]) {
+                return;
+            }
+            int parent = tree.parents[node];
+            touch(parent);
+            if (lastChild[parent] == -1) {
+                firstChild[parent] = node;
+            } else {
+                nextSibling[lastChild[parent]] = node;
+            }
+            lastChild[parent] = node;
+            present[node] = true;
+        }
+
+        /**
+         * Set the text of an element, creating it if needed (later values replace earlier ones)
+         */
+        void setText(int node, String value) {
+            touch(node);
+            text[node] = value;
+        }
+
+        /**
+         * Append an item (content of the block's item tree) to a repeating block node
+         */
+        void addItem(int node, Content item) {
+            touch(node);
+            if (items == null) {
+                items = new HashMap<>();
+            }
+            items.computeIfAbsent(node, k -> new ArrayList<>()).add(item);
+        }
+
+        List<Content> items(int node) {
+            List<Content> nodeItems = items != null ? items.get(node) : null;
+            return nodeItems != null ? nodeItems : List.of();
+        }
+
+        boolean isPresent(int node) {
+            return present[node];
+        }
+
+        int firstChild(int node) {
+            return firstChild[node];
+        }
+
+        int nextSibling(int node) {
+            return nextSibling[node];
+        }
+
+        String text(int node) {
+            return text[node];
+        }
+    }
+
+    /**
+     * Collects nodes while target paths are compiled.
+     */
+    static final class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> parents = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private final BitSet leaves = new BitSet();
+        private final BitSet repeats = new BitSet();
+        private final BitSet rewritten = new BitSet();          // leaves written by more than one path
+        private final Map<Integer, String> constants = new HashMap<>();
+        private final String[][] rootNamespaces;
+        private final boolean expandEmptyRoot;
+        private boolean itemsStreamable = true;
+
+        /**
+         * @param rootName Qualified name written for the root element
+         * @param rootNamespaces {prefix, uri} pairs declared on the root
+         * @param expandEmptyRoot Whether an empty root is written as a start/end tag pair
+         */
+        Builder(String rootName, String[][] rootNamespaces, boolean expandEmptyRoot) {
+            this.rootNamespaces = rootNamespaces;
+            this.expandEmptyRoot = expandEmptyRoot;
+            names.add(rootName);
+            parents.add(-1);
+        }
+
+        /**
+         * Node for the child element with the given qualified name (created on first request)
+         */
+        int child(int parent, String qualifiedName) {
+            if (repeats.get(parent)) {
+                throw new IllegalArgumentException("Target path continues below repeating element: " + names.get(parent));
+            }
+            String key = parent + "/" + qualifiedName;
+            Integer existing = index.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int node = names.size();
+            names.add(qualifiedName);
+            parents.add(parent);
+            index.put(key, node);
+            return node;
+        }
+
+        void markLeaf(int node) {
+            if (repeats.get(node)) {
+                throw new IllegalArgumentException("Repeating element is also used by another target path: " + names.get(node));
+            }
+            if (leaves.get(node)) {
+                rewritten.set(node);
+            }
+            leaves.set(node);
+        }
+
+        /**
+         * Record that a leaf is set to the same constant in every message (pre-rendered by the
+         * {@link OutputTemplate} unless another path also writes the leaf)
+         */
+        void markConstant(int node, String value) {
+            constants.put(node, value);
+        }
+
+        /**
+         * Node standing for the items of a repeating block: marks where they are written among
+         * the parent's children. No other target path may use or continue below it.
+         */
+        int repeat(int parent, String qualifiedName) {
+            if (index.containsKey(parent + "/" + qualifiedName)) {
+                throw new IllegalArgumentException("Repeating element is also used by another target path: " + qualifiedName);
+            }
+            int node = child(parent, qualifiedName);
+            repeats.set(node);
+            return node;
+        }
+
+        /**
+         * Register the item tree of a repeating block written inside this tree
+         */
+        void include(OutputTree itemTree) {
+            itemsStreamable &= itemTree.isStreamable();
+        }
+
+        OutputTree build() {
+            int size = names.size();
+            int[] parentArray = new int[size];
+            boolean streamable = itemsStreamable;
+            for (int i = 0; i < size; i++) {
+                parentArray[i] = parents.get(i);
+                if (parentArray[i] >= 0 && leaves.get(parentArray[i])) {
+                    streamable = false;
+                }
+            }
+            Map<Integer, String> fixedConstants = new HashMap<>(constants);
+            fixedConstants.keySet().removeIf(rewritten::get);
+            return new OutputTree(names.toArray(new String[0]), parentArray, rootNamespaces, expandEmptyRoot,
+                (BitSet) repeats.clone(), streamable, fixedConstants);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.makura.translator.mapping;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.makura.translator.mapping.expression.Expression;
+import com.makura.translator.mapping.expression.FieldRef;
+import com.makura.translator.parser.InputParser;
+import com.makura.translator.parser.JsonPathExtractor;
+import com.makura.translator.parser.XmlPathExtractor;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every source path a route reads (field sources and "source.x" references inside transforms),
+ * compiled into a single {@link JsonPathExtractor} and {@link XmlPathExtractor}. A message is then
+ * read in one pass into {@link Values} instead of being materialized as a {@code Map<String, Object>}
+ * or dom4j {@code Document}.
+ *
+ * Repeating blocks are compiled as repeating paths: each item is read into its own {@link Values}
+ * (with the block's item fields, relative to the item) and either collected into the message's values
+ * or handed to an {@link ItemHandler} while the message is read (streaming routes).
+ */
+public final class SourceFields {
+
+    private final Map<SourcePath, Integer> pathIndex;
+    private final List<CompiledMapping.FieldPlan> blocks;
+    private final JsonPathExtractor jsonExtractor;
+    private final int[] jsonSlots;
+    private final XmlPathExtractor xmlExtractor;
+    private final int[] xmlSlots;
+
+    private SourceFields(Map<SourcePath, Integer> pathIndex, List<CompiledMapping.FieldPlan> blocks,
+                         JsonPathExtractor jsonExtractor, XmlPathExtractor xmlExtractor) {
+        this.pathIndex = pathIndex;
+        this.blocks = blocks;
+        this.jsonExtractor = jsonExtractor;
+        this.xmlExtractor = xmlExtractor;
+        this.jsonSlots = new int[pathIndex.size()];
+        this.xmlSlots = new int[pathIndex.size()];
+        for (int i = 0; i < jsonSlots.length; i++) {
+            jsonSlots[i] = jsonExtractor.slotOf(i);
+            xmlSlots[i] = xmlExtractor.slotOf(i);
+        }
+    }
+
+    /**
+     * Collect the source paths read by the given plans
+     *
+     * @throws IllegalArgumentException if a repeating block's source path overlaps another source path
+     */
+    static SourceFields of(List<CompiledMapping.FieldPlan> plans) {
+        List<SourcePath> paths = new ArrayList<>();
+        Map<SourcePath, Integer> pathIndex = new IdentityHashMap<>();
+        List<CompiledMapping.FieldPlan> blocks = new ArrayList<>();
+        for (CompiledMapping.FieldPlan plan : plans) {
+            if (plan.isRepeat()) {
+                // Items are read by the block's own fields
+                blocks.add(plan);
+                continue;
+            }
+            // Request constants have no source path; response plans always read theirs
+            if (plan.getSourcePath() != null) {
+                add(plan.getSourcePath(), paths, pathIndex);
+            }
+            if (plan.hasTransform()) {
+                collect(plan.getTransform(), paths, pathIndex);
+            }
+        }
+
+        List<String[]> segments = new ArrayList<>(paths.size());
+        List<String[]> elementNames = new ArrayList<>(paths.size());
+        for (SourcePath path : paths) {
+            segments.add(path.getSegments().toArray(new String[0]));
+            List<String> names = path.getElementNames();
+            elementNames.add(names != null ? names.toArray(new String[0]) : null);
+        }
+        List<String[]> repeatSegments = new ArrayList<>(blocks.size());
+        List<String[]> repeatNames = new ArrayList<>(blocks.size());
+        for (CompiledMapping.FieldPlan block : blocks) {
+            SourcePath path = block.getSourcePath();
+            if (path.getElementNames() == null) {
+                throw new IllegalArgumentException("Invalid repeating source path: " + path);
+            }
+            repeatSegments.add(path.getSegments().toArray(new String[0]));
+            repeatNames.add(path.getElementNames().toArray(new String[0]));
+        }
+        return new SourceFields(pathIndex, List.copyOf(blocks), JsonPathExtractor.compile(segments, repeatSegments),
+            XmlPathExtractor.compile(elementNames, repeatNames));
+    }
+
+    private static void collect(Expression expression, List<SourcePath> paths, Map<SourcePath, Integer> pathIndex) {
+        if (expression instanceof FieldRef) {
+            add(((FieldRef) expression).getPath(), paths, pathIndex);
+        }
+        for (Expression child : expression.getChildren()) {
+            collect(child, paths, pathIndex);
+        }
+    }
+
+    private static void add(SourcePath path, List<SourcePath> paths, Map<SourcePath, Integer> pathIndex) {
+        if (!pathIndex.containsKey(path)) {
+            pathIndex.put(path, paths.size());
+            paths.add(path);
+        }
+    }
+
+    /**
+     * Read all fields of a JSON message
+     */
+    public Values extractJson(String json) throws InputParser.ParseException {
+        List<Values>[] items = newItemLists();
+        return new Values(this, jsonSlots, jsonExtractor.extract(json, jsonCollector(items)), items);
+    }
+
+    /**
+     * Read all fields of a JSON message from a stream (the stream is not closed)
+     */
+    public Values extractJson(InputStream json) throws InputParser.ParseException {
+        List<Values>[] items = newItemLists();
+        return new Values(this, jsonSlots, jsonExtractor.extract(json, jsonCollector(items)), items);
+    }
+
+    /**
+     * Read all fields of a JSON message, passing the items of repeating blocks to the handler as they are read
+     */
+    public Values extractJson(String json, ItemHandler handler) throws InputParser.ParseException {
+        if (handler == null) {
+            return extractJson(json);
+        }
+        return new Values(this, jsonSlots, jsonExtractor.extract(json, jsonItems(handler)), newItemLists());
+    }
+
+    /**
+     * Read all fields of a JSON message from a stream, passing the items of repeating blocks to the
+     * handler as they are read (the stream is not closed)
+     */
+    public Values extractJson(InputStream json, ItemHandler handler) throws InputParser.ParseException {
+        if (handler == null) {
+            return extractJson(json);
+        }
+        return new Values(this, jsonSlots, jsonExtractor.extract(json, jsonItems(handler)), newItemLists());
+    }
+
+    /**
+     * Read all fields of an XML message (paths relative to the root element, matched by local name)
+     */
+    public Values extractXml(String xml) throws InputParser.ParseException {
+        List<Values>[] items = newItemLists();
+        return new Values(this, xmlSlots, xmlExtractor.extract(xml, xmlCollector(items)), items);
+    }
+
+    /**
+     * Read all fields of an XML message from a stream (the stream is not closed)
+     */
+    public Values extractXml(InputStream xml) throws InputParser.ParseException {
+        List<Values>[] items = newItemLists();
+        return new Values(this, xmlSlots, xmlExtractor.extract(xml, xmlCollector(items)), items);
+    }
+
+    /**
+     * Read all fields of an XML message, passing the items of repeating blocks to the handler as they are read
+     */
+    public Values extractXml(String xml, ItemHandler handler) throws InputParser.ParseException {
+        if (handler == null) {
+            return extractXml(xml);
+        }
+        return new Values(this, xmlSlots, xmlExtractor.extract(xml, xmlItems(handler)), newItemLists());
+    }
+
+    /**
+     * Read all fields of an XML message from a stream, passing the items of repeating blocks to the
+     * handler as they are read (the stream is not closed)
+     */
+    public Values extractXml(InputStream xml, ItemHandler handler) throws InputParser.ParseException {
+        if (handler == null) {
+            return extractXml(xml);
+        }
+        return new Values(this, xmlSlots, xmlExtractor.extract(xml, xmlItems(handler)), newItemLists());
+    }
+
+    /**
+     * Read all fields below the element the reader is positioned on (treated as the root element)
+     */
+    public Values extractXml(XMLStreamReader reader) throws XMLStreamException {
+        List<Values>[] items = newItemLists();
+        return new Values(this, xmlSlots, xmlExtractor.extractElement(reader, xmlCollector(items)), items);
+    }
+
+    /**
+     * Read all fields below the element the reader is positioned on, passing the items of repeating
+     * blocks to the handler as they are read
+     */
+    public Values extractXml(XMLStreamReader reader, ItemHandler handler) throws XMLStreamException {
+        if (handler == null) {
+            return extractXml(reader);
+        }
+        return new Values(this, xmlSlots, xmlExtractor.extractElement(reader, xmlItems(handler)), newItemLists());
+    }
+
+    /**
+     * Read one item the parser is positioned on (nested blocks are collected)
+     */
+    private Values extractJsonItem(JsonParser parser) throws IOException {
+        List<Values>[] items = newItemLists();
+        return new Values(this, jsonSlots, jsonExtractor.extractValue(parser, jsonCollector(items)), items);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Values>[] newItemLists() {
+        List<Values>[] items = new List[blocks.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new ArrayList<>();
+        }
+        return items;
+    }
+
+    private JsonPathExtractor.ItemHandler jsonCollector(List<Values>[] items) {
+        if (items.length == 0) {
+            return null;
+        }
+        return (repeat, values, parser) -> items[repeat].add(itemFields(repeat).extractJsonItem(parser));
+    }
+
+    private XmlPathExtractor.ItemHandler xmlCollector(List<Values>[] items) {
+        if (items.length == 0) {
+            return null;
+        }
+        return (repeat, values, reader) -> items[repeat].add(itemFields(repeat).extractXml(reader));
+    }
+
+    private JsonPathExtractor.ItemHandler jsonItems(ItemHandler handler) {
+        return (repeat, values, parser) -> {
+            Values item = itemFields(repeat).extractJsonItem(parser);
+            handler.item(blocks.get(repeat), new Values(this, jsonSlots, values, null), item);
+        };
+    }
+
+    private XmlPathExtractor.ItemHandler xmlItems(ItemHandler handler) {
+        return (repeat, values, reader) -> {
+            Values item = itemFields(repeat).extractXml(reader);
+            handler.item(blocks.get(repeat), new Values(this, xmlSlots, values, null), item);
+        };
+    }
+
+    private SourceFields itemFields(int block) {
+        return blocks.get(block).getRepeat().getItemSourceFields();
+    }
+
+    /**
+     * Receives the items of repeating blocks while a message is read.
+     */
+    @FunctionalInterface
+    public interface ItemHandler {
+        /**
+         * Consume one item
+         *
+         * @param block The repeating block's plan
+         * @param header Message fields read so far (only fields that precede the item in the message are set)
+         * @param item Fields of the item
+         */
+        void item(CompiledMapping.FieldPlan block, Values header, Values item);
+    }
+
+    /**
+     * Field values of one message, looked up by the compiled {@link SourcePath} instances.
+     */
+    public static final class Values {
+        private final SourceFields fields;
+        private final int[] slots;
+        private final Object[] values;
+        private final List<Values>[] items;     // per block, null while a streamed message is being read
+
+        private Values(SourceFields fields, int[] slots, Object[] values, List<Values>[] items) {
+            this.fields = fields;
+            this.slots = slots;
+            this.values = values;
+            this.items = items;
+        }
+
+        /**
+         * Value read for the path, or null if absent or not part of the route
+         */
+        public Object get(SourcePath path) {
+            Integer index = fields.pathIndex.get(path);
+            if (index == null) {
+                return null;
+            }
+            int slot = slots[index];
+            return slot >= 0 ? values[slot] : null;
+        }
+
+        /**
+         * Items read for a repeating block, in document order (empty if the block is not part of these
+         * fields or its items were streamed)
+         */
+        public List<Values> getItems(CompiledMapping.FieldPlan block) {
+            int index = items != null ? fields.blocks.indexOf(block) : -1;
+            return index >= 0 ? items[index] : List.of();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.makura.translator.mapping;
+
+import org.dom4j.Document;
+import org.dom4j.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-split read path into a parsed source (JSON Map, extracted {@link SourceFields.Values}, XML Document or item Element).
+ * Built once at compile time so that resolving a value never splits or trims strings.
+ */
+public final class SourcePath {
+
+    private final String expression;
+
+    // Raw segments, used as-is for Map/List navigation (matches split semantics of the original lookup)
+    private final String[] segments;
+
+    // Trimmed, non-empty segments for XML navigation; null if the last segment is blank (never matches)
+    private final String[] elementNames;
+
+    private SourcePath(String expression, String[] segments) {
+        this.expression = expression;
+        this.segments = segments;
+        this.elementNames = toElementNames(segments);
+    }
+
+    /**
+     * Compile a dot notation path such as "source.customer.account" ("source." prefix is optional).
+     */
+    public static SourcePath dotted(String path) {
+        String relative = path.startsWith("source.") ? path.substring(7) : path;
+        return new SourcePath(path, relative.split("\\."));
+    }
+
+    /**
+     * Compile a slash notation path such as "target:GrpHdr/MsgId" ("target:" prefix is optional).
+     */
+    public static SourcePath slashed(String path) {
+        String relative = path.startsWith("target:") ? path.substring(7) : path;
+        return new SourcePath(path, relative.split("/"));
+    }
+
+    private static String[] toElementNames(String[] segments) {
+        if (segments.length == 0) {
+            // "." selects the element itself (the item of a repeating block)
+            return segments;
+        }
+        String last = segments[segments.length - 1].trim();
+        if (last.isEmpty()) {
+            return null;
+        }
+        List<String> names = new ArrayList<>(segments.length);
+        for (int i = 0; i < segments.length - 1; i++) {
+            String part = segments[i].trim();
+            if (!part.isEmpty()) {
+                names.add(part);
+            }
+        }
+        names.add(last);
+        return names.toArray(new String[0]);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Raw path segments (after prefix removal).
+     */
+    public List<String> getSegments() {
+        return Arrays.asList(segments);
+    }
+
+    /**
+     * Element names used for XML navigation, relative to the document root, or null if the path can never match.
+     */
+    public List<String> getElementNames() {
+        return elementNames != null ? Arrays.asList(elementNames) : null;
+    }
+
+    /**
+     * Resolve this path against a parsed source object.
+     */
+    public Object resolve(Object source) {
+        if (source == null) {
+            return null;
+        }
+        if (source instanceof SourceFields.Values) {
+            return ((SourceFields.Values) source).get(this);
+        }
+        if (source instanceof Document) {
+            return resolve((Document) source);
+        }
+        if (source instanceof Element) {
+            return resolve((Element) source);
+        }
+        return resolveStructure(source);
+    }
+
+    /**
+     * Resolve this path against an XML document, matching elements by local name from the root element.
+     */
+    public String resolve(Document document) {
+        return document != null ? resolve(document.getRootElement()) : null;
+    }
+
+    /**
+     * Resolve this path below an XML element (the items of a repeating block), matching by local name.
+     */
+    public String resolve(Element root) {
+        if (root == null || elementNames == null) {
+            return null;
+        }
+        Element current = root;
+        for (String name : elementNames) {
+            current = current.element(name);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current.getTextTrim();
+    }
+
+    /**
+     * Resolve the items of a repeating block against a parsed document or structure: every element
+     * with the last name (below the first match of the others), or every element of a list
+     * (a single value is one item).
+     */
+    public List<Object> resolveItems(Object source) {
+        if (source instanceof Document || source instanceof Element) {
+            Element current = source instanceof Document ? ((Document) source).getRootElement() : (Element) source;
+            if (current == null || elementNames == null) {
+                return List.of();
+            }
+            for (int i = 0; i < elementNames.length - 1 && current != null; i++) {
+                current = current.element(elementNames[i]);
+            }
+            return current != null ? new ArrayList<>(current.elements(elementNames[elementNames.length - 1])) : List.of();
+        }
+        Object value = source != null ? resolveStructure(source) : null;
+        if (value == null) {
+            return List.of();
+        }
+        return value instanceof List ? new ArrayList<>((List<?>) value) : List.of(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object resolveStructure(Object source) {
+        Object current = source;
+        for (String part : segments) {
+            if (current == null) {
+                return null;
+            }
+            if (current instanceof Map) {
+                current = ((Map<String, Object>) current).get(part);
+            } else if (current instanceof List) {
+                try {
+                    int index = Integer.parseInt(part);
+                    List<?> list = (List<?>) current;
+                    if (index >= 0 && index < list.size()) {
+                        current = list.get(index);
+                    } else {
+                        return null;
+                    }
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
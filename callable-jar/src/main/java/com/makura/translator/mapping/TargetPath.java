@@ -0,0 +1,270 @@
+package com.makura.translator.mapping;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Namespace;
+import org.dom4j.QName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pre-split write path into an output document.
+ * Element names are resolved to QNames carrying the inherited namespace at compile time,
+ * and to nodes of the route's {@link OutputTree}, so writing a value only navigates and creates elements.
+ */
+public final class TargetPath {
+
+    private final String expression;
+    private final String[] names;   // element names below the root, leaf last (trimmed, non-empty)
+    private final QName[] qnames;   // matching QNames, valid up to invalidIndex
+    private final boolean hasLeaf;  // false if the path has no usable last segment
+    private final int invalidIndex; // first name that cannot be an element name, names.length if none
+    private final String invalidReason;
+    private final int[] nodes;      // output tree nodes of the valid names
+
+    private TargetPath(String expression, String[] names, QName[] qnames, boolean hasLeaf, int invalidIndex,
+                       String invalidReason, int[] nodes) {
+        this.expression = expression;
+        this.names = names;
+        this.qnames = qnames;
+        this.hasLeaf = hasLeaf;
+        this.invalidIndex = invalidIndex;
+        this.invalidReason = invalidReason;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Compile a path such as "target:Element1/Element2" or "source.Root.Child".
+     *
+     * @param pathExpression The path from the mapping file
+     * @param rootName Local name of the document root (a leading segment matching it is skipped)
+     * @param namespace Namespace inherited by created elements (root namespace)
+     * @param tree Output tree collecting the elements of the route
+     */
+    static TargetPath compile(String pathExpression, String rootName, Namespace namespace, OutputTree.Builder tree) {
+        String[] parts = split(pathExpression);
+        boolean hasLeaf = hasLeaf(parts);
+        List<String> names = elementNames(parts, rootName);
+        if (names.size() == 1 && ".".equals(names.get(0))) {
+            // "." sets the text of the root itself (the item element of a repeating block)
+            names = List.of();
+        }
+
+        QName[] qnames = new QName[names.size()];
+        int[] nodes = new int[names.size()];
+        int invalidIndex = names.size();
+        String invalidReason = null;
+        int parent = 0;
+        for (int i = 0; i < qnames.length; i++) {
+            try {
+                qnames[i] = toQName(names.get(i), namespace);
+            } catch (IllegalArgumentException e) {
+                // Elements before this one are still created, as dom4j would before failing
+                invalidIndex = i;
+                invalidReason = e.getMessage();
+                break;
+            }
+            parent = tree.child(parent, qnames[i].getQualifiedName());
+            nodes[i] = parent;
+        }
+        if (hasLeaf && invalidIndex == names.size()) {
+            tree.markLeaf(nodes.length > 0 ? nodes[nodes.length - 1] : 0);
+        }
+
+        return new TargetPath(pathExpression, names.toArray(new String[0]), qnames, hasLeaf, invalidIndex,
+            invalidReason, Arrays.copyOf(nodes, invalidIndex));
+    }
+
+    /**
+     * Compile the target of a repeating block, e.g. "target:Stmt/Ntry": the last element is written
+     * once per item, inside the elements before it. The path sets no value itself.
+     *
+     * @throws IllegalArgumentException if the path has no last element or a name cannot be an element name
+     */
+    static TargetPath compileRepeat(String pathExpression, String rootName, Namespace namespace, OutputTree.Builder tree) {
+        String[] parts = split(pathExpression);
+        List<String> names = elementNames(parts, rootName);
+        if (!hasLeaf(parts)) {
+            throw new IllegalArgumentException("Repeating target path has no element name: " + pathExpression);
+        }
+
+        QName[] qnames = new QName[names.size()];
+        int[] nodes = new int[names.size()];
+        int parent = 0;
+        for (int i = 0; i < qnames.length; i++) {
+            qnames[i] = toQName(names.get(i), namespace);
+            parent = i < qnames.length - 1
+                ? tree.child(parent, qnames[i].getQualifiedName())
+                : tree.repeat(parent, qnames[i].getQualifiedName());
+            nodes[i] = parent;
+        }
+        return new TargetPath(pathExpression, names.toArray(new String[0]), qnames, false, names.size(), null, nodes);
+    }
+
+    private static String[] split(String pathExpression) {
+        String path = pathExpression;
+        if (path.startsWith("target:")) {
+            path = path.substring(7);
+        }
+        if (path.startsWith("source.")) {
+            path = path.substring(7).replace(".", "/");
+        }
+        return path.split("/");
+    }
+
+    private static boolean hasLeaf(String[] parts) {
+        return parts.length > 0 && !parts[parts.length - 1].trim().isEmpty();
+    }
+
+    /**
+     * Trimmed, non-empty element names below the root (a leading segment naming the root is skipped)
+     */
+    private static List<String> elementNames(String[] parts, String rootName) {
+        List<String> names = new ArrayList<>(parts.length);
+        if (parts.length > 0) {
+            int startIndex = parts[0].equals(rootName) ? 1 : 0;
+            for (int i = startIndex; i < parts.length - 1; i++) {
+                String part = parts[i].trim();
+                if (!part.isEmpty()) {
+                    names.add(part);
+                }
+            }
+            String last = parts[parts.length - 1].trim();
+            if (!last.isEmpty()) {
+                names.add(last);
+            }
+        }
+        return names;
+    }
+
+    private static QName toQName(String name, Namespace namespace) {
+        if (namespace != null && !namespace.equals(Namespace.NO_NAMESPACE)) {
+            return DocumentHelper.createQName(name, namespace);
+        }
+        if (name.indexOf(':') > 0) {
+            // A prefix can never be in scope without a configured namespace
+            throw new IllegalArgumentException("No such namespace prefix in scope for element: " + name);
+        }
+        return DocumentHelper.createQName(name, Namespace.NO_NAMESPACE);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Element names below the root, including the leaf (empty if the path writes nothing).
+     */
+    public List<String> getElementNames() {
+        return Arrays.asList(names);
+    }
+
+    /**
+     * QName of the last element (null for an empty or invalid path)
+     */
+    QName getLastQName() {
+        return names.length > 0 && invalidIndex == names.length ? qnames[names.length - 1] : null;
+    }
+
+    /**
+     * Whether writing through this path sets a value (false if the last segment is blank).
+     */
+    public boolean hasLeaf() {
+        return hasLeaf;
+    }
+
+    /**
+     * Whether writing a value always sets the text of {@link #lastNode()} (the path has a leaf and
+     * every name is a valid element name)
+     */
+    boolean setsLeafText() {
+        return hasLeaf && invalidIndex == names.length;
+    }
+
+    /**
+     * Last element of the path in the route's output tree (the root for an empty path)
+     */
+    int lastNode() {
+        return nodes.length > 0 ? nodes[nodes.length - 1] : 0;
+    }
+
+    /**
+     * Element containing the last one in the route's output tree (the root for paths of one element)
+     */
+    int containerNode() {
+        return nodes.length > 1 ? nodes[nodes.length - 2] : 0;
+    }
+
+    /**
+     * Navigate to the element containing the last one below the given root, creating missing elements
+     * (repeating blocks add their items to it)
+     */
+    Element container(Element root) {
+        Element current = root;
+        for (int i = 0; i < names.length - 1; i++) {
+            Element existing = current.element(qnames[i]);
+            current = existing != null ? existing : current.addElement(qnames[i]);
+        }
+        return current;
+    }
+
+    /**
+     * Set the value in per-message output content, creating missing elements.
+     *
+     * @throws IllegalArgumentException if the path contains a name that cannot be an element name
+     */
+    public void setValue(OutputTree.Content content, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int node : nodes) {
+            content.touch(node);
+        }
+        if (invalidIndex < names.length) {
+            throw new IllegalArgumentException(invalidReason);
+        }
+        if (hasLeaf) {
+            content.setText(lastNode(), value);
+        }
+    }
+
+    /**
+     * Set the value in the document, reusing existing elements and creating missing ones.
+     *
+     * @throws IllegalArgumentException if the path contains a name that cannot be an element name
+     */
+    public void setValue(Document document, String value) {
+        setValue(document.getRootElement(), value);
+    }
+
+    /**
+     * Set the value below the given root element (the document root, or an item of a repeating block),
+     * reusing existing elements and creating missing ones.
+     *
+     * @throws IllegalArgumentException if the path contains a name that cannot be an element name
+     */
+    public void setValue(Element root, String value) {
+        if (value == null) {
+            return;
+        }
+        Element current = root;
+        for (int i = 0; i < invalidIndex; i++) {
+            Element existing = current.element(qnames[i]);
+            current = existing != null ? existing : current.addElement(qnames[i]);
+        }
+        if (invalidIndex < names.length) {
+            throw new IllegalArgumentException(invalidReason);
+        }
+        if (hasLeaf) {
+            current.setText(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,176 @@
+package com.makura.translator.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable lookup table of a route ({@code valueMaps} in the mapping file), read by the
+ * {@code lookup(table, value, default)} transform.
+ *
+ * Keys are placed with a perfect hash built when the table is compiled (hash and displace: keys are
+ * grouped into buckets by one hash, and each bucket gets the seed of a second hash that sends all its
+ * keys to free slots). A lookup computes two hashes of the key and compares it with the one key in its
+ * slot: no collisions to walk and no allocation. Instances are shared between routes that use the
+ * same table file.
+ */
+public final class ValueMap {
+
+    private static final ValueMap EMPTY = new ValueMap(new String[1], new String[1], new int[1], 0, 0);
+
+    // Seeds tried per bucket before the table is rebuilt with more slots
+    private static final int MAX_SEED = 1 << 16;
+
+    private final String[] keys;      // by slot, null for free slots
+    private final String[] values;
+    private final int[] seeds;        // by bucket
+    private final int slotMask;
+    private final int bucketMask;
+
+    private ValueMap(String[] keys, String[] values, int[] seeds, int slotMask, int bucketMask) {
+        this.keys = keys;
+        this.values = values;
+        this.seeds = seeds;
+        this.slotMask = slotMask;
+        this.bucketMask = bucketMask;
+    }
+
+    /**
+     * Compile a table
+     *
+     * @throws IllegalArgumentException if a key or value is null
+     */
+    public static ValueMap of(Map<String, String> entries) {
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                throw new IllegalArgumentException("Value map entries need a key and a value: " + entry.getKey());
+            }
+        }
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+        // At most half the slots are used, so a free placement is found after a few seeds
+        int slots = Integer.highestOneBit(Math.max(entries.size() * 2 - 1, 1)) << 1;
+        while (true) {
+            ValueMap built = build(entries, slots);
+            if (built != null) {
+                return built;
+            }
+            slots <<= 1;
+        }
+    }
+
+    private static ValueMap build(Map<String, String> entries, int slots) {
+        int buckets = Math.max(1, slots >> 2);
+        List<List<String>> bucketKeys = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            bucketKeys.add(new ArrayList<>(2));
+        }
+        for (String key : entries.keySet()) {
+            bucketKeys.get(hash(key, 0) & (buckets - 1)).add(key);
+        }
+        // Largest buckets first, while most slots are still free
+        Integer[] order = new Integer[buckets];
+        for (int i = 0; i < buckets; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(bucketKeys.get(b).size(), bucketKeys.get(a).size()));
+
+        String[] keys = new String[slots];
+        String[] values = new String[slots];
+        int[] seeds = new int[buckets];
+        int[] placed = new int[4];
+        for (int bucket : order) {
+            List<String> members = bucketKeys.get(bucket);
+            if (members.isEmpty()) {
+                break;
+            }
+            if (placed.length < members.size()) {
+                placed = new int[members.size()];
+            }
+            boolean found = false;
+            for (int seed = 1; seed < MAX_SEED && !found; seed++) {
+                found = true;
+                for (int i = 0; i < members.size(); i++) {
+                    int slot = hash(members.get(i), seed) & (slots - 1);
+                    if (keys[slot] != null || contains(placed, i, slot)) {
+                        found = false;
+                        break;
+                    }
+                    placed[i] = slot;
+                }
+                if (found) {
+                    seeds[bucket] = seed;
+                    for (int i = 0; i < members.size(); i++) {
+                        keys[placed[i]] = members.get(i);
+                        values[placed[i]] = entries.get(members.get(i));
+                    }
+                }
+            }
+            if (!found) {
+                return null;
+            }
+        }
+        return new ValueMap(keys, values, seeds, slots - 1, buckets - 1);
+    }
+
+    private static boolean contains(int[] slots, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Value for the key, or null if the table has no such key
+     */
+    public String get(String key) {
+        int seed = seeds[hash(key, 0) & bucketMask];
+        int slot = hash(key, seed) & slotMask;
+        String candidate = keys[slot];
+        return candidate != null && candidate.equals(key) ? values[slot] : null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (String key : keys) {
+            if (key != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Entries of the table (a new map on every call, in no particular order)
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                entries.put(keys[slot], values[slot]);
+            }
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Seeded FNV-1a over the characters, finished with MurmurHash3's mixer
+     */
+    private static int hash(String key, int seed) {
+        int h = 0x811C9DC5 ^ (seed * 0x9E3779B9);
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
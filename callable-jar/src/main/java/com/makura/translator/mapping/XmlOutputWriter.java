@@ -0,0 +1,328 @@
+package com.makura.translator.mapping;
+
+import org.dom4j.Element;
+import org.dom4j.Node;
+import org.dom4j.Text;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes output documents straight to an {@link XMLStreamWriter}, in the order recorded in an
+ * {@link OutputTree.Content}. The root element name and namespace declarations come from the
+ * compiled tree, so rootElementPrefix needs no post-processing of the serialized text.
+ *
+ * Output matches dom4j's compact XMLWriter format: XML declaration followed by a newline,
+ * no indentation, whitespace in text collapsed to single spaces and trimmed, control
+ * characters written as character references, childless elements written as {@code <X/>}.
+ *
+ * Complete documents are rendered from the tree's pre-encoded {@link OutputTemplate} when the
+ * message follows its element order, and written through StAX otherwise.
+ */
+public final class XmlOutputWriter {
+
+    // The JDK's built-in implementation, regardless of other StAX providers on the classpath:
+    // output must not change with the provider (quoting, escaping of '>')
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newDefaultFactory();
+
+    private XmlOutputWriter() {
+    }
+
+    /**
+     * Serialize content to a string
+     */
+    public static String toString(OutputTree.Content content) throws XMLStreamException {
+        OutputTemplate template = content.getTree().getTemplate();
+        String rendered = template != null ? template.toString(content) : null;
+        if (rendered != null) {
+            return rendered;
+        }
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out);
+        write(content, writer);
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * Serialize content as UTF-8 into the stream (the stream is not closed)
+     */
+    public static void write(OutputTree.Content content, OutputStream out) throws XMLStreamException {
+        OutputTemplate template = content.getTree().getTemplate();
+        try {
+            if (template != null && template.write(content, out)) {
+                return;
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Failed to write document", e);
+        }
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        write(content, writer);
+        writer.close();
+    }
+
+    /**
+     * Write content as a complete document
+     */
+    public static void write(OutputTree.Content content, XMLStreamWriter writer) throws XMLStreamException {
+        OutputTree tree = content.getTree();
+        writeDeclaration(writer);
+        boolean empty = content.firstChild(0) == -1 && content.text(0) == null;
+        writeRootStart(tree, writer, empty);
+        if (!empty) {
+            writeContent(content, 0, writer);
+            writer.writeEndElement();
+        }
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Create a writer producing UTF-8 into the stream (closing the writer does not close the stream)
+     */
+    static XMLStreamWriter newWriter(OutputStream out) throws XMLStreamException {
+        return OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Create a writer producing characters (closing the writer does not close the target)
+     */
+    static XMLStreamWriter newWriter(Writer out) throws XMLStreamException {
+        return OUTPUT_FACTORY.createXMLStreamWriter(out);
+    }
+
+    /**
+     * Write the document up to the given node: the declaration, the start tags of its ancestors and
+     * every element before it. The node itself is not written; output continues with {@link #writeEnd}.
+     */
+    static void writeStart(OutputTree.Content content, int node, XMLStreamWriter writer) throws XMLStreamException {
+        OutputTree tree = content.getTree();
+        List<Integer> path = new ArrayList<>();
+        for (int current = node; current != 0; current = tree.parent(current)) {
+            path.add(0, current);
+        }
+        writeDeclaration(writer);
+        writeRootStart(tree, writer, false);
+        int parent = 0;
+        for (int onPath : path) {
+            if (content.text(parent) != null) {
+                writeText(content.text(parent), writer);
+            }
+            for (int child = content.firstChild(parent); child != onPath; child = content.nextSibling(child)) {
+                writeElement(content, child, writer);
+            }
+            if (onPath != node) {
+                writer.writeStartElement(tree.name(onPath));
+            }
+            parent = onPath;
+        }
+    }
+
+    /**
+     * Write the rest of a document started with {@link #writeStart}: the elements after the node
+     * and the end tags of its ancestors. Elements first filled since then that the mappings place
+     * before the node (nodes are numbered in mapping order) are too late and left out.
+     */
+    static void writeEnd(OutputTree.Content content, int node, XMLStreamWriter writer) throws XMLStreamException {
+        OutputTree tree = content.getTree();
+        for (int current = node; current != 0; current = tree.parent(current)) {
+            for (int child = content.nextSibling(current); child != -1; child = content.nextSibling(child)) {
+                if (child > current) {
+                    writeElement(content, child, writer);
+                }
+            }
+            writer.writeEndElement();
+        }
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Write content as a single element named after the tree's root (no declaration or namespaces)
+     */
+    static void writeElement(OutputTree.Content content, XMLStreamWriter writer) throws XMLStreamException {
+        writeElement(content, 0, writer);
+    }
+
+    /**
+     * Serialize a dom4j document built for the tree (used for mixed content) to a string
+     */
+    public static String toString(OutputTree tree, org.dom4j.Document document) throws XMLStreamException {
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out);
+        write(tree, document, writer);
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * Serialize a dom4j document built for the tree (used for mixed content) as UTF-8 into the stream
+     */
+    public static void write(OutputTree tree, org.dom4j.Document document, OutputStream out) throws XMLStreamException {
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        write(tree, document, writer);
+        writer.close();
+    }
+
+    /**
+     * Write a dom4j document built for the tree. The root start tag is taken from the tree.
+     */
+    public static void write(OutputTree tree, org.dom4j.Document document, XMLStreamWriter writer) throws XMLStreamException {
+        Element root = document.getRootElement();
+        writeDeclaration(writer);
+        boolean empty = !hasContent(root);
+        writeRootStart(tree, writer, empty);
+        if (!empty) {
+            writeContent(root, writer);
+            writer.writeEndElement();
+        }
+        writer.writeEndDocument();
+    }
+
+    private static void writeDeclaration(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        writer.writeCharacters("\n");
+    }
+
+    private static void writeRootStart(OutputTree tree, XMLStreamWriter writer, boolean empty) throws XMLStreamException {
+        if (empty && !tree.isExpandEmptyRoot()) {
+            writer.writeEmptyElement(tree.rootName());
+        } else {
+            writer.writeStartElement(tree.rootName());
+        }
+        for (String[] namespace : tree.rootNamespaces()) {
+            if (namespace[0].isEmpty()) {
+                writer.writeDefaultNamespace(namespace[1]);
+            } else {
+                writer.writeNamespace(namespace[0], namespace[1]);
+            }
+        }
+        if (empty && tree.isExpandEmptyRoot()) {
+            writer.writeEndElement();
+        }
+    }
+
+    private static void writeContent(OutputTree.Content content, int node, XMLStreamWriter writer) throws XMLStreamException {
+        String text = content.text(node);
+        if (text != null) {
+            writeText(text, writer);
+        }
+        for (int child = content.firstChild(node); child != -1; child = content.nextSibling(child)) {
+            writeElement(content, child, writer);
+        }
+    }
+
+    private static void writeElement(OutputTree.Content content, int node, XMLStreamWriter writer) throws XMLStreamException {
+        if (content.getTree().isRepeat(node)) {
+            // One element per item of the repeating block
+            for (OutputTree.Content item : content.items(node)) {
+                writeElement(item, 0, writer);
+            }
+            return;
+        }
+        String name = content.getTree().name(node);
+        if (content.firstChild(node) == -1 && content.text(node) == null) {
+            writer.writeEmptyElement(name);
+        } else {
+            writer.writeStartElement(name);
+            writeContent(content, node, writer);
+            writer.writeEndElement();
+        }
+    }
+
+    private static boolean hasContent(Element element) {
+        // Namespace declarations count as content for dom4j, but only the root carries them
+        return element.nodeCount() > 0;
+    }
+
+    private static void writeContent(Element element, XMLStreamWriter writer) throws XMLStreamException {
+        List<Node> nodes = element.content();
+        StringBuilder pendingText = null;
+        String singleText = null;
+        for (Node node : nodes) {
+            if (node instanceof Text) {
+                // Adjacent text nodes are joined before whitespace is collapsed
+                if (singleText == null && pendingText == null) {
+                    singleText = node.getText();
+                } else {
+                    if (pendingText == null) {
+                        pendingText = new StringBuilder(singleText);
+                        singleText = null;
+                    }
+                    pendingText.append(node.getText());
+                }
+            } else if (node instanceof Element) {
+                if (singleText != null || pendingText != null) {
+                    writeText(singleText != null ? singleText : pendingText.toString(), writer);
+                    singleText = null;
+                    pendingText = null;
+                }
+                Element child = (Element) node;
+                if (hasContent(child)) {
+                    writer.writeStartElement(child.getQualifiedName());
+                    writeContent(child, writer);
+                    writer.writeEndElement();
+                } else {
+                    writer.writeEmptyElement(child.getQualifiedName());
+                }
+            }
+        }
+        if (singleText != null || pendingText != null) {
+            writeText(singleText != null ? singleText : pendingText.toString(), writer);
+        }
+    }
+
+    /**
+     * Write text with runs of whitespace collapsed to one space and leading/trailing whitespace removed.
+     * Control characters other than tab, newline and carriage return become character references.
+     */
+    static void writeText(String text, XMLStreamWriter writer) throws XMLStreamException {
+        int length = text.length();
+        boolean plain = true;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) <= ' ') {
+                plain = false;
+                break;
+            }
+        }
+        if (plain) {
+            // Common case: nothing to collapse or encode; '<', '>' and '&' are escaped by the writer
+            writer.writeCharacters(text);
+            return;
+        }
+
+        StringBuilder run = new StringBuilder(length);
+        boolean written = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                pendingSpace = written;
+                continue;
+            }
+            if (pendingSpace) {
+                run.append(' ');
+                pendingSpace = false;
+            }
+            if (c < ' ') {
+                if (run.length() > 0) {
+                    writer.writeCharacters(run.toString());
+                    run.setLength(0);
+                }
+                writer.writeEntityRef("#" + (int) c);
+            } else {
+                run.append(c);
+            }
+            written = true;
+        }
+        if (run.length() > 0) {
+            writer.writeCharacters(run.toString());
+        }
+    }
+}
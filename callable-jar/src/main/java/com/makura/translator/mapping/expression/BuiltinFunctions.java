@@ -0,0 +1,107 @@
+package com.makura.translator.mapping.expression;
+
+import com.makura.translator.mapping.ValueMap;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.makura.translator.mapping.expression.TransformationFunction.ArgumentType.DATE_TIME;
+import static com.makura.translator.mapping.expression.TransformationFunction.ArgumentType.EXPRESSION;
+import static com.makura.translator.mapping.expression.TransformationFunction.ArgumentType.INTEGER;
+import static com.makura.translator.mapping.expression.TransformationFunction.ArgumentType.LITERAL;
+
+/**
+ * The transformation functions shipped with the translator.
+ */
+public final class BuiltinFunctions {
+
+    private BuiltinFunctions() {
+    }
+
+    /**
+     * All built-in functions
+     */
+    public static List<TransformationFunction> all() {
+        return List.of(
+            function("now", List.of(), 0, false, args -> Now.INSTANCE),
+            function("concat", List.of(EXPRESSION), 1, true, args -> new Concat(args.expressions())),
+            function("formatDateTime", List.of(DATE_TIME, LITERAL), 2, false, args -> {
+                String pattern = args.literal(1);
+                try {
+                    return new FormatDateTime(args.dateTime(0), pattern);
+                } catch (IllegalArgumentException e) {
+                    throw new ExpressionParser.ExpressionException("Invalid date pattern '" + pattern + "': " + e.getMessage());
+                }
+            }),
+            function("substring", List.of(EXPRESSION, INTEGER), 2, false,
+                args -> new Substring(args.expression(0), args.integer(1))),
+            function("subtractDays", List.of(DATE_TIME, INTEGER), 2, false,
+                args -> new SubtractDays(args.dateTime(0), args.integer(1))),
+            function("mapStatusToResponseCode", List.of(EXPRESSION), 0, false,
+                args -> new StatusMap(args.size() > 0 ? args.expression(0) : null)),
+            function("extractSessionId", List.of(EXPRESSION), 0, false,
+                args -> new ExtractSessionId(args.size() > 0 ? args.expression(0) : null)),
+            function("coalesce", List.of(EXPRESSION), 1, true, args -> new Coalesce(args.expressions())),
+            function("upper", List.of(EXPRESSION), 1, false, args -> new Upper(args.expression(0))),
+            function("padLeft", List.of(EXPRESSION, INTEGER, LITERAL), 2, false, args -> {
+                String padding = args.size() > 2 ? args.literal(2) : " ";
+                if (padding.length() != 1) {
+                    throw new ExpressionParser.ExpressionException("padLeft expects a single padding character but got '" + padding + "'");
+                }
+                return new PadLeft(args.expression(0), args.integer(1), padding.charAt(0));
+            }),
+            function("lookup", List.of(LITERAL, EXPRESSION, EXPRESSION), 2, false, args -> {
+                String table = args.literal(0);
+                ValueMap valueMap = args.valueMap(table);
+                if (valueMap == null) {
+                    throw new ExpressionParser.ExpressionException("Unknown value map '" + table + "'");
+                }
+                return new Lookup(table, valueMap, args.expression(1), args.size() > 2 ? args.expression(2) : null);
+            }),
+            function("replace", List.of(EXPRESSION, LITERAL, LITERAL), 3, false, args -> {
+                String regex = args.literal(1);
+                try {
+                    return new Replace(args.expression(0), Pattern.compile(regex), args.literal(2));
+                } catch (PatternSyntaxException e) {
+                    throw new ExpressionParser.ExpressionException("Invalid pattern '" + regex + "': " + e.getDescription());
+                }
+            })
+        );
+    }
+
+    private static TransformationFunction function(String name, List<TransformationFunction.ArgumentType> argumentTypes,
+                                                   int minArguments, boolean variadic, Binder binder) {
+        return new TransformationFunction() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public List<ArgumentType> getArgumentTypes() {
+                return argumentTypes;
+            }
+
+            @Override
+            public int getMinArguments() {
+                return minArguments;
+            }
+
+            @Override
+            public boolean isVariadic() {
+                return variadic;
+            }
+
+            @Override
+            public Expression bind(Arguments arguments) throws ExpressionParser.ExpressionException {
+                return binder.bind(arguments);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        Expression bind(TransformationFunction.Arguments arguments) throws ExpressionParser.ExpressionException;
+    }
+}
@@ -0,0 +1,43 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+
+/**
+ * coalesce(arg, ...): the first argument that resolves to a non-empty value, or null if there is none.
+ */
+public final class Coalesce implements Expression {
+
+    private final Expression[] candidates;
+
+    public Coalesce(List<Expression> candidates) {
+        this.candidates = candidates.toArray(new Expression[0]);
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        for (Expression candidate : candidates) {
+            String resolved = candidate.evaluate(value, source);
+            if (resolved != null && !resolved.isEmpty()) {
+                return resolved;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(candidates);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("coalesce(");
+        for (int i = 0; i < candidates.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(candidates[i]);
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,44 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+
+/**
+ * concat(arg, ...): joins the evaluated arguments, skipping those that resolve to null.
+ */
+public final class Concat implements Expression {
+
+    private final Expression[] parts;
+
+    public Concat(List<Expression> parts) {
+        this.parts = parts.toArray(new Expression[0]);
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        StringBuilder result = new StringBuilder();
+        for (Expression part : parts) {
+            String resolved = part.evaluate(value, source);
+            if (resolved != null) {
+                result.append(resolved);
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(parts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("concat(");
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(parts[i]);
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,14 @@
+package com.makura.translator.mapping.expression;
+
+import java.time.LocalDateTime;
+
+/**
+ * Expression that yields a point in time, usable as the date argument of formatDateTime.
+ */
+public interface DateTimeExpression extends Expression {
+
+    /**
+     * Evaluate to a UTC date/time.
+     */
+    LocalDateTime evaluateDateTime();
+}
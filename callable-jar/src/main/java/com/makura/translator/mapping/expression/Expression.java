@@ -0,0 +1,26 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+
+/**
+ * Node of a parsed transformation expression.
+ * Nodes are immutable and shared between threads, so evaluation must not keep state.
+ */
+public interface Expression {
+
+    /**
+     * Evaluate the expression for one message.
+     *
+     * @param value The current field value (can be null)
+     * @param source The parsed source used to resolve source.fieldPath references
+     * @return The result, or null if nothing could be resolved
+     */
+    String evaluate(String value, Object source);
+
+    /**
+     * Argument nodes, used to find the source fields an expression reads
+     */
+    default List<Expression> getChildren() {
+        return List.of();
+    }
+}
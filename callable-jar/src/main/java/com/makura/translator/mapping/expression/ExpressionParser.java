@@ -0,0 +1,264 @@
+package com.makura.translator.mapping.expression;
+
+import com.makura.translator.mapping.SourcePath;
+import com.makura.translator.mapping.ValueMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recursive descent parser for transformation expressions.
+ *
+ * <pre>
+ * transform  := call | expression
+ * expression := call | literal | reference
+ * call       := name '(' [expression (',' expression)*] ')'
+ * literal    := 'text' | "text" | integer
+ * reference  := value | source.fieldPath | bareWord
+ * </pre>
+ *
+ * Function names are resolved through {@link TransformationFunctions} and each call is bound to its
+ * implementation here, so evaluating a tree only invokes the bound nodes.
+ * A transform that is not a function call passes the field's value through unchanged, as transforms
+ * the engine did not recognise always have; literals and references only have meaning as arguments.
+ * Trees parsed for a route belong to its {@link com.makura.translator.mapping.CompiledMapping} and go
+ * away with it when the route is recompiled. Expressions parsed on their own (e.g. through
+ * {@link com.makura.translator.mapping.TransformationEngine}) are kept in a small LRU cache per
+ * expression string instead, so ad-hoc transforms are not parsed on every call but cannot pile up.
+ */
+public final class ExpressionParser {
+
+    private static final int CACHE_SIZE = 1024;
+
+    private static final Map<String, Expression> CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+
+    private final String input;
+    private final Map<String, ValueMap> valueMaps;
+    private int pos;
+
+    private ExpressionParser(String input, Map<String, ValueMap> valueMaps) {
+        this.input = input;
+        this.valueMaps = valueMaps;
+    }
+
+    /**
+     * Parse an expression, returning the cached tree if it was parsed recently.
+     *
+     * @param expression The transformation expression (e.g., "concat('prefix', value)")
+     * @return The parsed expression tree
+     * @throws ExpressionException if the expression is malformed or uses an unknown function
+     */
+    public static Expression parse(String expression) throws ExpressionException {
+        if (expression == null) {
+            throw new ExpressionException("Expression is null");
+        }
+        String key = expression.trim();
+        Expression cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Expression parsed = parse(key, Map.of());
+        CACHE.put(key, parsed);
+        return parsed;
+    }
+
+    /**
+     * Parse an expression of a route, binding lookups to the route's tables. The tree is not cached:
+     * it is owned by the route's compiled mapping.
+     *
+     * @param expression The transformation expression (e.g., "lookup('isoToNip', value, '99')")
+     * @param valueMaps The route's lookup tables by name
+     * @return The parsed expression tree
+     * @throws ExpressionException if the expression is malformed, uses an unknown function or table
+     */
+    public static Expression parse(String expression, Map<String, ValueMap> valueMaps) throws ExpressionException {
+        if (expression == null) {
+            throw new ExpressionException("Expression is null");
+        }
+        ExpressionParser parser = new ExpressionParser(expression.trim(), valueMaps);
+        Expression parsed = parser.parseExpression();
+        parser.skipWhitespace();
+        if (parser.pos < parser.input.length()) {
+            throw parser.error("Unexpected '" + parser.input.charAt(parser.pos) + "'");
+        }
+        if (parsed instanceof Literal || parsed instanceof FieldRef) {
+            parsed = ValueRef.INSTANCE;
+        }
+        return parsed;
+    }
+
+    private Expression parseExpression() throws ExpressionException {
+        skipWhitespace();
+        if (pos >= input.length()) {
+            throw error("Expected an expression");
+        }
+        char c = input.charAt(pos);
+        if (c == '\'' || c == '"') {
+            return new Literal(parseQuoted(c));
+        }
+
+        String word = parseWord();
+        if (word.isEmpty()) {
+            throw error("Unexpected '" + c + "'");
+        }
+        skipWhitespace();
+        if (pos < input.length() && input.charAt(pos) == '(') {
+            pos++;
+            return parseCall(word, parseArguments());
+        }
+        if ("value".equals(word)) {
+            return ValueRef.INSTANCE;
+        }
+        if (word.startsWith("source.")) {
+            return new FieldRef(SourcePath.dotted(word));
+        }
+        // Numbers and unrecognised names are taken literally
+        return new Literal(word);
+    }
+
+    private List<Expression> parseArguments() throws ExpressionException {
+        List<Expression> arguments = new ArrayList<>();
+        skipWhitespace();
+        if (pos < input.length() && input.charAt(pos) == ')') {
+            pos++;
+            return arguments;
+        }
+        while (true) {
+            arguments.add(parseExpression());
+            skipWhitespace();
+            if (pos >= input.length()) {
+                throw error("Missing ')'");
+            }
+            char c = input.charAt(pos++);
+            if (c == ')') {
+                return arguments;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or ')' but found '" + c + "'");
+            }
+        }
+    }
+
+    /**
+     * Resolve a call to its {@link TransformationFunction} and bind it to the checked arguments
+     */
+    private Expression parseCall(String name, List<Expression> args) throws ExpressionException {
+        TransformationFunction function = TransformationFunctions.get(name);
+        if (function == null) {
+            throw error("Unknown function '" + name + "'");
+        }
+        List<TransformationFunction.ArgumentType> types = function.getArgumentTypes();
+        int min = function.getMinArguments();
+        if (function.isVariadic()) {
+            if (args.size() < min) {
+                throw error(name + " requires at least " + min + " argument(s) but got " + args.size());
+            }
+        } else {
+            expectArity(name, args, min, types.size());
+        }
+
+        List<Expression> converted = new ArrayList<>(args.size());
+        for (int i = 0; i < args.size(); i++) {
+            TransformationFunction.ArgumentType type = types.get(Math.min(i, types.size() - 1));
+            Expression arg = args.get(i);
+            switch (type) {
+                case LITERAL -> literalText(name, arg);
+                case INTEGER -> intArgument(name, arg);
+                // Values are not parsed as dates: anything other than a date expression stands for the current time
+                case DATE_TIME -> arg = arg instanceof DateTimeExpression ? arg : Now.INSTANCE;
+                default -> {
+                }
+            }
+            converted.add(arg);
+        }
+        TransformationFunction.Arguments arguments = new TransformationFunction.Arguments(converted, valueMaps);
+        try {
+            return function.bind(arguments);
+        } catch (ExpressionException e) {
+            throw error(e.getMessage());
+        } catch (RuntimeException e) {
+            throw error(name + " cannot be bound: " + e.getMessage());
+        }
+    }
+
+    private void expectArity(String name, List<Expression> args, int min, int max) throws ExpressionException {
+        if (args.size() < min || args.size() > max) {
+            String expected = min == max ? String.valueOf(min) : min + " to " + max;
+            throw error(name + " expects " + expected + " argument(s) but got " + args.size());
+        }
+    }
+
+    private String literalText(String name, Expression arg) throws ExpressionException {
+        if (!(arg instanceof Literal)) {
+            throw error(name + " expects a literal argument but got " + arg);
+        }
+        return ((Literal) arg).getText();
+    }
+
+    private int intArgument(String name, Expression arg) throws ExpressionException {
+        String text = literalText(name, arg);
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw error(name + " expects an integer but got '" + text + "'");
+        }
+    }
+
+    private String parseQuoted(char quote) throws ExpressionException {
+        int start = pos;
+        pos++; // opening quote
+        StringBuilder text = new StringBuilder();
+        while (pos < input.length()) {
+            char c = input.charAt(pos++);
+            if (c == '\\' && pos < input.length()) {
+                text.append(input.charAt(pos++));
+            } else if (c == quote) {
+                return text.toString();
+            } else {
+                text.append(c);
+            }
+        }
+        pos = start;
+        throw error("Unterminated string");
+    }
+
+    private String parseWord() {
+        int start = pos;
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c == '(' || c == ')' || c == ',' || c == '\'' || c == '"' || Character.isWhitespace(c)) {
+                break;
+            }
+            pos++;
+        }
+        return input.substring(start, pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private ExpressionException error(String message) {
+        return new ExpressionException(message + " at position " + pos + " in expression: " + input);
+    }
+
+    /**
+     * Raised for malformed transformation expressions.
+     */
+    public static class ExpressionException extends Exception {
+        public ExpressionException(String message) {
+            super(message);
+        }
+    }
+}
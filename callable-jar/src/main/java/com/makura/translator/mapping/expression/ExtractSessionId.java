@@ -0,0 +1,31 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+
+/**
+ * extractSessionId(field): currently returns the message ID (current value) as-is.
+ */
+public final class ExtractSessionId implements Expression {
+
+    private final Expression argument;
+
+    public ExtractSessionId(Expression argument) {
+        this.argument = argument;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        // In a real scenario, you might extract a specific part of the message ID
+        return value;
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return argument != null ? List.of(argument) : List.of();
+    }
+
+    @Override
+    public String toString() {
+        return "extractSessionId(" + (argument != null ? argument : "") + ")";
+    }
+}
@@ -0,0 +1,30 @@
+package com.makura.translator.mapping.expression;
+
+import com.makura.translator.mapping.SourcePath;
+
+/**
+ * Reference to another source field ("source.fieldPath"), resolved through a pre-split path.
+ */
+public final class FieldRef implements Expression {
+
+    private final SourcePath path;
+
+    public FieldRef(SourcePath path) {
+        this.path = path;
+    }
+
+    public SourcePath getPath() {
+        return path;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        Object resolved = path.resolve(source);
+        return resolved != null ? resolved.toString() : null;
+    }
+
+    @Override
+    public String toString() {
+        return path.getExpression();
+    }
+}
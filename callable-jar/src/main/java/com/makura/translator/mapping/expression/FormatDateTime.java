@@ -0,0 +1,62 @@
+package com.makura.translator.mapping.expression;
+
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * formatDateTime(date, 'pattern') with the formatter built once at parse time.
+ * Non-date arguments (e.g. value) format the current time, as values are not parsed as dates.
+ */
+public final class FormatDateTime implements Expression {
+
+    private final DateTimeExpression date;
+    private final String pattern;
+    private final DateTimeFormatter formatter;
+    private final boolean withOffset;
+
+    public FormatDateTime(DateTimeExpression date, String pattern) {
+        this.date = date;
+        this.pattern = pattern;
+        this.formatter = DateTimeFormatter.ofPattern(normalizePattern(pattern));
+        // If format includes timezone indicator (Z), format with offset
+        this.withOffset = pattern.endsWith("Z") || pattern.endsWith("z");
+    }
+
+    /**
+     * Quote literal T and Z characters for DateTimeFormatter
+     * (e.g. yyyy-MM-ddTHH:mm:ss.SSSZ becomes yyyy-MM-dd'T'HH:mm:ss.SSS'Z')
+     */
+    static String normalizePattern(String format) {
+        String normalizedFormat = format;
+        // Quote T between date and time parts (e.g., yyyy-MM-ddTHH becomes yyyy-MM-dd'T'HH)
+        if (normalizedFormat.contains("THH") || normalizedFormat.contains("Tmm") || normalizedFormat.contains("Tss")) {
+            normalizedFormat = normalizedFormat.replace("T", "'T'");
+        }
+        // Quote Z at the end for UTC timezone indicator
+        if (normalizedFormat.endsWith("Z") && !normalizedFormat.endsWith("'Z'")) {
+            normalizedFormat = normalizedFormat.substring(0, normalizedFormat.length() - 1) + "'Z'";
+        } else if (normalizedFormat.endsWith("z") && !normalizedFormat.endsWith("'z'")) {
+            normalizedFormat = normalizedFormat.substring(0, normalizedFormat.length() - 1) + "'Z'";
+        }
+        return normalizedFormat;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        if (withOffset) {
+            return date.evaluateDateTime().atOffset(ZoneOffset.UTC).format(formatter);
+        }
+        return date.evaluateDateTime().format(formatter);
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(date);
+    }
+
+    @Override
+    public String toString() {
+        return "formatDateTime(" + date + ", '" + pattern + "')";
+    }
+}
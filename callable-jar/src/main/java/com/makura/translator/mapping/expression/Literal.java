@@ -0,0 +1,27 @@
+package com.makura.translator.mapping.expression;
+
+/**
+ * Quoted string, number or unrecognised bare word: evaluates to itself.
+ */
+public final class Literal implements Expression {
+
+    private final String text;
+
+    public Literal(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "'" + text + "'";
+    }
+}
@@ -0,0 +1,57 @@
+package com.makura.translator.mapping.expression;
+
+import com.makura.translator.mapping.ValueMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * lookup('table', arg[, default]): the entry for the argument in one of the route's value maps
+ * (bound when the mapping is compiled). Unknown or missing keys give the default, or null without one.
+ */
+public final class Lookup implements Expression {
+
+    private final String tableName;
+    private final ValueMap table;
+    private final Expression argument;
+    private final Expression defaultValue;
+
+    public Lookup(String tableName, ValueMap table, Expression argument, Expression defaultValue) {
+        this.tableName = tableName;
+        this.table = table;
+        this.argument = argument;
+        this.defaultValue = defaultValue;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        String key = argument.evaluate(value, source);
+        String mapped = key != null ? table.get(key) : null;
+        if (mapped != null) {
+            return mapped;
+        }
+        return defaultValue != null ? defaultValue.evaluate(value, source) : null;
+    }
+
+    /**
+     * The bound table (one instance per table file, shared by the routes that name it)
+     */
+    public ValueMap getTable() {
+        return table;
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        List<Expression> children = new ArrayList<>(2);
+        children.add(argument);
+        if (defaultValue != null) {
+            children.add(defaultValue);
+        }
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        return "lookup('" + tableName + "', " + argument + (defaultValue != null ? ", " + defaultValue : "") + ")";
+    }
+}
@@ -0,0 +1,33 @@
+package com.makura.translator.mapping.expression;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Current UTC time ("now()"). As a string it renders as yyyyMMddHHmmss.
+ */
+public final class Now implements DateTimeExpression {
+
+    public static final Now INSTANCE = new Now();
+
+    private static final DateTimeFormatter COMPACT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private Now() {
+    }
+
+    @Override
+    public LocalDateTime evaluateDateTime() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        return evaluateDateTime().format(COMPACT_TIMESTAMP);
+    }
+
+    @Override
+    public String toString() {
+        return "now()";
+    }
+}
@@ -0,0 +1,43 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+
+/**
+ * padLeft(arg, length[, 'c']): the argument padded on the left to the given length with the character
+ * (a space by default). Longer values are returned unchanged; null stays null.
+ */
+public final class PadLeft implements Expression {
+
+    private final Expression argument;
+    private final int length;
+    private final char padding;
+
+    public PadLeft(Expression argument, int length, char padding) {
+        this.argument = argument;
+        this.length = length;
+        this.padding = padding;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        String resolved = argument.evaluate(value, source);
+        if (resolved == null || resolved.length() >= length) {
+            return resolved;
+        }
+        StringBuilder padded = new StringBuilder(length);
+        for (int i = resolved.length(); i < length; i++) {
+            padded.append(padding);
+        }
+        return padded.append(resolved).toString();
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(argument);
+    }
+
+    @Override
+    public String toString() {
+        return "padLeft(" + argument + ", " + length + ", '" + padding + "')";
+    }
+}
@@ -0,0 +1,37 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * replace(arg, 'regex', 'replacement'): every match of the pattern (compiled when the mapping is compiled)
+ * replaced; the replacement may refer to groups as $1. Null stays null.
+ */
+public final class Replace implements Expression {
+
+    private final Expression argument;
+    private final Pattern pattern;
+    private final String replacement;
+
+    public Replace(Expression argument, Pattern pattern, String replacement) {
+        this.argument = argument;
+        this.pattern = pattern;
+        this.replacement = replacement;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        String resolved = argument.evaluate(value, source);
+        return resolved != null ? pattern.matcher(resolved).replaceAll(replacement) : null;
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(argument);
+    }
+
+    @Override
+    public String toString() {
+        return "replace(" + argument + ", '" + pattern.pattern() + "', '" + replacement + "')";
+    }
+}
@@ -0,0 +1,52 @@
+package com.makura.translator.mapping.expression;
+
+import com.makura.translator.mapping.ValueMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * mapStatusToResponseCode(field): maps the ISO status of the current value to a numeric response code.
+ * Unknown or missing statuses map to "99". Routes with other conventions declare their own table
+ * in {@code valueMaps} and use {@code lookup(table, value, default)} instead.
+ */
+public final class StatusMap implements Expression {
+
+    // Status code mappings
+    private static final ValueMap STATUS_CODE_MAP = ValueMap.of(Map.of(
+        "ACSC", "25",  // Accepted Settlement Completed
+        "ACCP", "00",  // Accepted Customer Profile
+        "ACSP", "01",  // Accepted Settlement In Process
+        "RJCT", "99",  // Rejected
+        "CANC", "98",  // Cancelled
+        "PDNG", "02"   // Pending
+    ));
+
+    private static final String DEFAULT_CODE = "99";
+
+    private final Expression argument;
+
+    public StatusMap(Expression argument) {
+        this.argument = argument;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        // The argument names the status field for readability; the mapped value is the current value
+        if (value == null) {
+            return DEFAULT_CODE;
+        }
+        String code = STATUS_CODE_MAP.get(value);
+        return code != null ? code : DEFAULT_CODE;
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return argument != null ? List.of(argument) : List.of();
+    }
+
+    @Override
+    public String toString() {
+        return "mapStatusToResponseCode(" + (argument != null ? argument : "") + ")";
+    }
+}
@@ -0,0 +1,50 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+
+/**
+ * substring(arg, index): a negative index keeps the last N characters, a positive one drops the first N.
+ * If the argument resolves to null the current value is returned unchanged.
+ */
+public final class Substring implements Expression {
+
+    private final Expression argument;
+    private final int index;
+
+    public Substring(Expression argument, int index) {
+        this.argument = argument;
+        this.index = index;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        String sourceValue = argument.evaluate(value, source);
+        if (sourceValue == null) {
+            return value;
+        }
+
+        if (index < 0) {
+            // Negative index: take last N characters
+            int length = -index;
+            if (sourceValue.length() > length) {
+                return sourceValue.substring(sourceValue.length() - length);
+            }
+            return sourceValue;
+        }
+        // Positive index: take from index to end
+        if (sourceValue.length() > index) {
+            return sourceValue.substring(index);
+        }
+        return sourceValue;
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(argument);
+    }
+
+    @Override
+    public String toString() {
+        return "substring(" + argument + ", " + index + ")";
+    }
+}
@@ -0,0 +1,43 @@
+package com.makura.translator.mapping.expression;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * subtractDays(date, days). As a string it renders as ISO 8601 (yyyy-MM-dd'T'HH:mm:ss.SSS'Z');
+ * wrap it in formatDateTime for custom formatting.
+ */
+public final class SubtractDays implements DateTimeExpression {
+
+    private static final DateTimeFormatter ISO_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+
+    private final DateTimeExpression date;
+    private final int days;
+
+    public SubtractDays(DateTimeExpression date, int days) {
+        this.date = date;
+        this.days = days;
+    }
+
+    @Override
+    public LocalDateTime evaluateDateTime() {
+        return date.evaluateDateTime().minusDays(days);
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        return evaluateDateTime().atOffset(ZoneOffset.UTC).format(ISO_TIMESTAMP);
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(date);
+    }
+
+    @Override
+    public String toString() {
+        return "subtractDays(" + date + ", " + days + ")";
+    }
+}
@@ -0,0 +1,138 @@
+package com.makura.translator.mapping.expression;
+
+import com.makura.translator.mapping.ValueMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A function usable in transformation expressions, e.g. {@code upper(value)}.
+ *
+ * Implementations are found with {@link java.util.ServiceLoader}: list them in
+ * {@code META-INF/services/com.makura.translator.mapping.expression.TransformationFunction}.
+ * The built-in functions ({@link BuiltinFunctions}) take precedence over discovered ones with the same name.
+ *
+ * A call is bound once when its mapping is compiled: the parser checks the arguments against
+ * {@link #getArgumentTypes()} and passes them to {@link #bind}, which returns the node evaluated
+ * for every message. Work that only depends on literal arguments (patterns, lookup tables) belongs in
+ * {@code bind}. Nodes are shared between threads and routes and must not keep per-message state, and
+ * must return their argument nodes from {@link Expression#getChildren()}: source fields are only
+ * extracted from messages when some node of a mapping refers to them.
+ */
+public interface TransformationFunction {
+
+    /**
+     * What an argument must be at bind time
+     */
+    enum ArgumentType {
+        /**
+         * Any expression, evaluated per message
+         */
+        EXPRESSION,
+
+        /**
+         * A quoted string or bare word, known when the call is bound
+         */
+        LITERAL,
+
+        /**
+         * An integer literal
+         */
+        INTEGER,
+
+        /**
+         * A date/time expression such as now() or subtractDays(...); any other argument stands for the current time
+         */
+        DATE_TIME
+    }
+
+    /**
+     * Name the function is called by in expressions
+     */
+    String getName();
+
+    /**
+     * Types of the arguments, in order. For variadic functions the last type applies to all further arguments.
+     */
+    List<ArgumentType> getArgumentTypes();
+
+    /**
+     * Number of arguments that must be given (defaults to all declared ones)
+     */
+    default int getMinArguments() {
+        return getArgumentTypes().size();
+    }
+
+    /**
+     * Whether the last argument type may repeat
+     */
+    default boolean isVariadic() {
+        return false;
+    }
+
+    /**
+     * Bind a call to its checked arguments
+     *
+     * @return The node evaluated for each message
+     * @throws ExpressionParser.ExpressionException if the arguments are unusable (e.g. an invalid pattern)
+     */
+    Expression bind(Arguments arguments) throws ExpressionParser.ExpressionException;
+
+    /**
+     * Arguments of a call, converted according to the function's argument types.
+     */
+    final class Arguments {
+        private final List<Expression> expressions;
+        private final Map<String, ValueMap> valueMaps;
+
+        Arguments(List<Expression> expressions, Map<String, ValueMap> valueMaps) {
+            this.expressions = List.copyOf(expressions);
+            this.valueMaps = valueMaps;
+        }
+
+        public int size() {
+            return expressions.size();
+        }
+
+        /**
+         * All arguments as nodes (DATE_TIME arguments that were not date expressions are now())
+         */
+        public List<Expression> expressions() {
+            return expressions;
+        }
+
+        public Expression expression(int index) {
+            return expressions.get(index);
+        }
+
+        /**
+         * Text of a LITERAL or INTEGER argument
+         */
+        public String literal(int index) {
+            return ((Literal) expressions.get(index)).getText();
+        }
+
+        /**
+         * Value of an INTEGER argument
+         */
+        public int integer(int index) {
+            return Integer.parseInt(literal(index).trim());
+        }
+
+        /**
+         * Value of a DATE_TIME argument
+         */
+        public DateTimeExpression dateTime(int index) {
+            return (DateTimeExpression) expressions.get(index);
+        }
+
+        /**
+         * Lookup table declared by the route being compiled
+         *
+         * @return The table, or null if the route declares none with that name
+         */
+        public ValueMap valueMap(String name) {
+            return valueMaps.get(name);
+        }
+    }
+}
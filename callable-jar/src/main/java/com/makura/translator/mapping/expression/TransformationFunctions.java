@@ -0,0 +1,64 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Functions available to transformation expressions: the built-ins plus every
+ * {@link TransformationFunction} found by {@link ServiceLoader} when the class is first used.
+ */
+public final class TransformationFunctions {
+
+    private static final System.Logger LOG = System.getLogger(TransformationFunctions.class.getName());
+
+    private static final Map<String, TransformationFunction> FUNCTIONS = load();
+
+    private TransformationFunctions() {
+    }
+
+    /**
+     * Function with the given name, or null if there is none
+     */
+    public static TransformationFunction get(String name) {
+        return FUNCTIONS.get(name);
+    }
+
+    /**
+     * Names of all available functions
+     */
+    public static Set<String> names() {
+        return FUNCTIONS.keySet();
+    }
+
+    private static Map<String, TransformationFunction> load() {
+        Map<String, TransformationFunction> functions = new LinkedHashMap<>();
+        for (TransformationFunction function : BuiltinFunctions.all()) {
+            functions.put(function.getName(), function);
+        }
+        Iterator<TransformationFunction> discovered = ServiceLoader.load(TransformationFunction.class).iterator();
+        while (true) {
+            TransformationFunction function;
+            try {
+                if (!discovered.hasNext()) {
+                    break;
+                }
+                function = discovered.next();
+            } catch (ServiceConfigurationError e) {
+                // One broken provider does not take the other functions down
+                LOG.log(System.Logger.Level.WARNING, "Skipping transformation function: {0}", e.getMessage());
+                continue;
+            }
+            TransformationFunction existing = functions.putIfAbsent(function.getName(), function);
+            if (existing != null) {
+                LOG.log(System.Logger.Level.WARNING, "Ignoring transformation function {0} ({1}): the name is already taken by {2}",
+                    function.getName(), function.getClass().getName(), existing.getClass().getName());
+            }
+        }
+        return Collections.unmodifiableMap(functions);
+    }
+}
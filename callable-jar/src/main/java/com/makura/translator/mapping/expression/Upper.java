@@ -0,0 +1,32 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * upper(arg): the argument in upper case (locale independent), or null if it resolves to null.
+ */
+public final class Upper implements Expression {
+
+    private final Expression argument;
+
+    public Upper(Expression argument) {
+        this.argument = argument;
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        String resolved = argument.evaluate(value, source);
+        return resolved != null ? resolved.toUpperCase(Locale.ROOT) : null;
+    }
+
+    @Override
+    public List<Expression> getChildren() {
+        return List.of(argument);
+    }
+
+    @Override
+    public String toString() {
+        return "upper(" + argument + ")";
+    }
+}
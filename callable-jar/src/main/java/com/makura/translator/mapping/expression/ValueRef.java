@@ -0,0 +1,22 @@
+package com.makura.translator.mapping.expression;
+
+/**
+ * The current field value ("value").
+ */
+public final class ValueRef implements Expression {
+
+    public static final ValueRef INSTANCE = new ValueRef();
+
+    private ValueRef() {
+    }
+
+    @Override
+    public String evaluate(String value, Object source) {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "value";
+    }
+}
@@ -3,9 +3,13 @@ package com.makura.translator.parser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
+import org.dom4j.io.SAXReader;
 
 import jakarta.xml.soap.MessageFactory;
+import jakarta.xml.soap.SOAPException;
 import jakarta.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.ByteArrayInputStream;
 import java.util.Map;
 
@@ -16,6 +20,10 @@ public class InputParser {
 
     // Reuse static ObjectMapper instance for better performance
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final javax.xml.transform.TransformerFactory TRANSFORMER_FACTORY =
+        javax.xml.transform.TransformerFactory.newInstance();
+    // Looked up on first use of the SAAJ path
+    private static volatile MessageFactory soapMessageFactory;
     private final ObjectMapper objectMapper;
 
     public InputParser() {
@@ -35,12 +43,40 @@ public class InputParser {
     }
 
     /**
-     * Parse SOAP input to XML Document
+     * Parse SOAP input to XML Document (the payload inside Body)
      */
     public Document parseSoap(String soapContent) throws ParseException {
+        XMLStreamReader payload = SoapBodyReader.openPayload(soapContent);
+        if (payload == null) {
+            return parseSoapMessage(soapContent);
+        }
         try {
-            SOAPMessage soapMessage = MessageFactory.newInstance()
-                .createMessage(null, new ByteArrayInputStream(soapContent.getBytes()));
+            Document document = SoapBodyReader.readDocument(payload);
+            SoapBodyReader.finish(payload);
+            return document;
+        } catch (XMLStreamException e) {
+            throw new ParseException("Failed to parse SOAP: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parse SOAP input with SAAJ (envelopes {@link SoapBodyReader} does not handle, e.g. attachments/MTOM)
+     */
+    public Document parseSoapMessage(String soapContent) throws ParseException {
+        return parseSoapMessage(soapContent.getBytes(), soapContent);
+    }
+
+    /**
+     * Parse encoded SOAP input with SAAJ
+     */
+    public Document parseSoapMessage(byte[] soapContent) throws ParseException {
+        return parseSoapMessage(soapContent, null);
+    }
+
+    private Document parseSoapMessage(byte[] soapBytes, String soapText) throws ParseException {
+        try {
+            SOAPMessage soapMessage = soapMessageFactory()
+                .createMessage(null, new ByteArrayInputStream(soapBytes));
             
             // Extract SOAP body content as XML string (preserving structure)
             jakarta.xml.soap.SOAPBody soapBody = soapMessage.getSOAPBody();
@@ -58,7 +94,7 @@ public class InputParser {
                     // Convert the element to XML string
                     org.w3c.dom.Element element = (org.w3c.dom.Element) child;
                     
-                    javax.xml.transform.Transformer transformer = javax.xml.transform.TransformerFactory.newInstance().newTransformer();
+                    javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
                     javax.xml.transform.dom.DOMSource source = new javax.xml.transform.dom.DOMSource(element);
                     java.io.StringWriter writer = new java.io.StringWriter();
                     javax.xml.transform.stream.StreamResult result = new javax.xml.transform.stream.StreamResult(writer);
@@ -70,12 +106,23 @@ public class InputParser {
             }
             
             // Fallback: try to parse the entire SOAP message as XML
-            return DocumentHelper.parseText(soapContent);
+            return soapText != null
+                ? DocumentHelper.parseText(soapText)
+                : SAXReader.createDefault().read(new ByteArrayInputStream(soapBytes));
         } catch (Exception e) {
             throw new ParseException("Failed to parse SOAP: " + e.getMessage(), e);
         }
     }
 
+    private static MessageFactory soapMessageFactory() throws SOAPException {
+        MessageFactory factory = soapMessageFactory;
+        if (factory == null) {
+            factory = MessageFactory.newInstance();
+            soapMessageFactory = factory;
+        }
+        return factory;
+    }
+
     /**
      * Parse XML input to Document
      */
@@ -0,0 +1,376 @@
+package com.makura.translator.parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass JSON extractor for a fixed set of paths.
+ * The paths of a route are compiled into a trie once; extraction walks the token stream,
+ * keeps only values on the trie and skips every other subtree with {@code skipChildren()}.
+ *
+ * Values are the same objects a full {@code Map} parse would give (String, Integer/Long/BigInteger,
+ * Double, Boolean, null, or Map/List when a path ends on an object or array). Path segments are
+ * object keys or list indexes, with the same matching rules as a walk over the parsed Map.
+ */
+public final class JsonPathExtractor {
+
+    private final Node root;
+    private final int[] slotOfPath;
+    private final int slotCount;
+
+    private JsonPathExtractor(Node root, int[] slotOfPath, int slotCount) {
+        this.root = root;
+        this.slotOfPath = slotOfPath;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * Compile paths (raw segments, e.g. {"customer", "account"}) into an extractor
+     */
+    public static JsonPathExtractor compile(List<String[]> paths) {
+        return compile(paths, List.of());
+    }
+
+    /**
+     * Compile value paths and repeating paths. Every element of an array found at a repeating path
+     * (or the value itself if it is not an array) is passed to the {@link ItemHandler} given to
+     * {@link #extract(InputStream, ItemHandler)}, identified by the index of its path.
+     *
+     * @throws IllegalArgumentException if a repeating path overlaps a value path
+     */
+    public static JsonPathExtractor compile(List<String[]> paths, List<String[]> repeats) {
+        Node root = new Node(new String[0]);
+        Node[] leaves = new Node[paths.size()];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = root.descendant(paths.get(i));
+            leaves[i].leaf = true;
+        }
+        for (int i = 0; i < repeats.size(); i++) {
+            Node node = root.descendant(repeats.get(i));
+            if (node.leaf || node.repeat >= 0 || !node.children.isEmpty() || root.leafAbove(repeats.get(i))) {
+                throw new IllegalArgumentException("Repeating path overlaps another source path: "
+                    + String.join(".", repeats.get(i)));
+            }
+            node.repeat = i;
+        }
+        int slotCount = root.assignSlots(0);
+        int[] slotOfPath = new int[leaves.length];
+        for (int i = 0; i < leaves.length; i++) {
+            slotOfPath[i] = leaves[i].slot;
+        }
+        return new JsonPathExtractor(root, slotOfPath, slotCount);
+    }
+
+    /**
+     * Slot of the i-th compiled path in the array returned by {@link #extract}
+     */
+    public int slotOf(int pathIndex) {
+        return slotOfPath[pathIndex];
+    }
+
+    /**
+     * Extract the values of all compiled paths from a JSON document
+     *
+     * @return Values indexed by slot (null if absent; all null if the document is the JSON literal null)
+     */
+    public Object[] extract(String json) throws InputParser.ParseException {
+        try (JsonParser parser = InputParser.OBJECT_MAPPER.getFactory().createParser(json)) {
+            return extract(parser);
+        } catch (IOException e) {
+            throw new InputParser.ParseException("Failed to parse JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract the values of all compiled paths from a JSON stream (the stream is not closed)
+     */
+    public Object[] extract(InputStream json) throws InputParser.ParseException {
+        try (JsonParser parser = InputParser.OBJECT_MAPPER.getFactory().createParser(json)) {
+            return extract(parser);
+        } catch (IOException e) {
+            throw new InputParser.ParseException("Failed to parse JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract the values of all compiled paths from a JSON stream, passing items at repeating paths
+     * to the handler as they are read (the stream is not closed)
+     */
+    public Object[] extract(InputStream json, ItemHandler handler) throws InputParser.ParseException {
+        try (JsonParser parser = InputParser.OBJECT_MAPPER.getFactory().createParser(json)) {
+            return extract(parser, handler);
+        } catch (IOException e) {
+            throw new InputParser.ParseException("Failed to parse JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract the values of all compiled paths from a JSON document, passing items at repeating paths
+     * to the handler as they are read
+     */
+    public Object[] extract(String json, ItemHandler handler) throws InputParser.ParseException {
+        try (JsonParser parser = InputParser.OBJECT_MAPPER.getFactory().createParser(json)) {
+            return extract(parser, handler);
+        } catch (IOException e) {
+            throw new InputParser.ParseException("Failed to parse JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract values from the value the parser is positioned on, with paths relative to it.
+     * On return the parser is on the last token of that value.
+     */
+    public Object[] extractValue(JsonParser parser, ItemHandler handler) throws IOException {
+        Object[] values = new Object[slotCount];
+        JsonToken token = parser.currentToken();
+        if (root.leaf) {
+            resolveFrom(readAny(parser, token), root, 0, values);
+        } else {
+            readValue(parser, token, root, values, handler);
+        }
+        return values;
+    }
+
+    private Object[] extract(JsonParser parser) throws IOException, InputParser.ParseException {
+        return extract(parser, null);
+    }
+
+    private Object[] extract(JsonParser parser, ItemHandler handler) throws IOException, InputParser.ParseException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new InputParser.ParseException("Failed to parse JSON: No content to map due to end-of-input");
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return new Object[slotCount];
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new InputParser.ParseException("Failed to parse JSON: expected a JSON object but found " + token);
+        }
+        Object[] values = new Object[slotCount];
+        if (root.leaf) {
+            // An empty path selects the whole document
+            resolveFrom(readAny(parser, token), root, 0, values);
+        } else {
+            readObject(parser, root, values, handler);
+        }
+        return values;
+    }
+
+    private void readObject(JsonParser parser, Node node, Object[] values, ItemHandler handler) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Node child = node.children.get(parser.currentName());
+            JsonToken token = parser.nextToken();
+            if (child == null) {
+                parser.skipChildren();
+            } else {
+                // Duplicate keys: the last occurrence replaces everything read from earlier ones
+                Arrays.fill(values, child.firstSlot, child.endSlot, null);
+                readValue(parser, token, child, values, handler);
+            }
+        }
+    }
+
+    private void readArray(JsonParser parser, Node node, Object[] values, ItemHandler handler) throws IOException {
+        int index = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            List<Node> matches = node.indexChildren != null ? node.indexChildren.get(index) : null;
+            if (matches == null) {
+                parser.skipChildren();
+            } else if (matches.size() == 1) {
+                readValue(parser, token, matches.get(0), values, handler);
+            } else {
+                // Several segments name this index (e.g. "1" and "01"): read once, resolve for each
+                Object value = readAny(parser, token);
+                for (Node match : matches) {
+                    resolveFrom(value, match, match.segments.length, values);
+                }
+            }
+            index++;
+        }
+    }
+
+    private void readValue(JsonParser parser, JsonToken token, Node node, Object[] values, ItemHandler handler)
+            throws IOException {
+        if (node.repeat >= 0) {
+            readItems(parser, token, node.repeat, values, handler);
+        } else if (node.leaf) {
+            Object value = readAny(parser, token);
+            resolveFrom(value, node, node.segments.length, values);
+        } else if (token == JsonToken.START_OBJECT) {
+            readObject(parser, node, values, handler);
+        } else if (token == JsonToken.START_ARRAY) {
+            readArray(parser, node, values, handler);
+        }
+        // Scalars below non-leaf nodes cannot be navigated into
+    }
+
+    private void readItems(JsonParser parser, JsonToken token, int repeat, Object[] values, ItemHandler handler)
+            throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            // A single value where a list is expected is one item
+            readItem(parser, repeat, values, handler);
+            return;
+        }
+        JsonToken next;
+        while ((next = parser.nextToken()) != JsonToken.END_ARRAY && next != null) {
+            readItem(parser, repeat, values, handler);
+        }
+    }
+
+    private void readItem(JsonParser parser, int repeat, Object[] values, ItemHandler handler) throws IOException {
+        if (handler != null) {
+            handler.item(repeat, values, parser);
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    private Object readAny(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+            case START_ARRAY:
+                return InputParser.OBJECT_MAPPER.readValue(parser, Object.class);
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Store an already materialized value for a node and everything below it
+     */
+    private void resolveFrom(Object value, Node node, int depth, Object[] values) {
+        if (node.leaf) {
+            values[node.slot] = value;
+        }
+        for (Node child : node.children.values()) {
+            resolveFrom(step(value, child.segments[depth]), child, depth + 1, values);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object step(Object current, String segment) {
+        if (current instanceof Map) {
+            return ((Map<String, Object>) current).get(segment);
+        }
+        if (current instanceof List) {
+            Integer index = parseIndex(segment);
+            List<?> list = (List<?>) current;
+            return index != null && index < list.size() ? list.get(index) : null;
+        }
+        return null;
+    }
+
+    private static Integer parseIndex(String segment) {
+        try {
+            int index = Integer.parseInt(segment);
+            return index >= 0 ? index : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Receives the items found at repeating paths while a document is read.
+     */
+    @FunctionalInterface
+    public interface ItemHandler {
+        /**
+         * Consume one item. The parser is on the item's first token and must be left on its last token.
+         *
+         * @param repeat Index of the repeating path
+         * @param values Values read so far (only paths that precede the item in the document are set)
+         */
+        void item(int repeat, Object[] values, JsonParser parser) throws IOException;
+    }
+
+    /**
+     * Trie node: one path segment below its parent.
+     */
+    private static final class Node {
+        private final String[] segments;                    // full path to this node
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private Map<Integer, List<Node>> indexChildren;     // children whose segment is a list index
+        private boolean leaf;
+        private int repeat = -1;                            // index of the repeating path ending here, -1 if none
+        private int slot = -1;
+        private int firstSlot;                              // slots of this subtree: [firstSlot, endSlot)
+        private int endSlot;
+
+        private Node(String[] segments) {
+            this.segments = segments;
+        }
+
+        private Node child(String segment, String[] path) {
+            Node existing = children.get(segment);
+            if (existing != null) {
+                return existing;
+            }
+            Node created = new Node(path);
+            children.put(segment, created);
+            Integer index = parseIndex(segment);
+            if (index != null) {
+                if (indexChildren == null) {
+                    indexChildren = new HashMap<>();
+                }
+                indexChildren.computeIfAbsent(index, k -> new ArrayList<>(1)).add(created);
+            }
+            return created;
+        }
+
+        private Node descendant(String[] path) {
+            Node current = this;
+            for (int depth = 0; depth < path.length; depth++) {
+                current = current.child(path[depth], Arrays.copyOf(path, depth + 1));
+            }
+            return current;
+        }
+
+        /**
+         * Whether a value path ends above the given path (values there are materialized, not navigated)
+         */
+        private boolean leafAbove(String[] path) {
+            Node current = this;
+            for (String segment : path) {
+                if (current.leaf) {
+                    return true;
+                }
+                current = current.children.get(segment);
+            }
+            return false;
+        }
+
+        private int assignSlots(int next) {
+            firstSlot = next;
+            if (leaf) {
+                slot = next++;
+            }
+            for (Node child : children.values()) {
+                next = child.assignSlots(next);
+            }
+            endSlot = next;
+            return next;
+        }
+    }
+}
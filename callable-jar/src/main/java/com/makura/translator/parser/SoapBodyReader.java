@@ -0,0 +1,211 @@
+package com.makura.translator.parser;
+
+import org.dom4j.Branch;
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Namespace;
+import org.dom4j.QName;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+
+/**
+ * Streams a SOAP 1.1 envelope up to the payload (the first element inside Body), so the payload
+ * can be read directly from the parser: no SAAJ message, no serialization to a string, no re-parse.
+ *
+ * Only plain envelopes are handled (optional Header followed by Body). Anything else (attachments,
+ * MTOM, DTDs, other SOAP versions, an empty Body) is left to the SAAJ path in {@link InputParser}.
+ */
+public final class SoapBodyReader {
+
+    public static final String SOAP_11_ENVELOPE_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    private SoapBodyReader() {
+    }
+
+    /**
+     * Open a reader positioned on the start tag of the payload element
+     *
+     * @return The reader (the caller closes it), or null if the envelope needs the SAAJ path
+     */
+    public static XMLStreamReader openPayload(String soapContent) {
+        try {
+            return openPayload(XmlPathExtractor.inputFactory().createXMLStreamReader(new StringReader(soapContent)));
+        } catch (XMLStreamException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Open a reader over encoded bytes (encoding taken from the XML declaration), positioned on the payload
+     *
+     * @return The reader (the caller closes it), or null if the envelope needs the SAAJ path
+     */
+    public static XMLStreamReader openPayload(byte[] soapContent) {
+        try {
+            return openPayload(XmlPathExtractor.inputFactory().createXMLStreamReader(new ByteArrayInputStream(soapContent)));
+        } catch (XMLStreamException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Open a reader over a stream (the stream is not closed), positioned on the payload.
+     * The stream cannot be re-read, so the caller has no SAAJ fallback.
+     *
+     * @return The reader (the caller closes it), or null if the envelope is not a plain one
+     */
+    public static XMLStreamReader openPayload(InputStream soapContent) {
+        try {
+            return openPayload(XmlPathExtractor.inputFactory().createXMLStreamReader(soapContent));
+        } catch (XMLStreamException e) {
+            return null;
+        }
+    }
+
+    private static XMLStreamReader openPayload(XMLStreamReader reader) {
+        try {
+            if (nextElement(reader) && isSoap(reader, "Envelope") && nextElement(reader)) {
+                if (isSoap(reader, "Header")) {
+                    skipElement(reader);
+                    if (!nextElement(reader)) {
+                        return closeQuietly(reader);
+                    }
+                }
+                if (isSoap(reader, "Body") && nextElement(reader)) {
+                    return reader;
+                }
+            }
+        } catch (XMLStreamException e) {
+            // Malformed or unusual envelope: SAAJ reports the error
+        }
+        return closeQuietly(reader);
+    }
+
+    /**
+     * Read the rest of the envelope after the payload, so malformed messages are still rejected
+     */
+    public static void finish(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            reader.next();
+        }
+        reader.close();
+    }
+
+    /**
+     * Build a dom4j document from the element the reader is positioned on.
+     * On return the reader is on the matching END_ELEMENT.
+     */
+    public static Document readDocument(XMLStreamReader reader) throws XMLStreamException {
+        Document document = DocumentHelper.createDocument();
+        Element root = startElement(reader, document);
+        Element current = root;
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    current = startElement(reader, current);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (current == root) {
+                        return document;
+                    }
+                    current = current.getParent();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    current.addText(reader.getText());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.addCDATA(reader.getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    current.addComment(reader.getText());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.addProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static Element startElement(XMLStreamReader reader, Branch parent) {
+        Element element = parent.addElement(qName(reader.getLocalName(), reader.getPrefix(), reader.getNamespaceURI()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+            element.add(Namespace.get(prefix != null ? prefix : "", uri != null ? uri : ""));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.addAttribute(qName(reader.getAttributeLocalName(i), reader.getAttributePrefix(i),
+                reader.getAttributeNamespace(i)), reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    private static QName qName(String localName, String prefix, String uri) {
+        if (uri == null || uri.isEmpty()) {
+            return DocumentHelper.createQName(localName);
+        }
+        return DocumentHelper.createQName(localName, Namespace.get(prefix != null ? prefix : "", uri));
+    }
+
+    /**
+     * Advance to the next child start tag, allowing only whitespace and comments before it
+     *
+     * @return false if the parent ends first or unexpected content is found
+     */
+    private static boolean nextElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    return true;
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.COMMENT:
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                    if (!reader.isWhiteSpace()) {
+                        return false;
+                    }
+                    break;
+                default:
+                    // DTDs, processing instructions, end tags
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSoap(XMLStreamReader reader, String localName) {
+        return localName.equals(reader.getLocalName()) && SOAP_11_ENVELOPE_NS.equals(reader.getNamespaceURI());
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLStreamReader closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Nothing to release for in-memory input
+            }
+        }
+        return null;
+    }
+}
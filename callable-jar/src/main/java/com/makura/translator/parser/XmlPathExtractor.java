@@ -0,0 +1,313 @@
+package com.makura.translator.parser;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass XML extractor for a fixed set of element paths.
+ * Paths are element local names relative to the root element (namespaces are ignored, as in the
+ * DOM lookup), compiled into a trie once. Extraction follows the StAX event stream, descends only
+ * into elements on the trie and skips every other subtree without building nodes.
+ *
+ * Matching follows the DOM lookup exactly: at each level only the first child element with the
+ * name is considered, and a value is the text directly inside the element (text and CDATA,
+ * not descendants) with whitespace runs collapsed to single spaces and trimmed.
+ */
+public final class XmlPathExtractor {
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final Node root;
+    private final int[] slotOfPath;
+    private final int slotCount;
+    private final int nodeCount;
+
+    private XmlPathExtractor(Node root, int[] slotOfPath, int slotCount, int nodeCount) {
+        this.root = root;
+        this.slotOfPath = slotOfPath;
+        this.slotCount = slotCount;
+        this.nodeCount = nodeCount;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        // The JDK's built-in implementation, with external DTDs and entities disabled as for dom4j parsing
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty("http://java.sun.com/xml/stream/properties/ignore-external-dtd", true);
+        return factory;
+    }
+
+    /**
+     * Shared input factory (external DTDs and entities disabled)
+     */
+    public static XMLInputFactory inputFactory() {
+        return INPUT_FACTORY;
+    }
+
+    /**
+     * Compile paths (element names below the root, e.g. {"GrpHdr", "MsgId"}) into an extractor.
+     * An empty path reads the root element's own text; a null entry is a path that can never match.
+     */
+    public static XmlPathExtractor compile(List<String[]> paths) {
+        return compile(paths, List.of());
+    }
+
+    /**
+     * Compile value paths and repeating paths. Every element found at a repeating path (all siblings
+     * with the name, below the first match of its parent path) is passed to the {@link ItemHandler}
+     * given to {@link #extract(InputStream, ItemHandler)}, identified by the index of its path.
+     *
+     * @throws IllegalArgumentException if a repeating path overlaps a value path
+     */
+    public static XmlPathExtractor compile(List<String[]> paths, List<String[]> repeats) {
+        Node root = new Node(0);
+        int[] nodeCount = {1};
+        int slotCount = 0;
+        int[] slotOfPath = new int[paths.size()];
+        for (int i = 0; i < slotOfPath.length; i++) {
+            String[] names = paths.get(i);
+            if (names == null) {
+                slotOfPath[i] = -1;
+                continue;
+            }
+            Node current = root.descendant(names, nodeCount);
+            if (current.slot < 0) {
+                current.slot = slotCount++;
+            }
+            slotOfPath[i] = current.slot;
+        }
+        for (int i = 0; i < repeats.size(); i++) {
+            String[] names = repeats.get(i);
+            Node node = names.length > 0 ? root.descendant(names, nodeCount) : null;
+            if (node == null || node.slot >= 0 || node.repeat >= 0 || !node.children.isEmpty() || root.repeatAbove(names)) {
+                throw new IllegalArgumentException("Repeating path overlaps another source path: " + String.join("/", names));
+            }
+            node.repeat = i;
+        }
+        return new XmlPathExtractor(root, slotOfPath, slotCount, nodeCount[0]);
+    }
+
+    /**
+     * Slot of the i-th compiled path in the array returned by {@link #extract}, or -1 if it never matches
+     */
+    public int slotOf(int pathIndex) {
+        return slotOfPath[pathIndex];
+    }
+
+    /**
+     * Extract the values of all compiled paths from an XML document
+     *
+     * @return Values indexed by slot (null if the element is absent)
+     */
+    public String[] extract(String xml) throws InputParser.ParseException {
+        return extract(xml, null);
+    }
+
+    /**
+     * Extract the values of all compiled paths from an XML document, passing elements at repeating
+     * paths to the handler as they are read
+     */
+    public String[] extract(String xml, ItemHandler handler) throws InputParser.ParseException {
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+            try {
+                return extractDocument(reader, handler);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new InputParser.ParseException("Failed to parse XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract the values of all compiled paths from an XML stream (the stream is not closed)
+     */
+    public String[] extract(InputStream xml) throws InputParser.ParseException {
+        return extract(xml, null);
+    }
+
+    /**
+     * Extract the values of all compiled paths from an XML stream, passing elements at repeating
+     * paths to the handler as they are read (the stream is not closed)
+     */
+    public String[] extract(InputStream xml, ItemHandler handler) throws InputParser.ParseException {
+        try {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(xml);
+            try {
+                return extractDocument(reader, handler);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new InputParser.ParseException("Failed to parse XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract values from the element the reader is positioned on (a START_ELEMENT, treated as the root).
+     * On return the reader is on the matching END_ELEMENT.
+     */
+    public String[] extractElement(XMLStreamReader reader) throws XMLStreamException {
+        return extractElement(reader, null);
+    }
+
+    /**
+     * Extract values from the element the reader is positioned on, passing elements at repeating
+     * paths to the handler. On return the reader is on the matching END_ELEMENT.
+     */
+    public String[] extractElement(XMLStreamReader reader, ItemHandler handler) throws XMLStreamException {
+        String[] values = new String[slotCount];
+        readElement(reader, root, values, new boolean[nodeCount], handler);
+        return values;
+    }
+
+    private String[] extractDocument(XMLStreamReader reader, ItemHandler handler) throws XMLStreamException {
+        while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            // Prolog: declaration, comments, processing instructions, DOCTYPE
+        }
+        String[] values = extractElement(reader, handler);
+        // Read to the end so malformed documents are still rejected
+        while (reader.hasNext()) {
+            reader.next();
+        }
+        return values;
+    }
+
+    private void readElement(XMLStreamReader reader, Node node, String[] values, boolean[] entered,
+                             ItemHandler handler) throws XMLStreamException {
+        StringBuilder text = node.slot >= 0 ? new StringBuilder() : null;
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Node child = node.children.get(reader.getLocalName());
+                    if (child != null && child.repeat >= 0) {
+                        // Every element with this name is an item
+                        if (handler != null) {
+                            handler.item(child.repeat, values, reader);
+                        } else {
+                            skipElement(reader);
+                        }
+                    } else if (child != null && !entered[child.id]) {
+                        // Only the first element with this name is followed
+                        entered[child.id] = true;
+                        readElement(reader, child, values, entered, handler);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (text != null) {
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (text != null) {
+                        values[node.slot] = normalize(text);
+                    }
+                    return;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Collapse whitespace runs to one space and trim, in place (same result as dom4j's getTextTrim)
+     */
+    static String normalize(StringBuilder text) {
+        int length = text.length();
+        int written = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                pendingSpace = written > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                text.setCharAt(written++, ' ');
+                pendingSpace = false;
+            }
+            text.setCharAt(written++, c);
+        }
+        text.setLength(written);
+        return text.toString();
+    }
+
+    /**
+     * Receives the elements found at repeating paths while a document is read.
+     */
+    @FunctionalInterface
+    public interface ItemHandler {
+        /**
+         * Consume one item. The reader is on the item's START_ELEMENT and must be left on its END_ELEMENT.
+         *
+         * @param repeat Index of the repeating path
+         * @param values Values read so far (only elements that precede the item in the document are set)
+         */
+        void item(int repeat, String[] values, XMLStreamReader reader) throws XMLStreamException;
+    }
+
+    /**
+     * Trie node: one element name below its parent.
+     */
+    private static final class Node {
+        private final int id;
+        private final Map<String, Node> children = new HashMap<>();
+        private int slot = -1;
+        private int repeat = -1;    // index of the repeating path ending here, -1 if none
+
+        private Node(int id) {
+            this.id = id;
+        }
+
+        private Node descendant(String[] names, int[] nodeCount) {
+            Node current = this;
+            for (String name : names) {
+                Node child = current.children.get(name);
+                if (child == null) {
+                    child = new Node(nodeCount[0]++);
+                    current.children.put(name, child);
+                }
+                current = child;
+            }
+            return current;
+        }
+
+        /**
+         * Whether another repeating path ends above the given path
+         */
+        private boolean repeatAbove(String[] names) {
+            Node current = this;
+            for (int i = 0; i < names.length - 1; i++) {
+                current = current.children.get(names[i]);
+                if (current.repeat >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
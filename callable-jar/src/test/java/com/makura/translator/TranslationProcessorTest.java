@@ -0,0 +1,290 @@
+package com.makura.translator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TranslationProcessorTest {
+
+    @Test
+    public void neverDeliversMoreThanRequested() {
+        TranslationProcessor processor = new TranslationProcessor(new StubTranslator(), options("R"), 8);
+        Downstream downstream = new Downstream();
+        Upstream upstream = new Upstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+
+        downstream.subscription.request(2);
+        for (int i = 0; i < 5; i++) {
+            processor.onNext(new SourceMessage("m" + i));
+        }
+        assertEquals(List.of("m0", "m1"), downstream.contents());
+
+        downstream.subscription.request(1);
+        assertEquals(List.of("m0", "m1", "m2"), downstream.contents());
+
+        downstream.subscription.request(10);
+        processor.onComplete();
+        assertEquals(List.of("m0", "m1", "m2", "m3", "m4"), downstream.contents());
+        assertTrue(downstream.completed);
+    }
+
+    @Test
+    public void holdsToMaxInFlight() {
+        TranslationProcessor processor = new TranslationProcessor(new StubTranslator(), options("R"), 4);
+        Downstream downstream = new Downstream();
+        Upstream upstream = new Upstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        assertEquals(4, upstream.requested.get());
+
+        for (int i = 0; i < 4; i++) {
+            processor.onNext(new SourceMessage("m" + i));
+        }
+        // all four are translated but none delivered, so nothing more is asked for
+        assertEquals(4, upstream.requested.get());
+
+        downstream.subscription.request(1);
+        assertEquals(1, downstream.items.size());
+        assertEquals(5, upstream.requested.get());
+
+        downstream.subscription.request(Long.MAX_VALUE);
+        assertEquals(4, downstream.items.size());
+        assertEquals(8, upstream.requested.get());
+    }
+
+    @Test
+    public void keepsOrderPerRouteAndRunsRoutesInParallel() throws Exception {
+        StubTranslator translator = new StubTranslator();
+        // route A's first message is held until route B has been fully delivered
+        CompletableFuture<TranslationResult> firstOfA = new CompletableFuture<>();
+        translator.hold("A0", firstOfA);
+        Executor delays = CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS);
+        translator.async(delays);
+
+        TranslationProcessor processor = new TranslationProcessor(translator,
+            message -> TranslationOptions.builder().routeId(message.getContent().substring(0, 1)).build(), 200);
+        Downstream downstream = new Downstream();
+        downstream.ofRoute("B", 50);
+        processor.subscribe(downstream);
+        processor.onSubscribe(new Upstream());
+        downstream.subscription.request(Long.MAX_VALUE);
+
+        for (int i = 0; i < 50; i++) {
+            processor.onNext(new SourceMessage("A" + i));
+            processor.onNext(new SourceMessage("B" + i));
+        }
+        processor.onComplete();
+
+        assertTrue("route B waited for route A", downstream.routeDone.await(10, TimeUnit.SECONDS));
+        assertFalse(downstream.contents().stream().anyMatch(content -> content.startsWith("A")));
+
+        firstOfA.complete(TranslationResult.withoutForwarding("A0"));
+        assertTrue(downstream.done.await(10, TimeUnit.SECONDS));
+        List<String> a = new ArrayList<>();
+        List<String> b = new ArrayList<>();
+        for (String content : downstream.contents()) {
+            (content.startsWith("A") ? a : b).add(content);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals("A" + i, a.get(i));
+            assertEquals("B" + i, b.get(i));
+        }
+    }
+
+    @Test
+    public void cancelStopsUpstreamDemand() {
+        TranslationProcessor processor = new TranslationProcessor(new StubTranslator(), options("R"), 2);
+        Downstream downstream = new Downstream();
+        Upstream upstream = new Upstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        downstream.subscription.request(Long.MAX_VALUE);
+        processor.onNext(new SourceMessage("m0"));
+        long requestedBeforeCancel = upstream.requested.get();
+
+        downstream.subscription.cancel();
+        processor.onNext(new SourceMessage("m1"));
+        downstream.subscription.request(5);
+
+        assertTrue(upstream.cancelled);
+        assertEquals(requestedBeforeCancel, upstream.requested.get());
+        assertEquals(List.of("m0"), downstream.contents());
+        assertFalse(downstream.completed);
+        assertNull(downstream.error);
+    }
+
+    @Test
+    public void failedMessageDoesNotEndTheStream() {
+        StubTranslator translator = new StubTranslator();
+        translator.hold("m1", CompletableFuture.failedFuture(new Translator.TranslationException("bad m1")));
+        TranslationProcessor processor = new TranslationProcessor(translator, options("R"), 4);
+        Downstream downstream = new Downstream();
+        Upstream upstream = new Upstream();
+        processor.subscribe(downstream);
+        processor.onSubscribe(upstream);
+        downstream.subscription.request(Long.MAX_VALUE);
+
+        for (int i = 0; i < 3; i++) {
+            processor.onNext(new SourceMessage("m" + i));
+        }
+        processor.onComplete();
+
+        assertEquals(3, downstream.items.size());
+        assertTrue(downstream.items.get(0).isSuccess());
+        assertFalse(downstream.items.get(1).isSuccess());
+        assertEquals("bad m1", downstream.items.get(1).getError().getMessage());
+        assertEquals("m2", downstream.items.get(2).getTargetMessage());
+        assertTrue(downstream.completed);
+        assertNull(downstream.error);
+        assertFalse(upstream.cancelled);
+    }
+
+    private static Function<SourceMessage, TranslationOptions> options(String routeId) {
+        TranslationOptions options = TranslationOptions.builder().routeId(routeId).build();
+        return message -> options;
+    }
+
+    /**
+     * Echoes the message content as the target message, right away or on an executor; single messages
+     * can be given their own future
+     */
+    static final class StubTranslator implements Translator {
+        private final Map<String, CompletableFuture<TranslationResult>> held = new ConcurrentHashMap<>();
+        private volatile Executor executor;
+
+        void hold(String content, CompletableFuture<TranslationResult> result) {
+            held.put(content, result);
+        }
+
+        void async(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public CompletableFuture<TranslationResult> translateAsync(SourceMessage request, TranslationOptions options) {
+            CompletableFuture<TranslationResult> result = held.get(request.getContent());
+            if (result != null) {
+                return result;
+            }
+            TranslationResult echo = TranslationResult.withoutForwarding(request.getContent());
+            if (executor == null) {
+                return CompletableFuture.completedFuture(echo);
+            }
+            // random completion order across messages, so only the lanes keep them in order
+            return CompletableFuture.supplyAsync(() -> {
+                sleep(ThreadLocalRandom.current().nextInt(3));
+                return echo;
+            }, executor);
+        }
+
+        @Override
+        public TargetMessage translateRequest(SourceMessage request, String routeId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SourceMessage translateResponse(TargetMessage response, String routeId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TranslationResult translateWithOptions(SourceMessage request, TranslationOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        private static void sleep(int millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Upstream driven by the test: counts what the processor requests
+     */
+    static final class Upstream implements Flow.Subscription {
+        final AtomicLong requested = new AtomicLong();
+        volatile boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    static final class Downstream implements Flow.Subscriber<TranslationResult> {
+        final List<TranslationResult> items = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile boolean completed;
+        volatile Throwable error;
+        private String route;
+        private CountDownLatch routeDone = new CountDownLatch(0);
+
+        /**
+         * Count down {@link #routeDone} once this many results of the route have arrived
+         */
+        void ofRoute(String route, int count) {
+            this.route = route;
+            this.routeDone = new CountDownLatch(count);
+        }
+
+        List<String> contents() {
+            List<String> contents = new ArrayList<>();
+            for (TranslationResult item : items) {
+                contents.add(item.getTargetMessage());
+            }
+            return contents;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(TranslationResult item) {
+            items.add(item);
+            if (route != null && item.getTargetMessage().startsWith(route)) {
+                routeDone.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.makura.translator;
+
+import com.makura.translator.encryption.EncryptionService;
+import com.makura.translator.encryption.EncryptionServiceTest;
+import com.makura.translator.forwarding.HttpForwardingClient;
+import com.makura.translator.mapping.MappingLoader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TranslatorImplTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String baseUrl;
+    private TranslatorImpl translator;
+
+    // Set by the /stream stub once a request arrives, and once the client has hung up on it
+    private final CountDownLatch streaming = new CountDownLatch(1);
+    private final CountDownLatch clientGone = new CountDownLatch(1);
+
+    @BeforeClass
+    public static void disableServerNagle() {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Before
+    public void start() throws IOException {
+        Files.writeString(folder.getRoot().toPath().resolve("A.yaml"), "inboundFormat: JSON\n"
+            + "outboundFormat: ISO_XML\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.amount\n"
+            + "      to: target:Amt\n");
+        Files.writeString(folder.getRoot().toPath().resolve("PAYMENTS.yaml"), "inboundFormat: JSON\n"
+            + "outboundFormat: ISO_XML\n"
+            + "streaming: true\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.payments[*]\n"
+            + "      to: target:CdtTrfTxInf\n"
+            + "      mappings:\n"
+            + "        - from: ref\n"
+            + "          to: PmtId/EndToEndId\n");
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/stream", this::streamForever);
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        translator = new TranslatorImpl(folder.getRoot().toString(), null, new HttpForwardingClient(2000, 5000));
+    }
+
+    @After
+    public void stop() {
+        translator.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void translatesWithoutForwarding() throws Exception {
+        TranslationResult result = translator.translateAsync(amount("10"), options().build()).get(10, TimeUnit.SECONDS);
+
+        assertTrue(result.getTargetMessage(), result.getTargetMessage().contains("<Amt>10</Amt>"));
+        assertFalse(result.isForwarded());
+    }
+
+    @Test
+    public void cancellingTheFutureInterruptsForwarding() throws Exception {
+        CompletableFuture<TranslationResult> result = translator.translateAsync(amount("10"),
+            options().forward(true).endpoint(baseUrl + "/stream").readTimeout(60_000).build());
+        assertTrue("request never reached the stub", streaming.await(10, TimeUnit.SECONDS));
+
+        assertTrue(result.cancel(true));
+
+        // the response never ends, so only an interrupted call hangs up
+        assertTrue("forwarding call kept running", clientGone.await(10, TimeUnit.SECONDS));
+        try {
+            result.get();
+            fail("A cancelled translation returned a result");
+        } catch (CancellationException expected) {
+            assertTrue(result.isCancelled());
+        }
+    }
+
+    @Test
+    public void failedTranslationFailsTheFuture() throws Exception {
+        String message = failure(translator.translateAsync(amount("10"),
+            TranslationOptions.builder().routeId("NO_SUCH_ROUTE").build())).getMessage();
+        assertTrue(message, message.contains("Failed to load mapping"));
+
+        message = failure(translator.translateAsync(new SourceMessage("{not json", "JSON"), options().build())).getMessage();
+        assertEquals("Failed to translate request for routeId: A", message);
+    }
+
+    @Test
+    public void failedForwardingFailsTheFuture() throws Exception {
+        String message = failure(translator.translateAsync(amount("10"),
+            options().forward(true).endpoint(baseUrl + "/missing").build())).getMessage();
+
+        assertTrue(message, message.startsWith("Forwarding failed") && message.contains("404"));
+    }
+
+    @Test
+    public void closedTranslatorRefusesToForward() throws Exception {
+        translator.close();
+
+        String message = failure(translator.translateAsync(amount("10"),
+            options().forward(true).endpoint(baseUrl + "/missing").build())).getMessage();
+        assertTrue(message, message.contains("closed"));
+        // translating alone needs nothing that was released
+        assertTrue(translator.translateAsync(amount("10"), options().build()).get(10, TimeUnit.SECONDS)
+            .getTargetMessage().contains("<Amt>10</Amt>"));
+    }
+
+    @Test
+    public void closingStopsWatchingTheMappingsOfItsOwnLoader() throws Exception {
+        Translator built = new TranslatorBuilder().withMappingsPath(folder.getRoot().toString()).withMappingWatch().build();
+        MappingLoader loader = ((TranslatorImpl) built).getMappingLoader();
+        assertTrue(loader.isWatching());
+
+        built.close();
+        assertFalse(loader.isWatching());
+    }
+
+    @Test
+    public void closingLeavesASharedLoaderWatching() throws Exception {
+        MappingLoader shared = new MappingLoader(folder.getRoot().toString());
+        try {
+            new TranslatorBuilder().withMappingLoader(shared).withMappingWatch().build().close();
+            assertTrue(shared.isWatching());
+        } finally {
+            shared.stopWatching();
+        }
+    }
+
+    @Test
+    public void encryptedStreamOutputDecryptsToTheTranslation() throws Exception {
+        EncryptionService encryption = encryptionService();
+        TranslatorImpl encrypting = new TranslatorImpl(new MappingLoader(folder.getRoot().toString()), encryption, null);
+        String payments = payments(2000, "]}");
+        String expected = plain(encrypting, "PAYMENTS", payments);
+        assertTrue(expected, expected.endsWith("<PmtId><EndToEndId>E1999</EndToEndId></PmtId></CdtTrfTxInf></Document>"));
+
+        for (TranslationOptions.EncryptionType type : TranslationOptions.EncryptionType.values()) {
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            TranslationResult result = encrypting.translateWithOptions(stream("{\"amount\": \"10\"}"), encrypted("A", type), target);
+            assertTrue(result.isSuccess());
+            assertFalse(result.isForwarded());
+            assertEquals(type.name(), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Document><Amt>10</Amt></Document>",
+                decrypt(encryption, type, target));
+
+            target.reset();
+            encrypting.translateWithOptions(stream(payments), encrypted("PAYMENTS", type), target);
+            assertEquals(type.name(), expected, decrypt(encryption, type, target));
+        }
+    }
+
+    @Test
+    public void mappingFailureLeavesNoMessageThatDecrypts() throws Exception {
+        EncryptionService encryption = encryptionService();
+        TranslatorImpl encrypting = new TranslatorImpl(new MappingLoader(folder.getRoot().toString()), encryption, null);
+        // 2000 items are mapped, encrypted and written before the input turns out to be cut off
+        String truncated = payments(2000, ", {\"ref\": ");
+
+        for (TranslationOptions.EncryptionType type : TranslationOptions.EncryptionType.values()) {
+            for (String[] request : new String[][] {{"PAYMENTS", truncated}, {"A", "{not json"}}) {
+                ByteArrayOutputStream target = new ByteArrayOutputStream();
+                try {
+                    encrypting.translateWithOptions(stream(request[1]), encrypted(request[0], type), target);
+                    fail("Broken request translated");
+                } catch (Translator.TranslationException e) {
+                    assertEquals("Failed to translate request for routeId: " + request[0], e.getMessage());
+                }
+                assertNoMessage(encryption, type, target);
+            }
+        }
+    }
+
+    @Test
+    public void batchResultsKeepInputOrderAcrossChunks() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TranslatorImpl batchTranslator = batchTranslator(pool);
+            List<SourceMessage> messages = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                messages.add(amount(String.valueOf(i)));
+            }
+
+            // 16 chunks for the list, 16 chunks of 64 for the iterator
+            assertInOrder(batchTranslator.translateBatch("A", messages).iterator(), messages.size());
+            assertInOrder(batchTranslator.translateBatch("A", messages.iterator()), messages.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failingMessageDoesNotFailTheOthers() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TranslatorImpl batchTranslator = batchTranslator(pool);
+            List<SourceMessage> messages = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                messages.add(i % 7 == 3 ? new SourceMessage("{broken " + i, "JSON") : amount(String.valueOf(i)));
+            }
+
+            for (Iterator<BatchItemResult> results : List.of(
+                    batchTranslator.translateBatch("A", messages).iterator(),
+                    batchTranslator.translateBatch("A", messages.iterator()))) {
+                for (int i = 0; i < messages.size(); i++) {
+                    BatchItemResult result = results.next();
+                    assertEquals(i, result.getIndex());
+                    if (i % 7 == 3) {
+                        assertFalse(result.isSuccess());
+                        assertNull(result.getTargetMessage());
+                        assertEquals("Failed to translate request for routeId: A", result.getError().getMessage());
+                    } else {
+                        assertTrue("message " + i, result.isSuccess());
+                        assertTrue(result.getTargetMessage().getContent().contains("<Amt>" + i + "</Amt>"));
+                    }
+                }
+                assertFalse(results.hasNext());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void iteratorWindowHoldsWhenConsumerIsSlow() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            AtomicInteger pulled = new AtomicInteger();
+            Iterator<SourceMessage> source = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return pulled.get() < 100_000;
+                }
+
+                @Override
+                public SourceMessage next() {
+                    return amount(String.valueOf(pulled.getAndIncrement()));
+                }
+            };
+            // 4 chunks per worker
+            int window = 2 * 4 * TranslatorImpl.BATCH_STREAM_CHUNK;
+
+            Iterator<BatchItemResult> results = batchTranslator(pool).translateBatch("A", source);
+            assertEquals(0, pulled.get());
+            for (int consumed = 0; consumed < 3 * TranslatorImpl.BATCH_STREAM_CHUNK; consumed++) {
+                BatchItemResult result = results.next();
+                assertEquals(consumed, result.getIndex());
+                assertTrue(pulled + " read ahead of " + consumed, pulled.get() <= consumed + window);
+                if (consumed % TranslatorImpl.BATCH_STREAM_CHUNK == 0) {
+                    // a consumer that stops reading stops the source being read
+                    int before = pulled.get();
+                    Thread.sleep(100);
+                    assertEquals(before, pulled.get());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private TranslatorImpl batchTranslator(ForkJoinPool pool) {
+        return new TranslatorImpl(new MappingLoader(folder.getRoot().toString()), null, null, pool);
+    }
+
+    private static void assertInOrder(Iterator<BatchItemResult> results, int count) {
+        for (int i = 0; i < count; i++) {
+            BatchItemResult result = results.next();
+            assertEquals(i, result.getIndex());
+            assertTrue(result.getTargetMessage().getContent().contains("<Amt>" + i + "</Amt>"));
+        }
+        assertFalse(results.hasNext());
+    }
+
+    private EncryptionService encryptionService() throws Exception {
+        Path keys = folder.newFolder("keys").toPath();
+        return new EncryptionService(EncryptionServiceTest.writeKeys(keys));
+    }
+
+    private static TranslationOptions encrypted(String routeId, TranslationOptions.EncryptionType type) {
+        return TranslationOptions.builder().routeId(routeId).encrypt(true).encryptionType(type)
+            .encryptionKeyRef(EncryptionServiceTest.KEY_REF).build();
+    }
+
+    private static String plain(Translator translator, String routeId, String request) throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        translator.translateWithOptions(stream(request), TranslationOptions.builder().routeId(routeId).build(), target);
+        return target.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String decrypt(EncryptionService encryption, TranslationOptions.EncryptionType type,
+                                  ByteArrayOutputStream target) throws Exception {
+        String encrypted = target.toString(StandardCharsets.US_ASCII);
+        return switch (type) {
+            case AES -> encryption.decryptAes(encrypted, EncryptionServiceTest.KEY_REF);
+            case AES_GCM -> encryption.decryptAesGcm(encrypted, EncryptionServiceTest.KEY_REF);
+            case PGP -> encryption.decryptPgp(encrypted, EncryptionServiceTest.KEY_REF);
+        };
+    }
+
+    /**
+     * What was written before the failure does not decrypt, or (AES-CBC, which is not authenticated)
+     * not to a whole document
+     */
+    private static void assertNoMessage(EncryptionService encryption, TranslationOptions.EncryptionType type,
+                                        ByteArrayOutputStream target) throws Exception {
+        String decrypted;
+        try {
+            decrypted = decrypt(encryption, type, target);
+        } catch (EncryptionService.EncryptionException expected) {
+            return;
+        }
+        assertEquals(type + " decrypted " + decrypted, TranslationOptions.EncryptionType.AES, type);
+        assertFalse(decrypted, decrypted.endsWith("</Document>"));
+    }
+
+    /**
+     * A JSON request with the given number of payments, followed by the given end
+     */
+    private static String payments(int count, String end) {
+        StringBuilder json = new StringBuilder("{\"payments\": [");
+        for (int i = 0; i < count; i++) {
+            json.append(i > 0 ? ", " : "").append("{\"ref\": \"E").append(i).append("\"}");
+        }
+        return json.append(end).toString();
+    }
+
+    private static InputStream stream(String request) {
+        return new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SourceMessage amount(String amount) {
+        return new SourceMessage("{\"amount\": \"" + amount + "\"}", "JSON");
+    }
+
+    private static TranslationOptions.TranslationOptionsBuilder options() {
+        return TranslationOptions.builder().routeId("A");
+    }
+
+    /**
+     * The exception the future failed with, which must be a {@link Translator.TranslationException}
+     */
+    private static Translator.TranslationException failure(CompletableFuture<TranslationResult> result) throws Exception {
+        try {
+            result.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Translator.TranslationException translationException) {
+                return translationException;
+            }
+            throw new AssertionError("Failed with " + e.getCause(), e.getCause());
+        }
+        throw new AssertionError("The translation succeeded");
+    }
+
+    /**
+     * Answers with a body that never ends, until the client hangs up
+     */
+    private void streamForever(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        exchange.sendResponseHeaders(200, 0);
+        streaming.countDown();
+        try (OutputStream out = exchange.getResponseBody()) {
+            while (true) {
+                out.write("<Ntry/>\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(5);
+            }
+        } catch (IOException e) {
+            clientGone.countDown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.makura.translator.bench;
+
+import com.makura.translator.encryption.EncryptionService;
+import com.makura.translator.encryption.EncryptionServiceTest;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * AES-GCM against AES-CBC across payload sizes: encryption through the String API and as a stream
+ * stage, and decryption through the String API. Run on demand (see {@link Bench}); payload sizes in
+ * bytes can be given as arguments.
+ */
+public final class AesModesBench {
+
+    private static final int[] DEFAULT_SIZES = {256, 1024, 16 * 1024, 256 * 1024, 1024 * 1024};
+
+    private AesModesBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Bench.sizes(args, DEFAULT_SIZES);
+
+        Path keys = Files.createTempDirectory("aes-bench-keys");
+        EncryptionService service = new EncryptionService(EncryptionServiceTest.writeKeys(keys));
+        String key = EncryptionServiceTest.KEY_REF;
+
+        for (int size : sizes) {
+            String content = Bench.payload(size);
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            String cbcText = service.encryptAes(content, key);
+            String gcmText = service.encryptAesGcm(content, key);
+            if (!content.equals(service.decryptAes(cbcText, key)) || !content.equals(service.decryptAesGcm(gcmText, key))) {
+                throw new IllegalStateException("Round trip failed for " + size + " bytes");
+            }
+
+            double cbc = Bench.report("CBC encrypt (String)", bytes.length, () -> service.encryptAes(content, key));
+            double gcm = Bench.report("GCM encrypt (String)", bytes.length, () -> service.encryptAesGcm(content, key));
+            ratio(gcm, cbc);
+            cbc = Bench.report("CBC encrypt (stream)", bytes.length, () -> {
+                Bench.NullOutputStream out = new Bench.NullOutputStream();
+                try (OutputStream stage = service.encryptAes(out, key)) {
+                    stage.write(bytes);
+                }
+                return out.count;
+            });
+            gcm = Bench.report("GCM encrypt (stream)", bytes.length, () -> {
+                Bench.NullOutputStream out = new Bench.NullOutputStream();
+                try (OutputStream stage = service.encryptAesGcm(out, key)) {
+                    stage.write(bytes);
+                }
+                return out.count;
+            });
+            ratio(gcm, cbc);
+            cbc = Bench.report("CBC decrypt (String)", bytes.length, () -> service.decryptAes(cbcText, key));
+            gcm = Bench.report("GCM decrypt (String)", bytes.length, () -> service.decryptAesGcm(gcmText, key));
+            ratio(gcm, cbc);
+            System.out.println();
+        }
+    }
+
+    private static void ratio(double gcm, double cbc) {
+        System.out.printf(Locale.ROOT, "%-40s %10s %13.2fx%n", "  GCM / CBC", "", gcm / cbc);
+    }
+}
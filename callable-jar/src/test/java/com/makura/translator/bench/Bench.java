@@ -0,0 +1,141 @@
+package com.makura.translator.bench;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Timing loop shared by the benchmark harnesses in this package. These are plain main classes, run on
+ * demand and not by the test suite:
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) com.makura.translator.bench.AesModesBench
+ * </pre>
+ *
+ * Each case runs for a warm-up period and is then timed over several rounds; the median round is
+ * reported. Durations can be changed with -Dbench.warmup, -Dbench.round (seconds) and -Dbench.rounds.
+ */
+final class Bench {
+
+    private static final long WARMUP_NANOS = Long.getLong("bench.warmup", 3) * 1_000_000_000L;
+    private static final long ROUND_NANOS = Long.getLong("bench.round", 2) * 1_000_000_000L;
+    private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+
+    // Results are folded into this so the JIT cannot drop the work that produced them
+    private static volatile int sink;
+
+    private Bench() {
+    }
+
+    /**
+     * One operation of a case; the result is consumed
+     */
+    @FunctionalInterface
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    /**
+     * Operations per second of the median round
+     */
+    static double measure(Operation operation) throws Exception {
+        run(operation, WARMUP_NANOS);
+        double[] rounds = new double[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            rounds[i] = run(operation, ROUND_NANOS);
+        }
+        Arrays.sort(rounds);
+        return rounds[ROUNDS / 2];
+    }
+
+    /**
+     * Print one result line: operations per second, and throughput for the payload size
+     */
+    static void report(String name, int payloadBytes, double perSecond) {
+        System.out.printf(Locale.ROOT, "%-40s %10s %14.0f ops/s %10.1f MB/s%n",
+            name, size(payloadBytes), perSecond, perSecond * payloadBytes / (1024 * 1024));
+    }
+
+    /**
+     * Measure and report a case
+     *
+     * @return Operations per second
+     */
+    static double report(String name, int payloadBytes, Operation operation) throws Exception {
+        double perSecond = measure(operation);
+        report(name, payloadBytes, perSecond);
+        return perSecond;
+    }
+
+    /**
+     * An ISO 20022-like document of at most the given size (repeated entries with varying text)
+     */
+    static String payload(int bytes) {
+        String end = "</FIToFICstmrCdtTrf></Document>";
+        StringBuilder xml = new StringBuilder(bytes)
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Document><FIToFICstmrCdtTrf>");
+        for (int i = 0; ; i++) {
+            String entry = "<CdtTrfTxInf><PmtId><EndToEndId>E2E" + (100_000 + i) + "</EndToEndId></PmtId>"
+                + "<IntrBkSttlmAmt Ccy=\"NGN\">" + (i * 37 % 100_000) + ".00</IntrBkSttlmAmt></CdtTrfTxInf>";
+            if (xml.length() + entry.length() + end.length() > bytes) {
+                return xml.append(end).toString();
+            }
+            xml.append(entry);
+        }
+    }
+
+    /**
+     * Payload sizes given as arguments (in bytes), or the defaults
+     */
+    static int[] sizes(String[] args, int[] defaults) {
+        if (args.length == 0) {
+            return defaults;
+        }
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+
+    static String size(int bytes) {
+        if (bytes >= 1000 * 1024) {
+            return Math.round(bytes / (1024.0 * 1024)) + " MB";
+        }
+        return bytes >= 1000 ? Math.round(bytes / 1024.0) + " KB" : bytes + " B";
+    }
+
+    /**
+     * Discards what is written, counting the bytes
+     */
+    static final class NullOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static double run(Operation operation, long nanos) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + nanos;
+        long count = 0;
+        int hash = 0;
+        long now;
+        do {
+            Object result = operation.run();
+            hash += result != null ? result.hashCode() : 0;
+            count++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        sink += hash;
+        return count * 1e9 / (now - start);
+    }
+}
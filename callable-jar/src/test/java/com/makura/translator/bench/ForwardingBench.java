@@ -0,0 +1,130 @@
+package com.makura.translator.bench;
+
+import com.makura.translator.forwarding.HttpForwardingClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Forwarding throughput against a local stub server, with the connections the client opened.
+ *
+ * The same client forwards to an endpoint that keeps connections alive and to one that closes each
+ * connection after its response (as a client without keep-alive would cause), from 1 to 32 concurrent
+ * senders. The stub answers at once, so the difference is the cost of connection setup; over TLS it is
+ * larger. Run on demand (see {@link Bench}); message sizes in bytes can be given as arguments.
+ */
+public final class ForwardingBench {
+
+    private static final int[] DEFAULT_SIZES = {2 * 1024};
+
+    private static final int[] SENDERS = {1, 8, 32};
+
+    // Client ports seen by the stub: one per TCP connection
+    private static final Set<Integer> CONNECTIONS = ConcurrentHashMap.newKeySet();
+
+    private ForwardingBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // The stub writes headers and body separately; with Nagle each response waits out a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/keep-alive", exchange -> respond(exchange, false));
+        server.createContext("/close", exchange -> respond(exchange, true));
+        ExecutorService serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        try (HttpForwardingClient client = new HttpForwardingClient(2000, 5000)) {
+            for (int size : Bench.sizes(args, DEFAULT_SIZES)) {
+                String message = Bench.payload(size);
+                int bytes = message.length();
+                for (int senders : SENDERS) {
+                    double reused = run(client, base + "/keep-alive", message, senders, "keep-alive", bytes);
+                    double reconnecting = run(client, base + "/close", message, senders, "connection per message", bytes);
+                    System.out.printf(Locale.ROOT, "%-40s %10s %13.2fx%n", "  reuse / reconnect", "", reused / reconnecting);
+                }
+                System.out.println();
+            }
+        } finally {
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+    }
+
+    /**
+     * Forward from the given number of threads and report messages per second and connections per message
+     *
+     * @return Messages per second
+     */
+    private static double run(HttpForwardingClient client, String endpoint, String message, int senders, String name,
+                              int bytes) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(senders);
+        try {
+            forward(client, endpoint, message, threads, senders, Long.getLong("bench.warmup", 3));
+            CONNECTIONS.clear();
+            long seconds = Long.getLong("bench.round", 2) * Integer.getInteger("bench.rounds", 5);
+            long start = System.nanoTime();
+            long sent = forward(client, endpoint, message, threads, senders, seconds);
+            double perSecond = sent * 1e9 / (System.nanoTime() - start);
+
+            Bench.report(name + ", " + senders + " sender(s)", bytes, perSecond);
+            System.out.printf(Locale.ROOT, "%-40s %10s %14d connections for %d messages%n", "", "", CONNECTIONS.size(), sent);
+            return perSecond;
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Forward from every sender until the time is up
+     *
+     * @return Messages forwarded
+     */
+    private static long forward(HttpForwardingClient client, String endpoint, String message, ExecutorService threads,
+                                int senders, long seconds) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        LongAdder sent = new LongAdder();
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < senders; i++) {
+            results.add(threads.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    client.forward(endpoint, message, null);
+                    sent.increment();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        return sent.sum();
+    }
+
+    private static void respond(HttpExchange exchange, boolean close) throws IOException {
+        CONNECTIONS.add(exchange.getRemoteAddress().getPort());
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            if (close) {
+                exchange.getResponseHeaders().set("Connection", "close");
+            }
+            byte[] response = "<Ack/>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.makura.translator.bench;
+
+import com.makura.translator.encryption.EncryptionService;
+import com.makura.translator.encryption.EncryptionServiceTest;
+import com.makura.translator.encryption.PgpProfile;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * PGP encryption throughput per {@link PgpProfile}: cipher, compression and level, for single messages
+ * (String API and stream stage) and for the bulk API, plus decryption of each profile's output.
+ * Run on demand (see {@link Bench}); payload sizes in bytes can be given as arguments.
+ */
+public final class PgpProfileBench {
+
+    private static final int[] DEFAULT_SIZES = {2 * 1024, 64 * 1024, 1024 * 1024};
+
+    private static final int BULK = 32;
+
+    private PgpProfileBench() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Bench.sizes(args, DEFAULT_SIZES);
+
+        Path keys = Files.createTempDirectory("pgp-bench-keys");
+        EncryptionService service = new EncryptionService(EncryptionServiceTest.writeKeys(keys));
+        String key = EncryptionServiceTest.KEY_REF;
+
+        for (int size : sizes) {
+            String content = Bench.payload(size);
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            List<String> batch = Collections.nCopies(BULK, content);
+            double baseline = 0;
+            String baselineName = null;
+
+            for (Map.Entry<String, PgpProfile> named : profiles().entrySet()) {
+                String name = named.getKey();
+                PgpProfile profile = named.getValue();
+                String encrypted = service.encryptPgp(content, key, profile);
+                if (!content.equals(service.decryptPgp(encrypted, key))) {
+                    throw new IllegalStateException("Round trip failed for " + name);
+                }
+
+                double single = Bench.report(name + " encrypt", bytes.length, () -> service.encryptPgp(content, key, profile));
+                if (baselineName == null) {
+                    baseline = single;
+                    baselineName = name;
+                } else {
+                    System.out.printf(Locale.ROOT, "%-40s %10s %13.2fx%n", "  against " + baselineName, "", single / baseline);
+                }
+                Bench.report(name + " encrypt (stream)", bytes.length, () -> {
+                    Bench.NullOutputStream out = new Bench.NullOutputStream();
+                    try (OutputStream stage = service.encryptPgp(out, key, profile)) {
+                        stage.write(bytes);
+                    }
+                    return out.count;
+                });
+                double bulk = Bench.measure(() -> service.encryptPgp(batch, key, profile)) * BULK;
+                Bench.report(name + " encrypt (bulk of " + BULK + ")", bytes.length, bulk);
+                Bench.report(name + " decrypt", bytes.length, () -> service.decryptPgp(encrypted, key));
+                System.out.printf(Locale.ROOT, "%-40s %10s %14d bytes armored%n", "", "", encrypted.length());
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * The profiles compared, the former fixed setup first
+     */
+    private static Map<String, PgpProfile> profiles() {
+        Map<String, PgpProfile> profiles = new LinkedHashMap<>();
+        profiles.put("CAST5", PgpProfile.builder().cipher(PgpProfile.Cipher.CAST5).build());
+        profiles.put("AES-256 (default)", PgpProfile.DEFAULT);
+        profiles.put("AES-128", PgpProfile.builder().cipher(PgpProfile.Cipher.AES_128).build());
+        profiles.put("AES-256 ZLIB 1", PgpProfile.builder().compression(PgpProfile.Compression.ZLIB).compressionLevel(1).build());
+        profiles.put("AES-256 ZLIB 6", PgpProfile.builder().compression(PgpProfile.Compression.ZLIB).build());
+        profiles.put("AES-256 ZIP 1", PgpProfile.builder().compression(PgpProfile.Compression.ZIP).compressionLevel(1).build());
+        return profiles;
+    }
+}
@@ -0,0 +1,205 @@
+package com.makura.translator.encryption;
+
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPDigestCalculatorProviderBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPKeyPair;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EncryptionServiceTest {
+
+    public static final String KEY_REF = "test";
+
+    // Long enough to span several cipher blocks and Base64 lines
+    static final String CONTENT = "<Document><GrpHdr><MsgId>MSG-é€-001</MsgId></GrpHdr>"
+        + "<Ntry>".repeat(200) + "</Document>";
+
+    @ClassRule
+    public static final TemporaryFolder KEYS = new TemporaryFolder();
+
+    static EncryptionService service;
+
+    @BeforeClass
+    public static void createService() throws Exception {
+        service = new EncryptionService(writeKeys(KEYS.getRoot().toPath()));
+    }
+
+    @Test
+    public void aesCbcRoundTripsThroughStreamStages() throws Exception {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream stage = service.encryptAes(encrypted, KEY_REF)) {
+            stage.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(CONTENT, read(service.decryptAes(new ByteArrayInputStream(encrypted.toByteArray()), KEY_REF)));
+        assertEquals(CONTENT, service.decryptAes(encrypted.toString(StandardCharsets.US_ASCII), KEY_REF));
+    }
+
+    @Test
+    public void aesGcmRoundTripsThroughStreamStages() throws Exception {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        try (OutputStream stage = service.encryptAesGcm(encrypted, KEY_REF)) {
+            stage.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(CONTENT, read(service.decryptAesGcm(new ByteArrayInputStream(encrypted.toByteArray()), KEY_REF)));
+        assertEquals(CONTENT, service.decryptAesGcm(encrypted.toString(StandardCharsets.US_ASCII), KEY_REF));
+    }
+
+    @Test
+    public void pgpRoundTripsThroughStreamStages() throws Exception {
+        for (PgpProfile profile : new PgpProfile[] {
+            PgpProfile.DEFAULT,
+            PgpProfile.builder().compression(PgpProfile.Compression.ZIP).build(),
+            PgpProfile.builder().cipher(PgpProfile.Cipher.AES_128).compression(PgpProfile.Compression.ZLIB).build()
+        }) {
+            ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+            try (OutputStream stage = service.encryptPgp(encrypted, KEY_REF, profile)) {
+                stage.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+            }
+
+            assertEquals(profile.toString(), CONTENT,
+                read(service.decryptPgp(new ByteArrayInputStream(encrypted.toByteArray()), KEY_REF)));
+        }
+    }
+
+    @Test
+    public void gcmTagWithOneFlippedBitIsRejected() throws Exception {
+        byte[] binary = Base64.getDecoder().decode(service.encryptAesGcm(CONTENT, KEY_REF));
+        binary[binary.length - 1] ^= 0x01;
+
+        assertRejected(() -> service.decryptAesGcm(base64(binary), KEY_REF));
+        assertRejected(() -> service.decryptAesGcm(wrapped(base64(binary)), KEY_REF));
+    }
+
+    @Test
+    public void pgpMessageWithOneFlippedBitIsRejected() throws Exception {
+        byte[] binary = Base64.getDecoder().decode(service.encryptPgp(CONTENT, KEY_REF));
+        // Inside the encrypted literal data, well before the integrity packet
+        binary[binary.length - 200] ^= 0x01;
+
+        for (Decryption decryption : new Decryption[] {
+            () -> service.decryptPgp(base64(binary), KEY_REF),
+            () -> service.decryptPgp(wrapped(base64(binary)), KEY_REF)
+        }) {
+            String message = assertRejected(decryption).getMessage();
+            assertTrue(message, message.contains("integrity check failed"));
+        }
+    }
+
+    @Test
+    public void pgpMessageWithoutIntegrityPacketIsRejectedBeforeAnyPlaintext() throws Exception {
+        String encrypted = service.encryptPgp(CONTENT, KEY_REF, PgpProfile.builder().integrityPacket(false).build());
+
+        try {
+            InputStream plain = service.decryptPgp(new ByteArrayInputStream(encrypted.getBytes(StandardCharsets.US_ASCII)), KEY_REF);
+            fail("Plaintext was returned: " + read(plain).length() + " characters");
+        } catch (EncryptionService.EncryptionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("integrity packet"));
+        }
+    }
+
+    @Test
+    public void base64WithLineBreaksIsAccepted() throws Exception {
+        assertEquals(CONTENT, read(service.decryptAes(wrapped(service.encryptAes(CONTENT, KEY_REF)), KEY_REF)));
+        assertEquals(CONTENT, read(service.decryptAesGcm(wrapped(service.encryptAesGcm(CONTENT, KEY_REF)), KEY_REF)));
+        assertEquals(CONTENT, read(service.decryptPgp(wrapped(service.encryptPgp(CONTENT, KEY_REF)), KEY_REF)));
+    }
+
+    @Test
+    public void asciiArmoredPgpIsAccepted() throws Exception {
+        ByteArrayOutputStream armored = new ByteArrayOutputStream();
+        try (ArmoredOutputStream armoredOut = new ArmoredOutputStream(armored)) {
+            armoredOut.write(Base64.getDecoder().decode(service.encryptPgp(CONTENT, KEY_REF)));
+        }
+
+        assertEquals(CONTENT, read(service.decryptPgp(new ByteArrayInputStream(armored.toByteArray()), KEY_REF)));
+        assertEquals(CONTENT, service.decryptPgp(armored.toString(StandardCharsets.US_ASCII), KEY_REF));
+    }
+
+    /**
+     * A keys directory with an AES-256 key and an unprotected RSA PGP key pair under {@link #KEY_REF}
+     */
+    public static KeyRegistry writeKeys(Path keysPath) throws Exception {
+        Path aes = Files.createDirectories(keysPath.resolve(KeyRegistry.AES_DIRECTORY));
+        byte[] aesKey = new byte[32];
+        new SecureRandom().nextBytes(aesKey);
+        Files.write(aes.resolve(KEY_REF + ".key"), aesKey);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        PGPKeyPair keyPair = new JcaPGPKeyPair(PGPPublicKey.RSA_GENERAL, generator.generateKeyPair(), new Date());
+        PGPSecretKey secretKey = new PGPSecretKey(PGPSignature.DEFAULT_CERTIFICATION, keyPair, KEY_REF,
+            new JcaPGPDigestCalculatorProviderBuilder().build().get(HashAlgorithmTags.SHA1), null, null,
+            new JcaPGPContentSignerBuilder(keyPair.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256), null);
+
+        Path pgp = Files.createDirectories(keysPath.resolve(KeyRegistry.PGP_DIRECTORY));
+        try (OutputStream out = new ArmoredOutputStream(Files.newOutputStream(pgp.resolve(KEY_REF + "_private.asc")))) {
+            secretKey.encode(out);
+        }
+        try (OutputStream out = new ArmoredOutputStream(Files.newOutputStream(pgp.resolve(KEY_REF + "_public.asc")))) {
+            secretKey.getPublicKey().encode(out);
+        }
+        return new KeyRegistry(keysPath.toString());
+    }
+
+    static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String base64(byte[] binary) {
+        return Base64.getEncoder().encodeToString(binary);
+    }
+
+    /**
+     * Base64 text re-broken into 64-character lines, as mail and PEM tools write it
+     */
+    private static InputStream wrapped(String base64) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < base64.length(); i += 64) {
+            lines.append(base64, i, Math.min(base64.length(), i + 64)).append("\r\n");
+        }
+        return new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static EncryptionService.EncryptionException assertRejected(Decryption decryption) {
+        try {
+            decryption.run();
+        } catch (EncryptionService.EncryptionException expected) {
+            return expected;
+        }
+        throw new AssertionError("Modified content was decrypted");
+    }
+
+    @FunctionalInterface
+    private interface Decryption {
+        Object run() throws EncryptionService.EncryptionException;
+    }
+}
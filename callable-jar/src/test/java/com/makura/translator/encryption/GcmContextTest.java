@@ -0,0 +1,152 @@
+package com.makura.translator.encryption;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.makura.translator.encryption.EncryptionServiceTest.CONTENT;
+import static com.makura.translator.encryption.EncryptionServiceTest.KEY_REF;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class GcmContextTest {
+
+    @ClassRule
+    public static final TemporaryFolder KEYS = new TemporaryFolder();
+
+    private static EncryptionService service;
+
+    @BeforeClass
+    public static void createService() throws Exception {
+        service = new EncryptionService(EncryptionServiceTest.writeKeys(KEYS.getRoot().toPath()));
+    }
+
+    @After
+    public void dropThreadContext() {
+        EncryptionService.GCM.remove();
+    }
+
+    @Test
+    public void reusedThreadContextNeverRepeatsAnIv() throws Exception {
+        int messages = 20_000;
+        Set<ByteBuffer> ivs = new HashSet<>();
+        for (int i = 0; i < messages; i++) {
+            String encrypted;
+            if (i % 2 == 0) {
+                encrypted = service.encryptAesGcm("message " + i, KEY_REF);
+            } else {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (OutputStream stage = service.encryptAesGcm(out, KEY_REF)) {
+                    stage.write(("message " + i).getBytes(StandardCharsets.UTF_8));
+                }
+                encrypted = out.toString(StandardCharsets.US_ASCII);
+            }
+            ivs.add(ByteBuffer.wrap(Arrays.copyOf(Base64.getDecoder().decode(encrypted), 12)));
+        }
+
+        assertEquals(messages, ivs.size());
+        // every message above ran on the thread's own context
+        assertThreadContextIsFree();
+    }
+
+    @Test
+    public void openStageOnTheSameThreadGetsASecondContext() throws Exception {
+        byte[] content = CONTENT.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        OutputStream stage = service.encryptAesGcm(streamed, KEY_REF);
+        stage.write(content, 0, 100);
+
+        EncryptionService.GcmContext second = EncryptionService.GcmContext.acquire();
+        assertNotSame(EncryptionService.GCM.get(), second);
+        second.release();
+
+        // a whole message in between must neither fail nor disturb the open stage
+        String between = service.encryptAesGcm("between", KEY_REF);
+        stage.write(content, 100, content.length - 100);
+        stage.close();
+
+        assertEquals("between", service.decryptAesGcm(between, KEY_REF));
+        assertEquals(CONTENT, service.decryptAesGcm(streamed.toString(StandardCharsets.US_ASCII), KEY_REF));
+        assertNotEquals(between.substring(0, 16), streamed.toString(StandardCharsets.US_ASCII).substring(0, 16));
+        assertThreadContextIsFree();
+    }
+
+    @Test
+    public void stageOpenedOnOneThreadCanBeClosedOnAnother() throws Exception {
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        OutputStream stage = service.encryptAesGcm(streamed, KEY_REF);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try (stage) {
+                stage.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        writer.join(10_000);
+
+        assertNull(failure.get());
+        assertEquals(CONTENT, service.decryptAesGcm(streamed.toString(StandardCharsets.US_ASCII), KEY_REF));
+        assertThreadContextIsFree();
+    }
+
+    @Test
+    public void stringOutputMatchesStreamOutputByteForByte() throws Exception {
+        EncryptionService.GCM.set(new EncryptionService.GcmContext(fixedRandom()));
+        String encrypted = service.encryptAesGcm(CONTENT, KEY_REF);
+
+        EncryptionService.GCM.set(new EncryptionService.GcmContext(fixedRandom()));
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (OutputStream stage = service.encryptAesGcm(streamed, KEY_REF)) {
+            // uneven writes, so blocks straddle the writes
+            byte[] content = CONTENT.getBytes(StandardCharsets.UTF_8);
+            for (int offset = 0; offset < content.length; offset += 7) {
+                stage.write(content, offset, Math.min(7, content.length - offset));
+            }
+        }
+
+        assertEquals(encrypted, streamed.toString(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * The calling thread's own context is handed out, i.e. nothing still holds it
+     */
+    private static void assertThreadContextIsFree() {
+        EncryptionService.GcmContext context = EncryptionService.GcmContext.acquire();
+        try {
+            assertSame(EncryptionService.GCM.get(), context);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Same IV every time, so two encryptions of the same content can be compared
+     */
+    private static SecureRandom fixedRandom() {
+        return new SecureRandom() {
+            @Override
+            public void nextBytes(byte[] bytes) {
+                Arrays.fill(bytes, (byte) 0x5a);
+            }
+        };
+    }
+}
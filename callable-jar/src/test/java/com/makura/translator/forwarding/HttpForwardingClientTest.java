@@ -0,0 +1,307 @@
+package com.makura.translator.forwarding;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Against a local {@link HttpServer} stub that echoes the request body
+ */
+public class HttpForwardingClientTest {
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String endpoint;
+    private HttpForwardingClient client;
+
+    // Client ports seen by the stub: one per TCP connection
+    private final Set<Integer> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<HttpExchange> lastExchange = new AtomicReference<>();
+    private final AtomicReference<byte[]> lastBody = new AtomicReference<>();
+
+    @BeforeClass
+    public static void disableServerNagle() {
+        // The stub writes headers and body separately; with Nagle each response waits out a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/echo", this::echo);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/echo";
+        client = new HttpForwardingClient(2000, 5000);
+    }
+
+    @After
+    public void stopServer() {
+        client.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void forwardsMessageAndReturnsResponse() throws Exception {
+        assertEquals("<Document>ok</Document>", client.forward(endpoint, "<Document>ok</Document>", "secret"));
+        assertEquals("secret", lastExchange.get().getRequestHeaders().getFirst("X-API-Key"));
+        assertEquals("application/xml", lastExchange.get().getRequestHeaders().getFirst("Content-Type"));
+    }
+
+    @Test
+    public void streamsBodyInChunks() throws Exception {
+        byte[] message = new byte[100_000];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) ('a' + i % 26);
+        }
+
+        String response = client.forward(endpoint, out -> {
+            for (int offset = 0; offset < message.length; offset += 1000) {
+                out.write(message, offset, 1000);
+            }
+        }, null, 0, 0);
+
+        assertArrayEquals(message, lastBody.get());
+        assertEquals(new String(message, StandardCharsets.US_ASCII), response);
+        assertEquals("chunked", lastExchange.get().getRequestHeaders().getFirst("Transfer-Encoding"));
+    }
+
+    @Test
+    public void reusesOneConnectionForSequentialMessages() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            client.forward(endpoint, "<m>" + i + "</m>", null);
+            client.forward(endpoint, out -> out.write("<s/>".getBytes(StandardCharsets.UTF_8)), null, 0, 0);
+        }
+
+        assertEquals(connections.toString(), 1, connections.size());
+    }
+
+    @Test
+    public void concurrentSendersReuseTheirConnections() throws Exception {
+        int senders = 8;
+        ExecutorService threads = Executors.newFixedThreadPool(senders);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < senders; t++) {
+                results.add(threads.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        client.forward(endpoint, "<m>" + i + "</m>", null);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // 400 messages; a client without keep-alive would have opened 400 connections
+        assertTrue(connections.toString(), connections.size() <= senders);
+    }
+
+    @Test
+    public void failingWriterAbandonsTheRequest() throws Exception {
+        IOException broken = new IOException("writer broke");
+        try {
+            client.forward(endpoint, out -> {
+                out.write(new byte[40_000]);
+                throw broken;
+            }, null, 0, 0);
+            fail("A truncated body was sent as complete");
+        } catch (HttpForwardingClient.ForwardingException e) {
+            assertSame(broken, e.getCause());
+        }
+
+        assertEquals("<after/>", client.forward(endpoint, "<after/>", null));
+    }
+
+    @Test
+    public void errorResponseFails() throws Exception {
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        try {
+            client.forward(endpoint.replace("/echo", "/missing"), "<m/>", null);
+            fail("404 was returned as a response");
+        } catch (HttpForwardingClient.ForwardingException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("404"));
+        }
+    }
+
+    @Test
+    public void nonPositiveDemandSignalsOnError() throws Exception {
+        HttpForwardingClient.StreamingBody body = new HttpForwardingClient.StreamingBody();
+        RecordingSubscriber subscriber = new RecordingSubscriber(0);
+        body.subscribe(subscriber);
+
+        assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+        try {
+            OutputStream out = body.stream();
+            out.write(1);
+            out.close();
+            fail("The body was completed after onError");
+        } catch (IOException expected) {
+            assertFalse(subscriber.completed);
+        }
+    }
+
+    @Test
+    public void abortDuringOnNextIsSignalledAfterItReturns() throws Exception {
+        HttpForwardingClient.StreamingBody body = new HttpForwardingClient.StreamingBody();
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        subscriber.blockOnNext = new CountDownLatch(1);
+        body.subscribe(subscriber);
+
+        Thread writer = new Thread(() -> {
+            try {
+                // one more byte than a chunk, so the first chunk is sent
+                body.stream().write(new byte[16 * 1024 + 1]);
+            } catch (IOException e) {
+                // the abort below may fail a later write; not what is tested
+            }
+        });
+        writer.start();
+        assertTrue(subscriber.inOnNext.await(10, TimeUnit.SECONDS));
+
+        IOException cause = new IOException("response arrived");
+        body.abort(cause);
+        assertNull("onError overlapped onNext", subscriber.error.get());
+
+        subscriber.blockOnNext.countDown();
+        writer.join(10_000);
+        assertSame(cause, subscriber.error.get());
+        assertFalse("signals overlapped", subscriber.overlapped.get());
+    }
+
+    @Test
+    public void connectTimeoutsShareABoundedSetOfClients() {
+        Set<Integer> timeouts = new TreeSet<>();
+        for (int millis = 1; millis <= 200_000; millis++) {
+            int normalized = HttpForwardingClient.normalizedConnectTimeout(millis);
+            assertTrue(millis + " -> " + normalized, normalized >= Math.min(millis, 60_000));
+            timeouts.add(normalized);
+        }
+
+        assertEquals(Set.of(100, 200, 500, 1000, 2000, 5000, 10_000, 20_000, 50_000, 60_000), timeouts);
+    }
+
+    @Test
+    public void closedClientRefusesCalls() {
+        client.close();
+        try {
+            client.forward(endpoint, "<m/>", null);
+            fail("A closed client forwarded a message");
+        } catch (HttpForwardingClient.ForwardingException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("closed"));
+        }
+    }
+
+    private void echo(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress().getPort());
+        try (exchange) {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            lastExchange.set(exchange);
+            lastBody.set(body);
+            exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * Requests the given demand on subscribe and checks that no two signals overlap
+     */
+    private static final class RecordingSubscriber implements Flow.Subscriber<ByteBuffer> {
+        private final long initialDemand;
+        private final AtomicBoolean signalling = new AtomicBoolean();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch inOnNext = new CountDownLatch(1);
+        volatile CountDownLatch blockOnNext;
+        volatile boolean completed;
+
+        private RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            enter();
+            try {
+                subscription.request(initialDemand);
+            } finally {
+                signalling.set(false);
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            enter();
+            try {
+                inOnNext.countDown();
+                if (blockOnNext != null) {
+                    blockOnNext.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                signalling.set(false);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            enter();
+            error.set(throwable);
+            signalling.set(false);
+        }
+
+        @Override
+        public void onComplete() {
+            enter();
+            completed = true;
+            signalling.set(false);
+        }
+
+        private void enter() {
+            if (!signalling.compareAndSet(false, true)) {
+                overlapped.set(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.makura.translator.mapping;
+
+import org.dom4j.DocumentHelper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Output of the shipped routes against files written by the engine before the StAX output
+ * (dom4j documents and XMLWriter). Inputs and expected files are under src/test/resources/golden.
+ */
+public class GoldenOutputTest {
+
+    private static final String HYDROGEN_NS = " xmlns:ns2=\"urn:iso:std:iso:20022:tech:xsd:pacs.028.001.06\"";
+
+    private final MappingEngine engine = new MappingEngine();
+    private final MappingLoader repoRoutes = new MappingLoader(MappingBundleTest.REPO_MAPPINGS);
+    private final MappingLoader testRoutes = new MappingLoader(golden("routes").toString());
+
+    @Test
+    public void jsonToIso() throws Exception {
+        assertRequest(repoRoutes, "SYSTEM_TO_NIP", "json-to-iso.json", expected("json-to-iso.expected.xml"));
+    }
+
+    @Test
+    public void xmlToIso() throws Exception {
+        assertRequest(repoRoutes, "XML_TO_ISO", "xml-to-iso.xml", expected("xml-to-iso.expected.xml"));
+        // paths start below the root element, so a root named like the first segment matches nothing
+        assertRequest(repoRoutes, "XML_TO_ISO", "xml-to-iso-root-named.xml", expected("xml-to-iso-root-named.expected.xml"));
+    }
+
+    @Test
+    public void soapToIso() throws Exception {
+        assertRequest(repoRoutes, "SOAP_TO_ISO", "soap-to-iso.xml", expected("soap-to-iso.expected.xml"));
+    }
+
+    @Test
+    public void prefixedRootIsDeclaredOnce() throws Exception {
+        // The old output declared xmlns:ns2 twice on the root, which is not well-formed; otherwise it is unchanged
+        String baseline = expected("hydrogen-request.expected.xml");
+        assertTrue(baseline, baseline.contains(HYDROGEN_NS + HYDROGEN_NS));
+
+        String output = assertRequest(testRoutes, "HYDROGEN_STATUS", "hydrogen-request.xml",
+            baseline.replace(HYDROGEN_NS + HYDROGEN_NS, HYDROGEN_NS));
+        assertEquals("ns2:Document", DocumentHelper.parseText(output).getRootElement().getQualifiedName());
+    }
+
+    @Test
+    public void escapedText() throws Exception {
+        assertRequest(repoRoutes, "SYSTEM_TO_NIP", "json-to-iso-escaping.json", expected("json-to-iso-escaping.expected.xml"));
+        assertRequest(repoRoutes, "XML_TO_ISO", "xml-to-iso-escaping.xml", expected("xml-to-iso-escaping.expected.xml"));
+    }
+
+    @Test
+    public void emptyAndAbsentFields() throws Exception {
+        assertRequest(repoRoutes, "SYSTEM_TO_NIP", "json-to-iso-empty-absent.json",
+            expected("json-to-iso-empty-absent.expected.xml"));
+        assertRequest(repoRoutes, "XML_TO_ISO", "xml-to-iso-empty-absent.xml",
+            expected("xml-to-iso-empty-absent.expected.xml"));
+    }
+
+    @Test
+    public void isoToJson() throws Exception {
+        assertResponse(repoRoutes, "SYSTEM_TO_NIP", "JSON", "iso-response.xml", "iso-to-json.expected.json");
+        assertResponse(repoRoutes, "SYSTEM_TO_NIP", "JSON", "iso-response-partial.xml", "iso-to-json-partial.expected.json");
+    }
+
+    @Test
+    public void isoToXml() throws Exception {
+        assertResponse(repoRoutes, "XML_TO_ISO", "XML", "iso-response.xml", "iso-to-xml.expected.xml");
+        assertResponse(testRoutes, "HYDROGEN_STATUS", "XML", "hydrogen-response.xml", "hydrogen-response.expected.xml");
+    }
+
+    @Test
+    public void isoToSoap() throws Exception {
+        assertResponse(repoRoutes, "SOAP_TO_ISO", "SOAP", "iso-response.xml", "iso-to-soap.expected.xml");
+    }
+
+    /**
+     * Translate the input through the String and stream entry points, each of which must give the expected text
+     *
+     * @return The output
+     */
+    private String assertRequest(MappingLoader routes, String routeId, String input, String expected) throws Exception {
+        CompiledMapping mapping = routes.loadCompiledMapping(routeId);
+        String content = Files.readString(golden(input));
+
+        String output = engine.transformToTarget(content, mapping);
+        assertEquals(input, expected, output);
+        assertEquals(input, expected, engine.transformToTarget(content, routes.loadMappingConfig(routeId)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.transformToTarget(content, mapping, out);
+        assertEquals(input, expected, out.toString(StandardCharsets.UTF_8));
+
+        out.reset();
+        try (InputStream in = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))) {
+            engine.transformToTarget(in, mapping, out);
+        }
+        assertEquals(input, expected, out.toString(StandardCharsets.UTF_8));
+        return output;
+    }
+
+    private void assertResponse(MappingLoader routes, String routeId, String format, String input, String expectedFile)
+            throws Exception {
+        CompiledMapping mapping = routes.loadCompiledMapping(routeId);
+        String content = Files.readString(golden(input));
+        String expected = expected(expectedFile);
+
+        assertEquals(input, expected, engine.transformFromTarget(content, mapping, format));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))) {
+            engine.transformFromTarget(in, mapping, format, out);
+        }
+        assertEquals(input, expected, out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static String expected(String name) throws Exception {
+        return Files.readString(golden(name));
+    }
+
+    private static Path golden(String name) {
+        try {
+            return Paths.get(GoldenOutputTest.class.getResource("/golden/" + name).toURI());
+        } catch (Exception e) {
+            throw new IllegalStateException("Missing test resource golden/" + name, e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.makura.translator.mapping;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappingBundleTest {
+
+    // The mappings the runtime service ships with (tests run from the module directory)
+    static final String REPO_MAPPINGS = "../runtime-service/mappings";
+
+    static final List<String> REPO_ROUTES = List.of(
+        "SOAP_TO_ISO", "SYSTEM_TO_HYDROGEN", "SYSTEM_TO_NIP", "SYSTEM_TO_NIP_PASSIVE", "XML_TO_ISO");
+
+    @Test
+    public void repoMappingsRoundTripThroughTheBundle() throws Exception {
+        MappingLoader loader = new MappingLoader(REPO_MAPPINGS);
+        assertFalse(loader.isBundled());
+        Map<String, MappingConfig> configs = new TreeMap<>();
+        for (String routeId : REPO_ROUTES) {
+            configs.put(routeId, loader.loadMappingConfig(routeId));
+        }
+
+        MappingBundle bundle = MappingBundle.wrap(ByteBuffer.wrap(bytes(configs, Map.of())));
+
+        assertEquals(REPO_ROUTES, bundle.routeIds());
+        for (String routeId : REPO_ROUTES) {
+            assertEquals(routeId, configs.get(routeId), bundle.read(routeId));
+        }
+        assertNull(bundle.read("NO_SUCH_ROUTE"));
+        assertFalse(bundle.contains("SYSTEM_TO_NIP_"));
+    }
+
+    @Test
+    public void everyFieldRoundTrips() throws Exception {
+        MappingConfig config = everyField();
+        Map<String, String> currencies = new LinkedHashMap<>();
+        currencies.put("566", "NGN");
+        currencies.put("", "empty key");
+        currencies.put("null value", null);
+
+        // unset optional values inside a section have their own encoding
+        MappingConfig sparse = new MappingConfig();
+        sparse.setPgp(new MappingConfig.PgpConfig(null, null, null, null));
+
+        MappingBundle bundle = MappingBundle.wrap(ByteBuffer.wrap(
+            bytes(Map.of("FULL", config, "ÉLAN_ROUTE", sparse), Map.of("currencies", currencies))));
+
+        assertEquals(config, bundle.read("FULL"));
+        sparse.setRouteId("ÉLAN_ROUTE");
+        assertEquals(sparse, bundle.read("ÉLAN_ROUTE"));
+        assertEquals(currencies, bundle.readValueMap("currencies"));
+        assertNull(bundle.readValueMap("FULL"));
+        assertNull(bundle.read("currencies"));
+    }
+
+    @Test
+    public void sameInputGivesSameBytes() throws Exception {
+        Map<String, MappingConfig> configs = new LinkedHashMap<>();
+        configs.put("B", everyField());
+        configs.put("A", new MappingConfig());
+        Map<String, MappingConfig> reversed = new LinkedHashMap<>();
+        reversed.put("A", new MappingConfig());
+        reversed.put("B", everyField());
+
+        assertTrue(Arrays.equals(bytes(configs, Map.of()), bytes(reversed, Map.of())));
+    }
+
+    @Test
+    public void openedFileMatchesWrittenBundle() throws Exception {
+        Path file = Files.createTempFile("mappings", ".bundle");
+        try {
+            Files.write(file, bytes(Map.of("FULL", everyField()), Map.of()));
+            assertEquals(everyField(), MappingBundle.open(file).read("FULL"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws Exception {
+        byte[] bundle = bytes(Map.of("FULL", everyField(), "OTHER", new MappingConfig()), Map.of());
+
+        // cut inside the header, inside the index, and inside the last entry
+        for (int length : new int[] {0, 10, 20, bundle.length - 1}) {
+            assertRejected(Arrays.copyOf(bundle, length));
+        }
+    }
+
+    @Test
+    public void wrongVersionIsRejected() throws Exception {
+        ByteBuffer bundle = ByteBuffer.wrap(bytes(Map.of("FULL", everyField()), Map.of()));
+        short version = bundle.getShort(4);
+        for (int other : new int[] {version - 1, version + 1}) {
+            bundle.putShort(4, (short) other);
+            try {
+                MappingBundle.wrap(bundle);
+                fail("Version " + other + " was accepted");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("version"));
+            }
+        }
+    }
+
+    @Test
+    public void indexOffsetOutOfRangeIsRejected() throws Exception {
+        byte[] valid = bytes(Map.of("FULL", everyField()), Map.of("currencies", Map.of("566", "NGN")));
+        // each of the 4 ints of both index entries (header is 14 bytes, entries 16)
+        for (int field = 14; field < 14 + 2 * 16; field += 4) {
+            for (int value : new int[] {-1, valid.length + 1, Integer.MAX_VALUE}) {
+                ByteBuffer bundle = ByteBuffer.wrap(valid.clone());
+                bundle.putInt(field, value);
+                assertRejected(bundle.array());
+            }
+        }
+    }
+
+    @Test
+    public void notABundleIsRejected() {
+        assertRejected("routeId: SYSTEM_TO_NIP\n".getBytes());
+    }
+
+    private static void assertRejected(byte[] bundle) {
+        try {
+            MappingBundle.wrap(ByteBuffer.wrap(bundle));
+            fail("Invalid bundle of " + bundle.length + " bytes was accepted");
+        } catch (IOException expected) {
+            // refused when opened, not on a later lookup
+        }
+    }
+
+    static byte[] bytes(Map<String, MappingConfig> configs, Map<String, Map<String, String>> valueMaps) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MappingBundle.write(configs, valueMaps, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * A route with every optional section set, nulls in lists and a nested repeating block
+     */
+    private static MappingConfig everyField() {
+        MappingConfig.FieldMapping item = new MappingConfig.FieldMapping("amount", "Amt", "upper(value)", "0", null);
+        MappingConfig.FieldMapping block = new MappingConfig.FieldMapping("source.payments[*]", "target:Pmt", null, null,
+            Arrays.asList(item, null, new MappingConfig.FieldMapping("legs[*]", "Leg", null, null, List.of(item))));
+        Map<String, Object> valueMaps = new LinkedHashMap<>();
+        valueMaps.put("currency", "currencies");
+        valueMaps.put("status", new LinkedHashMap<>(Map.of("00", "ACSC", "01", "RJCT")));
+
+        MappingConfig config = new MappingConfig();
+        config.setRouteId("FULL");
+        config.setInboundFormat("JSON");
+        config.setOutboundFormat("ISO_XML");
+        config.setMode("ACTIVE");
+        config.setEndpoint("https://nip.bank/api/payments");
+        config.setAuth(new MappingConfig.AuthConfig("API_KEY", "k€y"));
+        config.setNamespace(new MappingConfig.NamespaceConfig("urn:iso:std:iso:20022", "", "ns2"));
+        config.setRootElementName("Document");
+        config.setStreaming(true);
+        config.setMappings(new MappingConfig.Mappings(List.of(block), null));
+        config.setValueMaps(valueMaps);
+        config.setPgp(new MappingConfig.PgpConfig("AES_128", "ZLIB", 1, false));
+        config.setDecryption(new MappingConfig.DecryptionConfig("AES_GCM", "inbound"));
+        return config;
+    }
+}
@@ -0,0 +1,220 @@
+package com.makura.translator.mapping;
+
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappingCompilerTest {
+
+    private static final String HEADER = "routeId: R\ninboundFormat: JSON\n";
+
+    @Test
+    public void sourceAndTargetPrefixesAreStripped() throws Exception {
+        CompiledMapping mapping = compile(HEADER
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.customer.account\n"
+            + "      to: target:Document/GrpHdr/MsgId\n"
+            + "    - from: customer.name\n"
+            + "      to: source.GrpHdr.Nm\n"
+            + "  response:\n"
+            + "    - from: target:GrpHdr/MsgId\n"
+            + "      to: source.TSQuerySingleResponse.SessionID\n");
+
+        CompiledMapping.FieldPlan account = mapping.getRequestMappings().get(0);
+        assertEquals("source.customer.account", account.getFrom());
+        assertEquals(List.of("customer", "account"), account.getSourcePath().getSegments());
+        // the leading segment naming the root is skipped
+        assertEquals(List.of("GrpHdr", "MsgId"), account.getTargetPath().getElementNames());
+
+        CompiledMapping.FieldPlan name = mapping.getRequestMappings().get(1);
+        assertEquals(List.of("customer", "name"), name.getSourcePath().getSegments());
+        assertEquals(List.of("GrpHdr", "Nm"), name.getTargetPath().getElementNames());
+
+        CompiledMapping.FieldPlan response = mapping.getResponseMappings().get(0);
+        assertEquals(List.of("GrpHdr", "MsgId"), response.getSourcePath().getSegments());
+        assertArrayEquals(new String[] {"source", "TSQuerySingleResponse", "SessionID"}, response.getJsonPath());
+        assertEquals("TSQuerySingleResponse", mapping.getResponseRootName());
+        assertEquals(List.of("SessionID"), response.getTargetPath().getElementNames());
+    }
+
+    @Test
+    public void targetPathsShareTheirElementsAndInheritTheNamespace() throws Exception {
+        CompiledMapping mapping = compile(HEADER
+            + "rootElementName: Doc\n"
+            + "namespace:\n"
+            + "  uri: urn:example\n"
+            + "  prefix: ns2\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: a\n"
+            + "      to: target:GrpHdr/MsgId\n"
+            + "    - from: b\n"
+            + "      to: target:Doc/ GrpHdr //CreDtTm\n"
+            + "    - from: c\n"
+            + "      to: target:TxInf/GrpHdr/MsgId\n"
+            + "    - from: d\n"
+            + "      to: \"target:GrpHdr/ \"\n");
+
+        TargetPath msgId = mapping.getRequestMappings().get(0).getTargetPath();
+        TargetPath creDtTm = mapping.getRequestMappings().get(1).getTargetPath();
+        TargetPath nested = mapping.getRequestMappings().get(2).getTargetPath();
+        TargetPath blank = mapping.getRequestMappings().get(3).getTargetPath();
+
+        assertEquals("ns2:Doc", mapping.getRootQName().getQualifiedName());
+        assertTrue(mapping.hasNamespace());
+        assertEquals(List.of("GrpHdr", "CreDtTm"), creDtTm.getElementNames());
+        assertEquals(msgId.containerNode(), creDtTm.containerNode());
+        assertNotEquals(msgId.lastNode(), nested.lastNode());
+        assertEquals("ns2:MsgId", msgId.getLastQName().getQualifiedName());
+        assertEquals("urn:example", msgId.getLastQName().getNamespaceURI());
+
+        // root, GrpHdr, MsgId, CreDtTm, TxInf, TxInf/GrpHdr, TxInf/GrpHdr/MsgId
+        assertEquals(7, mapping.getRequestTree().size());
+        assertFalse(blank.hasLeaf());
+        assertEquals(List.of("GrpHdr"), blank.getElementNames());
+    }
+
+    @Test
+    public void repeatingBlocksAreCompiledAgainstTheirItems() throws Exception {
+        CompiledMapping mapping = compile(HEADER
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.payments[*]\n"
+            + "      to: target:Document/CdtTrfTxInf\n"
+            + "      mappings:\n"
+            + "        - from: ref\n"
+            + "          to: target:PmtId/EndToEndId\n");
+
+        CompiledMapping.FieldPlan block = mapping.getRequestMappings().get(0);
+        assertTrue(block.isRepeat());
+        assertEquals(List.of("payments"), block.getSourcePath().getSegments());
+        assertEquals(List.of("CdtTrfTxInf"), block.getTargetPath().getElementNames());
+
+        CompiledMapping.RepeatPlan repeat = block.getRepeat();
+        CompiledMapping.FieldPlan item = repeat.getItemMappings().get(0);
+        assertEquals(List.of("ref"), item.getSourcePath().getSegments());
+        assertEquals(List.of("PmtId", "EndToEndId"), item.getTargetPath().getElementNames());
+        assertEquals("CdtTrfTxInf", repeat.getItemTree().rootName());
+    }
+
+    @Test
+    public void constantsAreFoldedIntoTheTemplate() throws Exception {
+        CompiledMapping mapping = compile(HEADER
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: constant:pacs.008.001.12\n"
+            + "      to: target:OrgnlGrpInf/OrgnlMsgNmId\n"
+            + "    - from: constant:abc\n"
+            + "      to: target:GrpHdr/Upper\n"
+            + "      transform: upper(value)\n"
+            + "    - from: constant:first\n"
+            + "      to: target:GrpHdr/Twice\n"
+            + "    - from: source.second\n"
+            + "      to: target:GrpHdr/Twice\n");
+
+        CompiledMapping.FieldPlan constant = mapping.getRequestMappings().get(0);
+        assertTrue(constant.isConstant());
+        assertEquals("pacs.008.001.12", constant.getConstantValue());
+        assertNull(constant.getSourcePath());
+
+        // only the source field set: the template writes the folded constant, but not the transformed
+        // constant or the one another mapping also writes
+        OutputTree.Content content = mapping.getRequestTree().newContent();
+        mapping.getRequestMappings().get(3).getTargetPath().setValue(content, "v");
+        String rendered = mapping.getRequestTree().getTemplate().toString(content);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Document>"
+            + "<OrgnlGrpInf><OrgnlMsgNmId>pacs.008.001.12</OrgnlMsgNmId></OrgnlGrpInf>"
+            + "<GrpHdr><Twice>v</Twice></GrpHdr></Document>", rendered);
+    }
+
+    @Test
+    public void valueMapsAreBoundAtCompileTime() throws Exception {
+        CompiledMapping mapping = new MappingCompiler().compile(config(HEADER
+            + "valueMaps:\n"
+            + "  currencies: {566: NGN, 840: USD}\n"
+            + "  banks: banks.yaml\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.ccy\n"
+            + "      to: target:Ccy\n"
+            + "      transform: lookup(currencies, value, 'XXX')\n"
+            + "    - from: source.bank\n"
+            + "      to: target:Bank\n"
+            + "      transform: lookup(banks, value)\n"),
+            name -> {
+                assertEquals("banks.yaml", name);
+                return ValueMap.of(Map.of("058", "GTB"));
+            });
+
+        assertEquals("NGN", mapping.getRequestMappings().get(0).getTransform().evaluate("566", null));
+        assertEquals("XXX", mapping.getRequestMappings().get(0).getTransform().evaluate("978", null));
+        assertEquals("GTB", mapping.getRequestMappings().get(1).getTransform().evaluate("058", null));
+    }
+
+    @Test
+    public void invalidMappingsAreRejectedAtCompileTime() throws Exception {
+        String request = "mappings:\n  request:\n";
+        assertRejected("Invalid transform", HEADER + request
+            + "    - from: a\n      to: target:A\n      transform: noSuchFunction(value)\n");
+        assertRejected("Invalid transform", HEADER + request
+            + "    - from: a\n      to: target:A\n      transform: \"concat(value, 'x'\"\n");
+        assertRejected("Invalid transform", HEADER + request
+            + "    - from: a\n      to: target:A\n      transform: lookup(missing, value)\n");
+        assertRejected("only supported in request mappings", HEADER
+            + "mappings:\n  response:\n    - from: items[*]\n      to: Items\n      mappings: []\n");
+        assertRejected("must be a path ending with [*]", HEADER + request
+            + "    - from: items\n      to: target:Item\n      mappings: []\n");
+        assertRejected("has no target path", HEADER + request
+            + "    - from: items[*]\n      mappings: []\n");
+        assertRejected("continues below repeating element", HEADER + request
+            + "    - from: items[*]\n      to: target:Item\n      mappings: []\n"
+            + "    - from: a\n      to: target:Item/Id\n");
+        assertRejected("also used by another target path", HEADER + request
+            + "    - from: a\n      to: target:Item\n"
+            + "    - from: items[*]\n      to: target:Item\n      mappings: []\n");
+        assertRejected("exactly one repeating block, found 2", HEADER + "streaming: true\n" + request
+            + "    - from: a[*]\n      to: target:A\n      mappings: []\n"
+            + "    - from: b[*]\n      to: target:B\n      mappings: []\n");
+        assertRejected("not supported for inbound format", "routeId: R\ninboundFormat: ISO8583\nstreaming: true\n" + request
+            + "    - from: a[*]\n      to: target:A\n      mappings: []\n");
+        assertRejected("cannot give a value to an element that also has child elements", HEADER + "streaming: true\n" + request
+            + "    - from: a[*]\n      to: target:A\n      mappings: []\n"
+            + "    - from: b\n      to: target:B\n"
+            + "    - from: c\n      to: target:B/C\n");
+        assertRejected("no table files are available", HEADER + "valueMaps:\n  banks: banks.yaml\n");
+        assertRejected("must be a map of values", HEADER + "valueMaps:\n  banks: [a, b]\n");
+        assertRejected("keys and values must be plain values", HEADER + "valueMaps:\n  banks: {a: [1, 2]}\n");
+        assertRejected("Invalid pgp section", HEADER + "pgp:\n  cipher: DES\n");
+        assertRejected("Invalid pgp section", HEADER + "pgp:\n  compression: ZIP\n  compressionLevel: 12\n");
+        assertRejected("requires a keyRef", HEADER + "decryption:\n  type: AES\n");
+        assertRejected("Invalid decryption type", HEADER + "decryption:\n  type: RSA\n  keyRef: k\n");
+    }
+
+    private static CompiledMapping compile(String yaml) throws MappingCompiler.MappingCompileException {
+        return new MappingCompiler().compile(config(yaml));
+    }
+
+    private static MappingConfig config(String yaml) {
+        return new Yaml().loadAs(yaml, MappingConfig.class);
+    }
+
+    private static void assertRejected(String message, String yaml) {
+        try {
+            compile(yaml);
+            fail("Compiled: " + yaml);
+        } catch (MappingCompiler.MappingCompileException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
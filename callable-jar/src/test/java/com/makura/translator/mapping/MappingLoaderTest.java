@@ -0,0 +1,161 @@
+package com.makura.translator.mapping;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MappingLoaderTest {
+
+    private static final int THREADS = 16;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void concurrentMissesShareOneCompilation() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Files.writeString(directory.resolve("A.yaml"), route("http://a"));
+        MappingLoader loader = new MappingLoader(directory.toString());
+
+        for (int round = 0; round < 50; round++) {
+            loader.evict("A");
+            List<CompiledMapping> plans = concurrently(thread -> loader.loadCompiledMapping("A"));
+            for (CompiledMapping plan : plans) {
+                assertSame("round " + round, plans.get(0), plan);
+            }
+        }
+    }
+
+    @Test
+    public void concurrentMissesForDifferentRoutesParseEachFileOnItsOwn() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        for (int i = 0; i < THREADS; i++) {
+            Files.writeString(directory.resolve("R" + i + ".yaml"), route("http://r" + i));
+        }
+        MappingLoader loader = new MappingLoader(directory.toString());
+
+        for (int round = 0; round < 20; round++) {
+            loader.evictAll();
+            List<CompiledMapping> plans = concurrently(thread -> loader.loadCompiledMapping("R" + thread));
+            for (int i = 0; i < THREADS; i++) {
+                assertEquals("R" + i, plans.get(i).getRouteId());
+                assertEquals("http://r" + i, plans.get(i).getConfig().getEndpoint());
+            }
+        }
+    }
+
+    @Test
+    public void concurrentMissesStayWithinMaxEntries() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        for (int i = 0; i < THREADS; i++) {
+            Files.writeString(directory.resolve("R" + i + ".yaml"), route("http://r" + i));
+        }
+        MappingLoader loader = new MappingLoader(directory.toString(), 2);
+
+        for (int round = 0; round < 20; round++) {
+            concurrently(thread -> loader.loadCompiledMapping("R" + thread));
+            assertTrue(loader.cachedRouteIds().toString(), loader.cachedRouteIds().size() <= 2);
+        }
+    }
+
+    @Test
+    public void fullCacheEvictsTheLeastRecentlyUsedRoute() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        for (String routeId : List.of("A", "B", "C", "D", "E")) {
+            Files.writeString(directory.resolve(routeId + ".yaml"), route("http://" + routeId));
+        }
+        MappingLoader loader = new MappingLoader(directory.toString(), 3);
+
+        loader.loadCompiledMapping("A");
+        loader.loadCompiledMapping("B");
+        loader.loadCompiledMapping("C");
+        // past the interval in which a route keeps its place
+        Thread.sleep(150);
+        loader.loadCompiledMapping("A");
+        loader.loadCompiledMapping("D");
+        assertEquals(Set.of("A", "C", "D"), loader.cachedRouteIds());
+
+        // routes evicted by hand are skipped when they come up
+        loader.evict("C");
+        loader.loadCompiledMapping("E");
+        loader.loadCompiledMapping("B");
+        assertEquals(Set.of("D", "E", "B"), loader.cachedRouteIds());
+    }
+
+    @Test
+    public void failedMissIsReportedToEveryWaitingCaller() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Files.writeString(directory.resolve("BROKEN.yaml"), "endpoint: [unclosed\n");
+        MappingLoader loader = new MappingLoader(directory.toString());
+
+        List<String> outcomes = concurrently(thread -> {
+            try {
+                loader.loadCompiledMapping("BROKEN");
+                return "loaded";
+            } catch (MappingLoader.MappingLoadException e) {
+                return "failed";
+            }
+        });
+
+        assertEquals(THREADS, outcomes.stream().filter("failed"::equals).count());
+        assertTrue(loader.cachedRouteIds().isEmpty());
+    }
+
+    private static String route(String endpoint) {
+        return "inboundFormat: JSON\n"
+            + "outboundFormat: ISO_XML\n"
+            + "endpoint: \"" + endpoint + "\"\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.amount\n"
+            + "      to: target:Amt\n";
+    }
+
+    /**
+     * Run the task on {@link #THREADS} threads released at once; results by thread number
+     */
+    private static <T> List<T> concurrently(Task<T> task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                Callable<T> call = () -> {
+                    start.await();
+                    return task.run(thread);
+                };
+                futures.add(threads.submit(call));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task<T> {
+        T run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,310 @@
+package com.makura.translator.mapping;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappingWatcherTest {
+
+    // Upper bound for the watcher to pick up a change (the debounce itself is 100 ms)
+    private static final long WAIT_MILLIS = 10_000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private CountingLoader loader;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = folder.getRoot().toPath();
+        Files.createDirectory(directory.resolve(MappingLoader.VALUE_MAPS_DIRECTORY));
+        loader = new CountingLoader(directory.toString());
+    }
+
+    @After
+    public void stopWatching() {
+        loader.stopWatching();
+    }
+
+    @Test
+    public void plansAreSwappedOnCreateModifyAndDelete() throws Exception {
+        write("A.yaml", route("http://a/v1"));
+        loader.startWatching();
+        CompiledMapping first = loader.loadCompiledMapping("A");
+
+        // a reader that must see a complete plan on every lookup until the file is deleted
+        AtomicBoolean deleting = new AtomicBoolean();
+        AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!deleting.get()) {
+                try {
+                    String endpoint = loader.loadCompiledMapping("A").getConfig().getEndpoint();
+                    if (!endpoint.equals("http://a/v1") && !endpoint.equals("http://a/v2")) {
+                        throw new AssertionError("Unexpected endpoint " + endpoint);
+                    }
+                } catch (Throwable e) {
+                    if (!deleting.get()) {
+                        readerFailure.compareAndSet(null, e);
+                    }
+                    return;
+                }
+            }
+        });
+        reader.start();
+
+        write("B.yaml", route("http://b/v1"));
+        eventually(() -> loader.cachedRouteIds().contains("B"));
+        assertEquals("http://b/v1", loader.loadCompiledMapping("B").getConfig().getEndpoint());
+
+        write("A.yaml", route("http://a/v2"));
+        eventually(() -> endpointOf("A").equals("http://a/v2"));
+        // translations that started on the old plan keep it
+        assertEquals("http://a/v1", first.getConfig().getEndpoint());
+
+        deleting.set(true);
+        reader.join(WAIT_MILLIS);
+        assertNull(readerFailure.get());
+        Files.delete(directory.resolve("A.yaml"));
+        eventually(() -> !loader.cachedRouteIds().contains("A"));
+        try {
+            loader.loadMappingConfig("A");
+            fail("A deleted route was still served");
+        } catch (MappingLoader.MappingLoadException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("not found"));
+        }
+        assertEquals("http://b/v1", endpointOf("B"));
+    }
+
+    @Test
+    public void brokenFileKeepsThePreviousPlan() throws Exception {
+        write("A.yaml", route("http://a/v1"));
+        loader.startWatching();
+        CompiledMapping before = loader.loadCompiledMapping("A");
+        int reloads = loader.reloads("A");
+
+        write("A.yaml", "endpoint: [unclosed\n");
+        eventually(() -> loader.reloads("A") > reloads);
+
+        assertSame(before, loader.loadCompiledMapping("A"));
+    }
+
+    @Test
+    public void burstOfWritesIsCompiledOnce() throws Exception {
+        write("A.yaml", route("http://a/v0"));
+        loader.startWatching();
+        int reloads = loader.reloads("A");
+
+        // prepared up front, so the burst is only renames
+        List<Path> versions = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            Path version = directory.resolve("A.v" + i);
+            Files.writeString(version, route("http://a/v" + i));
+            versions.add(version);
+        }
+        for (Path version : versions) {
+            Files.move(version, directory.resolve("A.yaml"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        eventually(() -> endpointOf("A").equals("http://a/v10"));
+        // well past the debounce, in case a second compilation was queued
+        Thread.sleep(500);
+        assertEquals(reloads + 1, loader.reloads("A"));
+    }
+
+    @Test
+    public void changedTableFileRecompilesTheRoutesUsingIt() throws Exception {
+        write("valueMaps/currencies.yaml", "\"566\": NGN\n");
+        write("A.yaml", route("http://a/v1", "currencies"));
+        write("B.yaml", route("http://b/v1", "currencies"));
+        write("C.yaml", route("http://c/v1"));
+        loader.startWatching();
+        CompiledMapping a = loader.loadCompiledMapping("A");
+        CompiledMapping b = loader.loadCompiledMapping("B");
+        CompiledMapping c = loader.loadCompiledMapping("C");
+        assertEquals("NGN", lookup(a, "566"));
+
+        write("valueMaps/currencies.yaml", "\"566\": NAIRA\n\"840\": USD\n");
+        eventually(() -> loader.loadCompiledMapping("A") != a && loader.loadCompiledMapping("B") != b);
+
+        assertEquals("NAIRA", lookup(loader.loadCompiledMapping("A"), "566"));
+        assertEquals("USD", lookup(loader.loadCompiledMapping("B"), "840"));
+        assertSame(c, loader.loadCompiledMapping("C"));
+        // the old plans keep the table they were compiled with
+        assertEquals("NGN", lookup(a, "566"));
+        assertNull(lookup(a, "840"));
+    }
+
+    @Test
+    public void missOnRequestThreadsIsCompiledOnTheCompilerThread() throws Exception {
+        write("A.yaml", route("http://a/v1"));
+        loader.startWatching();
+        loader.evict("A");
+        loader.compilerThreads.clear();
+
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<CompiledMapping>> plans = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                plans.add(threads.submit(() -> {
+                    start.await();
+                    return loader.loadCompiledMapping("A");
+                }));
+            }
+            start.countDown();
+            for (Future<CompiledMapping> plan : plans) {
+                assertEquals("http://a/v1", plan.get(WAIT_MILLIS, TimeUnit.MILLISECONDS).getConfig().getEndpoint());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(Set.of("mapping-compiler"), Set.copyOf(loader.compilerThreads));
+        assertTrue(loader.cachedRouteIds().contains("A"));
+    }
+
+    @Test
+    public void missForUnknownOrBrokenRouteFailsTheCaller() throws Exception {
+        write("BROKEN.yaml", "endpoint: [unclosed\n");
+        loader.startWatching();
+
+        for (String routeId : new String[] {"NO_SUCH_ROUTE", "BROKEN"}) {
+            try {
+                loader.loadCompiledMapping(routeId);
+                fail(routeId + " was served");
+            } catch (MappingLoader.MappingLoadException expected) {
+                // reported to the request thread, not swallowed by the compiler thread
+            }
+        }
+        assertFalse(loader.cachedRouteIds().contains("BROKEN"));
+    }
+
+    @Test
+    public void closedWatcherFallsBackToCheckingFiles() throws Exception {
+        write("A.yaml", route("http://a/v1"));
+        loader.startWatching();
+        CompiledMapping watched = loader.loadCompiledMapping("A");
+        loader.stopWatching();
+        assertFalse(loader.isWatching());
+
+        write("A.yaml", route("http://a/version-2"));
+        CompiledMapping checked = loader.loadCompiledMapping("A");
+        assertNotSame(watched, checked);
+        assertEquals("http://a/version-2", checked.getConfig().getEndpoint());
+    }
+
+    private String endpointOf(String routeId) throws MappingLoader.MappingLoadException {
+        return loader.loadCompiledMapping(routeId).getConfig().getEndpoint();
+    }
+
+    private static String lookup(CompiledMapping plan, String key) {
+        return plan.getRequestMappings().get(0).getTransform().evaluate(key, null);
+    }
+
+    private static String route(String endpoint) {
+        return route(endpoint, null);
+    }
+
+    /**
+     * A route mapping one field, through a lookup in the table file when one is given
+     */
+    private static String route(String endpoint, String table) {
+        String yaml = "inboundFormat: JSON\n"
+            + "outboundFormat: ISO_XML\n"
+            + "endpoint: \"" + endpoint + "\"\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.currency\n"
+            + "      to: target:Ccy\n";
+        if (table != null) {
+            yaml += "      transform: \"lookup('ccy', value)\"\n"
+                + "valueMaps:\n"
+                + "  ccy: " + table + "\n";
+        }
+        return yaml;
+    }
+
+    /**
+     * Replace a file in one step, as deployment tools do, so the watcher never reads half of it
+     */
+    private void write(String name, String content) throws Exception {
+        Path target = directory.resolve(name);
+        Path temporary = Files.createTempFile(directory, "write", ".tmp");
+        Files.writeString(temporary, content, StandardCharsets.UTF_8);
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void eventually(Condition condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS);
+        while (!condition.holds()) {
+            if (System.nanoTime() > deadline) {
+                fail("Not picked up within " + WAIT_MILLIS + " ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean holds() throws Exception;
+    }
+
+    /**
+     * Records every recompilation the watcher asks for, and the thread it runs on
+     */
+    private static final class CountingLoader extends MappingLoader {
+        private final Map<String, AtomicInteger> reloads = new ConcurrentHashMap<>();
+        final List<String> compilerThreads = new CopyOnWriteArrayList<>();
+
+        private CountingLoader(String mappingsBasePath) {
+            super(mappingsBasePath);
+        }
+
+        int reloads(String routeId) {
+            AtomicInteger count = reloads.get(routeId);
+            return count != null ? count.get() : 0;
+        }
+
+        @Override
+        CompiledMapping reload(String routeId) throws MappingLoadException {
+            compilerThreads.add(Thread.currentThread().getName());
+            try {
+                return super.reload(routeId);
+            } finally {
+                // counted once finished, so a test waiting on the count sees the outcome
+                reloads.computeIfAbsent(routeId, id -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.makura.translator.mapping;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutputTemplateTest {
+
+    private static final String MSG_ID = "target:FIToFIPmtStsReq/GrpHdr/MsgId";
+    private static final String CRE_DT_TM = "target:FIToFIPmtStsReq/GrpHdr/CreDtTm";
+    private static final String INSTG_MMB_ID = "target:FIToFIPmtStsReq/GrpHdr/InstgAgt/FinInstnId/ClrSysMmbId/MmbId";
+    private static final String TX_BICFI = "target:FIToFIPmtStsReq/TxInf/InstgAgt/FinInstnId/BICFI";
+    private static final String TX_MMB_ID = "target:FIToFIPmtStsReq/TxInf/InstgAgt/FinInstnId/ClrSysMmbId/MmbId";
+    private static final String ROOT = "<ns2:Document xmlns:ns2=\"urn:iso:std:iso:20022:tech:xsd:pacs.028.001.06\">";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void templateMatchesTheStreamWriterForHydrogenRequests() throws Exception {
+        CompiledMapping mapping = new MappingLoader(MappingBundleTest.REPO_MAPPINGS).loadCompiledMapping("SYSTEM_TO_HYDROGEN");
+        OutputTemplate template = mapping.getRequestTree().getTemplate();
+        assertNotNull(template);
+
+        // every field, then each dynamic field left out in turn
+        Map<String, String> all = allDynamicValues(mapping);
+        assertSameOutput(template, content(mapping, all, true));
+        for (String left : all.keySet()) {
+            Map<String, String> values = new HashMap<>(all);
+            values.remove(left);
+            assertSameOutput(template, content(mapping, values, true));
+        }
+        assertSameOutput(template, content(mapping, Map.of(), true));
+    }
+
+    @Test
+    public void constantsAndNamespacesArePreRendered() throws Exception {
+        CompiledMapping mapping = new MappingLoader(MappingBundleTest.REPO_MAPPINGS).loadCompiledMapping("SYSTEM_TO_HYDROGEN");
+
+        // content without the constants: the template still writes them, and the root's declarations
+        String rendered = mapping.getRequestTree().getTemplate().toString(content(mapping, Map.of(MSG_ID, "S1"), false));
+
+        assertTrue(rendered, rendered.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + ROOT
+            + "<FIToFIPmtStsReq><GrpHdr><MsgId>S1</MsgId></GrpHdr>"
+            + "<OrgnlGrpInf><OrgnlMsgNmId>pacs.008.001.12</OrgnlMsgNmId></OrgnlGrpInf>"));
+        assertTrue(rendered, rendered.contains("<InstdAgt><FinInstnId><BICFI>111444</BICFI>"
+            + "<ClrSysMmbId><MmbId>111444</MmbId></ClrSysMmbId></FinInstnId></InstdAgt>"));
+        assertTrue(rendered, rendered.endsWith("</ns2:Document>"));
+    }
+
+    @Test
+    public void dynamicValuesAreEscaped() throws Exception {
+        CompiledMapping mapping = new MappingLoader(MappingBundleTest.REPO_MAPPINGS).loadCompiledMapping("SYSTEM_TO_HYDROGEN");
+        OutputTemplate template = mapping.getRequestTree().getTemplate();
+
+        String rendered = assertSameOutput(template, content(mapping,
+            Map.of(MSG_ID, "A&B <C> \"d\"", TX_BICFI, "  x\t&\ny  ", TX_MMB_ID, "\u0001é€😀"), true));
+
+        assertTrue(rendered, rendered.contains("<MsgId>A&amp;B &lt;C&gt; \"d\"</MsgId>"));
+        assertTrue(rendered, rendered.contains("<BICFI>x &amp; y</BICFI>"));
+        assertTrue(rendered, rendered.contains("<MmbId>&#1;é€😀</MmbId>"));
+    }
+
+    @Test
+    public void absentElementsAndTheirEmptyParentsAreOmitted() throws Exception {
+        CompiledMapping mapping = new MappingLoader(MappingBundleTest.REPO_MAPPINGS).loadCompiledMapping("SYSTEM_TO_HYDROGEN");
+        OutputTemplate template = mapping.getRequestTree().getTemplate();
+
+        String rendered = assertSameOutput(template, content(mapping, Map.of(MSG_ID, "S1", CRE_DT_TM, ""), true));
+
+        // TxInf/InstgAgt only has dynamic children, none present
+        assertFalse(rendered, rendered.contains("InstgAgt"));
+        assertFalse(rendered, rendered.contains("StsReqId"));
+        // an empty value is still written
+        assertTrue(rendered, rendered.contains("<CreDtTm></CreDtTm>"));
+        assertTrue(rendered, rendered.contains("<TxInf><InstdAgt>"));
+    }
+
+    @Test
+    public void outOfOrderMessageFallsBackToTheStreamWriter() throws Exception {
+        Files.writeString(folder.getRoot().toPath().resolve("R.yaml"), "inboundFormat: JSON\n"
+            + "outboundFormat: ISO_XML\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.a\n"
+            + "      to: target:X/A\n"
+            + "    - from: source.b\n"
+            + "      to: target:Y/B\n"
+            + "    - from: source.c\n"
+            + "      to: target:X/C\n");
+        CompiledMapping mapping = new MappingLoader(folder.getRoot().toString()).loadCompiledMapping("R");
+        OutputTemplate template = mapping.getRequestTree().getTemplate();
+
+        // without a, X is created after Y: the template declines and the writer keeps the creation order
+        OutputTree.Content content = content(mapping, Map.of("target:Y/B", "b", "target:X/C", "c & d"), true);
+        assertNull(template.toString(content));
+        assertFalse(template.write(content, new ByteArrayOutputStream()));
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Document><Y><B>b</B></Y><X><C>c &amp; d</C></X></Document>",
+            XmlOutputWriter.toString(content));
+        assertEquals(streamed(content), XmlOutputWriter.toString(content));
+    }
+
+    /**
+     * Render through the template (as a string and as bytes) and through the stream writer; all must agree
+     *
+     * @return The rendered document
+     */
+    private static String assertSameOutput(OutputTemplate template, OutputTree.Content content) throws Exception {
+        String expected = streamed(content);
+        String rendered = template.toString(content);
+        assertEquals(expected, rendered);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(template.write(content, out));
+        assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+        assertEquals(expected, XmlOutputWriter.toString(content));
+        return rendered;
+    }
+
+    /**
+     * The document as the StAX writer writes it, without the template
+     */
+    private static String streamed(OutputTree.Content content) throws Exception {
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newDefaultFactory().createXMLStreamWriter(out);
+        XmlOutputWriter.write(content, writer);
+        writer.close();
+        return out.toString();
+    }
+
+    /**
+     * Content as the engine fills it, in mapping order: fixed constants (if asked for) and the given
+     * values, by target path; mappings without a value are absent
+     */
+    private static OutputTree.Content content(CompiledMapping mapping, Map<String, String> values, boolean constants) {
+        OutputTree.Content content = mapping.getRequestTree().newContent();
+        for (CompiledMapping.FieldPlan plan : mapping.getRequestMappings()) {
+            TargetPath path = plan.getTargetPath();
+            if (plan.isConstant() && !plan.hasTransform()) {
+                if (constants) {
+                    path.setValue(content, plan.getConstantValue());
+                }
+            } else {
+                path.setValue(content, values.get(path.getExpression()));
+            }
+        }
+        return content;
+    }
+
+    /**
+     * A distinct value for every mapping that is not a fixed constant
+     */
+    private static Map<String, String> allDynamicValues(CompiledMapping mapping) {
+        Map<String, String> values = new HashMap<>();
+        for (CompiledMapping.FieldPlan plan : mapping.getRequestMappings()) {
+            if (!plan.isConstant() || plan.hasTransform()) {
+                values.put(plan.getTargetPath().getExpression(), "v" + values.size());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,160 @@
+package com.makura.translator.mapping;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class RepeatingBlockTest {
+
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    // The example from the README, plus a nested object path inside the block
+    private static final String BLOCK = "    - from: source.batchId\n"
+        + "      to: target:FIToFICstmrCdtTrf/GrpHdr/MsgId\n"
+        + "    - from: source.payments[*]\n"
+        + "      to: target:FIToFICstmrCdtTrf/CdtTrfTxInf\n"
+        + "      mappings:\n"
+        + "        - from: ref\n"
+        + "          to: PmtId/EndToEndId\n"
+        + "        - from: amount\n"
+        + "          to: IntrBkSttlmAmt\n"
+        + "        - from: debtor.account.id\n"
+        + "          to: DbtrAcct/Id/Othr/Id\n"
+        + "        - from: remittance.lines[*]\n"
+        + "          to: RmtInf/Ustrd\n"
+        + "          mappings:\n"
+        + "            - from: \".\"\n"
+        + "              to: \".\"\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MappingEngine engine = new MappingEngine();
+    private MappingLoader loader;
+
+    @Before
+    public void writeRoutes() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Files.writeString(directory.resolve("JSON_BLOCK.yaml"), route("JSON", false));
+        Files.writeString(directory.resolve("JSON_STREAMING.yaml"), route("JSON", true));
+        Files.writeString(directory.resolve("XML_BLOCK.yaml"), route("XML", false));
+        Files.writeString(directory.resolve("XML_STREAMING.yaml"), route("XML", true));
+        loader = new MappingLoader(directory.toString());
+    }
+
+    @Test
+    public void everyItemIsOneBlock() throws Exception {
+        StringBuilder json = new StringBuilder("{\"batchId\": \"B1\", \"payments\": [");
+        StringBuilder blocks = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            json.append(i > 0 ? ", " : "").append("{\"ref\": \"E").append(i).append("\", \"amount\": ").append(i).append('}');
+            blocks.append("<CdtTrfTxInf><PmtId><EndToEndId>E").append(i).append("</EndToEndId></PmtId>")
+                .append("<IntrBkSttlmAmt>").append(i).append("</IntrBkSttlmAmt></CdtTrfTxInf>");
+        }
+        json.append("]}");
+
+        assertJson(json.toString(), document("<GrpHdr><MsgId>B1</MsgId></GrpHdr>" + blocks));
+    }
+
+    @Test
+    public void emptyOrAbsentArraysWriteNoBlocks() throws Exception {
+        String header = document("<GrpHdr><MsgId>B1</MsgId></GrpHdr>");
+        assertJson("{\"batchId\": \"B1\", \"payments\": []}", header);
+        assertJson("{\"batchId\": \"B1\", \"payments\": null}", header);
+        assertJson("{\"batchId\": \"B1\"}", header);
+
+        assertXml("<Batch><batchId>B1</batchId></Batch>", header);
+        assertXml("<Batch><batchId>B1</batchId><other/></Batch>", header);
+
+        // nor the elements around the block, when nothing else fills them
+        String empty = DECLARATION + "<Document/>";
+        assertJson("{\"payments\": []}", empty);
+        assertXml("<Batch><other/></Batch>", empty);
+    }
+
+    @Test
+    public void nestedPathsAreRelativeToTheItem() throws Exception {
+        String json = "{\"debtor\": {\"account\": {\"id\": \"top-level, not an item field\"}},"
+            + " \"payments\": [{\"ref\": \"E1\", \"debtor\": {\"account\": {\"id\": \"ACC1\"}},"
+            + "   \"remittance\": {\"lines\": [\"inv 1\", \"inv 2\", \"inv 3\"]}},"
+            + " {\"ref\": \"E2\", \"remittance\": {\"lines\": []}},"
+            + " {\"amount\": 5, \"remittance\": {\"lines\": \"single line\"}}],"
+            + " \"batchId\": \"after the block\"}";
+
+        // the header is written in mapping order, before the block, although it is read after it
+        assertJson(json, document("<GrpHdr><MsgId>after the block</MsgId></GrpHdr>"
+            + "<CdtTrfTxInf><PmtId><EndToEndId>E1</EndToEndId></PmtId>"
+            + "<DbtrAcct><Id><Othr><Id>ACC1</Id></Othr></Id></DbtrAcct>"
+            + "<RmtInf><Ustrd>inv 1</Ustrd><Ustrd>inv 2</Ustrd><Ustrd>inv 3</Ustrd></RmtInf></CdtTrfTxInf>"
+            + "<CdtTrfTxInf><PmtId><EndToEndId>E2</EndToEndId></PmtId></CdtTrfTxInf>"
+            + "<CdtTrfTxInf><IntrBkSttlmAmt>5</IntrBkSttlmAmt><RmtInf><Ustrd>single line</Ustrd></RmtInf></CdtTrfTxInf>"),
+            false);
+    }
+
+    @Test
+    public void repeatedXmlElementsAreItems() throws Exception {
+        String xml = "<Batch><batchId>B1</batchId>"
+            + "<payments><ref>E1</ref><amount>10</amount><debtor><account><id>ACC1</id></account></debtor>"
+            + "<remittance><lines>inv &amp; 1</lines><lines>inv 2</lines></remittance></payments>"
+            + "<unrelated><ref>X</ref></unrelated>"
+            + "<payments><ref>E2</ref><remittance/></payments>"
+            + "</Batch>";
+
+        assertXml(xml, document("<GrpHdr><MsgId>B1</MsgId></GrpHdr>"
+            + "<CdtTrfTxInf><PmtId><EndToEndId>E1</EndToEndId></PmtId><IntrBkSttlmAmt>10</IntrBkSttlmAmt>"
+            + "<DbtrAcct><Id><Othr><Id>ACC1</Id></Othr></Id></DbtrAcct>"
+            + "<RmtInf><Ustrd>inv &amp; 1</Ustrd><Ustrd>inv 2</Ustrd></RmtInf></CdtTrfTxInf>"
+            + "<CdtTrfTxInf><PmtId><EndToEndId>E2</EndToEndId></PmtId></CdtTrfTxInf>"));
+    }
+
+    private static String route(String format, boolean streaming) {
+        return "inboundFormat: " + format + "\n"
+            + "outboundFormat: ISO_XML\n"
+            + (streaming ? "streaming: true\n" : "")
+            + "mappings:\n"
+            + "  request:\n"
+            + BLOCK;
+    }
+
+    private static String document(String body) {
+        return DECLARATION + "<Document><FIToFICstmrCdtTrf>" + body + "</FIToFICstmrCdtTrf></Document>";
+    }
+
+    private void assertJson(String json, String expected) throws Exception {
+        assertJson(json, expected, true);
+    }
+
+    /**
+     * Translate through the String and stream entry points, and through the streaming route when the
+     * header precedes the block (a streaming route writes header fields read after it later)
+     */
+    private void assertJson(String json, String expected, boolean streamingToo) throws Exception {
+        assertOutput("JSON_BLOCK", json, expected);
+        if (streamingToo) {
+            assertOutput("JSON_STREAMING", json, expected);
+        }
+    }
+
+    private void assertXml(String xml, String expected) throws Exception {
+        assertOutput("XML_BLOCK", xml, expected);
+        assertOutput("XML_STREAMING", xml, expected);
+    }
+
+    private void assertOutput(String routeId, String input, String expected) throws Exception {
+        CompiledMapping mapping = loader.loadCompiledMapping(routeId);
+        assertEquals(routeId, expected, engine.transformToTarget(input, mapping));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.transformToTarget(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), mapping, out);
+        assertEquals(routeId, expected, out.toString(StandardCharsets.UTF_8));
+    }
+}
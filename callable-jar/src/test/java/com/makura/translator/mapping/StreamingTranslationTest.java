@@ -0,0 +1,201 @@
+package com.makura.translator.mapping;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingTranslationTest {
+
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    // A header before the block and a trailer after it, in the order of the target document
+    private static final String MAPPINGS = "mappings:\n"
+        + "  request:\n"
+        + "    - from: source.batchId\n"
+        + "      to: target:FIToFICstmrCdtTrf/GrpHdr/MsgId\n"
+        + "    - from: source.payments[*]\n"
+        + "      to: target:FIToFICstmrCdtTrf/CdtTrfTxInf\n"
+        + "      mappings:\n"
+        + "        - from: ref\n"
+        + "          to: PmtId/EndToEndId\n"
+        + "        - from: amount\n"
+        + "          to: IntrBkSttlmAmt\n"
+        + "    - from: source.checksum\n"
+        + "      to: target:FIToFICstmrCdtTrf/SplmtryData/Envlp\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MappingEngine engine = new MappingEngine();
+    private CompiledMapping streaming;
+    private CompiledMapping block;
+
+    @Before
+    public void writeRoutes() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Files.writeString(directory.resolve("STREAMING.yaml"), "inboundFormat: JSON\noutboundFormat: ISO_XML\n"
+            + "streaming: true\n" + MAPPINGS);
+        Files.writeString(directory.resolve("BLOCK.yaml"), "inboundFormat: JSON\noutboundFormat: ISO_XML\n" + MAPPINGS);
+        MappingLoader loader = new MappingLoader(directory.toString());
+        streaming = loader.loadCompiledMapping("STREAMING");
+        block = loader.loadCompiledMapping("BLOCK");
+    }
+
+    @Test
+    public void manyBlocksAreWrittenInItemOrder() throws Exception {
+        int count = 20_000;
+        String json = payments("{\"batchId\": \"B1\", ", count, ", \"checksum\": \"C1\"}");
+
+        String output = translate(json);
+        assertTrue(output, output.startsWith(DECLARATION
+            + "<Document><FIToFICstmrCdtTrf><GrpHdr><MsgId>B1</MsgId></GrpHdr><CdtTrfTxInf>"));
+        assertTrue(output, output.endsWith("</CdtTrfTxInf><SplmtryData><Envlp>C1</Envlp></SplmtryData>"
+            + "</FIToFICstmrCdtTrf></Document>"));
+        // each item exactly once, one after the other
+        int position = output.indexOf("<CdtTrfTxInf>");
+        for (int i = 0; i < count; i++) {
+            String item = items(i, i + 1);
+            assertTrue("item " + i, output.startsWith(item, position));
+            position += item.length();
+        }
+        assertTrue(output.startsWith("<SplmtryData>", position));
+        assertEquals(engine.transformToTarget(json, block), output);
+    }
+
+    @Test
+    public void fieldsReadAfterTheBlockFillElementsAfterIt() throws Exception {
+        // the trailer is read after the last item, when finish() writes the rest of the document
+        String json = payments("{\"batchId\": \"B1\", ", 2, ", \"checksum\": \"after & last\"}");
+        assertEquals(document("<GrpHdr><MsgId>B1</MsgId></GrpHdr>" + items(2)
+            + "<SplmtryData><Envlp>after &amp; last</Envlp></SplmtryData>"), translate(json));
+
+        // a header read after the block comes too late for the elements before it, which are already written
+        json = payments("{", 2, ", \"batchId\": \"B1\", \"checksum\": \"C1\"}");
+        assertEquals(document(items(2) + "<SplmtryData><Envlp>C1</Envlp></SplmtryData>"), translate(json));
+        assertEquals(document("<GrpHdr><MsgId>B1</MsgId></GrpHdr>" + items(2)
+            + "<SplmtryData><Envlp>C1</Envlp></SplmtryData>"), engine.transformToTarget(json, block));
+
+        // without items, the whole document is written by finish()
+        assertEquals(document("<GrpHdr><MsgId>B1</MsgId></GrpHdr><SplmtryData><Envlp>C1</Envlp></SplmtryData>"),
+            translate("{\"payments\": [], \"batchId\": \"B1\", \"checksum\": \"C1\"}"));
+    }
+
+    @Test
+    public void writeFailuresStopTheTranslation() throws Exception {
+        byte[] json = payments("{\"batchId\": \"B1\", ", 20_000, "}").getBytes(StandardCharsets.UTF_8);
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(json));
+
+        try {
+            engine.transformToTarget(in, streaming, new FailingOutputStream(4096));
+            fail("Write failure not reported");
+        } catch (MappingEngine.MappingException e) {
+            assertEquals("Failed to write target document", e.getMessage());
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof XMLStreamException);
+        }
+        // the failure surfaced from the item callback, long before the message was read
+        assertTrue(in.count + " of " + json.length, in.count < json.length / 2);
+    }
+
+    /**
+     * Translate through the String and stream entry points, which must agree
+     */
+    private String translate(String json) throws Exception {
+        String output = engine.transformToTarget(json, streaming);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.transformToTarget(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), streaming, out);
+        assertEquals(output, out.toString(StandardCharsets.UTF_8));
+
+        out.reset();
+        engine.transformToTarget(json, streaming, out);
+        assertEquals(output, out.toString(StandardCharsets.UTF_8));
+        return output;
+    }
+
+    private static String payments(String before, int count, String after) {
+        StringBuilder json = new StringBuilder(before).append("\"payments\": [");
+        for (int i = 0; i < count; i++) {
+            json.append(i > 0 ? ", " : "").append("{\"ref\": \"E").append(i).append("\", \"amount\": ").append(i).append('}');
+        }
+        return json.append(']').append(after).toString();
+    }
+
+    private static String items(int count) {
+        return items(0, count);
+    }
+
+    private static String items(int from, int to) {
+        StringBuilder blocks = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            blocks.append("<CdtTrfTxInf><PmtId><EndToEndId>E").append(i).append("</EndToEndId></PmtId>")
+                .append("<IntrBkSttlmAmt>").append(i).append("</IntrBkSttlmAmt></CdtTrfTxInf>");
+        }
+        return blocks.toString();
+    }
+
+    private static String document(String body) {
+        return DECLARATION + "<Document><FIToFICstmrCdtTrf>" + body + "</FIToFICstmrCdtTrf></Document>";
+    }
+
+    /**
+     * Fails every write once the limit has been written
+     */
+    private static final class FailingOutputStream extends OutputStream {
+        private int remaining;
+
+        private FailingOutputStream(int limit) {
+            this.remaining = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > remaining) {
+                throw new IOException("Connection reset");
+            }
+            remaining -= len;
+        }
+    }
+
+    private static final class CountingInputStream extends InputStream {
+        private final InputStream in;
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            count += b >= 0 ? 1 : 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            count += Math.max(n, 0);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.makura.translator.mapping;
+
+import com.makura.translator.mapping.expression.Expression;
+import com.makura.translator.mapping.expression.ExpressionParser;
+import com.makura.translator.mapping.expression.Lookup;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ValueMapTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void everyKeyFindsItsValueAndNothingElseHits() {
+        int[] sizes = new int[310];
+        for (int i = 0; i < 300; i++) {
+            sizes[i] = i;
+        }
+        // around the slot and bucket doublings, and the largest tables
+        int[] large = {1023, 1024, 1025, 4096, 10_000, 65_536, 65_537, 99_999, 100_000, 100_001};
+        System.arraycopy(large, 0, sizes, 300, large.length);
+
+        for (int size : sizes) {
+            Map<String, String> entries = entries(size);
+            ValueMap table = ValueMap.of(entries);
+
+            assertEquals(size, table.size());
+            assertEquals(entries, table.toMap());
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                assertEquals(size + " keys", entry.getValue(), table.get(entry.getKey()));
+                // keys one character longer, or shorter, than a stored key
+                String longer = entry.getKey() + "\u0000";
+                if (!entries.containsKey(longer)) {
+                    assertNull(size + " keys: " + longer, table.get(longer));
+                }
+                if (!entry.getKey().isEmpty() && !entries.containsKey(entry.getKey().substring(1))) {
+                    assertNull(table.get(entry.getKey().substring(1)));
+                }
+            }
+            for (int i = 0; i < Math.max(size, 100); i++) {
+                assertNull(size + " keys", table.get("miss-" + i));
+            }
+            if (size == 0) {
+                assertNull(table.get(""));
+            }
+        }
+    }
+
+    @Test
+    public void nullKeysAndValuesAreRejected() {
+        Map<String, String> nullValue = new HashMap<>(Map.of("566", "NGN"));
+        nullValue.put("840", null);
+        Map<String, String> nullKey = new HashMap<>(Map.of("566", "NGN"));
+        nullKey.put(null, "USD");
+
+        for (Map<String, String> entries : List.of(nullValue, nullKey)) {
+            try {
+                ValueMap.of(entries);
+                fail("Accepted " + entries);
+            } catch (IllegalArgumentException expected) {
+                // a table with holes would turn lookups of those keys into misses
+            }
+        }
+    }
+
+    @Test
+    public void lookupGivesTheDefaultOrNullOnAMiss() throws Exception {
+        Map<String, ValueMap> tables = Map.of("ccy", ValueMap.of(Map.of("566", "NGN", "", "EMPTY")));
+
+        Expression withDefault = ExpressionParser.parse("lookup('ccy', value, 'XXX')", tables);
+        assertEquals("NGN", withDefault.evaluate("566", null));
+        assertEquals("EMPTY", withDefault.evaluate("", null));
+        assertEquals("XXX", withDefault.evaluate("999", null));
+        assertEquals("XXX", withDefault.evaluate(null, null));
+
+        Expression withoutDefault = ExpressionParser.parse("lookup('ccy', value)", tables);
+        assertEquals("NGN", withoutDefault.evaluate("566", null));
+        assertNull(withoutDefault.evaluate("999", null));
+        assertNull(withoutDefault.evaluate(null, null));
+
+        // the default is an expression of its own, evaluated only on a miss
+        Expression fallBackToValue = ExpressionParser.parse("lookup('ccy', value, value)", tables);
+        assertEquals("NGN", fallBackToValue.evaluate("566", null));
+        assertEquals("999", fallBackToValue.evaluate("999", null));
+    }
+
+    @Test(expected = ExpressionParser.ExpressionException.class)
+    public void lookupOfAnUndeclaredTableIsRejected() throws Exception {
+        ExpressionParser.parse("lookup('nope', value)", Map.of("ccy", ValueMap.of(Map.of())));
+    }
+
+    @Test
+    public void routesNamingTheSameTableFileShareOneTable() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Files.createDirectory(directory.resolve(MappingLoader.VALUE_MAPS_DIRECTORY));
+        Files.writeString(directory.resolve("valueMaps/currencies.yaml"), "\"566\": NGN\n");
+        Files.writeString(directory.resolve("A.yaml"), route("currencies"));
+        Files.writeString(directory.resolve("B.yaml"), route("currencies"));
+        Files.writeString(directory.resolve("C.yaml"), route("{\"566\": NGN}"));
+        MappingLoader loader = new MappingLoader(directory.toString());
+
+        ValueMap a = table(loader, "A");
+        assertSame(a, table(loader, "B"));
+        assertNotSame(a, table(loader, "C"));
+        assertEquals(a.toMap(), table(loader, "C").toMap());
+
+        // a changed file gives a new table, shared again
+        Files.writeString(directory.resolve("valueMaps/currencies.yaml"), "\"566\": NAIRA\n");
+        loader.evictAll();
+        ValueMap changed = table(loader, "A");
+        assertNotSame(a, changed);
+        assertEquals("NAIRA", changed.get("566"));
+        assertSame(changed, table(loader, "B"));
+    }
+
+    private static ValueMap table(MappingLoader loader, String routeId) throws Exception {
+        return ((Lookup) loader.loadCompiledMapping(routeId).getRequestMappings().get(0).getTransform()).getTable();
+    }
+
+    private static String route(String table) {
+        return "inboundFormat: JSON\n"
+            + "outboundFormat: ISO_XML\n"
+            + "mappings:\n"
+            + "  request:\n"
+            + "    - from: source.currency\n"
+            + "      to: target:Ccy\n"
+            + "      transform: \"lookup('ccy', value)\"\n"
+            + "valueMaps:\n"
+            + "  ccy: " + table + "\n";
+    }
+
+    /**
+     * The empty key plus keys that share long prefixes and differ in one character
+     */
+    private static Map<String, String> entries(int size) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        if (size > 0) {
+            entries.put("", "empty");
+        }
+        for (int i = 1; i < size; i++) {
+            entries.put(i % 2 == 0 ? "NGN-" + i : "ngn-é€-" + i, "v" + i);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,80 @@
+package com.makura.translator.mapping.expression;
+
+import java.util.List;
+
+/**
+ * Functions registered for the tests in
+ * {@code src/test/resources/META-INF/services/com.makura.translator.mapping.expression.TransformationFunction}
+ */
+public final class ExampleFunctions {
+
+    private ExampleFunctions() {
+    }
+
+    /**
+     * reverse(arg[, 'separator']): the characters of the argument in reverse order, joined by the separator
+     */
+    public static final class Reverse implements TransformationFunction {
+
+        @Override
+        public String getName() {
+            return "reverse";
+        }
+
+        @Override
+        public List<ArgumentType> getArgumentTypes() {
+            return List.of(ArgumentType.EXPRESSION, ArgumentType.LITERAL);
+        }
+
+        @Override
+        public int getMinArguments() {
+            return 1;
+        }
+
+        @Override
+        public Expression bind(Arguments arguments) {
+            Expression argument = arguments.expression(0);
+            String separator = arguments.size() > 1 ? arguments.literal(1) : "";
+            return new Expression() {
+                @Override
+                public String evaluate(String value, Object source) {
+                    String resolved = argument.evaluate(value, source);
+                    if (resolved == null) {
+                        return null;
+                    }
+                    StringBuilder reversed = new StringBuilder();
+                    for (int i = resolved.length() - 1; i >= 0; i--) {
+                        reversed.append(resolved.charAt(i)).append(i > 0 ? separator : "");
+                    }
+                    return reversed.toString();
+                }
+
+                @Override
+                public List<Expression> getChildren() {
+                    return List.of(argument);
+                }
+            };
+        }
+    }
+
+    /**
+     * A provider claiming a built-in name, which must not replace the built-in
+     */
+    public static final class Upper implements TransformationFunction {
+
+        @Override
+        public String getName() {
+            return "upper";
+        }
+
+        @Override
+        public List<ArgumentType> getArgumentTypes() {
+            return List.of(ArgumentType.EXPRESSION);
+        }
+
+        @Override
+        public Expression bind(Arguments arguments) {
+            return (value, source) -> "shadowed";
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.makura.translator.mapping.expression;
+
+import com.makura.translator.mapping.ValueMap;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExpressionParserTest {
+
+    private static final Map<String, Object> SOURCE = Map.of("b", "bee", "empty", "", "amount", 42);
+
+    @Test
+    public void transformsThatAreNotCallsPassTheValueThrough() throws Exception {
+        for (String transform : new String[] {"trim", "'quoted'", "\"quoted\"", "source.b", "value", "42"}) {
+            Expression expression = ExpressionParser.parse(transform);
+            assertSame(transform, ValueRef.INSTANCE, expression);
+            assertEquals(transform, "ACSC", expression.evaluate("ACSC", SOURCE));
+        }
+    }
+
+    @Test
+    public void literalsAndReferencesAreEvaluatedAsArguments() throws Exception {
+        assertEquals("x-bee-ACSC", ExpressionParser.parse("concat('x-', source.b, '-', value)").evaluate("ACSC", SOURCE));
+    }
+
+    @Test(expected = ExpressionParser.ExpressionException.class)
+    public void unknownFunctionsAreRejected() throws Exception {
+        ExpressionParser.parse("trim(value)");
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        assertEquals("bee", evaluate("coalesce(source.missing, source.empty, source.b, 'default')", "v"));
+        assertEquals("default", evaluate("coalesce(source.missing, 'default')", "v"));
+        assertEquals("v", evaluate("coalesce(source.empty, value)", "v"));
+        assertNull(evaluate("coalesce(source.missing, source.empty, value)", null));
+    }
+
+    @Test
+    public void upper() throws Exception {
+        assertEquals("ACSC ÉTÉ", evaluate("upper(value)", "acsc été"));
+        assertEquals("BEE", evaluate("upper(source.b)", null));
+        assertNull(evaluate("upper(value)", null));
+    }
+
+    @Test
+    public void padLeft() throws Exception {
+        assertEquals("000042", evaluate("padLeft(source.amount, 6, '0')", null));
+        assertEquals("   ab", evaluate("padLeft(value, 5)", "ab"));
+        assertEquals("toolong", evaluate("padLeft(value, 3, '0')", "toolong"));
+        assertNull(evaluate("padLeft(value, 3, '0')", null));
+    }
+
+    @Test
+    public void replace() throws Exception {
+        assertEquals("0801234567", evaluate("replace(value, '[^0-9]', '')", "+(080) 123-4567"));
+        assertEquals("080-1234567", evaluate("replace(value, '([0-9]{3})([0-9]+)', '$1-$2')", "0801234567"));
+        assertNull(evaluate("replace(value, 'a', 'b')", null));
+    }
+
+    @Test
+    public void formatDateTime() throws Exception {
+        assertNow("formatDateTime(now(), 'yyyy-MM-dd')", "yyyy-MM-dd", 0);
+        // T and a trailing Z are literals, in UTC
+        assertNow("formatDateTime(now(), 'yyyy-MM-ddTHH:mmZ')", "yyyy-MM-dd'T'HH:mm'Z'", 0);
+        // values are not dates: any other argument formats the current time
+        assertNow("formatDateTime(value, 'yyyyMMdd')", "yyyyMMdd", 0);
+        assertNow("formatDateTime(subtractDays(now(), 3), 'yyyyMMdd')", "yyyyMMdd", 3);
+    }
+
+    @Test
+    public void substring() throws Exception {
+        assertEquals("3456", evaluate("substring(value, -4)", "123456"));
+        assertEquals("3456", evaluate("substring(value, 2)", "123456"));
+        assertEquals("12", evaluate("substring(value, 5)", "12"));
+        assertEquals("ee", evaluate("substring(source.b, 1)", "v"));
+        // a field that is absent leaves the value unchanged
+        assertEquals("v", evaluate("substring(source.missing, 1)", "v"));
+    }
+
+    @Test
+    public void subtractDays() throws Exception {
+        assertNow("subtractDays(now(), 2)", "yyyy-MM-dd'T'HH:mm", 2);
+        assertNow("subtractDays(subtractDays(value, 1), -3)", "yyyy-MM-dd'T'HH:mm", -2);
+        String rendered = evaluate("subtractDays(now(), 0)", null);
+        assertTrue(rendered, rendered.matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z"));
+    }
+
+    @Test
+    public void mapStatusToResponseCode() throws Exception {
+        assertEquals("25", evaluate("mapStatusToResponseCode(value)", "ACSC"));
+        assertEquals("00", evaluate("mapStatusToResponseCode(value)", "ACCP"));
+        assertEquals("02", evaluate("mapStatusToResponseCode(source.b)", "PDNG"));
+        assertEquals("99", evaluate("mapStatusToResponseCode(value)", "RJCT"));
+        assertEquals("99", evaluate("mapStatusToResponseCode(value)", "acsc"));
+        assertEquals("99", evaluate("mapStatusToResponseCode()", null));
+    }
+
+    @Test
+    public void extractSessionId() throws Exception {
+        assertEquals("M1", evaluate("extractSessionId(value)", "M1"));
+        assertEquals("M1", evaluate("extractSessionId()", "M1"));
+        assertNull(evaluate("extractSessionId(source.b)", null));
+    }
+
+    @Test
+    public void argumentCountsAreCheckedAtBindTime() {
+        assertRejected("upper()", "upper expects 1 argument(s) but got 0");
+        assertRejected("upper(value, value)", "upper expects 1 argument(s) but got 2");
+        assertRejected("padLeft(value)", "padLeft expects 2 to 3 argument(s) but got 1");
+        assertRejected("replace(value, 'a')", "replace expects 3 argument(s) but got 2");
+        assertRejected("formatDateTime(now())", "formatDateTime expects 2 argument(s) but got 1");
+        assertRejected("now(value)", "now expects 0 argument(s) but got 1");
+        assertRejected("extractSessionId(value, value)", "extractSessionId expects 0 to 1 argument(s) but got 2");
+        assertRejected("coalesce()", "coalesce requires at least 1 argument(s) but got 0");
+        assertRejected("concat()", "concat requires at least 1 argument(s) but got 0");
+    }
+
+    @Test
+    public void argumentTypesAreCheckedAtBindTime() {
+        assertRejected("substring(value, 'two')", "substring expects an integer but got 'two'");
+        assertRejected("substring(value, source.b)", "substring expects a literal argument but got source.b");
+        assertRejected("subtractDays(now(), upper(value))", "subtractDays expects a literal argument but got upper(value)");
+        assertRejected("padLeft(value, 5, value)", "padLeft expects a literal argument but got value");
+        assertRejected("formatDateTime(now(), source.b)", "formatDateTime expects a literal argument but got source.b");
+        // arguments the function itself cannot use
+        assertRejected("padLeft(value, 5, '00')", "padLeft expects a single padding character but got '00'");
+        assertRejected("replace(value, '[0-9', '')", "Invalid pattern '[0-9'");
+        assertRejected("formatDateTime(now(), 'yyyy{')", "Invalid date pattern 'yyyy{'");
+        assertRejected("lookup(currencies, value)", "Unknown value map 'currencies'");
+        // nested calls are checked too
+        assertRejected("upper(substring(value))", "substring expects 2 argument(s) but got 1");
+    }
+
+    @Test
+    public void lookupUsesTheRoutesValueMaps() throws Exception {
+        Map<String, ValueMap> valueMaps = new HashMap<>();
+        valueMaps.put("currencies", ValueMap.of(Map.of("566", "NGN")));
+
+        Expression lookup = ExpressionParser.parse("lookup(currencies, value, 'XXX')", valueMaps);
+        assertEquals("NGN", lookup.evaluate("566", SOURCE));
+        assertEquals("XXX", lookup.evaluate("840", SOURCE));
+    }
+
+    @Test
+    public void functionsAreDiscoveredWithServiceLoader() throws Exception {
+        // ExampleFunctions.Reverse, listed in src/test/resources/META-INF/services
+        assertTrue(TransformationFunctions.names().contains("reverse"));
+        assertEquals("eeb", evaluate("reverse(source.b)", null));
+        assertEquals("C-B-A", evaluate("upper(reverse(value, '-'))", "abc"));
+        assertRejected("reverse()", "reverse expects 1 to 2 argument(s) but got 0");
+        assertRejected("reverse(value, value)", "reverse expects a literal argument but got value");
+
+        // a provider cannot replace a built-in
+        assertTrue(TransformationFunctions.get("upper").getClass().getName().startsWith(BuiltinFunctions.class.getName()));
+        assertEquals("ABC", evaluate("upper(value)", "abc"));
+    }
+
+    private static String evaluate(String transform, String value) throws Exception {
+        return ExpressionParser.parse(transform).evaluate(value, SOURCE);
+    }
+
+    /**
+     * The transform evaluates to the current UTC time minus the days, in the pattern (checked against the
+     * time before and after evaluating, so a minute or day boundary in between does not fail the test)
+     */
+    private static void assertNow(String transform, String pattern, int daysAgo) throws Exception {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+        String before = LocalDateTime.now(ZoneOffset.UTC).minusDays(daysAgo).format(formatter);
+        String rendered = evaluate(transform, "not a date");
+        String after = LocalDateTime.now(ZoneOffset.UTC).minusDays(daysAgo).format(formatter);
+        assertTrue(transform + " gave " + rendered + ", expected " + before,
+            rendered.startsWith(before) || rendered.startsWith(after));
+    }
+
+    private static void assertRejected(String transform, String message) {
+        try {
+            ExpressionParser.parse(transform);
+            fail("Accepted " + transform);
+        } catch (ExpressionParser.ExpressionException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith(message));
+        }
+    }
+}
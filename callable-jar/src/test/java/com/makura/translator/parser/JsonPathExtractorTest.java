@@ -0,0 +1,144 @@
+package com.makura.translator.parser;
+
+import com.makura.translator.mapping.PathResolver;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class JsonPathExtractorTest {
+
+    private static final String PAYMENT = "{"
+        + "\"customer\": {\"account\": \"0123456789\", \"name\": \"Ada\", \"address\": {\"city\": \"Lagos\", \"zip\": null}},"
+        + "\"amount\": 1500.5, \"count\": 3, \"big\": 12345678901234567890123, \"long\": 9876543210, \"active\": true,"
+        + "\"items\": [{\"id\": \"a\", \"tags\": [\"x\", \"y\"]}, {\"id\": \"b\"}, 7, null],"
+        + "\"matrix\": [[1, 2], [3, 4]],"
+        + "\"other\": {\"customer\": {\"name\": \"not this one\"}, \"deep\": [[[{\"a\": [1, {\"b\": 2}]}]]]}"
+        + "}";
+
+    @Test
+    public void nestedObjects() throws Exception {
+        assertSameAsPathResolver(PAYMENT,
+            "customer.account", "customer.name", "customer.address.city", "customer.address.zip",
+            "customer.address", "customer", "amount", "count", "big", "long", "active");
+
+        Object[] values = extract(PAYMENT, "customer.address.city", "customer.address");
+        assertEquals("Lagos", values[0]);
+        assertEquals(Arrays.asList("city", "zip"), new ArrayList<>(((Map<?, ?>) values[1]).keySet()));
+    }
+
+    @Test
+    public void arraysAndIndexes() throws Exception {
+        assertSameAsPathResolver(PAYMENT,
+            "items.0.id", "items.1.id", "items.0.tags.1", "items.2", "items.3", "items.0", "items",
+            "matrix.1.0", "matrix.0", "items.01.id", "items.1", "customer.0");
+
+        Object[] values = extract(PAYMENT, "items.0.tags.1", "items.01.id", "items.1.id", "matrix.1.0");
+        assertArrayEquals(new Object[] {"y", "b", "b", 3}, values);
+    }
+
+    @Test
+    public void missingPaths() throws Exception {
+        assertSameAsPathResolver(PAYMENT,
+            "nothing", "customer.nothing", "customer.name.first", "amount.value", "items.4", "items.-1",
+            "items.x", "items.2.id", "customer.address.zip.code", "matrix.0.0.0");
+
+        for (Object value : extract(PAYMENT, "nothing", "items.4", "items.-1", "customer.name.first")) {
+            assertNull(value);
+        }
+        // the JSON literal null has no fields
+        assertArrayEquals(new Object[2], extract("null", "customer.name", "amount"));
+    }
+
+    @Test
+    public void unmappedSubtreesAreSkipped() throws Exception {
+        // a mapped name inside an unmapped subtree is not a match
+        assertSameAsPathResolver(PAYMENT, "customer.name", "other.customer.name");
+        assertEquals("Ada", extract(PAYMENT, "customer.name")[0]);
+
+        // values of every type are skipped without being read
+        String json = "{\"skip\": {\"a\": [1, 2.5, true, false, null, \"s\", {\"b\": [[]]}]}, \"keep\": \"k\","
+            + " \"after\": [{}, []]}";
+        assertSameAsPathResolver(json, "keep", "after.0", "after.1");
+        assertEquals("k", extract(json, "keep")[0]);
+    }
+
+    @Test
+    public void lastDuplicateKeyWins() throws Exception {
+        String json = "{\"customer\": {\"name\": \"first\", \"account\": \"1\"}, \"amount\": 1,"
+            + " \"customer\": {\"name\": \"second\"}, \"amount\": 2, \"list\": [1], \"list\": 5}";
+
+        assertSameAsPathResolver(json, "customer.name", "customer.account", "customer", "amount", "list", "list.0");
+        // nothing read from the first occurrence survives
+        assertArrayEquals(new Object[] {"second", null, 2, null},
+            extract(json, "customer.name", "customer.account", "amount", "list.0"));
+    }
+
+    @Test
+    public void equalPathsShareASlot() throws Exception {
+        JsonPathExtractor extractor = JsonPathExtractor.compile(List.of(
+            segments("customer.name"), segments("customer.account"), segments("customer.name")));
+
+        Object[] values = extractor.extract(PAYMENT);
+        assertEquals(extractor.slotOf(0), extractor.slotOf(2));
+        assertEquals("Ada", values[extractor.slotOf(0)]);
+        assertEquals("0123456789", values[extractor.slotOf(1)]);
+    }
+
+    @Test
+    public void documentsThatAreNotObjectsAreRejected() throws Exception {
+        for (String json : new String[] {"", "[1, 2]", "\"text\"", "{\"a\": "}) {
+            try {
+                extract(json, "a");
+                fail("Accepted " + json);
+            } catch (InputParser.ParseException expected) {
+                // as a Map parse of the document would fail
+            }
+        }
+    }
+
+    /**
+     * Extract the paths from the document as a String and as a stream (which must agree), and
+     * compare every value with the old lookup in the fully parsed Map
+     */
+    private static void assertSameAsPathResolver(String json, String... paths) throws Exception {
+        Object parsed = InputParser.OBJECT_MAPPER.readValue(json, Object.class);
+        Object[] values = extract(json, paths);
+        for (int i = 0; i < paths.length; i++) {
+            assertEquals(paths[i], PathResolver.getValueFromSource(parsed, "source." + paths[i]), values[i]);
+        }
+    }
+
+    /**
+     * Values of the paths, in path order
+     */
+    private static Object[] extract(String json, String... paths) throws Exception {
+        List<String[]> compiled = new ArrayList<>();
+        for (String path : paths) {
+            compiled.add(segments(path));
+        }
+        JsonPathExtractor extractor = JsonPathExtractor.compile(compiled);
+        Object[] bySlot = extractor.extract(json);
+        Object[] streamed = extractor.extract(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(bySlot, streamed);
+
+        Object[] values = new Object[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            values[i] = bySlot[extractor.slotOf(i)];
+        }
+        return values;
+    }
+
+    private static String[] segments(String path) {
+        return path.split("\\.");
+    }
+}
@@ -0,0 +1,175 @@
+package com.makura.translator.parser;
+
+import org.dom4j.Attribute;
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SoapBodyReaderTest {
+
+    private static final String SOAP_11 = "xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"";
+    private static final String SOAP_12 = "xmlns:soap=\"http://www.w3.org/2003/05/soap-envelope\"";
+
+    private final InputParser parser = new InputParser();
+
+    @Test
+    public void soap11PayloadIsTheSameAsSaaj() throws Exception {
+        assertSameAsSaaj("<soap:Envelope " + SOAP_11 + "><soap:Body>"
+            + "<PaymentRequest><amount currency=\"NGN\">10</amount><name>Ada &amp; Co</name></PaymentRequest>"
+            + "</soap:Body></soap:Envelope>");
+        // declaration, whitespace and comments around the envelope parts
+        assertSameAsSaaj("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- before -->\n<soap:Envelope " + SOAP_11 + ">\n"
+            + "  <!-- header-less -->\n  <soap:Body>\n    <!-- payload -->\n"
+            + "    <Req><A>  spaced   text </A><B><![CDATA[<raw> & ]]></B></Req>\n"
+            + "  </soap:Body>\n</soap:Envelope>\n");
+    }
+
+    @Test
+    public void headerBeforeTheBodyIsSkipped() throws Exception {
+        String soap = "<soap:Envelope " + SOAP_11 + "><soap:Header>"
+            + "<Auth><Token>secret</Token><Nested><Req>not the payload</Req></Nested></Auth>"
+            + "</soap:Header><soap:Body><Req><A>1</A></Req></soap:Body></soap:Envelope>";
+
+        Document payload = assertSameAsSaaj(soap);
+        assertEquals("1", payload.getRootElement().elementText("A"));
+    }
+
+    @Test
+    public void namespacedPayloadsKeepTheirNamespaces() throws Exception {
+        // prefix declared on the envelope, on the payload, and a default namespace inside it
+        Document payload = assertSameAsSaaj("<soap:Envelope " + SOAP_11 + " xmlns:p=\"urn:example:payments\">"
+            + "<soap:Body><p:PaymentRequest a=\"1\" p:b=\"2\" xmlns:q=\"urn:q\">"
+            + "<p:debtorAccount><p:accountNumber>0123</p:accountNumber></p:debtorAccount>"
+            + "<B xmlns=\"urn:default\"><C>3</C></B><q:D>4</q:D>"
+            + "</p:PaymentRequest></soap:Body></soap:Envelope>");
+
+        Element root = payload.getRootElement();
+        assertEquals("urn:example:payments", root.getNamespaceURI());
+        assertEquals("urn:default", root.element("B").element("C").getNamespaceURI());
+
+        assertSameAsSaaj("<env:Envelope xmlns:env=\"http://schemas.xmlsoap.org/soap/envelope/\"><env:Body>"
+            + "<Req xmlns=\"urn:default\"><A>1</A></Req></env:Body></env:Envelope>");
+    }
+
+    @Test
+    public void soap12IsLeftToSaaj() throws Exception {
+        String soap = "<soap:Envelope " + SOAP_12 + "><soap:Body><Req><A>1</A></Req></soap:Body></soap:Envelope>";
+
+        assertDeclined(soap);
+        // the SAAJ factory reads SOAP 1.1, so both paths reject the message
+        assertRejected(soap);
+    }
+
+    @Test
+    public void missingOrEmptyBodyIsLeftToSaaj() throws Exception {
+        String headerOnly = "<soap:Envelope " + SOAP_11 + "><soap:Header><h>1</h></soap:Header></soap:Envelope>";
+        assertDeclined(headerOnly);
+        assertRejected(headerOnly);
+
+        String emptyBody = "<soap:Envelope " + SOAP_11 + "><soap:Header/><soap:Body>  </soap:Body></soap:Envelope>";
+        assertDeclined(emptyBody);
+        // SAAJ falls back to the whole envelope
+        assertEquals("Envelope", parser.parseSoap(emptyBody).getRootElement().getName());
+        assertSameElement(parser.parseSoapMessage(emptyBody).getRootElement(), parser.parseSoap(emptyBody).getRootElement());
+    }
+
+    @Test
+    public void otherDocumentsAreLeftToSaaj() {
+        assertDeclined("<Envelope><Body><Req/></Body></Envelope>");
+        assertDeclined("<soap:Envelope " + SOAP_11 + ">text<soap:Body><Req/></soap:Body></soap:Envelope>");
+        assertDeclined("<soap:Envelope " + SOAP_11 + "><soap:Body><?pi data?><Req/></soap:Body></soap:Envelope>");
+        assertDeclined("<soap:Envelope " + SOAP_11 + "><Other/><soap:Body><Req/></soap:Body></soap:Envelope>");
+        assertDeclined("not xml");
+    }
+
+    @Test
+    public void contentAfterThePayloadIsStillChecked() throws Exception {
+        String soap = "<soap:Envelope " + SOAP_11 + "><soap:Body><Req><A>1</A></Req></soap:Body></soap:Wrong>";
+
+        XMLStreamReader reader = SoapBodyReader.openPayload(soap);
+        assertNotNull(reader);
+        SoapBodyReader.readDocument(reader);
+        try {
+            SoapBodyReader.finish(reader);
+            fail("Malformed envelope accepted");
+        } catch (XMLStreamException expected) {
+            // as SAAJ rejects it
+        }
+        assertRejected(soap);
+    }
+
+    /**
+     * Read the payload through every entry point of the fast path and check it against SAAJ
+     *
+     * @return The payload
+     */
+    private Document assertSameAsSaaj(String soap) throws Exception {
+        Element expected = parser.parseSoapMessage(soap).getRootElement();
+        byte[] bytes = soap.getBytes(StandardCharsets.UTF_8);
+
+        List<XMLStreamReader> readers = List.of(SoapBodyReader.openPayload(soap), SoapBodyReader.openPayload(bytes),
+            SoapBodyReader.openPayload(new ByteArrayInputStream(bytes)));
+        for (XMLStreamReader reader : readers) {
+            assertNotNull(soap, reader);
+            Document payload = SoapBodyReader.readDocument(reader);
+            SoapBodyReader.finish(reader);
+            assertSameElement(expected, payload.getRootElement());
+        }
+        Document payload = parser.parseSoap(soap);
+        assertSameElement(expected, payload.getRootElement());
+        return payload;
+    }
+
+    private static void assertDeclined(String soap) {
+        byte[] bytes = soap.getBytes(StandardCharsets.UTF_8);
+        assertNull(soap, SoapBodyReader.openPayload(soap));
+        assertNull(soap, SoapBodyReader.openPayload(bytes));
+        assertNull(soap, SoapBodyReader.openPayload(new ByteArrayInputStream(bytes)));
+    }
+
+    private void assertRejected(String soap) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                if (attempt == 0) {
+                    parser.parseSoap(soap);
+                } else {
+                    parser.parseSoapMessage(soap);
+                }
+                fail("Accepted " + soap);
+            } catch (InputParser.ParseException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().startsWith("Failed to parse SOAP"));
+            }
+        }
+    }
+
+    /**
+     * Same names, namespaces, attributes and text, recursively
+     */
+    private static void assertSameElement(Element expected, Element actual) {
+        String where = expected.getPath();
+        assertEquals(where, expected.getQName(), actual.getQName());
+        assertEquals(where, expected.getTextTrim(), actual.getTextTrim());
+        assertEquals(where, expected.attributeCount(), actual.attributeCount());
+        for (Attribute attribute : expected.attributes()) {
+            assertEquals(where, attribute.getValue(), actual.attributeValue(attribute.getQName()));
+        }
+        List<Element> expectedChildren = expected.elements();
+        List<Element> actualChildren = actual.elements();
+        assertEquals(where, expectedChildren.size(), actualChildren.size());
+        for (int i = 0; i < expectedChildren.size(); i++) {
+            assertSameElement(expectedChildren.get(i), actualChildren.get(i));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.makura.translator.parser;
+
+import com.makura.translator.mapping.PathResolver;
+import com.makura.translator.mapping.SourcePath;
+import org.dom4j.Document;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class XmlPathExtractorTest {
+
+    private static final String PACS_002 = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<Document xmlns=\"urn:iso:std:iso:20022:tech:xsd:pacs.002.001.10\">\n"
+        + "  <FIToFIPmtStsRpt>\n"
+        + "    <GrpHdr>\n"
+        + "      <MsgId>999999230101120000123456789012</MsgId>\n"
+        + "      <CreDtTm>2024-01-01T12:00:00</CreDtTm>\n"
+        + "      <InstdAgt><FinInstnId><ClrSysMmbId><MmbId>111444</MmbId></ClrSysMmbId></FinInstnId></InstdAgt>\n"
+        + "    </GrpHdr>\n"
+        + "    <OrgnlGrpInfAndSts><OrgnlMsgId>M1</OrgnlMsgId><GrpSts>ACSC</GrpSts></OrgnlGrpInfAndSts>\n"
+        + "    <TxInfAndSts><TxSts>ACSC</TxSts><StsRsnInf><AddtlInf>first</AddtlInf></StsRsnInf></TxInfAndSts>\n"
+        + "    <TxInfAndSts><TxSts>RJCT</TxSts><StsRsnInf><AddtlInf>second</AddtlInf></StsRsnInf></TxInfAndSts>\n"
+        + "  </FIToFIPmtStsRpt>\n"
+        + "</Document>";
+
+    @Test
+    public void namespacedAndPrefixedElementsMatchByLocalName() throws Exception {
+        String prefixed = "<ns2:Document xmlns:ns2=\"urn:iso:std:iso:20022:tech:xsd:pacs.002.001.10\""
+            + " xmlns:x=\"urn:other\">"
+            + "<ns2:GrpHdr><ns2:MsgId>M1</ns2:MsgId><x:MsgId>other namespace</x:MsgId></ns2:GrpHdr>"
+            + "<x:GrpHdr><MsgId>second header</MsgId></x:GrpHdr>"
+            + "<Unqualified><ns2:Value>v</ns2:Value></Unqualified>"
+            + "</ns2:Document>";
+
+        assertSameAsPathResolver(prefixed, "GrpHdr.MsgId", "Unqualified.Value", "GrpHdr", "x:GrpHdr.MsgId");
+        assertArrayEquals(new String[] {"M1", "v", null},
+            extract(prefixed, "GrpHdr.MsgId", "Unqualified.Value", "x:GrpHdr.MsgId"));
+
+        assertSameAsPathResolver(PACS_002, "FIToFIPmtStsRpt.GrpHdr.MsgId", "FIToFIPmtStsRpt.GrpHdr.CreDtTm");
+    }
+
+    @Test
+    public void onlyTheFirstOfRepeatedSiblingsIsFollowed() throws Exception {
+        assertSameAsPathResolver(PACS_002,
+            "FIToFIPmtStsRpt.TxInfAndSts.TxSts", "FIToFIPmtStsRpt.TxInfAndSts.StsRsnInf.AddtlInf");
+        assertArrayEquals(new String[] {"ACSC", "first"}, extract(PACS_002,
+            "FIToFIPmtStsRpt.TxInfAndSts.TxSts", "FIToFIPmtStsRpt.TxInfAndSts.StsRsnInf.AddtlInf"));
+
+        // a path that is missing below the first sibling is not looked for in the next one
+        String xml = "<R><Item><A>1</A></Item><Item><A>2</A><B>2</B></Item></R>";
+        assertSameAsPathResolver(xml, "Item.A", "Item.B");
+        assertArrayEquals(new String[] {"1", null}, extract(xml, "Item.A", "Item.B"));
+    }
+
+    @Test
+    public void textIsDirectTextOnlyAndAttributesAreIgnored() throws Exception {
+        String xml = "<R a=\"attribute\">root text"
+            + "<Name lang=\"en\" value=\"ignored\">  Ada \n\t Obi  </Name>"
+            + "<Mixed>before<Child>inner</Child> after </Mixed>"
+            + "<Empty/><Blank>   </Blank>"
+            + "<Escaped>A &amp; B &lt;C&gt; &#233;<![CDATA[ <raw> & ]]></Escaped>"
+            + "<!-- comment --><Commented>x<!-- inside -->y</Commented>"
+            + "</R>";
+
+        assertSameAsPathResolver(xml, "Name", "Mixed", "Mixed.Child", "Empty", "Blank", "Escaped", "Commented",
+            "a", "Name.lang", "Missing");
+        assertArrayEquals(new String[] {"Ada Obi", "before after", "", "", "A & B <C> é <raw> &", "xy", null},
+            extract(xml, "Name", "Mixed", "Empty", "Blank", "Escaped", "Commented", "Name.lang"));
+    }
+
+    @Test
+    public void isoResponseFieldsMatchTheSlashLookup() throws Exception {
+        String[] paths = {
+            "target:FIToFIPmtStsRpt/GrpHdr/MsgId",
+            "target:FIToFIPmtStsRpt/GrpHdr/InstdAgt/FinInstnId/ClrSysMmbId/MmbId",
+            "target:FIToFIPmtStsRpt/OrgnlGrpInfAndSts/GrpSts",
+            "target:FIToFIPmtStsRpt/TxInfAndSts/StsRsnInf/AddtlInf",
+            "target:FIToFIPmtStsRpt//GrpHdr/MsgId",
+            // split drops the trailing empty segment, so this is the header's own (blank) text
+            "target:FIToFIPmtStsRpt/GrpHdr/",
+            "target:TxSts",
+        };
+        Document document = new InputParser().parseXml(PACS_002);
+        String[] values = extract(PACS_002, paths);
+        for (int i = 0; i < paths.length; i++) {
+            assertEquals(paths[i], PathResolver.getValueByPath(document, paths[i]), values[i]);
+        }
+        assertArrayEquals(new String[] {"999999230101120000123456789012", "111444", "ACSC", "first",
+            "999999230101120000123456789012", "", null}, values);
+    }
+
+    @Test
+    public void emptyPathReadsTheRootText() throws Exception {
+        XmlPathExtractor extractor = XmlPathExtractor.compile(List.of(new String[0], new String[] {"A"}));
+        String[] values = extractor.extract("<R> root <A>a</A> text </R>");
+
+        assertEquals("root text", values[extractor.slotOf(0)]);
+        assertEquals("a", values[extractor.slotOf(1)]);
+    }
+
+    @Test
+    public void malformedDocumentsAreRejected() {
+        for (String xml : new String[] {"", "<R><A>1</A>", "<R><A>1</B></R>", "<R/><S/>"}) {
+            try {
+                extract(xml, "A");
+                fail("Accepted " + xml);
+            } catch (InputParser.ParseException expected) {
+                // even where the mapped values were already read
+            }
+        }
+    }
+
+    /**
+     * Compare the value of each dotted path with the old lookup in the parsed dom4j document
+     */
+    private static void assertSameAsPathResolver(String xml, String... paths) throws Exception {
+        Document document = new InputParser().parseXml(xml);
+        String[] values = extract(xml, paths);
+        for (int i = 0; i < paths.length; i++) {
+            assertEquals(paths[i], PathResolver.getValueByDotPath(document, paths[i]), values[i]);
+        }
+    }
+
+    /**
+     * Values of the paths (dotted, or slashed with the target: prefix), in path order
+     */
+    private static String[] extract(String xml, String... paths) throws InputParser.ParseException {
+        List<String[]> names = new ArrayList<>();
+        for (String path : paths) {
+            names.add(elementNames(path.startsWith("target:") ? SourcePath.slashed(path) : SourcePath.dotted(path)));
+        }
+        return extract(xml, names);
+    }
+
+    /**
+     * Extract from the document as a String and as a stream, which must agree
+     */
+    private static String[] extract(String xml, List<String[]> names) throws InputParser.ParseException {
+        XmlPathExtractor extractor = XmlPathExtractor.compile(names);
+        String[] bySlot = extractor.extract(xml);
+        assertArrayEquals(bySlot, extractor.extract(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+
+        String[] values = new String[names.size()];
+        for (int i = 0; i < values.length; i++) {
+            int slot = extractor.slotOf(i);
+            values[i] = slot >= 0 ? bySlot[slot] : null;
+        }
+        return values;
+    }
+
+    private static String[] elementNames(SourcePath path) {
+        List<String> names = path.getElementNames();
+        return names != null ? names.toArray(new String[0]) : null;
+    }
+}
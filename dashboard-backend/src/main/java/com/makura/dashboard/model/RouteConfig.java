@@ -102,6 +102,7 @@ public class RouteConfig {
     public enum EncryptionType {
         NONE,
         AES,
+        AES_GCM,
         PGP
     }
 }
@@ -89,7 +89,7 @@ public class Route {
     }
 
     public enum EncryptionType {
-        NONE, AES, PGP
+        NONE, AES, AES_GCM, PGP
     }
 }
 
@@ -160,6 +160,7 @@ export const CreateRouteModal = ({
           <Select>
             <Select.Option value="NONE">None</Select.Option>
             <Select.Option value="AES">AES</Select.Option>
+            <Select.Option value="AES_GCM">AES-GCM</Select.Option>
             <Select.Option value="PGP">PGP</Select.Option>
           </Select>
         </Form.Item>
@@ -74,6 +74,7 @@ export default function RouteEditorPage() {
             <Select>
               <Select.Option value="NONE">None</Select.Option>
               <Select.Option value="AES">AES</Select.Option>
+              <Select.Option value="AES_GCM">AES-GCM</Select.Option>
               <Select.Option value="PGP">PGP</Select.Option>
             </Select>
           </Form.Item>
@@ -0,0 +1,143 @@
+package com.makura.translator.maven;
+
+import com.makura.translator.mapping.MappingBundle;
+import com.makura.translator.mapping.MappingConfig;
+import com.makura.translator.mapping.MappingLoader;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates every YAML mapping file in a directory and writes them as one binary mapping bundle.
+ * Each file is parsed and compiled exactly as the runtime would, so an invalid mapping fails the build
+ * instead of the deployment. Value map table files the routes refer to ({@code valueMaps/<name>.yaml})
+ * are bundled with them. Place the bundle in the runtime's mappings directory to skip YAML parsing
+ * at startup.
+ */
+@Mojo(name = "bundle", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
+public class BundleMappingsMojo extends AbstractMojo {
+
+    private static final String YAML_SUFFIX = ".yaml";
+
+    /**
+     * Directory holding the {@code <routeId>.yaml} mapping files
+     */
+    @Parameter(property = "mappingBundle.sourceDirectory", defaultValue = "${project.basedir}/mappings")
+    private File sourceDirectory;
+
+    /**
+     * Bundle file to write
+     */
+    @Parameter(property = "mappingBundle.outputFile",
+        defaultValue = "${project.build.directory}/mappings/" + MappingBundle.FILE_NAME)
+    private File outputFile;
+
+    /**
+     * Skip bundling
+     */
+    @Parameter(property = "mappingBundle.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Mapping bundle skipped");
+            return;
+        }
+        if (!sourceDirectory.isDirectory()) {
+            throw new MojoExecutionException("Mappings directory not found: " + sourceDirectory);
+        }
+        if (new File(sourceDirectory, MappingBundle.FILE_NAME).exists()) {
+            throw new MojoExecutionException("Mappings directory already contains a " + MappingBundle.FILE_NAME
+                + "; remove it so the YAML files are validated: " + sourceDirectory);
+        }
+
+        List<String> routeIds = listRouteIds(sourceDirectory.toPath());
+        MappingLoader loader = new MappingLoader(sourceDirectory.getAbsolutePath(), Math.max(1, routeIds.size()));
+        Map<String, MappingConfig> configs = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+        for (String routeId : routeIds) {
+            try {
+                configs.put(routeId, loader.loadMappingConfig(routeId));
+            } catch (MappingLoader.MappingLoadException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            for (String error : errors) {
+                getLog().error(error);
+            }
+            throw new MojoFailureException(errors.size() + " of " + routeIds.size() + " mapping file(s) are invalid");
+        }
+
+        Map<String, Map<String, String>> valueMaps = new HashMap<>();
+        for (MappingConfig config : configs.values()) {
+            if (config.getValueMaps() == null) {
+                continue;
+            }
+            for (Object table : config.getValueMaps().values()) {
+                // Inline tables are part of the route; names refer to table files
+                if (table instanceof String name && !valueMaps.containsKey(name)) {
+                    try {
+                        valueMaps.put(name, loader.loadValueMapEntries(name));
+                    } catch (MappingLoader.MappingLoadException e) {
+                        throw new MojoFailureException(e.getMessage(), e);
+                    }
+                }
+            }
+        }
+
+        writeBundle(configs, valueMaps);
+        getLog().info("Bundled " + configs.size() + " mapping(s) and " + valueMaps.size() + " value map(s) into "
+            + outputFile);
+    }
+
+    private List<String> listRouteIds(Path directory) throws MojoExecutionException {
+        List<String> routeIds = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + YAML_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.length() > YAML_SUFFIX.length()) {
+                    routeIds.add(name.substring(0, name.length() - YAML_SUFFIX.length()));
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot list mappings directory " + directory + ": " + e.getMessage(), e);
+        }
+        return routeIds;
+    }
+
+    private void writeBundle(Map<String, MappingConfig> configs, Map<String, Map<String, String>> valueMaps) throws MojoExecutionException {
+        Path target = outputFile.toPath();
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            // Write next to the target and move, so a watching runtime never sees a partial bundle
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temporary)) {
+                    MappingBundle.write(configs, valueMaps, out);
+                }
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot write mapping bundle " + target + ": " + e.getMessage(), e);
+        }
+    }
+}
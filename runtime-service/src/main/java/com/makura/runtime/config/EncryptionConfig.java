@@ -0,0 +1,18 @@
+package com.makura.runtime.config;
+
+import com.makura.translator.encryption.KeyRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EncryptionConfig {
+
+    /**
+     * Parsed encryption keys, shared by the Translator and the startup preload of route keys
+     */
+    @Bean
+    public KeyRegistry keyRegistry(@Value("${makura.runtime.encryption.keys-path:./keys}") String encryptionKeysPath) {
+        return new KeyRegistry(encryptionKeysPath);
+    }
+}
@@ -3,6 +3,8 @@ package com.makura.runtime.config;
 import com.makura.runtime.mapping.MappingLoader;
 import com.makura.runtime.model.Route;
 import com.makura.runtime.repository.RouteRepository;
+import com.makura.translator.encryption.KeyRegistry;
+import com.makura.translator.mapping.MappingConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationArguments;
@@ -12,8 +14,8 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 
 /**
- * Preloads all mapping configurations at startup.
- * Fails startup if any active route has an invalid mapping.
+ * Preloads all mapping configurations and encryption keys at startup.
+ * Fails startup if any active route has an invalid mapping or a missing or invalid key.
  */
 @Slf4j
 @Component
@@ -22,6 +24,7 @@ public class MappingPreloader implements ApplicationRunner {
 
     private final RouteRepository routeRepository;
     private final MappingLoader mappingLoader;
+    private final KeyRegistry keyRegistry;
 
     @Override
     public void run(ApplicationArguments args) {
@@ -52,6 +55,43 @@ public class MappingPreloader implements ApplicationRunner {
         }
         
         log.info("Successfully preloaded {} mapping configuration(s) at startup", successCount);
+
+        preloadKeys(activeRoutes);
+    }
+
+    private void preloadKeys(List<Route> activeRoutes) {
+        int keyCount = 0;
+        for (Route route : activeRoutes) {
+            Route.EncryptionType type = route.getEncryptionType();
+            boolean encrypts = type != null && type != Route.EncryptionType.NONE;
+            // Requests of the route may also arrive encrypted (decryption section of the mapping file)
+            MappingConfig.DecryptionConfig decryption = mappingLoader.loadMappingConfig(route.getRouteId()).getDecryption();
+            if (!encrypts && decryption == null) {
+                continue;
+            }
+            try {
+                if (type == Route.EncryptionType.AES || type == Route.EncryptionType.AES_GCM) {
+                    keyRegistry.preloadAes(route.getEncryptionKeyRef());
+                } else if (encrypts) {
+                    keyRegistry.preloadPgp(route.getEncryptionKeyRef());
+                }
+                if (decryption != null && "PGP".equalsIgnoreCase(decryption.getType())) {
+                    keyRegistry.preloadPgpPrivate(decryption.getKeyRef());
+                } else if (decryption != null) {
+                    keyRegistry.preloadAes(decryption.getKeyRef());
+                }
+                keyCount++;
+            } catch (KeyRegistry.KeyLoadException e) {
+                log.error("Failed to preload encryption keys for routeId: {}. Error: {}",
+                    route.getRouteId(), e.getMessage(), e);
+                throw new RuntimeException(
+                    String.format("Failed to preload encryption key for routeId: %s. Service cannot start.",
+                        route.getRouteId()), e);
+            }
+        }
+        if (keyCount > 0) {
+            log.info("Successfully preloaded encryption keys for {} route(s) at startup", keyCount);
+        }
     }
 }
 
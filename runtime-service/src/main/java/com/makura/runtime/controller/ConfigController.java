@@ -74,9 +74,10 @@ public class ConfigController {
         @ApiResponse(responseCode = "500", description = "Failed to refresh caches")
     })
     @PostMapping("/refresh/all")
-    @CacheEvict(value = {"mappingConfigs", "routes"}, allEntries = true)
+    @CacheEvict(value = "routes", allEntries = true)
     public ResponseEntity<?> refreshAllConfigs() {
         try {
+            mappingLoader.refreshAllMappingCaches();
             log.info("All mapping and route caches refreshed");
             return ResponseEntity.ok(new RefreshResponse("All caches refreshed successfully", null));
         } catch (Exception e) {
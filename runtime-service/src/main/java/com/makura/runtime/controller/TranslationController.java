@@ -1,5 +1,6 @@
 package com.makura.runtime.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.makura.runtime.auth.ApiKeyValidator;
 import com.makura.runtime.model.Route;
 import com.makura.runtime.repository.RouteRepository;
@@ -13,12 +14,16 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 /**
@@ -33,11 +38,14 @@ public class TranslationController {
     private final TranslationService translationService;
     private final ApiKeyValidator apiKeyValidator;
     private final RouteRepository routeRepository;
+    private final ObjectMapper objectMapper;
 
-    public TranslationController(TranslationService translationService, ApiKeyValidator apiKeyValidator, RouteRepository routeRepository) {
+    public TranslationController(TranslationService translationService, ApiKeyValidator apiKeyValidator, RouteRepository routeRepository,
+                                 ObjectMapper objectMapper) {
         this.translationService = translationService;
         this.apiKeyValidator = apiKeyValidator;
         this.routeRepository = routeRepository;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -249,6 +257,108 @@ public class TranslationController {
         }
     }
 
+    /**
+     * Streaming translate endpoint: reads the body straight from the servlet input stream and writes
+     * the translated message (unwrapped) straight to the servlet output stream
+     */
+    @Operation(
+        summary = "Translate message to/from ISO 20022 (streamed)",
+        description = "Same as POST /{routeId}, but the request body is translated from bytes and the translated message " +
+            "is written directly as the response body (ISO XML for direction=request, or Base64 text/plain if the route " +
+            "encrypts; the route's inbound format for direction=response and for the downstream response of ACTIVE routes) " +
+            "instead of being wrapped in JSON. Intended for large messages. Errors are returned as JSON " +
+            "(404 for an unknown route) when nothing has been written yet; a failure after that aborts the connection, so a " +
+            "truncated message is never completed with status 200.",
+        security = @SecurityRequirement(name = "ApiKeyAuth")
+    )
+    @PostMapping(
+        value = "/{routeId}/stream",
+        consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE, "text/xml"}
+    )
+    public void translateStream(
+            @Parameter(description = "Route identifier (e.g., SYSTEM_TO_HYDROGEN)", required = true, example = "SYSTEM_TO_HYDROGEN")
+            @PathVariable String routeId,
+            @Parameter(description = "API key for authentication", required = true, example = "mak_test1234567890abcdef")
+            @RequestHeader(value = "X-API-Key", required = false) String apiKey,
+            @Parameter(description = "Optional correlation ID for request tracking", example = "550e8400-e29b-41d4-a716-446655440000")
+            @RequestHeader(value = "X-Correlation-Id", required = false) String correlationId,
+            @Parameter(description = "Translation direction: 'request' (default) transforms source to ISO, 'response' transforms ISO to source", example = "response")
+            @RequestParam(value = "direction", required = false, defaultValue = "request") String direction,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        // Validate API key
+        if (!apiKeyValidator.validateApiKey(routeId, apiKey)) {
+            log.warn("Invalid API key for routeId: {}", routeId);
+            writeError(response, HttpStatus.UNAUTHORIZED, new ErrorResponse("Invalid or expired API key", correlationId));
+            return;
+        }
+
+        // Generate correlation ID if not provided
+        if (correlationId == null) {
+            correlationId = UUID.randomUUID().toString();
+        }
+
+        // Headers go out before the body is written
+        boolean responseDirection = "response".equalsIgnoreCase(direction);
+        Route route = routeRepository.findByRouteId(routeId).orElse(null);
+        response.setHeader("X-Correlation-Id", correlationId);
+        response.setContentType(streamContentType(route, responseDirection));
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        TranslationService.TranslationResult result = responseDirection
+            ? translationService.translateResponse(routeId, request.getInputStream(), response.getOutputStream(), correlationId)
+            : translationService.translateRequest(routeId, request.getInputStream(), response.getOutputStream(), correlationId);
+
+        if (!result.isSuccess()) {
+            if (response.isCommitted()) {
+                // Part of the message has been sent with status 200: failing the request makes the container
+                // abort the connection instead of ending the body as if the message were complete
+                throw new IOException("Streamed translation failed after the response was committed: " + result.getMessage());
+            }
+            response.reset();
+            response.setHeader("X-Correlation-Id", result.getCorrelationId());
+            writeError(response, result.isRouteNotFound() ? HttpStatus.NOT_FOUND : HttpStatus.INTERNAL_SERVER_ERROR,
+                new ErrorResponse(result.getMessage(), result.getCorrelationId()));
+        }
+    }
+
+    /**
+     * Content type of the streamed response body: the route's inbound format for translated responses
+     * (including a forwarded message's downstream response), Base64 text for encrypted ISO messages, else XML
+     */
+    private String streamContentType(Route route, boolean responseDirection) {
+        if (route == null) {
+            return MediaType.APPLICATION_XML_VALUE;
+        }
+        if (responseDirection || (route.getMode() == Route.RouteMode.ACTIVE && route.getEndpoint() != null)) {
+            return sourceContentType(route);
+        }
+        if (route.getEncryptionType() != null && route.getEncryptionType() != Route.EncryptionType.NONE) {
+            return MediaType.TEXT_PLAIN_VALUE;
+        }
+        return MediaType.APPLICATION_XML_VALUE;
+    }
+
+    /**
+     * Content type of messages in the route's inbound format
+     */
+    private String sourceContentType(Route route) {
+        String format = route.getInboundFormat().name();
+        if ("SOAP".equalsIgnoreCase(format)) {
+            return MediaType.TEXT_XML_VALUE;
+        } else if ("XML".equalsIgnoreCase(format) || "PROPRIETARY_XML".equalsIgnoreCase(format)) {
+            return MediaType.APPLICATION_XML_VALUE;
+        }
+        return MediaType.APPLICATION_JSON_VALUE;
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, ErrorResponse error) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+
     @Schema(description = "Successful translation response")
     @lombok.Data
     @lombok.AllArgsConstructor
@@ -1,14 +1,19 @@
 package com.makura.runtime.mapping;
 
 import com.makura.translator.mapping.MappingConfig;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+
 /**
- * Wrapper around callable-jar's MappingLoader that adds Spring caching
+ * Wrapper around callable-jar's MappingLoader.
+ * The delegate caches parsed and compiled mappings and is shared with the Translator, so the runtime
+ * and the library use the same cached copy. By default the mappings directory is watched, so files
+ * written by the dashboard are recompiled in the background and swapped in without a refresh call;
+ * with watching disabled, cached entries are validated against file mtime/size on lookup.
  */
 @Slf4j
 @Component
@@ -16,11 +21,35 @@ public class MappingLoader {
 
     private final com.makura.translator.mapping.MappingLoader delegate;
 
-    public MappingLoader(@Value("${makura.runtime.mappings.base-path:./mappings}") String mappingsBasePath) {
+    public MappingLoader(@Value("${makura.runtime.mappings.base-path:./mappings}") String mappingsBasePath,
+                         @Value("${makura.runtime.mappings.watch:true}") boolean watch) {
         this.delegate = new com.makura.translator.mapping.MappingLoader(mappingsBasePath);
+        if (delegate.isBundled()) {
+            log.info("Loading mappings from precompiled bundle in {}", mappingsBasePath);
+        }
+        if (watch) {
+            try {
+                delegate.startWatching();
+                log.info("Watching mappings directory {} for changes", mappingsBasePath);
+            } catch (IOException e) {
+                log.warn("Cannot watch mappings directory {}, falling back to checking files on lookup: {}",
+                    mappingsBasePath, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        delegate.stopWatching();
+    }
+
+    /**
+     * The shared callable-jar loader, to be passed to the Translator
+     */
+    public com.makura.translator.mapping.MappingLoader getDelegate() {
+        return delegate;
     }
 
-    @Cacheable(value = "mappingConfigs", key = "#routeId")
     public MappingConfig loadMappingConfig(String routeId) {
         try {
             return delegate.loadMappingConfig(routeId);
@@ -30,9 +59,14 @@ public class MappingLoader {
         }
     }
 
-    @CacheEvict(value = "mappingConfigs", key = "#routeId")
     public void refreshMappingCache(String routeId) {
         log.info("Cache refresh requested for routeId: {}", routeId);
+        delegate.evict(routeId);
+    }
+
+    public void refreshAllMappingCaches() {
+        log.info("Cache refresh requested for all routes");
+        delegate.evictAll();
     }
 
     public static class MappingLoadException extends RuntimeException {
@@ -45,4 +79,3 @@ public class MappingLoader {
         }
     }
 }
-
@@ -4,12 +4,17 @@ import com.makura.runtime.metrics.TranslationMetrics;
 import com.makura.runtime.model.Route;
 import com.makura.runtime.repository.RouteRepository;
 import com.makura.translator.*;
+import com.makura.translator.encryption.KeyRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 /**
@@ -29,20 +34,28 @@ public class TranslationService {
             RouteService routeService,
             TranslationMetrics metrics,
             com.makura.runtime.mapping.MappingLoader cachedMappingLoader,
-            @Value("${makura.runtime.mappings.base-path:./mappings}") String mappingsBasePath,
-            @Value("${makura.runtime.encryption.keys-path:./keys}") String encryptionKeysPath) {
+            KeyRegistry keyRegistry) {
         this.routeService = routeService;
         this.cachedMappingLoader = cachedMappingLoader;
         this.metrics = metrics;
         
-        // Create fully-featured Translator with encryption and forwarding support
+        // Create fully-featured Translator with encryption and forwarding support,
+        // sharing the runtime's mapping cache and preloaded keys
         this.translator = new com.makura.translator.TranslatorBuilder()
-            .withMappingsPath(mappingsBasePath)
-            .withEncryption(encryptionKeysPath)
+            .withMappingLoader(cachedMappingLoader.getDelegate())
+            .withEncryption(keyRegistry)
             .withForwarding()
             .build();
     }
 
+    /**
+     * Release the translator's forwarding threads and connections
+     */
+    @PreDestroy
+    public void close() {
+        translator.close();
+    }
+
     /**
      * Translate inbound request to target format and optionally forward
      */
@@ -75,34 +88,9 @@ public class TranslationService {
                 (route.getMode() == Route.RouteMode.ACTIVE && route.getEndpoint() != null);
 
             if (needsAdvancedFeatures) {
-                // Use advanced API with options
-                TranslationOptions.TranslationOptionsBuilder optionsBuilder = TranslationOptions.builder()
-                    .routeId(routeId);
-
-                // Configure encryption if needed
-                if (route.getEncryptionType() != null && route.getEncryptionType() != Route.EncryptionType.NONE) {
-                    optionsBuilder
-                        .encrypt(true)
-                        .encryptionType(
-                            route.getEncryptionType() == Route.EncryptionType.AES 
-                                ? TranslationOptions.EncryptionType.AES 
-                                : TranslationOptions.EncryptionType.PGP
-                        )
-                        .encryptionKeyRef(route.getEncryptionKeyRef());
-                }
-
-                // Configure forwarding if ACTIVE mode
-                if (route.getMode() == Route.RouteMode.ACTIVE && route.getEndpoint() != null) {
-                    log.info("[{}] Forwarding target message to endpoint: {}", correlationId, route.getEndpoint());
-                    optionsBuilder
-                        .forward(true)
-                        .endpoint(route.getEndpoint())
-                        .forwardingApiKey(mappingConfig.getAuth() != null ? mappingConfig.getAuth().getKey() : null);
-                }
-
                 // Execute translation with options
                 com.makura.translator.TranslationResult callableResult = 
-                    translator.translateWithOptions(sourceMessage, optionsBuilder.build());
+                    translator.translateWithOptions(sourceMessage, buildOptions(route, mappingConfig, correlationId));
 
                 // If forwarded, translate the response back to source format
                 if (callableResult.isForwarded() && callableResult.getForwardingResponse() != null) {
@@ -145,7 +133,7 @@ public class TranslationService {
             log.error("[{}] Route not found: {} (took {}ms)", correlationId, routeId, String.format("%.2f", durationMs));
             metrics.recordTranslationError(routeId, "ROUTE_NOT_FOUND");
             metrics.recordDuration(timer, routeId);
-            return TranslationResult.error("Route not found: " + routeId, correlationId);
+            return TranslationResult.routeNotFound(routeId, correlationId);
         } catch (com.makura.runtime.mapping.MappingLoader.MappingLoadException e) {
             long durationNanos = System.nanoTime() - startTimeNanos;
             double durationMs = durationNanos / 1_000_000.0;
@@ -172,6 +160,159 @@ public class TranslationService {
         }
     }
 
+    /**
+     * Translation options (encryption, forwarding) of a route that needs them
+     */
+    private TranslationOptions buildOptions(Route route, com.makura.translator.mapping.MappingConfig mappingConfig,
+                                            String correlationId) throws com.makura.translator.Translator.TranslationException {
+        TranslationOptions.TranslationOptionsBuilder optionsBuilder = TranslationOptions.builder()
+            .routeId(route.getRouteId());
+
+        // Configure encryption if needed
+        if (route.getEncryptionType() != null && route.getEncryptionType() != Route.EncryptionType.NONE) {
+            optionsBuilder
+                .encrypt(true)
+                .encryptionType(encryptionType(route))
+                .encryptionKeyRef(route.getEncryptionKeyRef());
+        }
+
+        // Configure forwarding if ACTIVE mode
+        if (route.getMode() == Route.RouteMode.ACTIVE && route.getEndpoint() != null) {
+            log.info("[{}] Forwarding target message to endpoint: {}", correlationId, route.getEndpoint());
+            optionsBuilder
+                .forward(true)
+                .endpoint(route.getEndpoint())
+                .forwardingApiKey(mappingConfig.getAuth() != null ? mappingConfig.getAuth().getKey() : null);
+        }
+        return optionsBuilder.build();
+    }
+
+    /**
+     * Translator encryption type of a route (types the translator does not support fail the message)
+     */
+    private static TranslationOptions.EncryptionType encryptionType(Route route)
+            throws com.makura.translator.Translator.TranslationException {
+        switch (route.getEncryptionType()) {
+            case AES:
+                return TranslationOptions.EncryptionType.AES;
+            case AES_GCM:
+                return TranslationOptions.EncryptionType.AES_GCM;
+            case PGP:
+                return TranslationOptions.EncryptionType.PGP;
+            default:
+                throw new com.makura.translator.Translator.TranslationException(
+                    "Unsupported encryption type for routeId " + route.getRouteId() + ": " + route.getEncryptionType());
+        }
+    }
+
+    /**
+     * Translate an inbound request read from a stream, writing the target message into the output stream.
+     * Plain routes are translated from bytes to bytes. Routes that encrypt or forward stream the message
+     * through the encryption stage into the output stream or the forwarding request, and the downstream
+     * response is translated back and written out. Once output has started, an error leaves a partial
+     * message in the stream; the result carries the error.
+     */
+    @Transactional(readOnly = true)
+    public TranslationResult translateRequest(String routeId, InputStream inboundContent, OutputStream out, String correlationId) {
+        if (correlationId == null) {
+            correlationId = UUID.randomUUID().toString();
+        }
+
+        Route route;
+        try {
+            route = routeService.getActiveRoute(routeId);
+        } catch (RouteNotFoundException e) {
+            log.error("[{}] Route not found: {}", correlationId, routeId);
+            metrics.recordTranslationError(routeId, "ROUTE_NOT_FOUND");
+            return TranslationResult.routeNotFound(routeId, correlationId);
+        }
+
+        boolean needsAdvancedFeatures = 
+            (route.getEncryptionType() != null && route.getEncryptionType() != Route.EncryptionType.NONE) ||
+            (route.getMode() == Route.RouteMode.ACTIVE && route.getEndpoint() != null);
+
+        log.info("[{}] Processing streamed translation request for routeId: {}", correlationId, routeId);
+
+        metrics.recordTranslationRequest(routeId);
+        Timer.Sample timer = metrics.startTimer();
+        long startTimeNanos = System.nanoTime();
+
+        try {
+            if (needsAdvancedFeatures) {
+                com.makura.translator.mapping.MappingConfig mappingConfig = cachedMappingLoader.loadMappingConfig(routeId);
+                com.makura.translator.TranslationResult callableResult =
+                    translator.translateWithOptions(inboundContent, buildOptions(route, mappingConfig, correlationId), out);
+
+                // If forwarded, translate the response back to source format
+                if (callableResult.isForwarded() && callableResult.getForwardingResponse() != null) {
+                    translator.translateResponse(routeId,
+                        new ByteArrayInputStream(callableResult.getForwardingResponse().getBytes(StandardCharsets.UTF_8)), out);
+                }
+            } else {
+                translator.translateRequest(routeId, inboundContent, out);
+            }
+
+            double durationMs = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+            log.info("[{}] Streamed translation completed successfully for routeId: {} in {}ms",
+                correlationId, routeId, String.format("%.2f", durationMs));
+            metrics.recordTranslationSuccess(routeId);
+            metrics.recordDuration(timer, routeId);
+            return TranslationResult.success(null, correlationId);
+        } catch (com.makura.runtime.mapping.MappingLoader.MappingLoadException e) {
+            double durationMs = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+            log.error("[{}] Mapping load error for routeId: {}. Details: {} (took {}ms)",
+                correlationId, routeId, e.getMessage(), String.format("%.2f", durationMs), e);
+            metrics.recordTranslationError(routeId, "MAPPING_LOAD_ERROR");
+            metrics.recordDuration(timer, routeId);
+            return TranslationResult.error("Mapping configuration error: " + e.getMessage(), correlationId);
+        } catch (com.makura.translator.Translator.TranslationException e) {
+            double durationMs = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+            log.error("[{}] Translation error for routeId: {} (took {}ms)", correlationId, routeId, String.format("%.2f", durationMs), e);
+            metrics.recordTranslationError(routeId, "TRANSLATION_ERROR");
+            metrics.recordDuration(timer, routeId);
+            return TranslationResult.error("Translation failed: " + e.getMessage(), correlationId);
+        }
+    }
+
+    /**
+     * Translate a target format response read from a stream back to source format, writing it into the output stream
+     */
+    @Transactional(readOnly = true)
+    public TranslationResult translateResponse(String routeId, InputStream targetContent, OutputStream out, String correlationId) {
+        if (correlationId == null) {
+            correlationId = UUID.randomUUID().toString();
+        }
+
+        log.info("[{}] Processing streamed response translation for routeId: {}", correlationId, routeId);
+
+        metrics.recordTranslationRequest(routeId);
+        Timer.Sample timer = metrics.startTimer();
+        long startTimeNanos = System.nanoTime();
+
+        try {
+            routeService.getActiveRoute(routeId);
+            translator.translateResponse(routeId, targetContent, out);
+
+            double durationMs = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+            log.info("[{}] Streamed response translation completed successfully for routeId: {} in {}ms",
+                correlationId, routeId, String.format("%.2f", durationMs));
+            metrics.recordTranslationSuccess(routeId);
+            metrics.recordDuration(timer, routeId);
+            return TranslationResult.success(null, correlationId);
+        } catch (RouteNotFoundException e) {
+            log.error("[{}] Route not found: {}", correlationId, routeId);
+            metrics.recordTranslationError(routeId, "ROUTE_NOT_FOUND");
+            metrics.recordDuration(timer, routeId);
+            return TranslationResult.routeNotFound(routeId, correlationId);
+        } catch (com.makura.translator.Translator.TranslationException e) {
+            double durationMs = (System.nanoTime() - startTimeNanos) / 1_000_000.0;
+            log.error("[{}] Response translation error for routeId: {} (took {}ms)", correlationId, routeId, String.format("%.2f", durationMs), e);
+            metrics.recordTranslationError(routeId, "TRANSLATION_ERROR");
+            metrics.recordDuration(timer, routeId);
+            return TranslationResult.error("Response translation failed: " + e.getMessage(), correlationId);
+        }
+    }
+
     /**
      * Translate target format response back to source format (for PASSIVE mode routes)
      */
@@ -209,7 +350,7 @@ public class TranslationService {
             log.error("[{}] Route not found: {} (took {}ms)", correlationId, routeId, String.format("%.2f", durationMs));
             metrics.recordTranslationError(routeId, "ROUTE_NOT_FOUND");
             metrics.recordDuration(timer, routeId);
-            return TranslationResult.error("Route not found: " + routeId, correlationId);
+            return TranslationResult.routeNotFound(routeId, correlationId);
         } catch (com.makura.runtime.mapping.MappingLoader.MappingLoadException e) {
             long durationNanos = System.nanoTime() - startTimeNanos;
             double durationMs = durationNanos / 1_000_000.0;
@@ -241,27 +382,40 @@ public class TranslationService {
      */
     public static class TranslationResult {
         private final boolean success;
+        private final boolean routeNotFound;
         private final String message;
         private final String correlationId;
 
-        private TranslationResult(boolean success, String message, String correlationId) {
+        private TranslationResult(boolean success, boolean routeNotFound, String message, String correlationId) {
             this.success = success;
+            this.routeNotFound = routeNotFound;
             this.message = message;
             this.correlationId = correlationId;
         }
 
         public static TranslationResult success(String message, String correlationId) {
-            return new TranslationResult(true, message, correlationId);
+            return new TranslationResult(true, false, message, correlationId);
         }
 
         public static TranslationResult error(String message, String correlationId) {
-            return new TranslationResult(false, message, correlationId);
+            return new TranslationResult(false, false, message, correlationId);
+        }
+
+        public static TranslationResult routeNotFound(String routeId, String correlationId) {
+            return new TranslationResult(false, true, "Route not found: " + routeId, correlationId);
         }
 
         public boolean isSuccess() {
             return success;
         }
 
+        /**
+         * Whether the route does not exist or is inactive
+         */
+        public boolean isRouteNotFound() {
+            return routeNotFound;
+        }
+
         public String getMessage() {
             return message;
         }